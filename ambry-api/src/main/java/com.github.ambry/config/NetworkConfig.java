@@ -39,6 +39,16 @@ public class NetworkConfig {
   @Default("500")
   public final int queuedMaxRequests;
 
+  /**
+   * The number of queues that received requests are striped across. Requests are queued by the processor that
+   * received them and request handlers take requests from other queues when their own queue is empty. It is capped
+   * at the number of processors and {@code queued.max.requests} is divided evenly among the queues. All requests
+   * share a single queue if this is 1.
+   */
+  @Config("network.num.request.queues")
+  @Default("1")
+  public final int networkNumRequestQueues;
+
   /**
    * The port to listen and accept connections on
    */
@@ -75,6 +85,29 @@ public class NetworkConfig {
   @Default("104857600")
   public final int socketRequestMaxBytes;
 
+  /**
+   * The maximum total size of the idle buffers that the server keeps for reuse by the receives of new requests.
+   * Receive buffers are not pooled if this is 0.
+   */
+  @Config("network.receive.buffer.pool.capacity.bytes")
+  @Default("0")
+  public final long networkReceiveBufferPoolCapacityBytes;
+
+  /**
+   * The size of the largest request whose receive buffer is pooled. Larger requests are received into buffers that
+   * are allocated for them.
+   */
+  @Config("network.receive.buffer.pool.max.buffer.size.bytes")
+  @Default("8388608")
+  public final int networkReceiveBufferPoolMaxBufferSizeBytes;
+
+  /**
+   * Whether the pooled receive buffers are direct buffers instead of heap buffers.
+   */
+  @Config("network.receive.buffer.pool.use.direct.buffers")
+  @Default("false")
+  public final boolean networkReceiveBufferPoolUseDirectBuffers;
+
   public NetworkConfig(VerifiableProperties verifiableProperties) {
 
     numNetworkThreads = verifiableProperties.getIntInRange("num.network.threads", 3, 1, Integer.MAX_VALUE);
@@ -86,5 +119,14 @@ public class NetworkConfig {
     socketRequestMaxBytes =
         verifiableProperties.getIntInRange("socket.request.max.bytes", 100 * 1024 * 1024, 1, Integer.MAX_VALUE);
     queuedMaxRequests = verifiableProperties.getIntInRange("queued.max.requests", 500, 1, Integer.MAX_VALUE);
+    networkNumRequestQueues =
+        verifiableProperties.getIntInRange("network.num.request.queues", 1, 1, Integer.MAX_VALUE);
+    networkReceiveBufferPoolCapacityBytes =
+        verifiableProperties.getLongInRange("network.receive.buffer.pool.capacity.bytes", 0, 0, Long.MAX_VALUE);
+    networkReceiveBufferPoolMaxBufferSizeBytes =
+        verifiableProperties.getIntInRange("network.receive.buffer.pool.max.buffer.size.bytes", 8 * 1024 * 1024,
+            1, Integer.MAX_VALUE);
+    networkReceiveBufferPoolUseDirectBuffers =
+        verifiableProperties.getBoolean("network.receive.buffer.pool.use.direct.buffers", false);
   }
 }
@@ -91,6 +91,66 @@ public class ReplicationConfig {
   @Default("false")
   public final boolean replicationValidateMessageStream;
 
+  /**
+   * Whether replica threads use non blocking network clients instead of blocking connections. A replica thread that
+   * uses a network client has a replication exchange in flight with every remote node it replicates from at the same
+   * time instead of speaking to one remote node after the other.
+   */
+  @Config("replication.use.network.client")
+  @Default("false")
+  public final boolean replicationUseNetworkClient;
+
+  /**
+   * The maximum number of connections per remote node and port of the network client of a replica thread. A replica
+   * thread has at most {@link #replicationNetworkClientExchangesPerNode} requests in flight per remote node, so at
+   * least that many connections are allowed.
+   */
+  @Config("replication.network.client.max.connections.per.port")
+  @Default("1")
+  public final int replicationNetworkClientMaxConnectionsPerPort;
+
+  /**
+   * The number of groups that a replica thread that uses a network client splits the replicas of a remote node into.
+   * The groups are exchanged with concurrently, each with at most one request in flight.
+   */
+  @Config("replication.network.client.exchanges.per.node")
+  @Default("1")
+  public final int replicationNetworkClientExchangesPerNode;
+
+  /**
+   * The time after which a request of a replica thread that uses a network client fails its exchange if no response
+   * was received from the remote node.
+   */
+  @Config("replication.network.client.request.timeout.ms")
+  @Default("10000")
+  public final int replicationNetworkClientRequestTimeoutMs;
+
+  /**
+   * The time for which a replica thread that uses a network client waits before it starts a new exchange with a remote
+   * node after an exchange with the node failed.
+   */
+  @Config("replication.network.client.error.backoff.ms")
+  @Default("1000")
+  public final int replicationNetworkClientErrorBackoffMs;
+
+  /**
+   * The maximum fetch size of a replica metadata request to a remote node whose replicas are lagging. If larger than
+   * {@link #replicationFetchSizeInBytes}, the fetch size of a request grows with the largest lag of the replicas in
+   * the request that was reported by the remote node, up to this size. Otherwise the fetch size does not change.
+   */
+  @Config("replication.max.fetch.size.in.bytes")
+  @Default("0")
+  public final long replicationMaxFetchSizeInBytes;
+
+  /**
+   * The maximum time for which a remote replica that had no new entries is left out of the replica metadata requests
+   * to its node. The time doubles with every exchange in which the replica has no new entries, up to this maximum, and
+   * is reset as soon as the replica has new entries. Idle replicas are always exchanged with if this is 0.
+   */
+  @Config("replication.idle.replica.max.backoff.ms")
+  @Default("0")
+  public final int replicationIdleReplicaMaxBackoffMs;
+
   public ReplicationConfig(VerifiableProperties verifiableProperties) {
 
     replicationTokenFactory =
@@ -112,5 +172,20 @@ public class ReplicationConfig {
     replicationMaxLagForWaitTimeInBytes =
         verifiableProperties.getLongInRange("replication.max.lag.for.wait.time.in.bytes", 5242880, 0, 104857600);
     replicationValidateMessageStream = verifiableProperties.getBoolean("replication.validate.message.stream", false);
+    replicationUseNetworkClient = verifiableProperties.getBoolean("replication.use.network.client", false);
+    replicationNetworkClientMaxConnectionsPerPort =
+        verifiableProperties.getIntInRange("replication.network.client.max.connections.per.port", 1, 1,
+            Integer.MAX_VALUE);
+    replicationNetworkClientExchangesPerNode =
+        verifiableProperties.getIntInRange("replication.network.client.exchanges.per.node", 1, 1, Integer.MAX_VALUE);
+    replicationNetworkClientRequestTimeoutMs =
+        verifiableProperties.getIntInRange("replication.network.client.request.timeout.ms", 10000, 1,
+            Integer.MAX_VALUE);
+    replicationNetworkClientErrorBackoffMs =
+        verifiableProperties.getIntInRange("replication.network.client.error.backoff.ms", 1000, 0, Integer.MAX_VALUE);
+    replicationMaxFetchSizeInBytes =
+        verifiableProperties.getLongInRange("replication.max.fetch.size.in.bytes", 0, 0, 104857600);
+    replicationIdleReplicaMaxBackoffMs =
+        verifiableProperties.getIntInRange("replication.idle.replica.max.backoff.ms", 0, 0, Integer.MAX_VALUE);
   }
 }
@@ -21,6 +21,20 @@ package com.github.ambry.config;
  */
 public class RouterConfig {
 
+  /**
+   * The types of operation trackers that can be used by get operations.
+   */
+  public enum OperationTrackerType {
+    SimpleOperationTracker, AdaptiveOperationTracker
+  }
+
+  /**
+   * The types of partition selectors that can be used by put operations.
+   */
+  public enum PartitionSelectorType {
+    RandomPartitionSelector, LoadAwarePartitionSelector
+  }
+
   /**
    * Number of independent scaling units for the router.
    */
@@ -131,6 +145,91 @@ public class RouterConfig {
   @Default("true")
   public final boolean routerGetCrossDcEnabled;
 
+  /**
+   * The maximum amount of memory the router holds in idle pooled buffers for the chunks of put and get operations.
+   * Buffers released when the pool is full are left to the garbage collector. A value of 0 disables the pool.
+   */
+  @Config("router.buffer.pool.capacity.bytes")
+  @Default("0")
+  public final long routerBufferPoolCapacityBytes;
+
+  /**
+   * Whether the buffer pool of the router allocates direct buffers instead of heap buffers.
+   */
+  @Config("router.buffer.pool.use.direct.buffers")
+  @Default("false")
+  public final boolean routerBufferPoolUseDirectBuffers;
+
+  /**
+   * The operation tracker used by get operations. {@code SimpleOperationTracker} only sends a request to another
+   * replica when a request fails or times out. {@code AdaptiveOperationTracker} also sends a hedged request to another
+   * replica when a request takes longer than the {@link #routerLatencyToleranceQuantile} of the latencies of its
+   * data node.
+   */
+  @Config("router.get.operation.tracker.type")
+  @Default("SimpleOperationTracker")
+  public final OperationTrackerType routerGetOperationTrackerType;
+
+  /**
+   * The quantile of the request latencies of a data node after which the {@code AdaptiveOperationTracker} sends a
+   * hedged request to another replica.
+   */
+  @Config("router.latency.tolerance.quantile")
+  @Default("0.9")
+  public final double routerLatencyToleranceQuantile;
+
+  /**
+   * The selector of the partitions that the chunks of put operations are put in. {@code RandomPartitionSelector}
+   * selects a writable partition uniformly at random. {@code LoadAwarePartitionSelector} selects the less loaded of
+   * two random writable partitions, based on the latencies and outstanding put requests of the router to their disks.
+   */
+  @Config("router.put.partition.selector.type")
+  @Default("RandomPartitionSelector")
+  public final PartitionSelectorType routerPutPartitionSelectorType;
+
+  /**
+   * The time for which {@code LoadAwarePartitionSelector} avoids a partition after a put to it failed.
+   */
+  @Config("router.put.failed.partition.avoidance.ms")
+  @Default("60000")
+  public final long routerPutFailedPartitionAvoidanceMs;
+
+  /**
+   * The maximum size of the window of data chunks that a get operation of a composite blob fetches ahead of the
+   * chunks written out to the caller. The window starts at one chunk, doubles while the caller waits for chunks and
+   * halves while the router exceeds {@link #routerGetPrefetchTotalMaxBytes}. If 0, a get operation holds a fixed
+   * number of chunks instead.
+   */
+  @Config("router.get.prefetch.window.max.bytes")
+  @Default("0")
+  public final long routerGetPrefetchWindowMaxBytes;
+
+  /**
+   * The size of the data chunks that the get operations of the router can hold in total before they shrink their
+   * prefetch windows. Chunks are accounted at the chunk size of their blob from the time they are requested until they
+   * are written out to the caller.
+   */
+  @Config("router.get.prefetch.total.max.bytes")
+  @Default("268435456")
+  public final long routerGetPrefetchTotalMaxBytes;
+
+  /**
+   * The number of threads of each operation controller that fill the chunks of put operations with the data read from
+   * the channels of the operations. Each put operation is filled by one of these threads.
+   */
+  @Config("router.put.chunk.filler.thread.count")
+  @Default("1")
+  public final int routerPutChunkFillerThreadCount;
+
+  /**
+   * Whether a data chunk of a put operation uses the data read from the channel of the operation without copying it,
+   * when the data read in one go covers the whole chunk. If true, the read data is only released back to the channel
+   * once the chunk is sent out, which slows down the reading of the channel until then.
+   */
+  @Config("router.put.chunk.fill.adopt.channel.buffers")
+  @Default("false")
+  public final boolean routerPutChunkFillAdoptChannelBuffers;
+
   /**
    * Create a RouterConfig instance.
    * @param verifiableProperties the properties map to refer to.
@@ -155,5 +254,34 @@ public class RouterConfig {
     routerGetRequestParallelism = verifiableProperties.getInt("router.get.request.parallelism", 2);
     routerGetSuccessTarget = verifiableProperties.getInt("router.get.success.target", 1);
     routerGetCrossDcEnabled = verifiableProperties.getBoolean("router.get.cross.dc.enabled", true);
+    routerBufferPoolCapacityBytes =
+        verifiableProperties.getLongInRange("router.buffer.pool.capacity.bytes", 0, 0, Long.MAX_VALUE);
+    routerBufferPoolUseDirectBuffers = verifiableProperties.getBoolean("router.buffer.pool.use.direct.buffers", false);
+    String operationTrackerType =
+        verifiableProperties.getString("router.get.operation.tracker.type", "SimpleOperationTracker");
+    try {
+      routerGetOperationTrackerType = OperationTrackerType.valueOf(operationTrackerType);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown router.get.operation.tracker.type " + operationTrackerType, e);
+    }
+    routerLatencyToleranceQuantile =
+        verifiableProperties.getDoubleInRange("router.latency.tolerance.quantile", 0.9, 0.0, 1.0);
+    String partitionSelectorType =
+        verifiableProperties.getString("router.put.partition.selector.type", "RandomPartitionSelector");
+    try {
+      routerPutPartitionSelectorType = PartitionSelectorType.valueOf(partitionSelectorType);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown router.put.partition.selector.type " + partitionSelectorType, e);
+    }
+    routerPutFailedPartitionAvoidanceMs =
+        verifiableProperties.getLongInRange("router.put.failed.partition.avoidance.ms", 60000, 0, Long.MAX_VALUE);
+    routerGetPrefetchWindowMaxBytes =
+        verifiableProperties.getLongInRange("router.get.prefetch.window.max.bytes", 0, 0, Long.MAX_VALUE);
+    routerGetPrefetchTotalMaxBytes =
+        verifiableProperties.getLongInRange("router.get.prefetch.total.max.bytes", 268435456, 0, Long.MAX_VALUE);
+    routerPutChunkFillerThreadCount =
+        verifiableProperties.getIntInRange("router.put.chunk.filler.thread.count", 1, 1, Integer.MAX_VALUE);
+    routerPutChunkFillAdoptChannelBuffers =
+        verifiableProperties.getBoolean("router.put.chunk.fill.adopt.channel.buffers", false);
   }
 }
@@ -33,8 +33,27 @@ public class ServerConfig {
   @Default("10")
   public final int serverSchedulerNumOfthreads;
 
+  /**
+   * The maximum number of requests that can wait for a handler of a disk. Requests for the partitions of a disk are
+   * rejected with a busy error when its queue is full. Requests are not queued per disk if this is 0.
+   */
+  @Config("server.disk.request.queue.size")
+  @Default("0")
+  public final int serverDiskRequestQueueSize;
+
+  /**
+   * The number of threads that handle the requests for the partitions of each disk.
+   */
+  @Config("server.disk.request.handler.num.of.threads")
+  @Default("2")
+  public final int serverDiskRequestHandlerNumOfThreads;
+
   public ServerConfig(VerifiableProperties verifiableProperties) {
     serverRequestHandlerNumOfThreads = verifiableProperties.getInt("server.request.handler.num.of.threads", 7);
     serverSchedulerNumOfthreads = verifiableProperties.getInt("server.scheduler.num.of.threads", 10);
+    serverDiskRequestQueueSize =
+        verifiableProperties.getIntInRange("server.disk.request.queue.size", 0, 0, Integer.MAX_VALUE);
+    serverDiskRequestHandlerNumOfThreads =
+        verifiableProperties.getIntInRange("server.disk.request.handler.num.of.threads", 2, 1, Integer.MAX_VALUE);
   }
 }
@@ -68,6 +68,14 @@ public class StoreConfig {
   @Default("0.01")
   public final double storeIndexBloomMaxFalsePositiveProbability;
 
+  /**
+   * Whether new index segments use a cache line blocked bloom filter instead of the standard bloom filter. Persisted
+   * filters of either kind are loaded regardless of this setting.
+   */
+  @Config("store.index.blocked.bloom.filter.enabled")
+  @Default("false")
+  public final boolean storeIndexBlockedBloomFilterEnabled;
+
   /**
    * How long (in days) a key must be in deleted state before it is hard deleted.
    */
@@ -96,6 +104,145 @@ public class StoreConfig {
   @Default("9223372036854775807")
   public final long storeSegmentSizeInBytes;
 
+  /**
+   * The max number of puts and deletes that are written to the log and added to the index in a single group commit.
+   */
+  @Config("store.max.writes.per.group.commit")
+  @Default("64")
+  public final int storeMaxWritesPerGroupCommit;
+
+  /**
+   * Whether an off heap locator that maps every key in the index to its latest index segment is to be maintained. It
+   * saves searching every index segment on lookups, at the cost of 16 bytes of off heap memory per key (at most 70%
+   * of the slots are used).
+   */
+  @Config("store.index.key.locator.enabled")
+  @Default("false")
+  public final boolean storeIndexKeyLocatorEnabled;
+
+  /**
+   * The initial number of slots in the key locator of the index. The locator doubles its size as it fills up, up to
+   * 2^26 slots.
+   */
+  @Config("store.index.key.locator.initial.num.slots")
+  @Default("65536")
+  public final int storeIndexKeyLocatorInitialNumSlots;
+
+  /**
+   * Whether the entries of the index segments that are held in memory are to be stored off heap. Off heap segments
+   * store the serialized entries in direct buffers instead of as heap objects, which reduces the heap used by the
+   * index and the garbage collection pauses at the cost of deserializing entries on reads.
+   */
+  @Config("store.index.off.heap.inmem.segment.enabled")
+  @Default("false")
+  public final boolean storeIndexOffHeapInMemSegmentEnabled;
+
+  /**
+   * Whether the index segment that is held in memory is persisted incrementally. If enabled, every flush appends only
+   * the entries added since the last flush to the file of the segment instead of rewriting all of its entries. The
+   * segment is rewritten in the sorted format when it is memory mapped.
+   */
+  @Config("store.index.incremental.persistence.enabled")
+  @Default("false")
+  public final boolean storeIndexIncrementalPersistenceEnabled;
+
+  /**
+   * The maximum number of stores on a disk that are started concurrently.
+   */
+  @Config("store.startup.threads.per.disk")
+  @Default("4")
+  public final int storeStartupThreadsPerDisk;
+
+  /**
+   * The number of threads per disk that load the index segments and bloom filters of the stores on the disk during
+   * startup.
+   */
+  @Config("store.index.segment.load.threads.per.disk")
+  @Default("4")
+  public final int storeIndexSegmentLoadThreadsPerDisk;
+
+  /**
+   * The target 99th percentile latency of foreground (application) I/O on a disk. Background I/O such as hard deletes
+   * is given a smaller budget when this is exceeded. 0 disables the feedback based budgeting of background I/O.
+   */
+  @Config("store.io.scheduler.foreground.latency.slo.ms")
+  @Default("0")
+  public final int storeIoSchedulerForegroundLatencySloMs;
+
+  /**
+   * The maximum number of concurrent foreground I/O operations on a disk before background I/O is given a smaller
+   * budget.
+   */
+  @Config("store.io.scheduler.max.foreground.queue.depth")
+  @Default("64")
+  public final int storeIoSchedulerMaxForegroundQueueDepth;
+
+  /**
+   * The interval at which the budget for background I/O on a disk is re-evaluated.
+   */
+  @Config("store.io.scheduler.adjustment.interval.ms")
+  @Default("1000")
+  public final int storeIoSchedulerAdjustmentIntervalMs;
+
+  /**
+   * The minimum fraction of the configured rate that background I/O on a disk always gets.
+   */
+  @Config("store.io.scheduler.min.background.budget.fraction")
+  @Default("0.1")
+  public final double storeIoSchedulerMinBackgroundBudgetFraction;
+
+  /**
+   * The memory budget per store for caching small blobs that are read from the log. The cache is disabled if this
+   * is 0.
+   */
+  @Config("store.read.cache.size.bytes")
+  @Default("0")
+  public final long storeReadCacheSizeBytes;
+
+  /**
+   * The size of the largest message that is cached by the read cache of a store. Larger messages are always read
+   * from the log.
+   */
+  @Config("store.read.cache.max.blob.size.bytes")
+  @Default("64*1024")
+  public final int storeReadCacheMaxBlobSizeBytes;
+
+  /**
+   * The maximum size of a read from the log that serves several messages of the same get. Messages that are close to
+   * each other in the log are read together instead of one after the other. Reads are not merged if this is 0.
+   */
+  @Config("store.read.coalescing.max.size.bytes")
+  @Default("0")
+  public final int storeReadCoalescingMaxSizeBytes;
+
+  /**
+   * The maximum number of bytes between two messages of a get that are read from the log together.
+   */
+  @Config("store.read.coalescing.max.gap.bytes")
+  @Default("4*1024")
+  public final int storeReadCoalescingMaxGapBytes;
+
+  /**
+   * The durability of puts and deletes. One of
+   * periodic: the log is only synced to disk every {@link #storeDataFlushIntervalSeconds} by the index persistor.
+   * async: in addition, the logs of a disk that were written to are synced to disk by a shared syncer every
+   * {@link #storeDataSyncIntervalMs}, but puts and deletes do not wait for the sync.
+   * group: like async, but puts and deletes only complete after the sync that covers them. A put or delete whose sync
+   * fails is reported as failed, but it is already visible in the store, so a retry of it finds the blob existing or
+   * deleted.
+   */
+  @Config("store.data.sync.policy")
+  @Default("periodic")
+  public final String storeDataSyncPolicy;
+
+  /**
+   * The minimum interval between two syncs of the logs of a disk if {@link #storeDataSyncPolicy} is async or group.
+   * Writes that happen during the interval are synced together by the next sync.
+   */
+  @Config("store.data.sync.interval.ms")
+  @Default("5")
+  public final int storeDataSyncIntervalMs;
+
   public StoreConfig(VerifiableProperties verifiableProperties) {
 
     storeKeyFactory = verifiableProperties.getString("store.key.factory", "com.github.ambry.commons.BlobIdFactory");
@@ -105,6 +252,8 @@ public class StoreConfig {
     storeIndexMaxNumberOfInmemElements = verifiableProperties.getInt("store.index.max.number.of.inmem.elements", 10000);
     storeIndexBloomMaxFalsePositiveProbability =
         verifiableProperties.getDoubleInRange("store.index.bloom.max.false.positive.probability", 0.01, 0.0, 1.0);
+    storeIndexBlockedBloomFilterEnabled =
+        verifiableProperties.getBoolean("store.index.blocked.bloom.filter.enabled", false);
     storeMaxNumberOfEntriesToReturnFromJournal =
         verifiableProperties.getIntInRange("store.max.number.of.entries.to.return.from.journal", 5000, 1, 10000);
     storeDeletedMessageRetentionDays = verifiableProperties.getInt("store.deleted.message.retention.days", 7);
@@ -112,6 +261,41 @@ public class StoreConfig {
     storeEnableHardDelete = verifiableProperties.getBoolean("store.enable.hard.delete", false);
     storeSegmentSizeInBytes =
         verifiableProperties.getLongInRange("store.segment.size.in.bytes", Long.MAX_VALUE, 1, Long.MAX_VALUE);
+    storeMaxWritesPerGroupCommit =
+        verifiableProperties.getIntInRange("store.max.writes.per.group.commit", 64, 1, Integer.MAX_VALUE);
+    storeIndexKeyLocatorEnabled = verifiableProperties.getBoolean("store.index.key.locator.enabled", false);
+    storeIndexKeyLocatorInitialNumSlots =
+        verifiableProperties.getIntInRange("store.index.key.locator.initial.num.slots", 65536, 2, 1 << 26);
+    storeIndexOffHeapInMemSegmentEnabled =
+        verifiableProperties.getBoolean("store.index.off.heap.inmem.segment.enabled", false);
+    storeIndexIncrementalPersistenceEnabled =
+        verifiableProperties.getBoolean("store.index.incremental.persistence.enabled", false);
+    storeStartupThreadsPerDisk =
+        verifiableProperties.getIntInRange("store.startup.threads.per.disk", 4, 1, Integer.MAX_VALUE);
+    storeIndexSegmentLoadThreadsPerDisk =
+        verifiableProperties.getIntInRange("store.index.segment.load.threads.per.disk", 4, 1, Integer.MAX_VALUE);
+    storeIoSchedulerForegroundLatencySloMs =
+        verifiableProperties.getIntInRange("store.io.scheduler.foreground.latency.slo.ms", 0, 0, Integer.MAX_VALUE);
+    storeIoSchedulerMaxForegroundQueueDepth =
+        verifiableProperties.getIntInRange("store.io.scheduler.max.foreground.queue.depth", 64, 1, Integer.MAX_VALUE);
+    storeIoSchedulerAdjustmentIntervalMs =
+        verifiableProperties.getIntInRange("store.io.scheduler.adjustment.interval.ms", 1000, 1, Integer.MAX_VALUE);
+    storeIoSchedulerMinBackgroundBudgetFraction =
+        verifiableProperties.getDoubleInRange("store.io.scheduler.min.background.budget.fraction", 0.1, 0.0, 1.0);
+    storeReadCacheSizeBytes = verifiableProperties.getLongInRange("store.read.cache.size.bytes", 0, 0, Long.MAX_VALUE);
+    storeReadCacheMaxBlobSizeBytes =
+        verifiableProperties.getIntInRange("store.read.cache.max.blob.size.bytes", 64 * 1024, 1, Integer.MAX_VALUE);
+    storeReadCoalescingMaxSizeBytes =
+        verifiableProperties.getIntInRange("store.read.coalescing.max.size.bytes", 0, 0, Integer.MAX_VALUE);
+    storeReadCoalescingMaxGapBytes =
+        verifiableProperties.getIntInRange("store.read.coalescing.max.gap.bytes", 4 * 1024, 0, Integer.MAX_VALUE);
+    storeDataSyncPolicy = verifiableProperties.getString("store.data.sync.policy", "periodic");
+    if (!storeDataSyncPolicy.equals("periodic") && !storeDataSyncPolicy.equals("async") && !storeDataSyncPolicy.equals(
+        "group")) {
+      throw new IllegalArgumentException("Unknown store.data.sync.policy " + storeDataSyncPolicy);
+    }
+    storeDataSyncIntervalMs =
+        verifiableProperties.getIntInRange("store.data.sync.interval.ms", 5, 0, Integer.MAX_VALUE);
   }
 }
 
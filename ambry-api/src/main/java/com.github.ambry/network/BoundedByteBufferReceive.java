@@ -13,10 +13,12 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferPool;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,9 +32,22 @@ public class BoundedByteBufferReceive implements Receive {
   private ByteBuffer sizeBuffer;
   private long sizeToRead;
   private long sizeRead;
+  private final ByteBufferPool bufferPool;
+  private boolean isBufferFromPool = false;
   private Logger logger = LoggerFactory.getLogger(getClass());
 
   public BoundedByteBufferReceive() {
+    this(null);
+  }
+
+  /**
+   * Creates a receive whose payload buffer is allocated from {@code bufferPool}. The buffer has to be returned to the
+   * pool through {@link #release()} once the payload is no longer used.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the payload buffer from. If {@code null}, the buffer is
+   *                   allocated on the heap and is not returned to any pool.
+   */
+  public BoundedByteBufferReceive(ByteBufferPool bufferPool) {
+    this.bufferPool = bufferPool;
     sizeToRead = 0;
     sizeRead = 0;
     sizeBuffer = ByteBuffer.allocate(8);
@@ -56,7 +71,7 @@ public class BoundedByteBufferReceive implements Receive {
         sizeToRead = sizeBuffer.getLong();
         sizeRead += 8;
         bytesRead += 8;
-        buffer = ByteBuffer.allocate((int) sizeToRead - 8);
+        buffer = allocatePayloadBuffer((int) sizeToRead - 8);
       }
     }
     if (buffer != null && sizeRead < sizeToRead) {
@@ -78,6 +93,38 @@ public class BoundedByteBufferReceive implements Receive {
     return buffer;
   }
 
+  /**
+   * Returns the payload buffer to the pool it was allocated from, if any. The payload must not be used after this.
+   * Calling this more than once has no effect.
+   */
+  public void release() {
+    if (isBufferFromPool) {
+      isBufferFromPool = false;
+      bufferPool.deallocate(buffer);
+    }
+  }
+
+  /**
+   * Allocates the payload buffer from the pool if there is one, or from the heap if there is none or the pool cannot
+   * serve the allocation.
+   * @param size the size of the payload.
+   * @return the payload buffer.
+   */
+  private ByteBuffer allocatePayloadBuffer(int size) {
+    if (bufferPool != null) {
+      try {
+        ByteBuffer pooledBuffer = bufferPool.allocate(size, 0);
+        isBufferFromPool = true;
+        return pooledBuffer;
+      } catch (TimeoutException e) {
+        logger.trace("Could not allocate {} bytes from the pool, allocating from the heap", size);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return ByteBuffer.allocate(size);
+  }
+
   /**
    * The total size in bytes that needs to receive from the channel
    * It will be initialized only after header is read.
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.network;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * A {@link WritableByteChannel} that transforms the bytes written to it in user space (for e.g. by encrypting them)
+ * and that can therefore not be the target of {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * without an intermediate copy. Such channels transfer the content of files themselves.
+ */
+public interface TransferableChannel extends WritableByteChannel {
+  /**
+   * Transfers bytes from the given file to this channel. Like
+   * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, this might transfer fewer bytes than requested
+   * and does not modify the position of the file channel.
+   * @param fileChannel The file channel to transfer the bytes from
+   * @param position The position in the file from which the transfer starts
+   * @param count The maximum number of bytes to transfer
+   * @return The number of bytes transferred, possibly zero
+   * @throws IOException if an I/O error occurs
+   */
+  long transferFrom(FileChannel fileChannel, long position, long count) throws IOException;
+}
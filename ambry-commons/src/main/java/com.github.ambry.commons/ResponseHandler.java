@@ -51,6 +51,10 @@ public class ResponseHandler {
       case Disk_Unavailable:
         clusterMap.onReplicaEvent(replicaId, ReplicaEventType.Disk_Error);
         break;
+      case Disk_Busy:
+        // the disk is healthy but has more requests queued than it can take. It is neither failed nor known to be
+        // good, so its state is left as is and the request is retried on another replica.
+        break;
       case Partition_ReadOnly:
         clusterMap.onReplicaEvent(replicaId, ReplicaEventType.Partition_ReadOnly);
         //fall through
@@ -27,5 +27,6 @@ public enum ServerErrorCode {
   Partition_Unknown,
   Disk_Unavailable,
   Partition_ReadOnly,
-  Unknown_Error
+  Unknown_Error,
+  Disk_Busy
 }
@@ -121,6 +121,7 @@ public class ResponseHandlerTest {
         new ReplicaEventType[]{ReplicaEventType.Node_Response, ReplicaEventType.Disk_Error});
     expectedEventTypes.put(ServerErrorCode.Disk_Unavailable,
         new ReplicaEventType[]{ReplicaEventType.Node_Response, ReplicaEventType.Disk_Error});
+    expectedEventTypes.put(ServerErrorCode.Disk_Busy, new ReplicaEventType[]{ReplicaEventType.Node_Response});
     expectedEventTypes.put(ServerErrorCode.Partition_ReadOnly,
         new ReplicaEventType[]{ReplicaEventType.Node_Response, ReplicaEventType.Disk_Ok, ReplicaEventType.Partition_ReadOnly});
     expectedEventTypes.put(ServerErrorCode.Unknown_Error,
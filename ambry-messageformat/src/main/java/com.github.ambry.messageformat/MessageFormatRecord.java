@@ -16,6 +16,7 @@ package com.github.ambry.messageformat;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.CrcInputStream;
 import com.github.ambry.utils.Utils;
@@ -141,16 +142,35 @@ public class MessageFormatRecord {
     return deserializeAndGetBlobWithVersion(stream).getBlobData();
   }
 
+  /**
+   * Deserializes a blob record, reading the content of the blob into a buffer allocated from {@code bufferPool}. The
+   * buffer is returned to the pool when the stream of the returned {@link BlobData} is closed.
+   * @param stream the stream to read the blob record from.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the content buffer from.
+   * @return the deserialized {@link BlobData}.
+   * @throws IOException
+   * @throws MessageFormatException
+   */
+  public static BlobData deserializeBlob(InputStream stream, ByteBufferPool bufferPool)
+      throws IOException, MessageFormatException {
+    return deserializeAndGetBlobWithVersion(stream, bufferPool).getBlobData();
+  }
+
   static DeserializedBlob deserializeAndGetBlobWithVersion(InputStream stream)
       throws IOException, MessageFormatException {
+    return deserializeAndGetBlobWithVersion(stream, null);
+  }
+
+  static DeserializedBlob deserializeAndGetBlobWithVersion(InputStream stream, ByteBufferPool bufferPool)
+      throws IOException, MessageFormatException {
     CrcInputStream crcStream = new CrcInputStream(stream);
     DataInputStream inputStream = new DataInputStream(crcStream);
     short version = inputStream.readShort();
     switch (version) {
       case Blob_Version_V1:
-        return new DeserializedBlob(Blob_Version_V1, Blob_Format_V1.deserializeBlobRecord(crcStream));
+        return new DeserializedBlob(Blob_Version_V1, Blob_Format_V1.deserializeBlobRecord(crcStream, bufferPool));
       case Blob_Version_V2:
-        return new DeserializedBlob(Blob_Version_V2, Blob_Format_V2.deserializeBlobRecord(crcStream));
+        return new DeserializedBlob(Blob_Version_V2, Blob_Format_V2.deserializeBlobRecord(crcStream, bufferPool));
       default:
         throw new MessageFormatException("data version not supported", MessageFormatErrorCodes.Unknown_Format_Version);
     }
@@ -552,15 +572,27 @@ public class MessageFormatRecord {
     }
 
     public static BlobData deserializeBlobRecord(CrcInputStream crcStream) throws IOException, MessageFormatException {
+      return deserializeBlobRecord(crcStream, null);
+    }
+
+    public static BlobData deserializeBlobRecord(CrcInputStream crcStream, ByteBufferPool bufferPool)
+        throws IOException, MessageFormatException {
       DataInputStream dataStream = new DataInputStream(crcStream);
       long dataSize = dataStream.readLong();
       if (dataSize > Integer.MAX_VALUE) {
         throw new IOException("We only support data of max size == MAX_INT. Error while reading blob from store");
       }
-      ByteBufferInputStream output = new ByteBufferInputStream(crcStream, (int) dataSize);
+      ByteBufferInputStream output = new ByteBufferInputStream(crcStream, (int) dataSize, bufferPool);
       long crc = crcStream.getValue();
-      long streamCrc = dataStream.readLong();
+      long streamCrc;
+      try {
+        streamCrc = dataStream.readLong();
+      } catch (IOException e) {
+        output.close();
+        throw e;
+      }
       if (crc != streamCrc) {
+        output.close();
         logger.error("corrupt data while parsing blob content expectedcrc {} actualcrc {}", crc, streamCrc);
         throw new MessageFormatException("corrupt data while parsing blob content",
             MessageFormatErrorCodes.Data_Corrupt);
@@ -603,6 +635,11 @@ public class MessageFormatRecord {
     }
 
     public static BlobData deserializeBlobRecord(CrcInputStream crcStream) throws IOException, MessageFormatException {
+      return deserializeBlobRecord(crcStream, null);
+    }
+
+    public static BlobData deserializeBlobRecord(CrcInputStream crcStream, ByteBufferPool bufferPool)
+        throws IOException, MessageFormatException {
       DataInputStream dataStream = new DataInputStream(crcStream);
       short blobTypeOrdinal = dataStream.readShort();
       if (blobTypeOrdinal > BlobType.values().length) {
@@ -615,10 +652,17 @@ public class MessageFormatRecord {
       if (dataSize > Integer.MAX_VALUE) {
         throw new IOException("We only support data of max size == MAX_INT. Error while reading blob from store");
       }
-      ByteBufferInputStream output = new ByteBufferInputStream(crcStream, (int) dataSize);
+      ByteBufferInputStream output = new ByteBufferInputStream(crcStream, (int) dataSize, bufferPool);
       long crc = crcStream.getValue();
-      long streamCrc = dataStream.readLong();
+      long streamCrc;
+      try {
+        streamCrc = dataStream.readLong();
+      } catch (IOException e) {
+        output.close();
+        throw e;
+      }
       if (crc != streamCrc) {
+        output.close();
         logger.error("corrupt data while parsing blob content expectedcrc {} actualcrc {}", crc, streamCrc);
         throw new MessageFormatException("corrupt data while parsing blob content",
             MessageFormatErrorCodes.Data_Corrupt);
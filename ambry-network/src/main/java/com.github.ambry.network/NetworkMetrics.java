@@ -18,6 +18,7 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.utils.SizeClassedByteBufferPool;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -86,8 +87,10 @@ public class NetworkMetrics {
   public final Counter networkClientIOError;
   public final Counter networkClientException;
   private List<AtomicLong> networkClientPendingRequestList;
+  private final MetricRegistry registry;
 
   public NetworkMetrics(MetricRegistry registry) {
+    this.registry = registry;
     sendInFlight = registry.counter(MetricRegistry.name(Selector.class, "SendInFlight"));
     selectorConnectionClosed = registry.counter(MetricRegistry.name(Selector.class, "SelectorConnectionClosed"));
     selectorConnectionCreated = registry.counter(MetricRegistry.name(Selector.class, "SelectorConnectionCreated"));
@@ -184,12 +187,50 @@ public class NetworkMetrics {
   void registerNetworkClientPendingConnections(final AtomicLong numPendingConnections) {
     networkClientPendingRequestList.add(numPendingConnections);
   }
+
+  /**
+   * Registers the hit, miss and outstanding bytes metrics of the pool that receive buffers are allocated from
+   * @param receiveBufferPool the {@link SizeClassedByteBufferPool} used by the selectors
+   */
+  void initializeReceiveBufferPoolMetrics(final SizeClassedByteBufferPool receiveBufferPool) {
+    Gauge<Long> hitCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return receiveBufferPool.hitCount.get();
+      }
+    };
+    registry.register(MetricRegistry.name(Selector.class, "ReceiveBufferPoolHitCount"), hitCount);
+    Gauge<Long> missCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return receiveBufferPool.missCount.get();
+      }
+    };
+    registry.register(MetricRegistry.name(Selector.class, "ReceiveBufferPoolMissCount"), missCount);
+    Gauge<Long> outstandingBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return receiveBufferPool.outstandingBytes.get();
+      }
+    };
+    registry.register(MetricRegistry.name(Selector.class, "ReceiveBufferPoolOutstandingBytes"), outstandingBytes);
+    Gauge<Long> idleBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return receiveBufferPool.getIdleBytes();
+      }
+    };
+    registry.register(MetricRegistry.name(Selector.class, "ReceiveBufferPoolIdleBytes"), idleBytes);
+  }
 }
 
 class ServerNetworkMetrics extends NetworkMetrics {
   // SocketRequestResponseChannel metrics
   private final List<Gauge<Integer>> responseQueueSize;
   private final Gauge<Integer> requestQueueSize;
+  // the time requests spend in each request queue
+  public final List<Histogram> requestQueueTimeInMs;
+  public final Counter requestQueueStealCount;
 
   // SocketServer metrics
   public final Counter acceptConnectionErrorCount;
@@ -208,6 +249,26 @@ class ServerNetworkMetrics extends NetworkMetrics {
       }
     };
     registry.register(MetricRegistry.name(SocketRequestResponseChannel.class, "RequestQueueSize"), requestQueueSize);
+    requestQueueTimeInMs = new ArrayList<Histogram>(channel.getNumberOfRequestQueues());
+    if (channel.getNumberOfRequestQueues() == 1) {
+      requestQueueTimeInMs.add(
+          registry.histogram(MetricRegistry.name(SocketRequestResponseChannel.class, "RequestQueueTimeInMs")));
+    } else {
+      for (int i = 0; i < channel.getNumberOfRequestQueues(); i++) {
+        final int index = i;
+        registry.register(MetricRegistry.name(SocketRequestResponseChannel.class, i + "-RequestQueueSize"),
+            new Gauge<Integer>() {
+              @Override
+              public Integer getValue() {
+                return channel.getRequestQueueSize(index);
+              }
+            });
+        requestQueueTimeInMs.add(
+            registry.histogram(MetricRegistry.name(SocketRequestResponseChannel.class, i + "-RequestQueueTimeInMs")));
+      }
+    }
+    requestQueueStealCount =
+        registry.counter(MetricRegistry.name(SocketRequestResponseChannel.class, "RequestQueueStealCount"));
     responseQueueSize = new ArrayList<Gauge<Integer>>(channel.getNumberOfProcessors());
 
     for (int i = 0; i < channel.getNumberOfProcessors(); i++) {
@@ -13,16 +13,17 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.nio.channels.WritableByteChannel;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
@@ -35,7 +36,7 @@ import org.slf4j.LoggerFactory;
  * performing reads/writes and closing the transmission safely. This class also implements
  * ReadableByteChannel and WritableByteChannel to provide a way to encrypt and decrypt to/from a channel
  */
-public class SSLTransmission extends Transmission implements ReadableByteChannel, WritableByteChannel {
+public class SSLTransmission extends Transmission implements ReadableByteChannel, TransferableChannel {
 
   private static final Logger logger = LoggerFactory.getLogger(SSLTransmission.class);
   private final SSLEngine sslEngine;
@@ -51,10 +52,19 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
   // buffer used to hold the decrypted data decrypted from networkReadBuffer
   private ByteBuffer emptyBuf = ByteBuffer.allocate(0);
   private long handshakeStartTime;
+  // direct buffer that holds the file content to be encrypted by transferFrom(), allocated on the first transfer
+  private ByteBuffer transferBuffer = null;
+  // the file and the file position of the content remaining in the transferBuffer
+  private FileChannel transferFileChannel = null;
+  private long transferFilePosition = -1;
+
+  // the number of SSL records that transferFrom() encrypts before writing them to the socket
+  private static final int TRANSFER_BATCH_RECORD_COUNT = 4;
 
   public SSLTransmission(SSLFactory sslFactory, String connectionId, SocketChannel socketChannel, SelectionKey key,
-      String remoteHost, int remotePort, Time time, NetworkMetrics metrics, SSLFactory.Mode mode) throws IOException {
-    super(connectionId, socketChannel, key, time, metrics);
+      String remoteHost, int remotePort, Time time, NetworkMetrics metrics, SSLFactory.Mode mode,
+      ByteBufferPool receiveBufferPool) throws IOException {
+    super(connectionId, socketChannel, key, time, metrics, receiveBufferPool);
     this.sslEngine = sslFactory.createSSLEngine(remoteHost, remotePort, mode);
     this.netReadBuffer = ByteBuffer.allocate(packetBufferSize());
     this.netWriteBuffer = ByteBuffer.allocate(packetBufferSize());
@@ -104,7 +114,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
   }
 
   /**
-   * Sends a SSL close message and closes socketChannel.
+   * Sends a SSL close message, closes socketChannel and releases the buffers used to transfer file content.
    * @throws IOException if an I/O error occurs
    */
   @Override
@@ -113,6 +123,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
       return;
     }
     closing = true;
+    releaseIncompleteReceive();
     sslEngine.closeOutbound();
     try {
       if (!flush(netWriteBuffer)) {
@@ -136,6 +147,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
       metrics.selectorCloseSocketErrorCount.inc();
       logger.warn("Failed to send SSL close message ", ie);
     }
+    releaseTransferBuffers();
     key.attach(null);
     key.cancel();
   }
@@ -383,7 +395,8 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
   @Override
   public boolean read() throws IOException {
     if (!hasReceive()) {
-      this.networkReceive = new NetworkReceive(getConnectionId(), new BoundedByteBufferReceive(), time);
+      this.networkReceive =
+          new NetworkReceive(getConnectionId(), new BoundedByteBufferReceive(receiveBufferPool), time);
     }
     long startTimeMs = SystemTime.getInstance().milliseconds();
     long bytesRead = networkReceive.getReceivedBytes().readFrom(this);
@@ -566,6 +579,106 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
     return written;
   }
 
+  /**
+   * Transfers bytes from the given file to this channel. Unlike
+   * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} to this channel, which copies
+   * the file through a small temporary buffer and encrypts it a few kilobytes at a time, the file is read into a
+   * direct buffer of this connection and encrypted in batches of several SSL records that are written to the socket
+   * at once. Content that was read but not sent is kept for the next transfer from the same file and position.
+   * @param fileChannel The file channel to transfer the bytes from
+   * @param position The position in the file from which the transfer starts
+   * @param count The maximum number of bytes to transfer
+   * @return The number of bytes of the file that were encrypted. No guarantee that the encrypted data is completely
+   * written to the underlying channel right away. So like {@link #write(ByteBuffer)}, the caller has to check the
+   * remaining bytes in the netWriteBuffer.
+   * @throws IOException If some other I/O error occurs
+   */
+  @Override
+  public long transferFrom(FileChannel fileChannel, long position, long count) throws IOException {
+    if (closing) {
+      throw new IllegalStateException("Channel is in closing state");
+    }
+    if (!handshakeComplete || count <= 0 || !flush(netWriteBuffer)) {
+      return 0;
+    }
+    if (transferBuffer == null) {
+      transferBuffer = ByteBuffer.allocateDirect(applicationBufferSize() * TRANSFER_BATCH_RECORD_COUNT);
+      transferBuffer.limit(0);
+      // netWriteBuffer is empty, so it can be replaced by a buffer that holds a batch of records
+      netWriteBuffer = ByteBuffer.allocateDirect(packetBufferSize() * TRANSFER_BATCH_RECORD_COUNT);
+      netWriteBuffer.limit(0);
+    }
+    if (fileChannel != transferFileChannel || position != transferFilePosition || !transferBuffer.hasRemaining()) {
+      transferBuffer.clear();
+      transferBuffer.limit((int) Math.min(transferBuffer.capacity(), count));
+      while (transferBuffer.hasRemaining()) {
+        if (fileChannel.read(transferBuffer, position + transferBuffer.position()) < 0) {
+          break;
+        }
+      }
+      transferBuffer.flip();
+      transferFileChannel = fileChannel;
+      if (!transferBuffer.hasRemaining()) {
+        return 0;
+      }
+    }
+    // the content that was kept from an earlier transfer can be more than what is requested now
+    int transferBufferLimit = transferBuffer.limit();
+    transferBuffer.limit((int) Math.min(transferBufferLimit, transferBuffer.position() + count));
+
+    long written = 0;
+    netWriteBuffer.clear();
+    SSLEngineResult wrapResult;
+    long startTimeMs = SystemTime.getInstance().milliseconds();
+    do {
+      wrapResult = sslEngine.wrap(transferBuffer, netWriteBuffer);
+      written += wrapResult.bytesConsumed();
+    } while (wrapResult.getStatus() == SSLEngineResult.Status.OK
+        && wrapResult.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+        && transferBuffer.hasRemaining());
+    long encryptionTimeMs = SystemTime.getInstance().milliseconds() - startTimeMs;
+    logger.trace("SSL encryption time: {} ms for {} bytes transferred from file", encryptionTimeMs, written);
+    if (written > 0) {
+      metrics.sslEncryptionTimePerKB.update(encryptionTimeMs * 1024 / written);
+    }
+    netWriteBuffer.flip();
+    transferBuffer.limit(transferBufferLimit);
+    transferFilePosition = position + written;
+
+    //handle ssl renegotiation
+    if (wrapResult.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+      handshake();
+      metrics.sslRenegotiationCount.inc();
+      return written;
+    }
+
+    if (wrapResult.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+      throw new IllegalStateException("SSL BUFFER_UNDERFLOW during transfer");
+    } else if (wrapResult.getStatus() == SSLEngineResult.Status.CLOSED) {
+      throw new EOFException();
+    }
+    if (wrapResult.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW && written == 0) {
+      // not even a single record fits, the packet buffer size has grown during a renegotiation
+      netWriteBuffer = ByteBuffer.allocateDirect(packetBufferSize() * TRANSFER_BATCH_RECORD_COUNT);
+      netWriteBuffer.limit(0);
+      return written;
+    }
+    flush(netWriteBuffer);
+    return written;
+  }
+
+  /**
+   * Drops the direct buffers that were allocated by {@link #transferFrom(FileChannel, long, long)} so that their
+   * memory is reclaimed even if this transmission is still referenced after it is closed.
+   */
+  private void releaseTransferBuffers() {
+    if (transferBuffer != null) {
+      transferBuffer = null;
+      transferFileChannel = null;
+      netWriteBuffer = ByteBuffer.allocate(0);
+    }
+  }
+
   /**
    * returns delegatedTask for the SSLEngine.
    */
@@ -615,6 +728,8 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
   @Override
   public void onSendComplete() {
     long sendTimeMs = SystemTime.getInstance().milliseconds() - networkSend.getSendStartTimeInMs();
+    // the file content kept by transferFrom() is not reused by the next send
+    transferFileChannel = null;
     networkSend.onSendComplete();
     double sendBytesRate = networkSend.getPayload().sizeInBytes() / ((double) sendTimeMs / SystemTime.MsPerSec);
     metrics.sslSendBytesRate.mark((long) sendBytesRate);
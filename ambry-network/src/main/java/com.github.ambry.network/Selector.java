@@ -13,6 +13,7 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.io.EOFException;
 import java.io.IOException;
@@ -80,11 +81,22 @@ public class Selector implements Selectable {
   private final AtomicLong IdGenerator;
   private final AtomicLong numActiveConnections;
   private final SSLFactory sslFactory;
+  private final ByteBufferPool receiveBufferPool;
 
   /**
    * Create a new selector
    */
   public Selector(NetworkMetrics metrics, Time time, SSLFactory sslFactory) throws IOException {
+    this(metrics, time, sslFactory, null);
+  }
+
+  /**
+   * Create a new selector that allocates the buffers of receives from a pool
+   * @param receiveBufferPool the {@link ByteBufferPool} to allocate receive buffers from. Can be {@code null}. The
+   *                          consumers of {@link #completedReceives()} have to release the received buffers.
+   */
+  public Selector(NetworkMetrics metrics, Time time, SSLFactory sslFactory, ByteBufferPool receiveBufferPool)
+      throws IOException {
     this.nioSelector = java.nio.channels.Selector.open();
     this.time = time;
     this.keyMap = new HashMap<String, SelectionKey>();
@@ -99,6 +111,7 @@ public class Selector implements Selectable {
     unreadyConnections = new HashSet<>();
     metrics.registerSelectorActiveConnections(numActiveConnections);
     this.sslFactory = sslFactory;
+    this.receiveBufferPool = receiveBufferPool;
   }
 
   /**
@@ -165,7 +178,7 @@ public class Selector implements Selectable {
     try {
       transmission =
           TransmissionFactory.getTransmission(connectionId, channel, key, address.getHostName(), address.getPort(),
-              time, metrics, portType, sslFactory, SSLFactory.Mode.CLIENT);
+              time, metrics, portType, sslFactory, SSLFactory.Mode.CLIENT, receiveBufferPool);
     } catch (IOException e) {
       logger.error("IOException on transmission creation " + e);
       channel.socket().close();
@@ -191,7 +204,7 @@ public class Selector implements Selectable {
     try {
       transmission =
           TransmissionFactory.getTransmission(connectionId, channel, key, socket.getInetAddress().getHostAddress(),
-              socket.getPort(), time, metrics, portType, sslFactory, SSLFactory.Mode.SERVER);
+              socket.getPort(), time, metrics, portType, sslFactory, SSLFactory.Mode.SERVER, receiveBufferPool);
     } catch (IOException e) {
       logger.error("IOException on transmission creation " + e);
       socket.close();
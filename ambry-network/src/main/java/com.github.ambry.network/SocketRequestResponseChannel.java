@@ -17,9 +17,10 @@ import com.github.ambry.utils.SystemTime;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,12 +31,24 @@ class SocketServerRequest implements Request {
   private final String connectionId;
   private final InputStream input;
   private final long startTimeInMs;
+  private final BoundedByteBufferReceive receivedBytes;
   private Logger logger = LoggerFactory.getLogger(getClass());
 
   public SocketServerRequest(int processor, String connectionId, InputStream input) throws IOException {
+    this(processor, connectionId, input, null);
+  }
+
+  /**
+   * Creates a request whose content was received into {@code receivedBytes}.
+   * @param receivedBytes the {@link BoundedByteBufferReceive} that holds the content of {@code input}. Its buffer is
+   *                      returned to its pool by {@link #release()}. Can be {@code null}.
+   */
+  public SocketServerRequest(int processor, String connectionId, InputStream input,
+      BoundedByteBufferReceive receivedBytes) throws IOException {
     this.processor = processor;
     this.connectionId = connectionId;
     this.input = input;
+    this.receivedBytes = receivedBytes;
     this.startTimeInMs = SystemTime.getInstance().milliseconds();
     logger.trace("Processor {} received request : {}", processor, connectionId);
   }
@@ -57,6 +70,16 @@ class SocketServerRequest implements Request {
   public String getConnectionId() {
     return connectionId;
   }
+
+  /**
+   * Releases the buffer that holds the content of this request. The input stream of the request must not be used
+   * after this.
+   */
+  void release() {
+    if (receivedBytes != null) {
+      receivedBytes.release();
+    }
+  }
 }
 
 // The response at the network layer
@@ -107,19 +130,51 @@ interface ResponseListener {
 }
 
 /**
- * RequestResponse channel for socket server
+ * RequestResponse channel for socket server. Requests are either queued in a single queue that is shared by all the
+ * request handlers or striped across several queues. In the striped mode, a request is queued in the queue of the
+ * processor that received it, every request handler thread has a home queue that it blocks on and handlers take
+ * requests from the other queues when their home queue is empty.
  */
 public class SocketRequestResponseChannel implements RequestResponseChannel {
+  // how long a request handler blocks on its empty home queue before it looks at the other queues again
+  static final long REQUEST_QUEUE_STEAL_INTERVAL_MS = 10;
+
   private final int numProcessors;
   private final int queueSize;
-  private final ArrayBlockingQueue<Request> requestQueue;
+  private final int numRequestQueues;
+  private final ArrayList<BlockingQueue<Request>> requestQueues;
+  private final AtomicInteger nextRequestQueue = new AtomicInteger(0);
+  private final AtomicInteger nextHomeRequestQueue = new AtomicInteger(0);
+  private final ThreadLocal<Integer> homeRequestQueue = new ThreadLocal<Integer>();
   private final ArrayList<BlockingQueue<Response>> responseQueues;
   private final ArrayList<ResponseListener> responseListeners;
+  private ServerNetworkMetrics metrics = null;
 
   public SocketRequestResponseChannel(int numProcessors, int queueSize) {
+    this(numProcessors, queueSize, 1);
+  }
+
+  /**
+   * Creates a channel.
+   * @param numProcessors the number of processors that send requests and receive responses.
+   * @param queueSize the maximum number of queued requests after which {@link #sendRequest(Request)} blocks. It is
+   *                  divided evenly among the request queues.
+   * @param numRequestQueues the number of queues that requests are striped across. It is capped at
+   *                         {@code numProcessors} since requests are queued by the processor that received them.
+   *                         Requests are queued in a single shared queue if this is 1.
+   */
+  public SocketRequestResponseChannel(int numProcessors, int queueSize, int numRequestQueues) {
+    if (numRequestQueues < 1) {
+      throw new IllegalArgumentException("Number of request queues has to be at least 1: " + numRequestQueues);
+    }
     this.numProcessors = numProcessors;
     this.queueSize = queueSize;
-    this.requestQueue = new ArrayBlockingQueue<Request>(this.queueSize);
+    this.numRequestQueues = Math.max(1, Math.min(numRequestQueues, numProcessors));
+    int requestQueueSize = Math.max(1, this.queueSize / this.numRequestQueues);
+    requestQueues = new ArrayList<BlockingQueue<Request>>(this.numRequestQueues);
+    for (int i = 0; i < this.numRequestQueues; i++) {
+      requestQueues.add(new LinkedBlockingQueue<Request>(requestQueueSize));
+    }
     responseQueues = new ArrayList<BlockingQueue<Response>>(this.numProcessors);
     responseListeners = new ArrayList<ResponseListener>();
 
@@ -128,10 +183,24 @@ public class SocketRequestResponseChannel implements RequestResponseChannel {
     }
   }
 
+  /**
+   * Sets the metrics that the time requests spend in the request queues is recorded in.
+   * @param metrics the {@link ServerNetworkMetrics} to use.
+   */
+  void setMetrics(ServerNetworkMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   /** Send a request to be handled, potentially blocking until there is room in the queue for the request */
   @Override
   public void sendRequest(Request request) throws InterruptedException {
-    requestQueue.put(request);
+    int requestQueue;
+    if (request instanceof SocketServerRequest) {
+      requestQueue = ((SocketServerRequest) request).getProcessor() % numRequestQueues;
+    } else {
+      requestQueue = (nextRequestQueue.getAndIncrement() & Integer.MAX_VALUE) % numRequestQueues;
+    }
+    requestQueues.get(requestQueue).put(request);
   }
 
   /** Send a response back to the socket server to be sent over the network */
@@ -158,10 +227,42 @@ public class SocketRequestResponseChannel implements RequestResponseChannel {
     }
   }
 
-  /** Get the next request or block until there is one */
+  /**
+   * Get the next request or block until there is one. In the striped mode, the request is taken from the home queue
+   * of the calling thread if it has one and from the other queues otherwise. When all the queues are empty, the
+   * calling thread blocks on its home queue for up to {@link #REQUEST_QUEUE_STEAL_INTERVAL_MS} before it looks at the
+   * other queues again.
+   */
   @Override
   public Request receiveRequest() throws InterruptedException {
-    return requestQueue.take();
+    if (numRequestQueues == 1) {
+      Request request = requestQueues.get(0).take();
+      recordQueueTime(0, request);
+      return request;
+    }
+    Integer homeQueue = homeRequestQueue.get();
+    if (homeQueue == null) {
+      homeQueue = (nextHomeRequestQueue.getAndIncrement() & Integer.MAX_VALUE) % numRequestQueues;
+      homeRequestQueue.set(homeQueue);
+    }
+    while (true) {
+      for (int i = 0; i < numRequestQueues; i++) {
+        int requestQueue = (homeQueue + i) % numRequestQueues;
+        Request request = requestQueues.get(requestQueue).poll();
+        if (request != null) {
+          if (i != 0 && metrics != null) {
+            metrics.requestQueueStealCount.inc();
+          }
+          recordQueueTime(requestQueue, request);
+          return request;
+        }
+      }
+      Request request = requestQueues.get(homeQueue).poll(REQUEST_QUEUE_STEAL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      if (request != null) {
+        recordQueueTime(homeQueue, request);
+        return request;
+      }
+    }
   }
 
   /** Get a response for the given processor if there is one */
@@ -174,7 +275,23 @@ public class SocketRequestResponseChannel implements RequestResponseChannel {
   }
 
   public int getRequestQueueSize() {
-    return requestQueue.size();
+    int size = 0;
+    for (BlockingQueue<Request> requestQueue : requestQueues) {
+      size += requestQueue.size();
+    }
+    return size;
+  }
+
+  /**
+   * @param requestQueue the index of a request queue.
+   * @return the number of requests in the given request queue.
+   */
+  public int getRequestQueueSize(int requestQueue) {
+    return requestQueues.get(requestQueue).size();
+  }
+
+  public int getNumberOfRequestQueues() {
+    return numRequestQueues;
   }
 
   public int getResponseQueueSize(int processor) {
@@ -186,8 +303,15 @@ public class SocketRequestResponseChannel implements RequestResponseChannel {
   }
 
   public void shutdown() {
-    requestQueue.clear();
+    for (BlockingQueue<Request> requestQueue : requestQueues) {
+      requestQueue.clear();
+    }
   }
-}
-
 
+  private void recordQueueTime(int requestQueue, Request request) {
+    if (metrics != null && request instanceof SocketServerRequest) {
+      metrics.requestQueueTimeInMs.get(requestQueue)
+          .update(SystemTime.getInstance().milliseconds() - request.getStartTimeInMs());
+    }
+  }
+}
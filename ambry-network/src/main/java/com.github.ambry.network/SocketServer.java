@@ -17,6 +17,8 @@ import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.config.NetworkConfig;
 import com.github.ambry.config.SSLConfig;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.ByteBufferPool;
+import com.github.ambry.utils.SizeClassedByteBufferPool;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
@@ -47,6 +49,8 @@ import org.slf4j.LoggerFactory;
  *   M Handler threads that handle requests and produce responses back to the processor threads for writing.
  */
 public class SocketServer implements NetworkServer {
+  // requests smaller than this are received into buffers of this size when receive buffers are pooled
+  static final int Min_Pooled_Receive_Buffer_Size = 4 * 1024;
 
   private final String host;
   private final int port;
@@ -62,6 +66,7 @@ public class SocketServer implements NetworkServer {
   private final ServerNetworkMetrics metrics;
   private final HashMap<PortType, Port> ports;
   private SSLFactory sslFactory;
+  private final SizeClassedByteBufferPool receiveBufferPool;
 
   public SocketServer(NetworkConfig config, SSLConfig sslConfig, MetricRegistry registry, ArrayList<Port> portList) {
     this.host = config.hostName;
@@ -72,12 +77,22 @@ public class SocketServer implements NetworkServer {
     this.recvBufferSize = config.socketReceiveBufferBytes;
     this.maxRequestSize = config.socketRequestMaxBytes;
     processors = new ArrayList<Processor>(numProcessorThreads);
-    requestResponseChannel = new SocketRequestResponseChannel(numProcessorThreads, maxQueuedRequests);
+    requestResponseChannel =
+        new SocketRequestResponseChannel(numProcessorThreads, maxQueuedRequests, config.networkNumRequestQueues);
     metrics = new ServerNetworkMetrics(requestResponseChannel, registry, processors);
+    requestResponseChannel.setMetrics(metrics);
     this.acceptors = new ArrayList<Acceptor>();
     this.ports = new HashMap<PortType, Port>();
     this.validatePorts(portList);
     this.initializeSSLFactory(sslConfig);
+    if (config.networkReceiveBufferPoolCapacityBytes > 0) {
+      receiveBufferPool = new SizeClassedByteBufferPool(config.networkReceiveBufferPoolCapacityBytes,
+          Min_Pooled_Receive_Buffer_Size, config.networkReceiveBufferPoolMaxBufferSizeBytes,
+          config.networkReceiveBufferPoolUseDirectBuffers);
+      metrics.initializeReceiveBufferPoolMetrics(receiveBufferPool);
+    } else {
+      receiveBufferPool = null;
+    }
   }
 
   public String getHost() {
@@ -148,7 +163,8 @@ public class SocketServer implements NetworkServer {
   public void start() throws IOException, InterruptedException {
     logger.info("Starting {} processor threads", numProcessorThreads);
     for (int i = 0; i < numProcessorThreads; i++) {
-      processors.add(i, new Processor(i, maxRequestSize, requestResponseChannel, metrics, sslFactory));
+      processors.add(i,
+          new Processor(i, maxRequestSize, requestResponseChannel, metrics, sslFactory, receiveBufferPool));
       Utils.newThread("ambry-processor-" + port + " " + i, processors.get(i), false).start();
     }
 
@@ -403,12 +419,12 @@ class Processor extends AbstractServerThread {
   private static final long pollTimeoutMs = 300;
 
   Processor(int id, int maxRequestSize, RequestResponseChannel channel, ServerNetworkMetrics metrics,
-      SSLFactory sslFactory) throws IOException {
+      SSLFactory sslFactory, ByteBufferPool receiveBufferPool) throws IOException {
     this.maxRequestSize = maxRequestSize;
     this.channel = (SocketRequestResponseChannel) channel;
     this.id = id;
     this.time = SystemTime.getInstance();
-    selector = new Selector(metrics, time, sslFactory);
+    selector = new Selector(metrics, time, sslFactory, receiveBufferPool);
     this.metrics = metrics;
   }
 
@@ -427,7 +443,8 @@ class Processor extends AbstractServerThread {
         for (NetworkReceive networkReceive : completedReceives) {
           String connectionId = networkReceive.getConnectionId();
           SocketServerRequest req = new SocketServerRequest(id, connectionId,
-              new ByteBufferInputStream(networkReceive.getReceivedBytes().getPayload()));
+              new ByteBufferInputStream(networkReceive.getReceivedBytes().getPayload()),
+              networkReceive.getReceivedBytes());
           channel.sendRequest(req);
         }
       }
@@ -451,6 +468,8 @@ class Processor extends AbstractServerThread {
     while (curr != null) {
       curr.onDequeueFromResponseQueue();
       SocketServerRequest request = (SocketServerRequest) curr.getRequest();
+      // the request has been handled, so the buffer it was received into can be reused
+      request.release();
       String connectionId = request.getConnectionId();
       try {
         if (curr.getPayload() == null) {
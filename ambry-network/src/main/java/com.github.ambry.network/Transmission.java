@@ -13,6 +13,7 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.io.IOException;
 import java.net.SocketAddress;
@@ -35,14 +36,16 @@ public abstract class Transmission {
   protected SelectionKey key = null;
   protected final Time time;
   protected final NetworkMetrics metrics;
+  protected final ByteBufferPool receiveBufferPool;
 
   public Transmission(String connectionId, SocketChannel socketChannel, SelectionKey key, Time time,
-      NetworkMetrics metrics) {
+      NetworkMetrics metrics, ByteBufferPool receiveBufferPool) {
     this.connectionId = connectionId;
     this.socketChannel = socketChannel;
     this.key = key;
     this.time = time;
     this.metrics = metrics;
+    this.receiveBufferPool = receiveBufferPool;
   }
 
   /**
@@ -154,6 +157,16 @@ public abstract class Transmission {
     networkReceive = null;
   }
 
+  /**
+   * Returns the payload buffer of a {@link NetworkReceive} that is still being read to the pool it was allocated
+   * from. Completed receives are handed over to the {@link Selector} and released by their consumers.
+   */
+  protected void releaseIncompleteReceive() {
+    if (networkReceive != null && !networkReceive.getReceivedBytes().isReadComplete()) {
+      networkReceive.getReceivedBytes().release();
+    }
+  }
+
   public NetworkReceive getNetworkReceive() {
     return this.networkReceive;
   }
@@ -13,6 +13,7 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
@@ -26,15 +27,15 @@ public class TransmissionFactory {
 
   public static Transmission getTransmission(String connectionId, SocketChannel socketChannel, SelectionKey key,
       String remoteHost, int remotePort, Time time, NetworkMetrics metrics, PortType portType, SSLFactory sslFactory,
-      SSLFactory.Mode mode) throws IOException {
+      SSLFactory.Mode mode, ByteBufferPool receiveBufferPool) throws IOException {
     if (portType == PortType.PLAINTEXT) {
-      return new PlainTextTransmission(connectionId, socketChannel, key, time, metrics);
+      return new PlainTextTransmission(connectionId, socketChannel, key, time, metrics, receiveBufferPool);
     } else if (portType == PortType.SSL) {
       SSLTransmission sslTransmission = null;
       try {
         sslTransmission =
             new SSLTransmission(sslFactory, connectionId, socketChannel, key, remoteHost, remotePort, time, metrics,
-                mode);
+                mode, receiveBufferPool);
         metrics.sslTransmissionInitializationCount.inc();
       } catch (IOException e) {
         metrics.sslTransmissionInitializationErrorCount.inc();
@@ -14,6 +14,7 @@
 package com.github.ambry.network;
 
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.SizeClassedByteBufferPool;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.util.Random;
@@ -43,4 +44,31 @@ public class BoundedByteBufferReceiveTest {
       Assert.assertEquals(true, false);
     }
   }
+
+  /**
+   * Tests that the payload of a receive is allocated from its pool and that it is returned to the pool only once.
+   */
+  @Test
+  public void testPooledBoundedByteBufferReceive() throws Exception {
+    SizeClassedByteBufferPool pool = new SizeClassedByteBufferPool(1024 * 1024, 1024, 1024 * 1024, false);
+    ByteBuffer buffer = ByteBuffer.allocate(2000);
+    buffer.putLong(2000);
+    byte[] buf = new byte[1992];
+    new Random().nextBytes(buf);
+    buffer.put(buf);
+    buffer.flip();
+    BoundedByteBufferReceive set = new BoundedByteBufferReceive(pool);
+    set.readFrom(Channels.newChannel(new ByteBufferInputStream(buffer)));
+    Assert.assertTrue("Read should be complete", set.isReadComplete());
+    ByteBuffer payload = set.getPayload();
+    Assert.assertEquals("Unexpected payload size", 1992, payload.remaining());
+    for (int i = 8; i < 2000; i++) {
+      Assert.assertEquals(buffer.array()[i], payload.get());
+    }
+    Assert.assertEquals("Unexpected outstanding bytes", payload.capacity(), pool.outstandingBytes.get());
+    set.release();
+    set.release();
+    Assert.assertEquals("Unexpected outstanding bytes", 0, pool.outstandingBytes.get());
+    Assert.assertEquals("Unexpected idle bytes", payload.capacity(), pool.getIdleBytes());
+  }
 }
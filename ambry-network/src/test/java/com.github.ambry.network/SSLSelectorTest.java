@@ -18,7 +18,11 @@ import com.github.ambry.config.SSLConfig;
 import com.github.ambry.utils.SystemTime;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -183,6 +187,31 @@ public class SSLSelectorTest {
     assertEquals(big, blockingRequest(connectionId, big));
   }
 
+  /**
+   * Validate that the content of a file that is transferred to the channel through
+   * {@link SSLTransmission#transferFrom(FileChannel, long, long)} is received intact, when it spans several batches
+   * of SSL records.
+   */
+  @Test
+  public void testTransferFromFile() throws Exception {
+    String connectionId = blockingSSLConnect();
+    String big = SelectorTest.randomString(64 * BUFFER_SIZE, new Random());
+    File file = File.createTempFile("transfer", ".tmp");
+    file.deleteOnExit();
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      ByteBuffer content = ByteBuffer.allocate(8 + big.getBytes().length);
+      content.putLong(big.getBytes().length + 8);
+      content.put(big.getBytes());
+      content.flip();
+      randomAccessFile.getChannel().write(content, 0);
+      Send send = new FileSend(randomAccessFile.getChannel(), content.limit());
+      assertEquals(big, blockingRequest(new NetworkSend(connectionId, send, null, SystemTime.getInstance())));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
   /**
    * Test sending an empty string
    */
@@ -213,11 +242,15 @@ public class SSLSelectorTest {
   }
 
   private String blockingRequest(String connectionId, String s) throws Exception {
-    selector.poll(1000L, asList(SelectorTest.createSend(connectionId, s)));
+    return blockingRequest(SelectorTest.createSend(connectionId, s));
+  }
+
+  private String blockingRequest(NetworkSend networkSend) throws Exception {
+    selector.poll(1000L, asList(networkSend));
     while (true) {
       selector.poll(1000L);
       for (NetworkReceive receive : selector.completedReceives()) {
-        if (receive.getConnectionId() == connectionId) {
+        if (receive.getConnectionId() == networkSend.getConnectionId()) {
           return SelectorTest.asString(receive);
         }
       }
@@ -233,4 +266,35 @@ public class SSLSelectorTest {
     }
     return connectionId;
   }
+
+  /**
+   * A {@link Send} that transfers the content of a file to a {@link TransferableChannel}.
+   */
+  private static class FileSend implements Send {
+    private final FileChannel fileChannel;
+    private final long size;
+    private long sizeWritten = 0;
+
+    FileSend(FileChannel fileChannel, long size) {
+      this.fileChannel = fileChannel;
+      this.size = size;
+    }
+
+    @Override
+    public long writeTo(WritableByteChannel channel) throws IOException {
+      long written = ((TransferableChannel) channel).transferFrom(fileChannel, sizeWritten, size - sizeWritten);
+      sizeWritten += written;
+      return written;
+    }
+
+    @Override
+    public boolean isSendComplete() {
+      return sizeWritten == size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return size;
+    }
+  }
 }
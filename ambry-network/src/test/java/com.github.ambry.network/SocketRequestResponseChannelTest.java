@@ -13,12 +13,16 @@
  */
 package com.github.ambry.network;
 
+import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.utils.ByteBufferInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -82,4 +86,79 @@ public class SocketRequestResponseChannelTest {
       Assert.assertEquals(true, false);
     }
   }
+
+  /**
+   * Tests that requests are striped across the request queues by processor, that handlers take requests from their
+   * home queue first and from the other queues when it is empty, that each request queue is bounded and that the
+   * number of request queues is capped at the number of processors.
+   */
+  @Test
+  public void testStripedRequestQueues() throws Exception {
+    final SocketRequestResponseChannel channel = new SocketRequestResponseChannel(4, 4, 2);
+    ServerNetworkMetrics metrics = new ServerNetworkMetrics(channel, new MetricRegistry(), new ArrayList<Processor>());
+    channel.setMetrics(metrics);
+    Assert.assertEquals(2, channel.getNumberOfRequestQueues());
+    Assert.assertEquals(2, new SocketRequestResponseChannel(2, 4, 8).getNumberOfRequestQueues());
+    for (int processor = 0; processor < 3; processor++) {
+      channel.sendRequest(new SocketServerRequest(processor, "connection-" + processor,
+          new ByteBufferInputStream(ByteBuffer.allocate(10))));
+    }
+    Assert.assertEquals(3, channel.getRequestQueueSize());
+    Assert.assertEquals(2, channel.getRequestQueueSize(0));
+    Assert.assertEquals(1, channel.getRequestQueueSize(1));
+
+    // the first thread to receive gets the first queue as its home queue
+    Assert.assertEquals(0, ((SocketServerRequest) channel.receiveRequest()).getProcessor());
+    Assert.assertEquals(2, ((SocketServerRequest) channel.receiveRequest()).getProcessor());
+    Assert.assertEquals(0, metrics.requestQueueStealCount.getCount());
+    Assert.assertEquals(1, ((SocketServerRequest) channel.receiveRequest()).getProcessor());
+    Assert.assertEquals(1, metrics.requestQueueStealCount.getCount());
+    Assert.assertEquals(0, channel.getRequestQueueSize());
+    Assert.assertEquals(3, metrics.requestQueueTimeInMs.get(0).getCount() + metrics.requestQueueTimeInMs.get(1)
+        .getCount());
+
+    // fill the queues and make sure that the next request to the home queue blocks until a request is received from it
+    for (int i = 0; i < 4; i++) {
+      channel.sendRequest(
+          new SocketServerRequest(i, "connection-" + i, new ByteBufferInputStream(ByteBuffer.allocate(10))));
+    }
+    final CountDownLatch sent = new CountDownLatch(1);
+    Thread sender = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          channel.sendRequest(new SocketServerRequest(0, "connection-blocked",
+              new ByteBufferInputStream(ByteBuffer.allocate(10))));
+          sent.countDown();
+        } catch (Exception e) {
+          // the latch is not counted down and the test fails
+        }
+      }
+    });
+    sender.start();
+    Assert.assertFalse("Request should not have been queued", sent.await(100, TimeUnit.MILLISECONDS));
+    channel.receiveRequest();
+    Assert.assertTrue("Request should have been queued", sent.await(1, TimeUnit.SECONDS));
+    Assert.assertEquals(4, channel.getRequestQueueSize());
+
+    // a handler blocked on empty queues is woken up by a request in any queue
+    channel.shutdown();
+    Assert.assertEquals(0, channel.getRequestQueueSize());
+    final CountDownLatch received = new CountDownLatch(1);
+    Thread handler = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          channel.receiveRequest();
+          received.countDown();
+        } catch (InterruptedException e) {
+          // the latch is not counted down and the test fails
+        }
+      }
+    });
+    handler.start();
+    Assert.assertFalse("No request should have been received", received.await(100, TimeUnit.MILLISECONDS));
+    channel.sendRequest(new SocketServerRequest(3, "connection-3", new ByteBufferInputStream(ByteBuffer.allocate(10))));
+    Assert.assertTrue("Request should have been received", received.await(1, TimeUnit.SECONDS));
+  }
 }
@@ -82,6 +82,43 @@ public class SocketServerTest {
     simpleRequest(new Port(server.getSSLPort(), PortType.SSL));
   }
 
+  /**
+   * Tests that requests are received into buffers of the receive buffer pool and that the buffers are returned to the
+   * pool once the responses of the requests are sent.
+   * @throws Exception
+   */
+  @Test
+  public void pooledReceiveBufferRequest() throws Exception {
+    server.shutdown();
+    Properties props = new Properties();
+    props.setProperty("network.receive.buffer.pool.capacity.bytes", Integer.toString(1024 * 1024));
+    NetworkConfig config = new NetworkConfig(new VerifiableProperties(props));
+    ArrayList<Port> ports = new ArrayList<Port>();
+    ports.add(new Port(config.port, PortType.PLAINTEXT));
+    ports.add(new Port(config.port + 1000, PortType.SSL));
+    MetricRegistry registry = new MetricRegistry();
+    server = new SocketServer(config, serverSSLConfig, registry, ports);
+    server.start();
+
+    simpleRequest(new Port(server.getPort(), PortType.PLAINTEXT));
+    simpleRequest(new Port(server.getSSLPort(), PortType.SSL));
+    Assert.assertEquals("The first request should have allocated a new buffer", 1,
+        getGaugeValue(registry, "ReceiveBufferPoolMissCount"));
+    Assert.assertEquals("The second request should have reused the buffer of the first", 1,
+        getGaugeValue(registry, "ReceiveBufferPoolHitCount"));
+    Assert.assertEquals("All the buffers should have been returned to the pool", 0,
+        getGaugeValue(registry, "ReceiveBufferPoolOutstandingBytes"));
+  }
+
+  /**
+   * @param registry the {@link MetricRegistry} that the gauge is registered in.
+   * @param name the name of the gauge of {@link Selector}.
+   * @return the value of the gauge.
+   */
+  private long getGaugeValue(MetricRegistry registry, String name) {
+    return ((Number) registry.getGauges().get(MetricRegistry.name(Selector.class, name)).getValue()).longValue();
+  }
+
   private void simpleRequest(Port targetPort) throws IOException, InterruptedException {
     byte[] bytesToSend = new byte[1028];
     new Random().nextBytes(bytesToSend);
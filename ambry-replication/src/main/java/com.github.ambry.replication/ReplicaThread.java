@@ -30,6 +30,10 @@ import com.github.ambry.messageformat.MessageSievingInputStream;
 import com.github.ambry.network.ChannelOutput;
 import com.github.ambry.network.ConnectedChannel;
 import com.github.ambry.network.ConnectionPool;
+import com.github.ambry.network.NetworkClient;
+import com.github.ambry.network.RequestInfo;
+import com.github.ambry.network.ResponseInfo;
+import com.github.ambry.network.Send;
 import com.github.ambry.notification.BlobReplicaSourceType;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.protocol.GetOption;
@@ -50,14 +54,23 @@ import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +102,11 @@ class ReplicaThread implements Runnable {
   private final boolean replicatingFromRemoteColo;
   private final boolean replicatingOverSsl;
   private final String datacenterName;
+  private final NetworkClient networkClient;
+
+  private static final int NETWORK_CLIENT_POLL_TIMEOUT_MS = 100;
+  // the maximum time the blocking path sleeps for when all the remote replicas of the thread are idle
+  private static final long IDLE_REPLICA_MAX_WAIT_MS = 100;
 
   ReplicaThread(String threadName, Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicateGroupedByNode,
       FindTokenFactory findTokenFactory, ClusterMap clusterMap, AtomicInteger correlationIdGenerator,
@@ -96,6 +114,24 @@ class ReplicaThread implements Runnable {
       ReplicationMetrics replicationMetrics, NotificationSystem notification, StoreKeyFactory storeKeyFactory,
       boolean validateMessageStream, MetricRegistry metricRegistry, boolean replicatingOverSsl, String datacenterName,
       ResponseHandler responseHandler) {
+    this(threadName, replicasToReplicateGroupedByNode, findTokenFactory, clusterMap, correlationIdGenerator, dataNodeId,
+        connectionPool, replicationConfig, replicationMetrics, notification, storeKeyFactory, validateMessageStream,
+        metricRegistry, replicatingOverSsl, datacenterName, responseHandler, null);
+  }
+
+  /**
+   * Creates a replica thread
+   * @param networkClient the {@link NetworkClient} to replicate through. If {@code null}, the thread replicates from
+   *                      one remote node at a time through connections checked out of the {@code connectionPool}.
+   *                      Otherwise the thread keeps exchanges in flight with every remote node and closes the
+   *                      client when it shuts down.
+   */
+  ReplicaThread(String threadName, Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicateGroupedByNode,
+      FindTokenFactory findTokenFactory, ClusterMap clusterMap, AtomicInteger correlationIdGenerator,
+      DataNodeId dataNodeId, ConnectionPool connectionPool, ReplicationConfig replicationConfig,
+      ReplicationMetrics replicationMetrics, NotificationSystem notification, StoreKeyFactory storeKeyFactory,
+      boolean validateMessageStream, MetricRegistry metricRegistry, boolean replicatingOverSsl, String datacenterName,
+      ResponseHandler responseHandler, NetworkClient networkClient) {
     this.threadName = threadName;
     this.replicasToReplicateGroupedByNode = replicasToReplicateGroupedByNode;
     this.running = true;
@@ -115,6 +151,7 @@ class ReplicaThread implements Runnable {
     this.waitEnabled = !replicatingFromRemoteColo;
     this.replicatingOverSsl = replicatingOverSsl;
     this.datacenterName = datacenterName;
+    this.networkClient = networkClient;
   }
 
   String getName() {
@@ -133,13 +170,22 @@ class ReplicaThread implements Runnable {
         replicasToReplicate.add(replicasToReplicateEntry.getValue());
       }
       logger.info("Begin iteration for thread " + threadName);
+      if (networkClient != null) {
+        replicateWithNetworkClient(replicasToReplicate);
+      }
       while (running) {
         // shuffle the nodes
         Collections.shuffle(replicasToReplicate);
-        for (List<RemoteReplicaInfo> replicasToReplicatePerNode : replicasToReplicate) {
+        boolean exchangedWithAnyNode = false;
+        for (List<RemoteReplicaInfo> replicasToReplicateForNode : replicasToReplicate) {
           if (!running) {
             break;
           }
+          List<RemoteReplicaInfo> replicasToReplicatePerNode = getReplicasToExchange(replicasToReplicateForNode);
+          if (replicasToReplicatePerNode.isEmpty()) {
+            continue;
+          }
+          exchangedWithAnyNode = true;
           DataNodeId remoteNode = replicasToReplicatePerNode.get(0).getReplicaId().getDataNodeId();
           logger.trace("Remote node: {} Thread name: {} Remote replicas: {}", remoteNode, threadName,
               replicasToReplicatePerNode);
@@ -243,13 +289,442 @@ class ReplicaThread implements Runnable {
             }
           }
         }
+        if (!exchangedWithAnyNode && running) {
+          waitForIdleReplicas(replicasToReplicate);
+        }
       }
+    } catch (InterruptedException e) {
+      logger.info("Replica thread {} interrupted while waiting for idle replicas", threadName);
     } finally {
       running = false;
       shutdownLatch.countDown();
     }
   }
 
+  /**
+   * Gets the replicas of a remote node to exchange with, leaving out the replicas that recently had no new entries.
+   * @param replicasToReplicatePerNode The remote replicas of a node
+   * @return the remote replicas that have to be exchanged with. May be empty.
+   */
+  List<RemoteReplicaInfo> getReplicasToExchange(List<RemoteReplicaInfo> replicasToReplicatePerNode) {
+    if (replicationConfig.replicationIdleReplicaMaxBackoffMs == 0) {
+      return replicasToReplicatePerNode;
+    }
+    List<RemoteReplicaInfo> replicasToExchange = new ArrayList<RemoteReplicaInfo>(replicasToReplicatePerNode.size());
+    for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+      if (remoteReplicaInfo.isIdle()) {
+        replicationMetrics.idleReplicaSkipCount.inc();
+      } else {
+        replicasToExchange.add(remoteReplicaInfo);
+      }
+    }
+    return replicasToExchange;
+  }
+
+  /**
+   * Sleeps until the first of the idle remote replicas has to be exchanged with again, so that the blocking path
+   * does not spin when all the remote replicas of the thread are idle.
+   * @param replicasToReplicate The remote replicas of this thread grouped by remote node
+   * @throws InterruptedException
+   */
+  private void waitForIdleReplicas(List<List<RemoteReplicaInfo>> replicasToReplicate) throws InterruptedException {
+    long waitTimeInMs = IDLE_REPLICA_MAX_WAIT_MS;
+    long currentTimeInMs = SystemTime.getInstance().milliseconds();
+    for (List<RemoteReplicaInfo> replicasToReplicatePerNode : replicasToReplicate) {
+      for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+        waitTimeInMs = Math.min(waitTimeInMs, remoteReplicaInfo.getIdleUntilInMs() - currentTimeInMs);
+      }
+    }
+    if (waitTimeInMs > 0) {
+      Thread.sleep(waitTimeInMs);
+    }
+  }
+
+  /**
+   * Replicates from the remote nodes through the {@link NetworkClient} until the thread is shut down. Instead of
+   * exchanging with one remote node at a time, exchanges are kept in flight with every remote node, so a slow node
+   * does not hold back the others. The replicas of a node are split into
+   * {@link ReplicationConfig#replicationNetworkClientExchangesPerNode} groups that are exchanged with independently,
+   * since the tokens of a replica only depend on the previous exchange of the same replica. The exchanges of a group
+   * remain sequential.
+   * <p/>
+   * The poll loop only sends requests and parses responses. The metadata responses are checked against the local
+   * stores and the missing messages are written to them on a separate store writer thread, so that the exchanges with
+   * other nodes continue during local writes.
+   * <p/>
+   * A request that is not answered within the request timeout fails its exchange, like a socket read timeout on the
+   * blocking path. A late response to it is ignored. After an exchange fails, no new exchange is started for its
+   * replicas until the error backoff has passed.
+   * @param replicasToReplicate The remote replicas of this thread grouped by remote node
+   * @throws InterruptedException if the thread is interrupted while waiting for the store writer to finish.
+   */
+  private void replicateWithNetworkClient(List<List<RemoteReplicaInfo>> replicasToReplicate)
+      throws InterruptedException {
+    List<RemoteNodeExchange> exchanges = new ArrayList<RemoteNodeExchange>();
+    for (List<RemoteReplicaInfo> replicasToReplicatePerNode : replicasToReplicate) {
+      for (List<RemoteReplicaInfo> replicasOfExchange : splitReplicas(replicasToReplicatePerNode,
+          replicationConfig.replicationNetworkClientExchangesPerNode)) {
+        exchanges.add(new RemoteNodeExchange(replicasOfExchange));
+      }
+    }
+    ExecutorService storeWriter = Utils.newScheduler(1, threadName + "-store-writer-", false);
+    Queue<RemoteNodeExchange> exchangesWithCompletedStoreWork = new ConcurrentLinkedQueue<RemoteNodeExchange>();
+    Map<RequestInfo, RemoteNodeExchange> exchangesInFlight = new HashMap<RequestInfo, RemoteNodeExchange>();
+    List<RequestInfo> requestsToSend = new ArrayList<RequestInfo>();
+    try {
+      while (running) {
+        RemoteNodeExchange exchange;
+        while ((exchange = exchangesWithCompletedStoreWork.poll()) != null) {
+          RequestInfo requestInfo = exchange.onStoreWorkComplete();
+          if (requestInfo != null) {
+            requestsToSend.add(requestInfo);
+            exchangesInFlight.put(requestInfo, exchange);
+          }
+        }
+        long currentTimeInMs = SystemTime.getInstance().milliseconds();
+        long pollTimeoutMs = NETWORK_CLIENT_POLL_TIMEOUT_MS;
+        // shuffle the nodes
+        Collections.shuffle(exchanges);
+        for (RemoteNodeExchange remoteNodeExchange : exchanges) {
+          RequestInfo requestInfo = null;
+          if (remoteNodeExchange.requestInFlight != null) {
+            if (remoteNodeExchange.requestDeadlineMs <= currentTimeInMs) {
+              exchangesInFlight.remove(remoteNodeExchange.requestInFlight);
+              remoteNodeExchange.onRequestTimeout();
+            } else {
+              pollTimeoutMs = Math.min(pollTimeoutMs, remoteNodeExchange.requestDeadlineMs - currentTimeInMs);
+            }
+          } else if (remoteNodeExchange.deferredResponse != null) {
+            if (remoteNodeExchange.deferredUntilMs <= currentTimeInMs) {
+              remoteNodeExchange.onDeferredResponse(storeWriter, exchangesWithCompletedStoreWork);
+            } else {
+              pollTimeoutMs = Math.min(pollTimeoutMs, remoteNodeExchange.deferredUntilMs - currentTimeInMs);
+            }
+          } else if (!remoteNodeExchange.inProgress) {
+            if (remoteNodeExchange.backOffUntilMs <= currentTimeInMs) {
+              requestInfo = remoteNodeExchange.start();
+            } else {
+              pollTimeoutMs = Math.min(pollTimeoutMs, remoteNodeExchange.backOffUntilMs - currentTimeInMs);
+            }
+          }
+          if (requestInfo != null) {
+            requestsToSend.add(requestInfo);
+            exchangesInFlight.put(requestInfo, remoteNodeExchange);
+          }
+        }
+        List<ResponseInfo> responseInfoList = networkClient.sendAndPoll(requestsToSend, (int) pollTimeoutMs);
+        requestsToSend.clear();
+        for (ResponseInfo responseInfo : responseInfoList) {
+          exchange = exchangesInFlight.remove(responseInfo.getRequestInfo());
+          if (exchange == null) {
+            logger.trace("Thread name: {} ignoring the response to a request that timed out", threadName);
+            continue;
+          }
+          exchange.onResponse(responseInfo, storeWriter, exchangesWithCompletedStoreWork);
+        }
+      }
+    } finally {
+      storeWriter.shutdown();
+      if (!storeWriter.awaitTermination(replicationConfig.replicationNetworkClientRequestTimeoutMs,
+          TimeUnit.MILLISECONDS)) {
+        logger.warn("Thread name: {} store writer did not finish the pending local store writes", threadName);
+      }
+      networkClient.close();
+    }
+  }
+
+  /**
+   * Splits the replicas of a remote node into the groups that are exchanged with independently.
+   * @param replicasToReplicatePerNode The remote replicas of a node
+   * @param numGroups the maximum number of groups.
+   * @return the groups of replicas. None of them is empty.
+   */
+  static List<List<RemoteReplicaInfo>> splitReplicas(List<RemoteReplicaInfo> replicasToReplicatePerNode,
+      int numGroups) {
+    int numGroupsToCreate = Math.min(numGroups, replicasToReplicatePerNode.size());
+    List<List<RemoteReplicaInfo>> groups = new ArrayList<List<RemoteReplicaInfo>>(numGroupsToCreate);
+    for (int i = 0; i < numGroupsToCreate; i++) {
+      groups.add(new ArrayList<RemoteReplicaInfo>());
+    }
+    for (int i = 0; i < replicasToReplicatePerNode.size(); i++) {
+      groups.get(i % numGroupsToCreate).add(replicasToReplicatePerNode.get(i));
+    }
+    return groups;
+  }
+
+  /**
+   * The state of an exchange with a group of the replicas of a remote node when replicating through the
+   * {@link NetworkClient}. An exchange sends a replica metadata request for the replicas, processes the response and,
+   * if keys are missing locally, sends a get request for the missing messages and writes them to the local stores.
+   * The work on the local stores is done by the store writer and handed back to the poll loop through
+   * {@link #onStoreWorkComplete()}.
+   */
+  private class RemoteNodeExchange {
+    private final List<RemoteReplicaInfo> replicasOfNode;
+    private final DataNodeId remoteNode;
+    // the replicas that are part of the current exchange
+    private List<RemoteReplicaInfo> replicasToReplicatePerNode;
+    private boolean inProgress = false;
+    private List<ExchangeMetadataResponse> exchangeMetadataResponseList = null;
+    private ReplicaMetadataResponse deferredResponse = null;
+    private long deferredUntilMs = -1;
+    // the request of the exchange that is waiting for a response and the time by which the response is expected
+    private RequestInfo requestInFlight = null;
+    private long requestDeadlineMs = -1;
+    // the time before which no new exchange is started since the previous one failed
+    private long backOffUntilMs = -1;
+    private long replicationStartTimeInMs = -1;
+    private long requestStartTimeInMs = -1;
+    private Timer.Context context = null;
+    private Timer.Context portTypeBasedContext = null;
+    // the result of the work of the store writer: the next request to send or the failure of the exchange
+    private Send storeWorkRequest = null;
+    private Exception storeWorkException = null;
+
+    RemoteNodeExchange(List<RemoteReplicaInfo> replicasOfNode) {
+      this.replicasOfNode = replicasOfNode;
+      this.remoteNode = replicasOfNode.get(0).getReplicaId().getDataNodeId();
+    }
+
+    /**
+     * Starts a new exchange with the remote node if any of its replicas is up and not idle.
+     * @return the replica metadata request to send or {@code null} if no exchange was started.
+     */
+    RequestInfo start() {
+      replicasToReplicatePerNode = getReplicasToExchange(replicasOfNode);
+      boolean hasActiveReplicas = false;
+      for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+        if (!remoteReplicaInfo.getReplicaId().isDown()) {
+          hasActiveReplicas = true;
+          break;
+        }
+      }
+      if (!hasActiveReplicas) {
+        return null;
+      }
+      logger.trace("Remote node: {} Thread name: {} Remote replicas: {}", remoteNode, threadName,
+          replicasToReplicatePerNode);
+      inProgress = true;
+      if (replicatingFromRemoteColo) {
+        context = replicationMetrics.interColoReplicationLatency.get(remoteNode.getDatacenterName()).time();
+        if (replicatingOverSsl) {
+          portTypeBasedContext =
+              replicationMetrics.sslInterColoReplicationLatency.get(remoteNode.getDatacenterName()).time();
+        } else {
+          portTypeBasedContext =
+              replicationMetrics.plainTextInterColoReplicationLatency.get(remoteNode.getDatacenterName()).time();
+        }
+      } else {
+        context = replicationMetrics.intraColoReplicationLatency.time();
+        if (replicatingOverSsl) {
+          portTypeBasedContext = replicationMetrics.sslIntraColoReplicationLatency.time();
+        } else {
+          portTypeBasedContext = replicationMetrics.plainTextIntraColoReplicationLatency.time();
+        }
+      }
+      replicationStartTimeInMs = SystemTime.getInstance().milliseconds();
+      requestStartTimeInMs = replicationStartTimeInMs;
+      return createRequestInfo(createReplicaMetadataRequest(replicasToReplicatePerNode, remoteNode));
+    }
+
+    /**
+     * Handles the response to the request that is in flight for this exchange.
+     * @param responseInfo the response received from the {@link NetworkClient}
+     * @param storeWriter the {@link ExecutorService} that works on the local stores.
+     * @param completedExchanges the queue that the exchange is added to once the store writer is done with it.
+     */
+    void onResponse(ResponseInfo responseInfo, ExecutorService storeWriter,
+        Queue<RemoteNodeExchange> completedExchanges) {
+      requestInFlight = null;
+      try {
+        if (responseInfo.getError() != null) {
+          responseHandler.onEvent(replicasToReplicatePerNode.get(0).getReplicaId(), responseInfo.getError());
+          throw new IOException("Network client error " + responseInfo.getError());
+        }
+        InputStream stream = new ByteBufferInputStream(responseInfo.getResponse());
+        if (exchangeMetadataResponseList == null) {
+          ReplicaMetadataResponse response =
+              readReplicaMetadataResponse(stream, replicasToReplicatePerNode, remoteNode, requestStartTimeInMs);
+          if (shouldWait(response)) {
+            // instead of sleeping like the blocking path, the response is processed once the wait time has passed
+            deferredResponse = response;
+            deferredUntilMs =
+                SystemTime.getInstance().milliseconds() + replicationConfig.replicaWaitTimeBetweenReplicasMs;
+            return;
+          }
+          submitReplicaMetadataResponse(response, storeWriter, completedExchanges);
+          return;
+        }
+        final GetResponse getResponse =
+            readGetResponse(stream, replicasToReplicatePerNode, remoteNode, requestStartTimeInMs);
+        submitStoreWork(new Callable<Send>() {
+          @Override
+          public Send call() throws Exception {
+            writeMessagesToLocalStore(exchangeMetadataResponseList, getResponse, replicasToReplicatePerNode,
+                remoteNode);
+            return null;
+          }
+        }, storeWriter, completedExchanges);
+      } catch (Exception e) {
+        finish(e);
+      }
+    }
+
+    /**
+     * Fails the exchange because the remote node did not respond to the request in flight in time.
+     */
+    void onRequestTimeout() {
+      requestInFlight = null;
+      replicationMetrics.replicationNetworkClientRequestTimeoutCount.inc();
+      IOException e = new IOException(
+          "No response from remote node within " + replicationConfig.replicationNetworkClientRequestTimeoutMs + " ms");
+      responseHandler.onEvent(replicasToReplicatePerNode.get(0).getReplicaId(), e);
+      finish(e);
+    }
+
+    /**
+     * Hands the replica metadata response that was deferred because the remote replicas are not lagging much to the
+     * store writer.
+     * @param storeWriter the {@link ExecutorService} that works on the local stores.
+     * @param completedExchanges the queue that the exchange is added to once the store writer is done with it.
+     */
+    void onDeferredResponse(ExecutorService storeWriter, Queue<RemoteNodeExchange> completedExchanges) {
+      ReplicaMetadataResponse response = deferredResponse;
+      deferredResponse = null;
+      replicationMetrics.intraColoReplicationWaitTime.update(SystemTime.getInstance().milliseconds() - deferredUntilMs
+          + replicationConfig.replicaWaitTimeBetweenReplicasMs);
+      submitReplicaMetadataResponse(response, storeWriter, completedExchanges);
+    }
+
+    /**
+     * Continues the exchange on the poll loop once the store writer is done with it.
+     * @return the next request of the exchange or {@code null} if there is nothing to send.
+     */
+    RequestInfo onStoreWorkComplete() {
+      Send request = storeWorkRequest;
+      Exception exception = storeWorkException;
+      storeWorkRequest = null;
+      storeWorkException = null;
+      if (exception != null) {
+        finish(exception);
+      } else if (request != null) {
+        requestStartTimeInMs = SystemTime.getInstance().milliseconds();
+        return createRequestInfo(request);
+      } else {
+        finish(null);
+      }
+      return null;
+    }
+
+    /**
+     * @param response the replica metadata response from the remote node
+     * @return {@code true} if the processing of the response has to wait since one of the remote replicas is not
+     * lagging much. Mirrors {@link #waitIfRequired(ReplicaMetadataResponseInfo, DataNodeId, RemoteReplicaInfo)}.
+     */
+    private boolean shouldWait(ReplicaMetadataResponse response) {
+      if (!replicatingFromRemoteColo) {
+        for (ReplicaMetadataResponseInfo replicaMetadataResponseInfo : response.getReplicaMetadataResponseInfoList()) {
+          if (replicaMetadataResponseInfo.getError() == ServerErrorCode.No_Error
+              && replicaMetadataResponseInfo.getRemoteReplicaLagInBytes()
+              < replicationConfig.replicationMaxLagForWaitTimeInBytes) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Hands a replica metadata response to the store writer. The store writer checks the messages in the response
+     * against the local stores and creates the get request for the missing messages. If no messages are missing, it
+     * advances the tokens and the exchange ends without another round trip to the remote node.
+     */
+    private void submitReplicaMetadataResponse(final ReplicaMetadataResponse response, ExecutorService storeWriter,
+        Queue<RemoteNodeExchange> completedExchanges) {
+      submitStoreWork(new Callable<Send>() {
+        @Override
+        public Send call() throws Exception {
+          exchangeMetadataResponseList =
+              handleReplicaMetadataResponse(response, replicasToReplicatePerNode, remoteNode, false);
+          requestStartTimeInMs = SystemTime.getInstance().milliseconds();
+          replicationMetrics.updateExchangeMetadataTime(requestStartTimeInMs - replicationStartTimeInMs,
+              replicatingFromRemoteColo, replicatingOverSsl, datacenterName);
+          GetRequest getRequest = createGetRequest(exchangeMetadataResponseList, replicasToReplicatePerNode);
+          if (getRequest.getPartitionInfoList().size() > 0) {
+            return getRequest;
+          }
+          writeMessagesToLocalStore(exchangeMetadataResponseList, null, replicasToReplicatePerNode, remoteNode);
+          return null;
+        }
+      }, storeWriter, completedExchanges);
+    }
+
+    /**
+     * Runs {@code storeWork} on the store writer. Once it is done, its result is recorded in this exchange, the
+     * exchange is added to {@code completedExchanges} and the {@link NetworkClient} is woken up so that the poll loop
+     * continues the exchange through {@link #onStoreWorkComplete()}.
+     * @param storeWork the work on the local stores. Returns the next request to send, if any.
+     * @param storeWriter the {@link ExecutorService} that works on the local stores.
+     * @param completedExchanges the queue that the exchange is added to once the store writer is done with it.
+     */
+    private void submitStoreWork(final Callable<Send> storeWork, ExecutorService storeWriter,
+        final Queue<RemoteNodeExchange> completedExchanges) {
+      try {
+        storeWriter.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              storeWorkRequest = storeWork.call();
+            } catch (Exception e) {
+              storeWorkException = e;
+            }
+            completedExchanges.add(RemoteNodeExchange.this);
+            networkClient.wakeup();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        finish(e);
+      }
+    }
+
+    private RequestInfo createRequestInfo(Send request) {
+      requestInFlight = new RequestInfo(remoteNode.getHostname(), replicasToReplicatePerNode.get(0).getPort(), request);
+      requestDeadlineMs =
+          SystemTime.getInstance().milliseconds() + replicationConfig.replicationNetworkClientRequestTimeoutMs;
+      return requestInFlight;
+    }
+
+    /**
+     * Ends the current exchange and records its metrics.
+     * @param e the exception that failed the exchange or {@code null} if the exchange succeeded.
+     */
+    private void finish(Exception e) {
+      long currentTimeInMs = SystemTime.getInstance().milliseconds();
+      if (e != null) {
+        String message = "Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replicas: "
+            + replicasToReplicatePerNode + " Error while replicating with remote replica ";
+        if (logger.isTraceEnabled()) {
+          logger.trace(message, e);
+        } else {
+          logger.error(message + e);
+        }
+        replicationMetrics.incrementReplicationErrors(replicatingOverSsl);
+        backOffUntilMs = currentTimeInMs + replicationConfig.replicationNetworkClientErrorBackoffMs;
+      } else if (exchangeMetadataResponseList != null) {
+        replicationMetrics.updateFixMissingStoreKeysTime(currentTimeInMs - requestStartTimeInMs,
+            replicatingFromRemoteColo, replicatingOverSsl, datacenterName);
+      }
+      replicationMetrics.updateTotalReplicationTime(currentTimeInMs - replicationStartTimeInMs,
+          replicatingFromRemoteColo, replicatingOverSsl, datacenterName);
+      context.stop();
+      portTypeBasedContext.stop();
+      inProgress = false;
+      requestInFlight = null;
+      exchangeMetadataResponseList = null;
+      deferredResponse = null;
+    }
+  }
+
   /**
    * Gets all the metadata about messages from the remote replicas since last token. Checks the messages with the local
    * store and finds all the messages that are missing. For the messages that are not missing, updates the delete
@@ -275,51 +750,8 @@ class ReplicaThread implements Runnable {
         DataNodeId remoteNode = replicasToReplicatePerNode.get(0).getReplicaId().getDataNodeId();
         ReplicaMetadataResponse response =
             getReplicaMetadataResponse(replicasToReplicatePerNode, connectedChannel, remoteNode);
-        long startTimeInMs = SystemTime.getInstance().milliseconds();
-        waitEnabled = !replicatingFromRemoteColo;
-        for (int i = 0; i < response.getReplicaMetadataResponseInfoList().size(); i++) {
-          RemoteReplicaInfo remoteReplicaInfo = replicasToReplicatePerNode.get(i);
-          ReplicaMetadataResponseInfo replicaMetadataResponseInfo =
-              response.getReplicaMetadataResponseInfoList().get(i);
-          responseHandler.onEvent(remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getError());
-          if (replicaMetadataResponseInfo.getError() == ServerErrorCode.No_Error) {
-            try {
-              logger.trace("Remote node: {} Thread name: {} Remote replica: {} Token from remote: {} Replica lag: {} ",
-                  remoteNode, threadName, remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getFindToken(),
-                  replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
-              if (waitEnabled) {
-                waitIfRequired(replicaMetadataResponseInfo, remoteNode, remoteReplicaInfo);
-              }
-              Set<StoreKey> missingStoreKeys =
-                  getMissingStoreKeys(replicaMetadataResponseInfo, remoteNode, remoteReplicaInfo);
-              processReplicaMetadataResponse(missingStoreKeys, replicaMetadataResponseInfo, remoteReplicaInfo,
-                  remoteNode);
-              ExchangeMetadataResponse exchangeMetadataResponse =
-                  new ExchangeMetadataResponse(missingStoreKeys, replicaMetadataResponseInfo.getFindToken(),
-                      replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
-              exchangeMetadataResponseList.add(exchangeMetadataResponse);
-            } catch (Exception e) {
-              replicationMetrics.updateLocalStoreError(remoteReplicaInfo.getReplicaId());
-              logger.error(
-                  "Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replica: " + remoteReplicaInfo
-                      .getReplicaId(), e);
-              responseHandler.onEvent(remoteReplicaInfo.getReplicaId(), e);
-              ExchangeMetadataResponse exchangeMetadataResponse =
-                  new ExchangeMetadataResponse(ServerErrorCode.Unknown_Error);
-              exchangeMetadataResponseList.add(exchangeMetadataResponse);
-            }
-          } else {
-            replicationMetrics.updateMetadataRequestError(remoteReplicaInfo.getReplicaId());
-            logger.error("Remote node: {} Thread name: {} Remote replica: {} Server error: {}", remoteNode, threadName,
-                remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getError());
-            ExchangeMetadataResponse exchangeMetadataResponse =
-                new ExchangeMetadataResponse(replicaMetadataResponseInfo.getError());
-            exchangeMetadataResponseList.add(exchangeMetadataResponse);
-          }
-        }
-        long processMetadataResponseTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
-        logger.trace("Remote node: {} Thread name: {} processMetadataResponseTime: {}", remoteNode, threadName,
-            processMetadataResponseTimeInMs);
+        exchangeMetadataResponseList =
+            handleReplicaMetadataResponse(response, replicasToReplicatePerNode, remoteNode, !replicatingFromRemoteColo);
       } finally {
         long exchangeMetadataTime = SystemTime.getInstance().milliseconds() - exchangeMetadataStartTimeInMs;
         replicationMetrics.updateExchangeMetadataTime(exchangeMetadataTime, replicatingFromRemoteColo,
@@ -329,6 +761,74 @@ class ReplicaThread implements Runnable {
     return exchangeMetadataResponseList;
   }
 
+  /**
+   * Checks the messages in the replica metadata response with the local stores and finds all the messages that are
+   * missing. For the messages that are not missing, updates the delete and ttl state.
+   * @param response The replica metadata response from the remote node
+   * @param replicasToReplicatePerNode The information about the replicas that is being replicated
+   * @param remoteNode The remote node from which replication needs to happen
+   * @param waitIfRequired {@code true} to wait between replicas if the remote replicas are not lagging much
+   * @return - List of ExchangeMetadataResponse that contains the set of store keys that are missing from the local
+   *           store and are present in the remote replicas and also the new token from the remote replicas
+   * @throws InterruptedException
+   */
+  private List<ExchangeMetadataResponse> handleReplicaMetadataResponse(ReplicaMetadataResponse response,
+      List<RemoteReplicaInfo> replicasToReplicatePerNode, DataNodeId remoteNode, boolean waitIfRequired)
+      throws InterruptedException {
+    List<ExchangeMetadataResponse> exchangeMetadataResponseList = new ArrayList<ExchangeMetadataResponse>();
+    long startTimeInMs = SystemTime.getInstance().milliseconds();
+    waitEnabled = waitIfRequired;
+    for (int i = 0; i < response.getReplicaMetadataResponseInfoList().size(); i++) {
+      RemoteReplicaInfo remoteReplicaInfo = replicasToReplicatePerNode.get(i);
+      ReplicaMetadataResponseInfo replicaMetadataResponseInfo =
+          response.getReplicaMetadataResponseInfoList().get(i);
+      responseHandler.onEvent(remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getError());
+      if (replicaMetadataResponseInfo.getError() == ServerErrorCode.No_Error) {
+        try {
+          logger.trace("Remote node: {} Thread name: {} Remote replica: {} Token from remote: {} Replica lag: {} ",
+              remoteNode, threadName, remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getFindToken(),
+              replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
+          if (waitEnabled) {
+            waitIfRequired(replicaMetadataResponseInfo, remoteNode, remoteReplicaInfo);
+          }
+          Set<StoreKey> missingStoreKeys =
+              getMissingStoreKeys(replicaMetadataResponseInfo, remoteNode, remoteReplicaInfo);
+          processReplicaMetadataResponse(missingStoreKeys, replicaMetadataResponseInfo, remoteReplicaInfo,
+              remoteNode);
+          ExchangeMetadataResponse exchangeMetadataResponse =
+              new ExchangeMetadataResponse(missingStoreKeys, replicaMetadataResponseInfo.getFindToken(),
+                  replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
+          exchangeMetadataResponseList.add(exchangeMetadataResponse);
+          remoteReplicaInfo.onExchangeComplete(replicaMetadataResponseInfo.getMessageInfoList().isEmpty()
+                  && replicaMetadataResponseInfo.getRemoteReplicaLagInBytes() == 0,
+              replicationConfig.replicationIdleReplicaMaxBackoffMs);
+        } catch (Exception e) {
+          replicationMetrics.updateLocalStoreError(remoteReplicaInfo.getReplicaId());
+          logger.error(
+              "Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replica: " + remoteReplicaInfo
+                  .getReplicaId(), e);
+          responseHandler.onEvent(remoteReplicaInfo.getReplicaId(), e);
+          ExchangeMetadataResponse exchangeMetadataResponse =
+              new ExchangeMetadataResponse(ServerErrorCode.Unknown_Error);
+          exchangeMetadataResponseList.add(exchangeMetadataResponse);
+          remoteReplicaInfo.onExchangeComplete(false, replicationConfig.replicationIdleReplicaMaxBackoffMs);
+        }
+      } else {
+        replicationMetrics.updateMetadataRequestError(remoteReplicaInfo.getReplicaId());
+        logger.error("Remote node: {} Thread name: {} Remote replica: {} Server error: {}", remoteNode, threadName,
+            remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getError());
+        ExchangeMetadataResponse exchangeMetadataResponse =
+            new ExchangeMetadataResponse(replicaMetadataResponseInfo.getError());
+        exchangeMetadataResponseList.add(exchangeMetadataResponse);
+        remoteReplicaInfo.onExchangeComplete(false, replicationConfig.replicationIdleReplicaMaxBackoffMs);
+      }
+    }
+    long processMetadataResponseTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
+    logger.trace("Remote node: {} Thread name: {} processMetadataResponseTime: {}", remoteNode, threadName,
+        processMetadataResponseTimeInMs);
+    return exchangeMetadataResponseList;
+  }
+
   /**
    * Gets all the messages from the remote node for the missing keys and writes them to the local store
    * @param connectedChannel The connected channel that represents a connection to the remote replica
@@ -375,8 +875,35 @@ class ReplicaThread implements Runnable {
   private ReplicaMetadataResponse getReplicaMetadataResponse(List<RemoteReplicaInfo> replicasToReplicatePerNode,
       ConnectedChannel connectedChannel, DataNodeId remoteNode) throws ReplicationException, IOException {
     long replicaMetadataRequestStartTime = SystemTime.getInstance().milliseconds();
+    try {
+      ReplicaMetadataRequest request = createReplicaMetadataRequest(replicasToReplicatePerNode, remoteNode);
+      connectedChannel.send(request);
+      ChannelOutput channelOutput = connectedChannel.receive();
+      ByteBufferInputStream byteBufferInputStream =
+          new ByteBufferInputStream(channelOutput.getInputStream(), (int) channelOutput.getStreamSize());
+      logger.trace("Remote node: {} Thread name: {} Remote replicas: {} ByteBuffer size after deserialization: {} ",
+          remoteNode, threadName, replicasToReplicatePerNode, byteBufferInputStream.available());
+      return readReplicaMetadataResponse(byteBufferInputStream, replicasToReplicatePerNode, remoteNode,
+          replicaMetadataRequestStartTime);
+    } catch (IOException e) {
+      responseHandler.onEvent(replicasToReplicatePerNode.get(0).getReplicaId(), e);
+      throw e;
+    }
+  }
+
+  /**
+   * Creates the replica metadata request for a list of remote replicas on a given remote data node
+   * @param replicasToReplicatePerNode The list of remote replicas for a node
+   * @param remoteNode The remote node from which replication needs to happen
+   * @return the {@link ReplicaMetadataRequest} that asks for the messages since the tokens of the replicas
+   */
+  private ReplicaMetadataRequest createReplicaMetadataRequest(List<RemoteReplicaInfo> replicasToReplicatePerNode,
+      DataNodeId remoteNode) {
     List<ReplicaMetadataRequestInfo> replicaMetadataRequestInfoList = new ArrayList<ReplicaMetadataRequestInfo>();
+    long maxLocalLagFromRemoteInBytes = 0;
     for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+      maxLocalLagFromRemoteInBytes =
+          Math.max(maxLocalLagFromRemoteInBytes, remoteReplicaInfo.getLocalLagFromRemoteInBytes());
       ReplicaMetadataRequestInfo replicaMetadataRequestInfo =
           new ReplicaMetadataRequestInfo(remoteReplicaInfo.getReplicaId().getPartitionId(),
               remoteReplicaInfo.getToken(), dataNodeId.getHostname(),
@@ -385,37 +912,58 @@ class ReplicaThread implements Runnable {
       logger.trace("Remote node: {} Thread name: {} Remote replica: {} Token going to be sent to remote: {} ",
           remoteNode, threadName, remoteReplicaInfo.getReplicaId(), remoteReplicaInfo.getToken());
     }
+    long fetchSizeInBytes = getFetchSizeInBytes(maxLocalLagFromRemoteInBytes);
+    replicationMetrics.replicaMetadataRequestFetchSizeInBytes.update(fetchSizeInBytes);
+    return new ReplicaMetadataRequest(correlationIdGenerator.incrementAndGet(),
+        "replication-metadata-" + dataNodeId.getHostname(), replicaMetadataRequestInfoList, fetchSizeInBytes);
+  }
 
-    try {
-      ReplicaMetadataRequest request = new ReplicaMetadataRequest(correlationIdGenerator.incrementAndGet(),
-          "replication-metadata-" + dataNodeId.getHostname(), replicaMetadataRequestInfoList,
-          replicationConfig.replicationFetchSizeInBytes);
-      connectedChannel.send(request);
-      ChannelOutput channelOutput = connectedChannel.receive();
-      ByteBufferInputStream byteBufferInputStream =
-          new ByteBufferInputStream(channelOutput.getInputStream(), (int) channelOutput.getStreamSize());
-      logger.trace("Remote node: {} Thread name: {} Remote replicas: {} ByteBuffer size after deserialization: {} ",
-          remoteNode, threadName, replicasToReplicatePerNode, byteBufferInputStream.available());
-      ReplicaMetadataResponse response =
-          ReplicaMetadataResponse.readFrom(new DataInputStream(byteBufferInputStream), findTokenFactory, clusterMap);
-
-      long metadataRequestTime = SystemTime.getInstance().milliseconds() - replicaMetadataRequestStartTime;
-      replicationMetrics.updateMetadataRequestTime(metadataRequestTime, replicatingFromRemoteColo, replicatingOverSsl,
-          datacenterName);
-
-      if (response.getError() != ServerErrorCode.No_Error
-          || response.getReplicaMetadataResponseInfoList().size() != replicasToReplicatePerNode.size()) {
-        logger.error("Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replicas: "
-            + replicasToReplicatePerNode + " Replica metadata response error: " + response.getError()
-            + " ReplicaMetadataResponseInfoListSize: " + response.getReplicaMetadataResponseInfoList().size()
-            + " ReplicasToReplicatePerNodeSize: " + replicasToReplicatePerNode.size());
-        throw new ReplicationException("Replica Metadata Response Error " + response.getError());
-      }
-      return response;
-    } catch (IOException e) {
-      responseHandler.onEvent(replicasToReplicatePerNode.get(0).getReplicaId(), e);
-      throw e;
+  /**
+   * Sizes the fetch of a replica metadata request. Replicas that are far behind fetch up to
+   * {@link ReplicationConfig#replicationMaxFetchSizeInBytes} per request to catch up in fewer round trips, while
+   * replicas that are in sync keep fetching {@link ReplicationConfig#replicationFetchSizeInBytes}.
+   * @param localLagFromRemoteInBytes the largest lag of the local replicas from the remote replicas in the request, as
+   *                                  reported by the remote node in the previous exchange.
+   * @return the fetch size of the request.
+   */
+  long getFetchSizeInBytes(long localLagFromRemoteInBytes) {
+    long fetchSizeInBytes = replicationConfig.replicationFetchSizeInBytes;
+    if (replicationConfig.replicationMaxFetchSizeInBytes > fetchSizeInBytes) {
+      fetchSizeInBytes = Math.max(fetchSizeInBytes,
+          Math.min(localLagFromRemoteInBytes, replicationConfig.replicationMaxFetchSizeInBytes));
     }
+    return fetchSizeInBytes;
+  }
+
+  /**
+   * Reads and validates the replica metadata response for a list of remote replicas on a given remote data node
+   * @param stream The stream that contains the response
+   * @param replicasToReplicatePerNode The list of remote replicas for a node
+   * @param remoteNode The remote node from which replication needs to happen
+   * @param requestStartTimeInMs The time at which the request was sent
+   * @return ReplicaMetadataResponse, the response from replica metadata request to remote node
+   * @throws ReplicationException if the response contains an error
+   * @throws IOException
+   */
+  private ReplicaMetadataResponse readReplicaMetadataResponse(InputStream stream,
+      List<RemoteReplicaInfo> replicasToReplicatePerNode, DataNodeId remoteNode, long requestStartTimeInMs)
+      throws ReplicationException, IOException {
+    ReplicaMetadataResponse response =
+        ReplicaMetadataResponse.readFrom(new DataInputStream(stream), findTokenFactory, clusterMap);
+
+    long metadataRequestTime = SystemTime.getInstance().milliseconds() - requestStartTimeInMs;
+    replicationMetrics.updateMetadataRequestTime(metadataRequestTime, replicatingFromRemoteColo, replicatingOverSsl,
+        datacenterName);
+
+    if (response.getError() != ServerErrorCode.No_Error
+        || response.getReplicaMetadataResponseInfoList().size() != replicasToReplicatePerNode.size()) {
+      logger.error("Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replicas: "
+          + replicasToReplicatePerNode + " Replica metadata response error: " + response.getError()
+          + " ReplicaMetadataResponseInfoListSize: " + response.getReplicaMetadataResponseInfoList().size()
+          + " ReplicasToReplicatePerNodeSize: " + replicasToReplicatePerNode.size());
+      throw new ReplicationException("Replica Metadata Response Error " + response.getError());
+    }
+    return response;
   }
 
   /**
@@ -579,6 +1127,26 @@ class ReplicaThread implements Runnable {
   private GetResponse getMessagesForMissingKeys(ConnectedChannel connectedChannel,
       List<ExchangeMetadataResponse> exchangeMetadataResponseList, List<RemoteReplicaInfo> replicasToReplicatePerNode,
       DataNodeId remoteNode) throws ReplicationException, IOException {
+    GetRequest getRequest = createGetRequest(exchangeMetadataResponseList, replicasToReplicatePerNode);
+    long startTime = SystemTime.getInstance().milliseconds();
+    try {
+      connectedChannel.send(getRequest);
+      ChannelOutput channelOutput = connectedChannel.receive();
+      return readGetResponse(channelOutput.getInputStream(), replicasToReplicatePerNode, remoteNode, startTime);
+    } catch (IOException e) {
+      responseHandler.onEvent(replicasToReplicatePerNode.get(0).getReplicaId(), e);
+      throw e;
+    }
+  }
+
+  /**
+   * Creates the request for the messages of the keys that are missing from the local store
+   * @param exchangeMetadataResponseList The list of metadata response from the remote node
+   * @param replicasToReplicatePerNode The list of remote replicas for the remote node
+   * @return the {@link GetRequest} for the missing messages
+   */
+  private GetRequest createGetRequest(List<ExchangeMetadataResponse> exchangeMetadataResponseList,
+      List<RemoteReplicaInfo> replicasToReplicatePerNode) {
     List<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
     for (int i = 0; i < exchangeMetadataResponseList.size(); i++) {
       ExchangeMetadataResponse exchangeMetadataResponse = exchangeMetadataResponseList.get(i);
@@ -596,28 +1164,33 @@ class ReplicaThread implements Runnable {
         }
       }
     }
-    GetRequest getRequest =
-        new GetRequest(correlationIdGenerator.incrementAndGet(), "replication-fetch-" + dataNodeId.getHostname(),
-            MessageFormatFlags.All, partitionRequestInfoList, GetOption.None);
-    long startTime = SystemTime.getInstance().milliseconds();
-    try {
-      connectedChannel.send(getRequest);
-      ChannelOutput channelOutput = connectedChannel.receive();
-      GetResponse getResponse = GetResponse.readFrom(new DataInputStream(channelOutput.getInputStream()), clusterMap);
-      long getRequestTime = SystemTime.getInstance().milliseconds() - startTime;
-      replicationMetrics.updateGetRequestTime(getRequestTime, replicatingFromRemoteColo, replicatingOverSsl,
-          datacenterName);
-      if (getResponse.getError() != ServerErrorCode.No_Error) {
-        logger.error("Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replicas: "
-            + replicasToReplicatePerNode + " GetResponse from replication: " + getResponse.getError());
-        throw new ReplicationException(
-            " Get Request returned error when trying to get missing keys " + getResponse.getError());
-      }
-      return getResponse;
-    } catch (IOException e) {
-      responseHandler.onEvent(replicasToReplicatePerNode.get(0).getReplicaId(), e);
-      throw e;
+    return new GetRequest(correlationIdGenerator.incrementAndGet(), "replication-fetch-" + dataNodeId.getHostname(),
+        MessageFormatFlags.All, partitionRequestInfoList, GetOption.None);
+  }
+
+  /**
+   * Reads and validates the response that contains the messages for the keys that are missing from the local store
+   * @param stream The stream that contains the response
+   * @param replicasToReplicatePerNode The list of remote replicas for the remote node
+   * @param remoteNode The remote node from which replication needs to happen
+   * @param requestStartTimeInMs The time at which the request was sent
+   * @return The response that contains the missing messages
+   * @throws ReplicationException if the response contains an error
+   * @throws IOException
+   */
+  private GetResponse readGetResponse(InputStream stream, List<RemoteReplicaInfo> replicasToReplicatePerNode,
+      DataNodeId remoteNode, long requestStartTimeInMs) throws ReplicationException, IOException {
+    GetResponse getResponse = GetResponse.readFrom(new DataInputStream(stream), clusterMap);
+    long getRequestTime = SystemTime.getInstance().milliseconds() - requestStartTimeInMs;
+    replicationMetrics.updateGetRequestTime(getRequestTime, replicatingFromRemoteColo, replicatingOverSsl,
+        datacenterName);
+    if (getResponse.getError() != ServerErrorCode.No_Error) {
+      logger.error("Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replicas: "
+          + replicasToReplicatePerNode + " GetResponse from replication: " + getResponse.getError());
+      throw new ReplicationException(
+          " Get Request returned error when trying to get missing keys " + getResponse.getError());
     }
+    return getResponse;
   }
 
   /**
@@ -23,6 +23,8 @@ import com.github.ambry.config.ClusterMapConfig;
 import com.github.ambry.config.ReplicationConfig;
 import com.github.ambry.config.StoreConfig;
 import com.github.ambry.network.ConnectionPool;
+import com.github.ambry.network.NetworkClient;
+import com.github.ambry.network.NetworkClientFactory;
 import com.github.ambry.network.Port;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.store.FindToken;
@@ -56,6 +58,8 @@ import org.slf4j.LoggerFactory;
 
 
 final class RemoteReplicaInfo {
+  // the number of times the idle backoff of a replica doubles before it reaches the maximum
+  private static final int MAX_IDLE_BACKOFF_DOUBLINGS = 6;
   private final ReplicaId replicaId;
   private final ReplicaId localReplicaId;
   private final Object lock = new Object();
@@ -75,6 +79,10 @@ final class RemoteReplicaInfo {
   private FindToken tokenSafeToPersist = null;
   private long totalBytesReadFromLocalStore;
   private long localLagFromRemoteStore = -1;
+  // the number of consecutive exchanges in which the remote replica had no new entries
+  private int consecutiveIdleExchanges = 0;
+  // the time until which the remote replica is left out of exchanges because it had no new entries
+  private long idleUntilInMs = 0;
 
   RemoteReplicaInfo(ReplicaId replicaId, ReplicaId localReplicaId, Store localStore, FindToken token,
       long tokenPersistIntervalInMs, Time time, Port port) {
@@ -134,6 +142,38 @@ final class RemoteReplicaInfo {
     return this.totalBytesReadFromLocalStore;
   }
 
+  /**
+   * Records the outcome of an exchange with the remote replica. The time for which the replica is left out of
+   * exchanges doubles with every consecutive idle exchange, up to {@code maxBackoffMs}, and is reset by any exchange
+   * that is not idle.
+   * @param idle {@code true} if the remote replica had no new entries and the local replica is not lagging behind it.
+   * @param maxBackoffMs the maximum time for which the replica is left out of exchanges.
+   */
+  void onExchangeComplete(boolean idle, long maxBackoffMs) {
+    if (idle && maxBackoffMs > 0) {
+      consecutiveIdleExchanges = Math.min(consecutiveIdleExchanges + 1, MAX_IDLE_BACKOFF_DOUBLINGS + 1);
+      long backoffMs = Math.max(maxBackoffMs >> (MAX_IDLE_BACKOFF_DOUBLINGS + 1 - consecutiveIdleExchanges), 1);
+      idleUntilInMs = time.milliseconds() + backoffMs;
+    } else {
+      consecutiveIdleExchanges = 0;
+      idleUntilInMs = 0;
+    }
+  }
+
+  /**
+   * @return {@code true} if the remote replica has to be left out of exchanges because it recently had no new entries.
+   */
+  boolean isIdle() {
+    return idleUntilInMs > time.milliseconds();
+  }
+
+  /**
+   * @return the time until which the remote replica is left out of exchanges. 0 if it is not idle.
+   */
+  long getIdleUntilInMs() {
+    return idleUntilInMs;
+  }
+
   void setToken(FindToken token) {
     // reference assignment is atomic in java but we want to be completely safe. performance is
     // not important here
@@ -259,6 +299,7 @@ public final class ReplicationManager {
   private final AtomicInteger correlationIdGenerator;
   private final DataNodeId dataNodeId;
   private final ConnectionPool connectionPool;
+  private final NetworkClientFactory networkClientFactory;
   private final ReplicationMetrics replicationMetrics;
   private final NotificationSystem notification;
   private final Map<String, DataNodeRemoteReplicaInfos> dataNodeRemoteReplicaInfosPerDC;
@@ -276,6 +317,20 @@ public final class ReplicationManager {
       StoreConfig storeConfig, StorageManager storageManager, StoreKeyFactory storeKeyFactory, ClusterMap clusterMap,
       ScheduledExecutorService scheduler, DataNodeId dataNode, ConnectionPool connectionPool,
       MetricRegistry metricRegistry, NotificationSystem requestNotification) throws ReplicationException {
+    this(replicationConfig, clusterMapConfig, storeConfig, storageManager, storeKeyFactory, clusterMap, scheduler,
+        dataNode, connectionPool, null, metricRegistry, requestNotification);
+  }
+
+  /**
+   * Creates a replication manager
+   * @param networkClientFactory the factory of the {@link NetworkClient}s that the replica threads replicate through.
+   *                             If {@code null}, the replica threads replicate through the {@code connectionPool}.
+   */
+  public ReplicationManager(ReplicationConfig replicationConfig, ClusterMapConfig clusterMapConfig,
+      StoreConfig storeConfig, StorageManager storageManager, StoreKeyFactory storeKeyFactory, ClusterMap clusterMap,
+      ScheduledExecutorService scheduler, DataNodeId dataNode, ConnectionPool connectionPool,
+      NetworkClientFactory networkClientFactory, MetricRegistry metricRegistry,
+      NotificationSystem requestNotification) throws ReplicationException {
 
     try {
       this.replicationConfig = replicationConfig;
@@ -292,6 +347,7 @@ public final class ReplicationManager {
       this.dataNodeId = dataNode;
       List<ReplicaId> replicaIds = clusterMap.getReplicaIds(dataNodeId);
       this.connectionPool = connectionPool;
+      this.networkClientFactory = networkClientFactory;
       this.notification = requestNotification;
       this.metricRegistry = metricRegistry;
       this.dataNodeRemoteReplicaInfosPerDC = new HashMap<String, DataNodeRemoteReplicaInfos>();
@@ -487,8 +543,9 @@ public final class ReplicationManager {
 
   /**
    * Partitions the list of data nodes between given set of replica threads for the given DC
+   * @throws IOException if a {@link NetworkClient} for a replica thread could not be created
    */
-  private void assignReplicasToThreadPool() {
+  private void assignReplicasToThreadPool() throws IOException {
     Iterator<Map.Entry<String, DataNodeRemoteReplicaInfos>> mapIterator =
         dataNodeRemoteReplicaInfosPerDC.entrySet().iterator();
     while (mapIterator.hasNext()) {
@@ -547,11 +604,12 @@ public final class ReplicationManager {
         String threadIdentity =
             "Replica Thread-" + (dataNodeId.getDatacenterName().equals(datacenter) ? "Intra-" : "Inter") + i
                 + datacenter;
+        NetworkClient networkClient = networkClientFactory != null ? networkClientFactory.getNetworkClient() : null;
         ReplicaThread replicaThread =
             new ReplicaThread(threadIdentity, replicasForThread, factory, clusterMap, correlationIdGenerator,
                 dataNodeId, connectionPool, replicationConfig, replicationMetrics, notification, storeKeyFactory,
                 replicationConfig.replicationValidateMessageStream, metricRegistry, replicatingOverSsl, datacenter,
-                responseHandler);
+                responseHandler, networkClient);
         if (replicaThreadPools.containsKey(datacenter)) {
           replicaThreadPools.get(datacenter).add(replicaThread);
         } else {
@@ -58,6 +58,9 @@ public class ReplicationMetrics {
   public final Counter sslReplicationErrors;
   public final Counter replicationTokenResetCount;
   public final Counter replicationInvalidMessageStreamErrorCount;
+  public final Counter idleReplicaSkipCount;
+  public final Counter replicationNetworkClientRequestTimeoutCount;
+  public final Histogram replicaMetadataRequestFetchSizeInBytes;
   public final Map<String, Timer> interColoReplicationLatency = new HashMap<String, Timer>();
   public final Timer intraColoReplicationLatency;
   public final Map<String, Timer> plainTextInterColoReplicationLatency = new HashMap<String, Timer>();
@@ -149,6 +152,11 @@ public class ReplicationMetrics {
         registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationTokenResetCount"));
     replicationInvalidMessageStreamErrorCount =
         registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationInvalidMessageStreamErrorCount"));
+    idleReplicaSkipCount = registry.counter(MetricRegistry.name(ReplicaThread.class, "IdleReplicaSkipCount"));
+    replicationNetworkClientRequestTimeoutCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationNetworkClientRequestTimeoutCount"));
+    replicaMetadataRequestFetchSizeInBytes =
+        registry.histogram(MetricRegistry.name(ReplicaThread.class, "ReplicaMetadataRequestFetchSizeInBytes"));
     intraColoReplicationLatency =
         registry.timer(MetricRegistry.name(ReplicaThread.class, "IntraColoReplicationLatency"));
     plainTextIntraColoReplicationLatency =
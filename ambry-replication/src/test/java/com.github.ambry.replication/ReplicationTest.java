@@ -32,8 +32,13 @@ import com.github.ambry.network.ChannelOutput;
 import com.github.ambry.network.ConnectedChannel;
 import com.github.ambry.network.ConnectionPool;
 import com.github.ambry.network.ConnectionPoolTimeoutException;
+import com.github.ambry.network.NetworkClient;
+import com.github.ambry.network.NetworkClientErrorCode;
+import com.github.ambry.network.NetworkMetrics;
 import com.github.ambry.network.Port;
 import com.github.ambry.network.PortType;
+import com.github.ambry.network.RequestInfo;
+import com.github.ambry.network.ResponseInfo;
 import com.github.ambry.network.Send;
 import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
@@ -62,6 +67,7 @@ import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
@@ -69,6 +75,7 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -480,6 +487,76 @@ public class ReplicationTest {
     }
   }
 
+  class MockNetworkClient extends NetworkClient {
+    private final Map<String, Map<PartitionId, List<MessageInfo>>> messageInfoList;
+    private final Map<String, Map<PartitionId, List<ByteBuffer>>> byteBufferList;
+    private final int maxEntriesToReturn;
+    // requests that were not answered while the client did not respond. They are answered once it responds again.
+    private final List<RequestInfo> unansweredRequests = new ArrayList<RequestInfo>();
+    final AtomicInteger requestCount = new AtomicInteger(0);
+    // the largest number of requests that were sent in a single call to sendAndPoll
+    final AtomicInteger maxRequestsPerPoll = new AtomicInteger(0);
+    volatile boolean respond = true;
+    volatile boolean closed = false;
+
+    public MockNetworkClient(Map<String, Map<PartitionId, List<MessageInfo>>> messageInfoList,
+        Map<String, Map<PartitionId, List<ByteBuffer>>> byteBufferList, int maxEntriesToReturn) {
+      super(null, null, new NetworkMetrics(new MetricRegistry()), 1, 1, 1000, SystemTime.getInstance());
+      this.messageInfoList = messageInfoList;
+      this.byteBufferList = byteBufferList;
+      this.maxEntriesToReturn = maxEntriesToReturn;
+    }
+
+    @Override
+    public List<ResponseInfo> sendAndPoll(List<RequestInfo> requestInfos, int pollTimeoutMs) {
+      requestCount.addAndGet(requestInfos.size());
+      maxRequestsPerPoll.set(Math.max(maxRequestsPerPoll.get(), requestInfos.size()));
+      unansweredRequests.addAll(requestInfos);
+      List<ResponseInfo> responseInfoList = new ArrayList<ResponseInfo>();
+      if (respond) {
+        for (RequestInfo requestInfo : unansweredRequests) {
+          responseInfoList.add(getResponse(requestInfo));
+        }
+        unansweredRequests.clear();
+      }
+      if (responseInfoList.isEmpty()) {
+        try {
+          Thread.sleep(Math.min(pollTimeoutMs, 10));
+        } catch (InterruptedException e) {
+          // ignore and return
+        }
+      }
+      return responseInfoList;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public void wakeup() {
+      // sendAndPoll never sleeps for long
+    }
+
+    private ResponseInfo getResponse(RequestInfo requestInfo) {
+      String host = requestInfo.getHost();
+      int port = requestInfo.getPort().getPort();
+      MockConnection connection =
+          new MockConnection(host, port, messageInfoList.get(host + port), byteBufferList.get(host + port),
+              maxEntriesToReturn);
+      try {
+        connection.send(requestInfo.getRequest());
+        ChannelOutput output = connection.receive();
+        byte[] response = new byte[(int) output.getStreamSize()];
+        new DataInputStream(output.getInputStream()).readFully(response);
+        return new ResponseInfo(requestInfo, null, ByteBuffer.wrap(response));
+      } catch (IOException e) {
+        return new ResponseInfo(requestInfo, NetworkClientErrorCode.NetworkError, null);
+      }
+    }
+  }
+
   @Test
   public void replicaThreadTest() throws InterruptedException, IOException {
     try {
@@ -1184,6 +1261,411 @@ public class ReplicationTest {
     }
   }
 
+  /**
+   * Tests that a replica thread that replicates through a {@link NetworkClient} fetches the missing messages of all the
+   * remote replicas of a node and closes the client when it shuts down.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadWithNetworkClientTest() throws Exception {
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId dataNode1 = clusterMap.getDataNodeIds().get(0);
+    DataNodeId dataNode2 = clusterMap.getDataNodeIds().get(1);
+    Map<PartitionId, List<MessageInfo>> messageInfoNode1 = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListNode1 = new HashMap<PartitionId, List<ByteBuffer>>();
+    Map<PartitionId, List<MessageInfo>> messageInfoNode2 = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListNode2 = new HashMap<PartitionId, List<ByteBuffer>>();
+    populateStores(clusterMap, messageInfoNode1, bufferListNode1, messageInfoNode2, bufferListNode2);
+    List<RemoteReplicaInfo> remoteReplicas =
+        getRemoteReplicas(clusterMap, dataNode1, dataNode2, messageInfoNode1, bufferListNode1);
+    MockNetworkClient networkClient = createNetworkClient(dataNode2, messageInfoNode2, bufferListNode2);
+    Properties properties = new Properties();
+    properties.setProperty("replication.wait.time.between.replicas.ms", "0");
+    ReplicationMetrics replicationMetrics =
+        new ReplicationMetrics(new MetricRegistry(), clusterMap.getReplicaIds(dataNode1));
+    ReplicaThread replicaThread =
+        createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, networkClient);
+
+    Utils.newThread(replicaThread, false).start();
+    try {
+      Assert.assertTrue("Remote replicas were not replicated from", waitForTokens(remoteReplicas, 15, 10000));
+    } finally {
+      replicaThread.shutdown();
+    }
+    Assert.assertTrue("Network client should have been closed", networkClient.closed);
+    Assert.assertEquals("There should have been no errors", 0, replicationMetrics.replicationErrors.getCount());
+    verifyReplicatedBuffers(bufferListNode1, bufferListNode2);
+  }
+
+  /**
+   * Tests that a replica thread that replicates through a {@link NetworkClient} splits the remote replicas of a node
+   * into concurrent exchanges with a request in flight each.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadWithNetworkClientConcurrentExchangesTest() throws Exception {
+    final int exchangesPerNode = 3;
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId dataNode1 = clusterMap.getDataNodeIds().get(0);
+    DataNodeId dataNode2 = clusterMap.getDataNodeIds().get(1);
+    Map<PartitionId, List<MessageInfo>> messageInfoNode1 = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListNode1 = new HashMap<PartitionId, List<ByteBuffer>>();
+    Map<PartitionId, List<MessageInfo>> messageInfoNode2 = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListNode2 = new HashMap<PartitionId, List<ByteBuffer>>();
+    populateStores(clusterMap, messageInfoNode1, bufferListNode1, messageInfoNode2, bufferListNode2);
+    List<RemoteReplicaInfo> remoteReplicas =
+        getRemoteReplicas(clusterMap, dataNode1, dataNode2, messageInfoNode1, bufferListNode1);
+    MockNetworkClient networkClient = createNetworkClient(dataNode2, messageInfoNode2, bufferListNode2);
+    Properties properties = new Properties();
+    properties.setProperty("replication.wait.time.between.replicas.ms", "0");
+    properties.setProperty("replication.network.client.exchanges.per.node", Integer.toString(exchangesPerNode));
+    ReplicationMetrics replicationMetrics =
+        new ReplicationMetrics(new MetricRegistry(), clusterMap.getReplicaIds(dataNode1));
+    ReplicaThread replicaThread =
+        createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, networkClient);
+
+    Utils.newThread(replicaThread, false).start();
+    try {
+      Assert.assertTrue("Remote replicas were not replicated from", waitForTokens(remoteReplicas, 15, 10000));
+    } finally {
+      replicaThread.shutdown();
+    }
+    Assert.assertEquals("The exchanges with the node should have been in flight together",
+        Math.min(exchangesPerNode, remoteReplicas.size()), networkClient.maxRequestsPerPoll.get());
+    Assert.assertEquals("There should have been no errors", 0, replicationMetrics.replicationErrors.getCount());
+    verifyReplicatedBuffers(bufferListNode1, bufferListNode2);
+  }
+
+  /**
+   * Tests that the replicas of a node are split into non empty groups that together contain every replica once.
+   */
+  @Test
+  public void splitReplicasTest() {
+    List<RemoteReplicaInfo> remoteReplicas = createMockRemoteReplicas(5, new MockTime());
+    for (int numGroups : new int[]{1, 2, 5, 8}) {
+      List<List<RemoteReplicaInfo>> groups = ReplicaThread.splitReplicas(remoteReplicas, numGroups);
+      Assert.assertEquals("Unexpected number of groups", Math.min(numGroups, remoteReplicas.size()), groups.size());
+      List<RemoteReplicaInfo> replicasInGroups = new ArrayList<RemoteReplicaInfo>();
+      for (List<RemoteReplicaInfo> group : groups) {
+        Assert.assertFalse("Groups should not be empty", group.isEmpty());
+        Assert.assertTrue("Groups should be balanced",
+            group.size() <= (remoteReplicas.size() + groups.size() - 1) / groups.size());
+        replicasInGroups.addAll(group);
+      }
+      Assert.assertEquals("Every replica should be in exactly one group", remoteReplicas.size(),
+          replicasInGroups.size());
+      Assert.assertTrue("Every replica should be in a group", replicasInGroups.containsAll(remoteReplicas));
+    }
+  }
+
+  /**
+   * Tests that a request that is not answered by the remote node fails its exchange after the request timeout, that a
+   * failed exchange is retried only after the error backoff and that replication resumes once the node responds. The
+   * late responses to the requests that timed out are ignored.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadWithNetworkClientTimeoutTest() throws Exception {
+    final int requestTimeoutMs = 50;
+    final int errorBackoffMs = 200;
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId dataNode1 = clusterMap.getDataNodeIds().get(0);
+    DataNodeId dataNode2 = clusterMap.getDataNodeIds().get(1);
+    Map<PartitionId, List<MessageInfo>> messageInfoNode1 = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListNode1 = new HashMap<PartitionId, List<ByteBuffer>>();
+    Map<PartitionId, List<MessageInfo>> messageInfoNode2 = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListNode2 = new HashMap<PartitionId, List<ByteBuffer>>();
+    populateStores(clusterMap, messageInfoNode1, bufferListNode1, messageInfoNode2, bufferListNode2);
+    List<RemoteReplicaInfo> remoteReplicas =
+        getRemoteReplicas(clusterMap, dataNode1, dataNode2, messageInfoNode1, bufferListNode1);
+    MockNetworkClient networkClient = createNetworkClient(dataNode2, messageInfoNode2, bufferListNode2);
+    networkClient.respond = false;
+    Properties properties = new Properties();
+    properties.setProperty("replication.wait.time.between.replicas.ms", "0");
+    properties.setProperty("replication.network.client.request.timeout.ms", Integer.toString(requestTimeoutMs));
+    properties.setProperty("replication.network.client.error.backoff.ms", Integer.toString(errorBackoffMs));
+    ReplicationMetrics replicationMetrics =
+        new ReplicationMetrics(new MetricRegistry(), clusterMap.getReplicaIds(dataNode1));
+    ReplicaThread replicaThread =
+        createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, networkClient);
+
+    long startTimeMs = System.currentTimeMillis();
+    Utils.newThread(replicaThread, false).start();
+    try {
+      Thread.sleep(1000);
+      int requestCount = networkClient.requestCount.get();
+      long elapsedTimeMs = System.currentTimeMillis() - startTimeMs;
+      Assert.assertTrue("Requests should have timed out",
+          replicationMetrics.replicationNetworkClientRequestTimeoutCount.getCount() > 0);
+      Assert.assertTrue("Failed exchanges should have been retried", requestCount > 1);
+      // every timed out request is followed by the error backoff before the next exchange starts
+      long maxExpectedRequestCount = elapsedTimeMs / (requestTimeoutMs + errorBackoffMs) + 1;
+      Assert.assertTrue("Too many requests: " + requestCount, requestCount <= maxExpectedRequestCount);
+      for (RemoteReplicaInfo remoteReplicaInfo : remoteReplicas) {
+        Assert.assertEquals("Token should not have moved", 0,
+            ((MockFindToken) remoteReplicaInfo.getToken()).getIndex());
+      }
+
+      networkClient.respond = true;
+      Assert.assertTrue("Remote replicas were not replicated from", waitForTokens(remoteReplicas, 15, 10000));
+    } finally {
+      replicaThread.shutdown();
+    }
+    verifyReplicatedBuffers(bufferListNode1, bufferListNode2);
+  }
+
+  /**
+   * Tests that the fetch size of a replica metadata request grows with the lag of the local replicas up to the maximum
+   * fetch size, shrinks back to the fetch size once they caught up, and does not grow if there is no larger maximum.
+   * @throws Exception
+   */
+  @Test
+  public void fetchSizeTest() throws Exception {
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId dataNode1 = clusterMap.getDataNodeIds().get(0);
+    List<RemoteReplicaInfo> remoteReplicas = createMockRemoteReplicas(1, new MockTime());
+    ReplicationMetrics replicationMetrics =
+        new ReplicationMetrics(new MetricRegistry(), clusterMap.getReplicaIds(dataNode1));
+    Properties properties = new Properties();
+    properties.setProperty("replication.fetch.size.in.bytes", "1000");
+    properties.setProperty("replication.max.fetch.size.in.bytes", "10000");
+    ReplicaThread replicaThread =
+        createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, null);
+    // an unknown lag is reported as -1
+    Assert.assertEquals("Unexpected fetch size for an unknown lag", 1000, replicaThread.getFetchSizeInBytes(-1));
+    Assert.assertEquals("Unexpected fetch size for a small lag", 1000, replicaThread.getFetchSizeInBytes(500));
+    Assert.assertEquals("Fetch size should grow with the lag", 5000, replicaThread.getFetchSizeInBytes(5000));
+    Assert.assertEquals("Fetch size should be capped", 10000, replicaThread.getFetchSizeInBytes(50000));
+    Assert.assertEquals("Fetch size should shrink once caught up", 1000, replicaThread.getFetchSizeInBytes(0));
+
+    properties.setProperty("replication.max.fetch.size.in.bytes", "0");
+    replicaThread = createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, null);
+    Assert.assertEquals("Fetch size should not grow without a maximum", 1000,
+        replicaThread.getFetchSizeInBytes(50000));
+  }
+
+  /**
+   * Tests that the time for which an idle remote replica is left out of exchanges doubles with every consecutive idle
+   * exchange up to the maximum backoff, and that an exchange that is not idle resets it.
+   * @throws InterruptedException
+   */
+  @Test
+  public void idleReplicaBackoffTest() throws InterruptedException {
+    final long maxBackoffMs = 6400;
+    MockTime time = new MockTime();
+    RemoteReplicaInfo remoteReplicaInfo = createMockRemoteReplicas(1, time).get(0);
+    Assert.assertFalse("Replica should not be idle initially", remoteReplicaInfo.isIdle());
+
+    long[] expectedBackoffsMs = {100, 200, 400, 800, 1600, 3200, 6400, 6400};
+    for (long expectedBackoffMs : expectedBackoffsMs) {
+      remoteReplicaInfo.onExchangeComplete(true, maxBackoffMs);
+      Assert.assertEquals("Unexpected backoff", time.milliseconds() + expectedBackoffMs,
+          remoteReplicaInfo.getIdleUntilInMs());
+      time.sleep(expectedBackoffMs - 1);
+      Assert.assertTrue("Replica should be idle within the backoff", remoteReplicaInfo.isIdle());
+      time.sleep(1);
+      Assert.assertFalse("Replica should be probed after the backoff", remoteReplicaInfo.isIdle());
+    }
+
+    remoteReplicaInfo.onExchangeComplete(false, maxBackoffMs);
+    Assert.assertFalse("Replica should not be idle after an exchange with new entries", remoteReplicaInfo.isIdle());
+    Assert.assertEquals("Idle time should be reset", 0, remoteReplicaInfo.getIdleUntilInMs());
+    remoteReplicaInfo.onExchangeComplete(true, maxBackoffMs);
+    Assert.assertEquals("Backoff should start over", time.milliseconds() + 100, remoteReplicaInfo.getIdleUntilInMs());
+
+    remoteReplicaInfo.onExchangeComplete(false, maxBackoffMs);
+    remoteReplicaInfo.onExchangeComplete(true, 0);
+    Assert.assertFalse("Replica should never be idle without a backoff", remoteReplicaInfo.isIdle());
+  }
+
+  /**
+   * Tests that idle remote replicas are left out of exchanges until their backoff has passed, and that no replica is
+   * left out if idle backoff is disabled.
+   * @throws Exception
+   */
+  @Test
+  public void getReplicasToExchangeTest() throws Exception {
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId dataNode1 = clusterMap.getDataNodeIds().get(0);
+    MockTime time = new MockTime();
+    List<RemoteReplicaInfo> remoteReplicas = createMockRemoteReplicas(2, time);
+    ReplicationMetrics replicationMetrics =
+        new ReplicationMetrics(new MetricRegistry(), clusterMap.getReplicaIds(dataNode1));
+    Properties properties = new Properties();
+    properties.setProperty("replication.idle.replica.max.backoff.ms", "6400");
+    ReplicaThread replicaThread =
+        createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, null);
+    RemoteReplicaInfo idleReplica = remoteReplicas.get(0);
+    RemoteReplicaInfo activeReplica = remoteReplicas.get(1);
+    Assert.assertEquals("All replicas should be exchanged with initially", remoteReplicas,
+        replicaThread.getReplicasToExchange(remoteReplicas));
+
+    idleReplica.onExchangeComplete(true, 6400);
+    activeReplica.onExchangeComplete(false, 6400);
+    Assert.assertEquals("Idle replica should be left out", Collections.singletonList(activeReplica),
+        replicaThread.getReplicasToExchange(remoteReplicas));
+    Assert.assertEquals("Unexpected idle replica skip count", 1, replicationMetrics.idleReplicaSkipCount.getCount());
+
+    time.sleep(idleReplica.getIdleUntilInMs() - time.milliseconds());
+    Assert.assertEquals("Idle replica should be probed after its backoff", remoteReplicas,
+        replicaThread.getReplicasToExchange(remoteReplicas));
+
+    idleReplica.onExchangeComplete(true, 6400);
+    properties.setProperty("replication.idle.replica.max.backoff.ms", "0");
+    replicaThread = createReplicaThread(clusterMap, dataNode1, remoteReplicas, properties, replicationMetrics, null);
+    Assert.assertEquals("No replica should be left out without a backoff", remoteReplicas,
+        replicaThread.getReplicasToExchange(remoteReplicas));
+  }
+
+  /**
+   * @return {@code count} {@link RemoteReplicaInfo}s of {@link MockReplicaId}s with empty local stores.
+   */
+  private List<RemoteReplicaInfo> createMockRemoteReplicas(int count, Time time) {
+    List<RemoteReplicaInfo> remoteReplicas = new ArrayList<RemoteReplicaInfo>();
+    for (int i = 0; i < count; i++) {
+      remoteReplicas.add(new RemoteReplicaInfo(new MockReplicaId(), new MockReplicaId(),
+          new MockStore(new ArrayList<MessageInfo>(), new ArrayList<ByteBuffer>()), new MockFindToken(0, 0), 1000,
+          time, new Port(5000, PortType.PLAINTEXT)));
+    }
+    return remoteReplicas;
+  }
+
+  /**
+   * Populates the stores of two nodes for every writable partition. The store of the second node has 5 messages and
+   * an expired message more than the 10 messages in the store of the first node.
+   */
+  private void populateStores(MockClusterMap clusterMap, Map<PartitionId, List<MessageInfo>> messageInfoNode1,
+      Map<PartitionId, List<ByteBuffer>> bufferListNode1, Map<PartitionId, List<MessageInfo>> messageInfoNode2,
+      Map<PartitionId, List<ByteBuffer>> bufferListNode2) throws MessageFormatException, IOException {
+    Random random = new Random();
+    for (PartitionId partitionId : clusterMap.getWritablePartitionIds()) {
+      List<MessageInfo> messageInfoListNode1 = new ArrayList<MessageInfo>();
+      List<ByteBuffer> messageBufferListNode1 = new ArrayList<ByteBuffer>();
+      List<MessageInfo> messageInfoListNode2 = new ArrayList<MessageInfo>();
+      List<ByteBuffer> messageBufferListNode2 = new ArrayList<ByteBuffer>();
+      for (int j = 0; j < 15; j++) {
+        BlobId id = new BlobId(partitionId);
+        ByteBuffer byteBuffer = constructTestBlobInMessageFormat(id, 1000, random);
+        long streamSize = byteBuffer.limit();
+        if (j < 10) {
+          messageInfoListNode1.add(new MessageInfo(id, streamSize));
+          messageBufferListNode1.add(byteBuffer);
+        }
+        messageInfoListNode2.add(new MessageInfo(id, streamSize));
+        messageBufferListNode2.add(byteBuffer);
+      }
+      BlobId idExpired = new BlobId(partitionId);
+      ByteBuffer byteBuffer = constructTestBlobInMessageFormat(idExpired, 1000, random);
+      messageInfoListNode2.add(new MessageInfo(idExpired, byteBuffer.limit(), 1));
+      messageBufferListNode2.add(byteBuffer);
+      messageInfoNode1.put(partitionId, messageInfoListNode1);
+      bufferListNode1.put(partitionId, messageBufferListNode1);
+      messageInfoNode2.put(partitionId, messageInfoListNode2);
+      bufferListNode2.put(partitionId, messageBufferListNode2);
+    }
+  }
+
+  /**
+   * @return the {@link RemoteReplicaInfo}s of the replicas on {@code remoteNode} of the replicas on {@code localNode}.
+   * The local store of every replica is a {@link MockStore} over the given messages.
+   */
+  private List<RemoteReplicaInfo> getRemoteReplicas(MockClusterMap clusterMap, DataNodeId localNode,
+      DataNodeId remoteNode, Map<PartitionId, List<MessageInfo>> messageInfoLocal,
+      Map<PartitionId, List<ByteBuffer>> bufferListLocal) {
+    List<RemoteReplicaInfo> remoteReplicas = new ArrayList<RemoteReplicaInfo>();
+    for (ReplicaId replicaId : clusterMap.getReplicaIds(localNode)) {
+      for (ReplicaId peerReplicaId : replicaId.getPeerReplicaIds()) {
+        if (peerReplicaId.getDataNodeId().getPort() == remoteNode.getPort()) {
+          remoteReplicas.add(new RemoteReplicaInfo(peerReplicaId, replicaId,
+              new MockStore(messageInfoLocal.get(replicaId.getPartitionId()),
+                  bufferListLocal.get(replicaId.getPartitionId())), new MockFindToken(0, 0), 1000000,
+              SystemTime.getInstance(), new Port(peerReplicaId.getDataNodeId().getPort(), PortType.PLAINTEXT)));
+        }
+      }
+    }
+    return remoteReplicas;
+  }
+
+  /**
+   * @return a {@link MockNetworkClient} that answers requests to {@code remoteNode} from the given messages with at
+   * most 4 entries per replica metadata response.
+   */
+  private MockNetworkClient createNetworkClient(DataNodeId remoteNode,
+      Map<PartitionId, List<MessageInfo>> messageInfoRemote, Map<PartitionId, List<ByteBuffer>> bufferListRemote) {
+    Map<String, Map<PartitionId, List<MessageInfo>>> replicaStores =
+        new HashMap<String, Map<PartitionId, List<MessageInfo>>>();
+    Map<String, Map<PartitionId, List<ByteBuffer>>> replicaBuffers =
+        new HashMap<String, Map<PartitionId, List<ByteBuffer>>>();
+    replicaStores.put("localhost" + remoteNode.getPort(), messageInfoRemote);
+    replicaBuffers.put("localhost" + remoteNode.getPort(), bufferListRemote);
+    return new MockNetworkClient(replicaStores, replicaBuffers, 4);
+  }
+
+  /**
+   * @return a {@link ReplicaThread} on {@code localNode} that replicates from {@code remoteReplicas} through
+   * {@code networkClient}.
+   */
+  private ReplicaThread createReplicaThread(MockClusterMap clusterMap, DataNodeId localNode,
+      List<RemoteReplicaInfo> remoteReplicas, Properties properties, ReplicationMetrics replicationMetrics,
+      NetworkClient networkClient) throws IOException {
+    Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+    replicasToReplicate.put(remoteReplicas.get(0).getReplicaId().getDataNodeId(), remoteReplicas);
+    replicationMetrics.populatePerColoMetrics(new HashSet<String>(Arrays.asList("localhost")));
+    StoreKeyFactory storeKeyFactory;
+    try {
+      storeKeyFactory = Utils.getObj("com.github.ambry.commons.BlobIdFactory", clusterMap);
+    } catch (Exception e) {
+      throw new IOException("Error creating StoreKeyFactory " + e);
+    }
+    return new ReplicaThread("threadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+        new AtomicInteger(0), localNode, null, new ReplicationConfig(new VerifiableProperties(properties)),
+        replicationMetrics, null, storeKeyFactory, true, clusterMap.getMetricRegistry(), false, "localhost",
+        new ResponseHandler(clusterMap), networkClient);
+  }
+
+  /**
+   * Waits until the tokens of all {@code remoteReplicas} have reached {@code expectedIndex}.
+   * @return {@code true} if the tokens reached {@code expectedIndex} within {@code timeoutMs}.
+   * @throws InterruptedException
+   */
+  private boolean waitForTokens(List<RemoteReplicaInfo> remoteReplicas, int expectedIndex, long timeoutMs)
+      throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + timeoutMs;
+    while (System.currentTimeMillis() < deadlineMs) {
+      boolean reached = true;
+      for (RemoteReplicaInfo remoteReplicaInfo : remoteReplicas) {
+        if (((MockFindToken) remoteReplicaInfo.getToken()).getIndex() != expectedIndex) {
+          reached = false;
+          break;
+        }
+      }
+      if (reached) {
+        return true;
+      }
+      Thread.sleep(10);
+    }
+    return false;
+  }
+
+  /**
+   * Verifies that all the messages of the remote node except the expired one have been written to the local node.
+   */
+  private void verifyReplicatedBuffers(Map<PartitionId, List<ByteBuffer>> bufferListLocal,
+      Map<PartitionId, List<ByteBuffer>> bufferListRemote) {
+    for (Map.Entry<PartitionId, List<ByteBuffer>> entry : bufferListRemote.entrySet()) {
+      int totalFound = 0;
+      for (ByteBuffer buf : entry.getValue()) {
+        for (ByteBuffer bufActual : bufferListLocal.get(entry.getKey())) {
+          if (Arrays.equals(buf.array(), bufActual.array())) {
+            totalFound++;
+            break;
+          }
+        }
+      }
+      Assert.assertEquals(entry.getValue().size() - 1, totalFound);
+    }
+  }
+
   private ByteBuffer constructTestBlobInMessageFormat(BlobId id, long blobSize, Random random)
       throws MessageFormatException, IOException {
     return constructEntireMessageForTestBlob(id, blobSize, random, "test");
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.codahale.metrics.Histogram;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.Time;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * An implementation of {@link OperationTracker} that hedges slow requests. In addition to the requests that
+ * {@link SimpleOperationTracker} allows, it allows a request to the next replica once an in flight request has taken
+ * longer than the given quantile of the request latencies of its data node. Every in flight request is hedged at most
+ * once, so a single slow replica cannot hold back the operation until the request times out.
+ *
+ * The latencies of a data node are taken from the {@link NonBlockingRouterMetrics.NodeLevelMetrics} of the node, which
+ * are updated by the operations as the responses arrive. Requests to a data node are not hedged until enough
+ * latencies of the node have been recorded.
+ */
+class AdaptiveOperationTracker extends SimpleOperationTracker {
+  // the minimum number of latencies of a data node that have to be recorded before requests to it are hedged
+  static final long MIN_DATA_POINTS_REQUIRED = 100;
+
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final boolean trackBlobInfoLatency;
+  private final double latencyQuantile;
+  private final Time time;
+  private final OpTrackerIterator otIterator = new OpTrackerIterator();
+  // the time at which each in flight request that has not been hedged yet is hedged, in the order of sending
+  private final LinkedHashMap<ReplicaId, Long> replicaToHedgeTimeMs = new LinkedHashMap<>();
+  // the replicas to which a request is in flight
+  private final Set<ReplicaId> inflightReplicas = new HashSet<>();
+  // the replica of every in flight hedged request, mapped to the replica of the request it hedged
+  private final Map<ReplicaId, ReplicaId> hedgeToHedgedReplica = new HashMap<>();
+  private ReplicaId lastReturnedReplica = null;
+
+  /**
+   * Constructor for an {@code AdaptiveOperationTracker}, which shuffles replicas.
+   *
+   * @param datacenterName The datacenter where the router is located.
+   * @param partitionId The partition on which the operation is performed.
+   * @param crossColoEnabled {@code true} if requests can be sent to remote replicas, {@code false}
+   *                                otherwise.
+   * @param successTarget The number of successful responses required to succeed the operation.
+   * @param parallelism The maximum number of inflight requests at any point of time, excluding hedged requests.
+   * @param routerMetrics The {@link NonBlockingRouterMetrics} that contains the latencies of the data nodes.
+   * @param trackBlobInfoLatency {@code true} to use the latencies of blob info requests, {@code false} to use the
+   *                             latencies of get requests for the blob.
+   * @param latencyQuantile The quantile of the latencies of a data node after which a request to it is hedged.
+   * @param time The {@link Time} instance to use.
+   */
+  AdaptiveOperationTracker(String datacenterName, PartitionId partitionId, boolean crossColoEnabled,
+      int successTarget, int parallelism, NonBlockingRouterMetrics routerMetrics, boolean trackBlobInfoLatency,
+      double latencyQuantile, Time time) {
+    super(datacenterName, partitionId, crossColoEnabled, successTarget, parallelism);
+    this.routerMetrics = routerMetrics;
+    this.trackBlobInfoLatency = trackBlobInfoLatency;
+    this.latencyQuantile = latencyQuantile;
+    this.time = time;
+  }
+
+  @Override
+  public void onResponse(ReplicaId replicaId, boolean isSuccessFul) {
+    super.onResponse(replicaId, isSuccessFul);
+    replicaToHedgeTimeMs.remove(replicaId);
+    inflightReplicas.remove(replicaId);
+    ReplicaId hedgedReplica = hedgeToHedgedReplica.remove(replicaId);
+    if (isSuccessFul && hedgedReplica != null && inflightReplicas.contains(hedgedReplica)) {
+      routerMetrics.getHedgedRequestWinCount.inc();
+    }
+  }
+
+  @Override
+  public Iterator<ReplicaId> getReplicaIterator() {
+    super.getReplicaIterator();
+    return otIterator;
+  }
+
+  /**
+   * @return the replica of the oldest in flight request that has to be hedged, or {@code null} if there is none.
+   */
+  private ReplicaId getReplicaToHedge() {
+    long currentTimeMs = time.milliseconds();
+    for (Map.Entry<ReplicaId, Long> entry : replicaToHedgeTimeMs.entrySet()) {
+      if (entry.getValue() <= currentTimeMs) {
+        return entry.getKey();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param replicaId the replica to which a request is sent.
+   * @return the time after which the request has to be hedged, or -1 if not enough latencies of the data node of the
+   * replica have been recorded.
+   */
+  private long getHedgeTimeMs(ReplicaId replicaId) {
+    NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics =
+        routerMetrics.getDataNodeBasedMetrics(replicaId.getDataNodeId());
+    Histogram latencyMs =
+        trackBlobInfoLatency ? nodeLevelMetrics.getBlobInfoRequestLatencyMs : nodeLevelMetrics.getRequestLatencyMs;
+    if (latencyMs.getCount() < MIN_DATA_POINTS_REQUIRED) {
+      return -1;
+    }
+    return time.milliseconds() + (long) latencyMs.getSnapshot().getValue(latencyQuantile);
+  }
+
+  private class OpTrackerIterator implements Iterator<ReplicaId> {
+    @Override
+    public boolean hasNext() {
+      return replicaIterator.hasNext() && (inflightCount < parallelism || getReplicaToHedge() != null);
+    }
+
+    @Override
+    public void remove() {
+      ReplicaId hedgedReplica = inflightCount < parallelism ? null : getReplicaToHedge();
+      replicaIterator.remove();
+      inflightCount++;
+      if (hedgedReplica != null) {
+        replicaToHedgeTimeMs.remove(hedgedReplica);
+        hedgeToHedgedReplica.put(lastReturnedReplica, hedgedReplica);
+        routerMetrics.getHedgedRequestCount.inc();
+      }
+      inflightReplicas.add(lastReturnedReplica);
+      long hedgeTimeMs = getHedgeTimeMs(lastReturnedReplica);
+      if (hedgeTimeMs != -1) {
+        replicaToHedgeTimeMs.put(lastReturnedReplica, hedgeTimeMs);
+      }
+    }
+
+    @Override
+    public ReplicaId next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      lastReturnedReplica = replicaIterator.next();
+      return lastReturnedReplica;
+    }
+  }
+}
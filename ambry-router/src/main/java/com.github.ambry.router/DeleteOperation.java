@@ -243,6 +243,7 @@ class DeleteOperation {
         updateOperationState(replica, RouterErrorCode.UnexpectedInternalError);
         break;
       case Disk_Unavailable:
+      case Disk_Busy:
         updateOperationState(replica, RouterErrorCode.AmbryUnavailable);
         break;
       default:
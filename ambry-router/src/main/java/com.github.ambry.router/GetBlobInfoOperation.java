@@ -44,7 +44,7 @@ import org.slf4j.LoggerFactory;
  */
 class GetBlobInfoOperation extends GetOperation {
   private final OperationCompleteCallback operationCompleteCallback;
-  private final SimpleOperationTracker operationTracker;
+  private final OperationTracker operationTracker;
   // map of correlation id to the request metadata for every request issued for this operation.
   private final Map<Integer, GetRequestInfo> correlationIdToGetRequestInfo = new TreeMap<Integer, GetRequestInfo>();
 
@@ -69,9 +69,7 @@ class GetBlobInfoOperation extends GetOperation {
       OperationCompleteCallback operationCompleteCallback, Time time) throws RouterException {
     super(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdStr, options, futureResult, callback, time);
     this.operationCompleteCallback = operationCompleteCallback;
-    operationTracker = new SimpleOperationTracker(routerConfig.routerDatacenterName, blobId.getPartition(),
-        routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
-        routerConfig.routerGetRequestParallelism);
+    operationTracker = getOperationTracker(blobId.getPartition(), getOperationFlag());
   }
 
   @Override
@@ -302,6 +300,10 @@ class GetBlobInfoOperation extends GetOperation {
         logger.trace("Requested blob was not found on this server");
         setOperationException(new RouterException("Server returned: " + errorCode, RouterErrorCode.BlobDoesNotExist));
         break;
+      case Disk_Busy:
+        logger.trace("The disk of the requested blob has too many queued requests on this server");
+        setOperationException(new RouterException("Server returned: " + errorCode, RouterErrorCode.AmbryUnavailable));
+        break;
       default:
         setOperationException(
             new RouterException("Server returned: " + errorCode, RouterErrorCode.UnexpectedInternalError));
@@ -37,6 +37,8 @@ import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.io.IOException;
 import java.io.InputStream;
@@ -47,8 +49,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -96,6 +100,23 @@ class GetBlobOperation extends GetOperation {
   private ListIterator<StoreKey> chunkIdIterator;
   // chunk index to retrieved chunk buffer mapping.
   private Map<Integer, ByteBuffer> chunkIndexToBuffer;
+  // chunk index to the stream that holds the pooled buffer of a retrieved chunk, for chunks that are not yet written
+  // out. The pooled buffer is released when the stream is closed. Concurrent, as the read may be completed from the
+  // thread that calls readInto().
+  private final Map<Integer, ByteBufferInputStream> chunkIndexToPooledStream = new ConcurrentHashMap<>();
+  // the pool to allocate the buffers of data chunks from, null if buffers are allocated from the heap.
+  private final ByteBufferPool bufferPool;
+  // the router wide budget that the data chunks fetched by this operation are accounted against.
+  private final GetPrefetchBudget getPrefetchBudget;
+  // the bytes of the data chunks that are being fetched or have been retrieved but not yet written out, accounted at
+  // the chunk size of the blob.
+  private final AtomicLong prefetchedBytes = new AtomicLong(0);
+  // the maximum bytes of data chunks to fetch ahead of the writes to the channel, if the prefetch window is enabled.
+  private long prefetchWindowBytes;
+  // the index of the chunk that was next to be written out when the prefetch window was last adjusted.
+  private int prefetchWindowAdjustedAtChunkIndex = -1;
+  // the index of the next data chunk to account for, so that chunks are fetched in the order they are written out.
+  private int indexOfNextChunkToPrefetch = 0;
   // To find the GetChunk to hand over the response quickly.
   private final Map<Integer, GetChunk> correlationIdToGetChunk = new HashMap<>();
   // the blob info that is populated on OperationType.BlobInfo or OperationType.All
@@ -120,6 +141,9 @@ class GetBlobOperation extends GetOperation {
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
    * @param blobIdFactory the factory to use to deserialize keys in a metadata chunk.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the buffers of data chunks from. Can be {@code null}, in
+   *                   which case the buffers are allocated from the heap.
+   * @param getPrefetchBudget the {@link GetPrefetchBudget} of the router to account the data chunks against.
    * @param time the Time instance to use.
    * @throws RouterException if there is an error with any of the parameters, such as an invalid blob id.
    */
@@ -127,11 +151,14 @@ class GetBlobOperation extends GetOperation {
       ResponseHandler responseHandler, String blobIdStr, GetBlobOptions options,
       FutureResult<GetBlobResult> futureResult, Callback<GetBlobResult> callback,
       OperationCompleteCallback operationCompleteCallback, ReadyForPollCallback readyForPollCallback,
-      BlobIdFactory blobIdFactory, Time time) throws RouterException {
+      BlobIdFactory blobIdFactory, ByteBufferPool bufferPool, GetPrefetchBudget getPrefetchBudget, Time time)
+      throws RouterException {
     super(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdStr, options, futureResult, callback, time);
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
     this.blobIdFactory = blobIdFactory;
+    this.bufferPool = bufferPool;
+    this.getPrefetchBudget = getPrefetchBudget;
     firstChunk = new FirstGetChunk();
   }
 
@@ -153,6 +180,94 @@ class GetBlobOperation extends GetOperation {
       }
     }
     operationCompleted = true;
+    releaseUnwrittenChunkBuffers();
+    releasePrefetchedBytes(Long.MAX_VALUE);
+  }
+
+  /**
+   * Release the pooled buffers of the chunks that were retrieved but will not be written out, as the operation is
+   * complete.
+   */
+  private void releaseUnwrittenChunkBuffers() {
+    for (Map.Entry<Integer, ByteBufferInputStream> entry : chunkIndexToPooledStream.entrySet()) {
+      if (chunkIndexToBuffer != null) {
+        chunkIndexToBuffer.remove(entry.getKey());
+      }
+      entry.getValue().close();
+    }
+    chunkIndexToPooledStream.clear();
+  }
+
+  /**
+   * Release bytes of data chunks that were accounted against the {@link GetPrefetchBudget}. Never releases more than
+   * is held by this operation, so that writes completing after the operation are safe to account for.
+   * @param bytes the bytes to release.
+   */
+  private void releasePrefetchedBytes(long bytes) {
+    long current;
+    long released;
+    do {
+      current = prefetchedBytes.get();
+      released = Math.min(bytes, current);
+    } while (!prefetchedBytes.compareAndSet(current, current - released));
+    getPrefetchBudget.release(released);
+  }
+
+  /**
+   * @return {@code true} if another data chunk can be fetched ahead of the writes to the channel. With the prefetch
+   * window enabled, at least one chunk can always be held so that the operation makes progress.
+   */
+  private boolean canPrefetchChunk() {
+    if (routerConfig.routerGetPrefetchWindowMaxBytes == 0) {
+      return numChunksRetrieved - blobDataChannel.getNumChunksWrittenOut() < NonBlockingRouter.MAX_IN_MEM_CHUNKS;
+    }
+    long bytes = prefetchedBytes.get();
+    return bytes == 0 || bytes + chunkSize <= prefetchWindowBytes;
+  }
+
+  /**
+   * Account for the bytes of as many ready data chunks as can be fetched ahead of the writes to the channel, in the
+   * order of their index. Fetching chunks out of order could fill the window with chunks that cannot be written out
+   * before the chunk that is next to be written out is fetched.
+   */
+  private void reservePrefetchedBytes() {
+    boolean reserved = true;
+    while (reserved && canPrefetchChunk()) {
+      reserved = false;
+      for (GetChunk dataChunk : dataChunks) {
+        if (dataChunk.isReady() && dataChunk.chunkIndex == indexOfNextChunkToPrefetch) {
+          prefetchedBytes.addAndGet(chunkSize);
+          getPrefetchBudget.reserve(chunkSize);
+          dataChunk.prefetchedBytesReserved = true;
+          indexOfNextChunkToPrefetch++;
+          reserved = true;
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adjust the prefetch window at most once per chunk written out. The window is halved while the router exceeds its
+   * {@link GetPrefetchBudget}, and doubled when the caller has written out every chunk it was handed and waits for
+   * the next one while the window is full, which means the caller consumes chunks faster than they are fetched.
+   */
+  private void maybeAdjustPrefetchWindow() {
+    int nextChunkToWriteOut = blobDataChannel.getIndexOfNextChunkToWriteOut();
+    if (nextChunkToWriteOut == prefetchWindowAdjustedAtChunkIndex) {
+      return;
+    }
+    if (getPrefetchBudget.isExceeded()) {
+      if (prefetchWindowBytes > chunkSize) {
+        prefetchWindowBytes = Math.max(chunkSize, prefetchWindowBytes / 2);
+        routerMetrics.getBlobPrefetchWindowShrinkCount.inc();
+        prefetchWindowAdjustedAtChunkIndex = nextChunkToWriteOut;
+      }
+    } else if (blobDataChannel.isWaitingForChunk() && prefetchedBytes.get() + chunkSize > prefetchWindowBytes) {
+      long maxWindowBytes = routerConfig.routerGetPrefetchWindowMaxBytes;
+      prefetchWindowBytes = prefetchWindowBytes > maxWindowBytes / 2 ? maxWindowBytes : prefetchWindowBytes * 2;
+      prefetchWindowAdjustedAtChunkIndex = nextChunkToWriteOut;
+    }
   }
 
   /**
@@ -233,13 +348,17 @@ class GetBlobOperation extends GetOperation {
         }
         // If this is a composite blob, poll for requests for subsequent chunks.
         if (dataChunks != null) {
+          if (routerConfig.routerGetPrefetchWindowMaxBytes > 0) {
+            maybeAdjustPrefetchWindow();
+          }
           for (GetChunk dataChunk : dataChunks) {
             if (dataChunk.isFree() && chunkIdIterator.hasNext()) {
               dataChunk.initialize(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
             }
-            if (dataChunk.isInProgress() || (dataChunk.isReady()
-                && numChunksRetrieved - blobDataChannel.getNumChunksWrittenOut()
-                < NonBlockingRouter.MAX_IN_MEM_CHUNKS)) {
+          }
+          reservePrefetchedBytes();
+          for (GetChunk dataChunk : dataChunks) {
+            if (dataChunk.isInProgress() || (dataChunk.isReady() && dataChunk.prefetchedBytesReserved)) {
               dataChunk.poll(requestRegistrationCallback);
               if (dataChunk.isComplete()) {
                 onChunkOperationComplete(dataChunk);
@@ -291,10 +410,32 @@ class GetBlobOperation extends GetOperation {
           setOperationException(exception);
         }
         numChunksWrittenOut++;
+        releasePrefetchedBytes(chunkSize);
         readyForPollCallback.onPollReady();
       }
     };
 
+    /**
+     * The callback that is passed into the asyncWritableChannel write() operation for chunks held in pooled buffers.
+     * Releases the buffer of the chunk once it is written out.
+     */
+    private class PooledChunkAsyncWriteCallback implements Callback<Long> {
+      private final ByteBufferInputStream chunkStream;
+
+      /**
+       * @param chunkStream the stream that holds the pooled buffer of the chunk being written out.
+       */
+      PooledChunkAsyncWriteCallback(ByteBufferInputStream chunkStream) {
+        this.chunkStream = chunkStream;
+      }
+
+      @Override
+      public void onCompletion(Long result, Exception exception) {
+        chunkStream.close();
+        chunkAsyncWriteCallback.onCompletion(result, exception);
+      }
+    }
+
     /**
      * The bytes that will be read from this channel is not known until the read is complete.
      * @return -1
@@ -353,6 +494,23 @@ class GetBlobOperation extends GetOperation {
       return numChunksWrittenOut;
     }
 
+    /**
+     * @return the index of the next chunk that is to be written out to the {@link AsyncWritableChannel}.
+     */
+    int getIndexOfNextChunkToWriteOut() {
+      return indexOfNextChunkToWriteOut;
+    }
+
+    /**
+     * @return {@code true} if the caller has called readInto(), every chunk handed to the {@link AsyncWritableChannel}
+     * has been written out and the next chunk has not been retrieved yet.
+     */
+    boolean isWaitingForChunk() {
+      return readCalled && numChunksWrittenOut == indexOfNextChunkToWriteOut
+          && indexOfNextChunkToWriteOut < numChunksTotal && !chunkIndexToBuffer.containsKey(
+          indexOfNextChunkToWriteOut);
+    }
+
     /**
      * Attempt to write the data associated with the blob to the channel passed in by the caller (if the caller has
      * done so).
@@ -362,7 +520,9 @@ class GetBlobOperation extends GetOperation {
       if (firstChunk.isComplete() && readCalled) {
         while (operationException.get() == null && chunkIndexToBuffer.containsKey(indexOfNextChunkToWriteOut)) {
           ByteBuffer chunkBuf = chunkIndexToBuffer.remove(indexOfNextChunkToWriteOut);
-          asyncWritableChannel.write(chunkBuf, chunkAsyncWriteCallback);
+          ByteBufferInputStream chunkStream = chunkIndexToPooledStream.remove(indexOfNextChunkToWriteOut);
+          asyncWritableChannel.write(chunkBuf,
+              chunkStream == null ? chunkAsyncWriteCallback : new PooledChunkAsyncWriteCallback(chunkStream));
           indexOfNextChunkToWriteOut++;
         }
         if (operationException.get() != null || numChunksWrittenOut == numChunksTotal) {
@@ -388,8 +548,13 @@ class GetBlobOperation extends GetOperation {
         }
         long totalTime = time.milliseconds() - submissionTimeMs;
         routerMetrics.getBlobOperationTotalTimeMs.update(totalTime);
+        if (dataChunks != null && routerConfig.routerGetPrefetchWindowMaxBytes > 0) {
+          routerMetrics.getBlobPrefetchWindowBytes.update(prefetchWindowBytes);
+        }
       }
       operationCompleted = true;
+      releaseUnwrittenChunkBuffers();
+      releasePrefetchedBytes(Long.MAX_VALUE);
     }
 
     /**
@@ -436,6 +601,8 @@ class GetBlobOperation extends GetOperation {
     protected final Map<Integer, GetRequestInfo> correlationIdToGetRequestInfo = new TreeMap<>();
     // the state of the chunk.
     protected volatile ChunkState state;
+    // whether the bytes of the current chunk have been accounted against the prefetch window and budget.
+    protected boolean prefetchedBytesReserved;
 
     /**
      * Construct a GetChunk
@@ -485,6 +652,7 @@ class GetBlobOperation extends GetOperation {
       chunkException = null;
       successfullyDeserialized = false;
       correlationIdToGetRequestInfo.clear();
+      prefetchedBytesReserved = false;
       state = ChunkState.Free;
     }
 
@@ -496,9 +664,7 @@ class GetBlobOperation extends GetOperation {
     void initialize(int index, BlobId id) {
       chunkIndex = index;
       chunkBlobId = id;
-      chunkOperationTracker = new SimpleOperationTracker(routerConfig.routerDatacenterName, chunkBlobId.getPartition(),
-          routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
-          routerConfig.routerGetRequestParallelism);
+      chunkOperationTracker = getOperationTracker(chunkBlobId.getPartition(), getOperationFlag());
       state = ChunkState.Ready;
     }
 
@@ -602,8 +768,11 @@ class GetBlobOperation extends GetOperation {
      */
     void handleBody(InputStream payload) throws IOException, MessageFormatException {
       if (!successfullyDeserialized) {
-        BlobData blobData = MessageFormatRecord.deserializeBlob(payload);
+        BlobData blobData = MessageFormatRecord.deserializeBlob(payload, bufferPool);
         chunkIndexToBuffer.put(chunkIndex, filterChunkToRange(blobData));
+        if (bufferPool != null) {
+          chunkIndexToPooledStream.put(chunkIndex, blobData.getStream());
+        }
         numChunksRetrieved++;
         successfullyDeserialized = true;
       } else {
@@ -732,7 +901,15 @@ class GetBlobOperation extends GetOperation {
      */
     void processServerError(ServerErrorCode errorCode) {
       logger.trace("Server returned an error: ", errorCode);
-      setChunkException(new RouterException("Server returned: " + errorCode, RouterErrorCode.UnexpectedInternalError));
+      switch (errorCode) {
+        case Disk_Busy:
+          setChunkException(new RouterException("Server returned: " + errorCode, RouterErrorCode.AmbryUnavailable));
+          break;
+        default:
+          setChunkException(
+              new RouterException("Server returned: " + errorCode, RouterErrorCode.UnexpectedInternalError));
+          break;
+      }
     }
 
     /**
@@ -893,6 +1070,9 @@ class GetBlobOperation extends GetOperation {
         case Blob_Not_Found:
           setChunkException(new RouterException("Server returned: " + errorCode, RouterErrorCode.BlobDoesNotExist));
           break;
+        case Disk_Busy:
+          setChunkException(new RouterException("Server returned: " + errorCode, RouterErrorCode.AmbryUnavailable));
+          break;
         default:
           setChunkException(
               new RouterException("Server returned: " + errorCode, RouterErrorCode.UnexpectedInternalError));
@@ -929,7 +1109,14 @@ class GetBlobOperation extends GetOperation {
       if (!rangeResolutionFailure) {
         chunkIdIterator = keys.listIterator();
         numChunksTotal = keys.size();
-        dataChunks = new GetChunk[Math.min(keys.size(), NonBlockingRouter.MAX_IN_MEM_CHUNKS)];
+        int maxChunksInFlight = NonBlockingRouter.MAX_IN_MEM_CHUNKS;
+        if (routerConfig.routerGetPrefetchWindowMaxBytes > 0) {
+          // the window starts at one chunk and can grow up to the maximum window size.
+          prefetchWindowBytes = chunkSize;
+          maxChunksInFlight = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+              routerConfig.routerGetPrefetchWindowMaxBytes / chunkSize));
+        }
+        dataChunks = new GetChunk[Math.min(keys.size(), maxChunksInFlight)];
         for (int i = 0; i < dataChunks.length; i++) {
           dataChunks[i] = new GetChunk(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
         }
@@ -26,6 +26,7 @@ import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.io.DataInputStream;
 import java.util.Collections;
@@ -61,6 +62,8 @@ class GetManager {
   private final NonBlockingRouterMetrics routerMetrics;
   private final OperationCompleteCallback operationCompleteCallback;
   private final ReadyForPollCallback readyForPollCallback;
+  private final ByteBufferPool bufferPool;
+  private final GetPrefetchBudget getPrefetchBudget;
 
   private class GetRequestRegistrationCallbackImpl implements RequestRegistrationCallback<GetOperation> {
     private List<RequestInfo> requestListToFill;
@@ -86,11 +89,15 @@ class GetManager {
    * @param operationCompleteCallback The {@link OperationCompleteCallback} to use to complete operations.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the buffers of data chunks from. Can be {@code null}, in
+   *                   which case the buffers are allocated from the heap.
+   * @param getPrefetchBudget the {@link GetPrefetchBudget} that get blob operations account their data chunks against.
    * @param time The {@link Time} instance to use.
    */
   GetManager(ClusterMap clusterMap, ResponseHandler responseHandler, RouterConfig routerConfig,
       NonBlockingRouterMetrics routerMetrics, OperationCompleteCallback operationCompleteCallback,
-      ReadyForPollCallback readyForPollCallback, Time time) {
+      ReadyForPollCallback readyForPollCallback, ByteBufferPool bufferPool, GetPrefetchBudget getPrefetchBudget,
+      Time time) {
     this.clusterMap = clusterMap;
     blobIdFactory = new BlobIdFactory(clusterMap);
     this.responseHandler = responseHandler;
@@ -98,6 +105,8 @@ class GetManager {
     this.routerMetrics = routerMetrics;
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
+    this.bufferPool = bufferPool;
+    this.getPrefetchBudget = getPrefetchBudget;
     this.time = time;
     getOperations = Collections.newSetFromMap(new ConcurrentHashMap<GetOperation, Boolean>());
   }
@@ -119,7 +128,8 @@ class GetManager {
                 futureResult, callback, operationCompleteCallback, time);
       } else {
         getOperation = new GetBlobOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, options,
-            futureResult, callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+            futureResult, callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, bufferPool,
+            getPrefetchBudget, time);
       }
       getOperations.add(getOperation);
     } catch (RouterException e) {
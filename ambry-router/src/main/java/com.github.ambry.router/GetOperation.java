@@ -14,6 +14,7 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.ReplicaId;
 import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ResponseHandler;
@@ -176,6 +177,25 @@ abstract class GetOperation {
     }
   }
 
+  /**
+   * Create the {@link OperationTracker} for the requests of this operation to the replicas of a partition, based on
+   * the configured {@link RouterConfig#routerGetOperationTrackerType}.
+   * @param partitionId the {@link PartitionId} whose replicas the requests are sent to.
+   * @param flag the {@link MessageFormatFlags} of the requests.
+   * @return the created {@link OperationTracker}.
+   */
+  protected OperationTracker getOperationTracker(PartitionId partitionId, MessageFormatFlags flag) {
+    if (routerConfig.routerGetOperationTrackerType == RouterConfig.OperationTrackerType.AdaptiveOperationTracker) {
+      return new AdaptiveOperationTracker(routerConfig.routerDatacenterName, partitionId,
+          routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
+          routerConfig.routerGetRequestParallelism, routerMetrics, flag == MessageFormatFlags.BlobInfo,
+          routerConfig.routerLatencyToleranceQuantile, time);
+    }
+    return new SimpleOperationTracker(routerConfig.routerDatacenterName, partitionId,
+        routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
+        routerConfig.routerGetRequestParallelism);
+  }
+
   /**
    * Create and return the {@link GetRequest} associated with the given blobId.
    * @return the created {@link GetRequest}.
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Tracks the memory that the get operations of a router hold for the data chunks they fetch ahead of the writes to
+ * their callers, against a router wide budget. Get operations shrink their prefetch windows while the budget is
+ * exceeded.
+ */
+class GetPrefetchBudget {
+  private final long capacityInBytes;
+  private final AtomicLong prefetchedBytes = new AtomicLong(0);
+
+  /**
+   * @param capacityInBytes the bytes that the get operations can hold in total before the budget is exceeded.
+   */
+  GetPrefetchBudget(long capacityInBytes) {
+    this.capacityInBytes = capacityInBytes;
+  }
+
+  /**
+   * Accounts for the bytes of a data chunk that an operation starts to fetch.
+   * @param bytes the bytes to account for.
+   */
+  void reserve(long bytes) {
+    prefetchedBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Releases bytes that were accounted for through {@link #reserve(long)}.
+   * @param bytes the bytes to release.
+   */
+  void release(long bytes) {
+    prefetchedBytes.addAndGet(-bytes);
+  }
+
+  /**
+   * @return the bytes that the get operations currently hold.
+   */
+  long getPrefetchedBytes() {
+    return prefetchedBytes.get();
+  }
+
+  /**
+   * @return {@code true} if the get operations hold more bytes than the capacity of the budget.
+   */
+  boolean isExceeded() {
+    return prefetchedBytes.get() > capacityInBytes;
+  }
+}
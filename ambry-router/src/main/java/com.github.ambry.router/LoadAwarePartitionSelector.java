@@ -0,0 +1,227 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.Time;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A {@link PartitionSelector} that steers puts away from loaded disks. The load of a disk is estimated from the put
+ * requests of the router to the replicas on it, as the moving average of their latency multiplied by the number of
+ * requests outstanding. The average decays with the time since the last latency was recorded, so that a disk that
+ * stopped receiving puts after a few slow ones (e.g. a timeout) is tried again. The load of a partition is the load
+ * of the most loaded disk among its replicas in the local datacenter.
+ * <p/>
+ * Partitions are selected with the power of two choices: two writable partitions are picked at random and the less
+ * loaded of the two is selected. This costs two lookups per replica instead of a scan of all the partitions, and does
+ * not herd all the puts onto the single least loaded partition. Partitions that a put recently failed on are only
+ * selected if there is no other writable partition.
+ */
+class LoadAwarePartitionSelector implements PartitionSelector {
+  // the weight of a new latency in the moving average of the put latencies of a disk
+  static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+  // the time after which the moving average of the put latencies of a disk is halved if no new latency is recorded
+  static final long LATENCY_HALF_LIFE_MS = 10 * 1000;
+  // the number of random draws to find two candidate partitions that no put recently failed on
+  private static final int MAX_DRAWS = 4;
+
+  private final ClusterMap clusterMap;
+  private final String datacenterName;
+  private final long failedPartitionAvoidanceMs;
+  private final Time time;
+  // the loads of the disks, by data node and mount path
+  private final ConcurrentMap<DataNodeId, ConcurrentMap<String, DiskLoad>> diskLoads = new ConcurrentHashMap<>();
+  // the time of the last failed put of the partitions that a put failed on
+  private final ConcurrentMap<PartitionId, Long> partitionToPutFailureTimeMs = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a LoadAwarePartitionSelector.
+   * @param clusterMap the {@link ClusterMap} to get the writable partitions from.
+   * @param datacenterName the datacenter of the router, whose replicas the puts are sent to.
+   * @param failedPartitionAvoidanceMs the time for which a partition is avoided after a put to it failed.
+   * @param time the {@link Time} instance to use.
+   */
+  LoadAwarePartitionSelector(ClusterMap clusterMap, String datacenterName, long failedPartitionAvoidanceMs,
+      Time time) {
+    this.clusterMap = clusterMap;
+    this.datacenterName = datacenterName;
+    this.failedPartitionAvoidanceMs = failedPartitionAvoidanceMs;
+    this.time = time;
+  }
+
+  @Override
+  public PartitionId selectPartition(List<PartitionId> partitionIdsToExclude) throws RouterException {
+    // getWritablePartitions creates and returns a new list, so it is safe to manipulate it.
+    List<PartitionId> partitions = clusterMap.getWritablePartitionIds();
+    partitions.removeAll(partitionIdsToExclude);
+    if (partitions.isEmpty()) {
+      throw new RouterException("No writable partitions available.", RouterErrorCode.AmbryUnavailable);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long currentTimeMs = time.milliseconds();
+    PartitionId selected = null;
+    double selectedLoad = 0;
+    int candidateCount = 0;
+    for (int i = 0; i < MAX_DRAWS && candidateCount < 2; i++) {
+      PartitionId candidate = partitions.get(random.nextInt(partitions.size()));
+      if (candidate.equals(selected) || isAvoided(candidate, currentTimeMs)) {
+        continue;
+      }
+      candidateCount++;
+      double load = getLoad(candidate);
+      if (selected == null || load < selectedLoad) {
+        selected = candidate;
+        selectedLoad = load;
+      }
+    }
+    if (selected == null) {
+      // the draws only hit avoided partitions. Fall back to the first partition that is not avoided, if any.
+      int start = random.nextInt(partitions.size());
+      for (int i = 0; i < partitions.size() && selected == null; i++) {
+        PartitionId candidate = partitions.get((start + i) % partitions.size());
+        if (!isAvoided(candidate, currentTimeMs)) {
+          selected = candidate;
+        }
+      }
+      if (selected == null) {
+        selected = partitions.get(start);
+      }
+    }
+    return selected;
+  }
+
+  @Override
+  public void onRequestSent(ReplicaId replicaId) {
+    getDiskLoad(replicaId).outstandingRequests.incrementAndGet();
+  }
+
+  @Override
+  public void onResponseReceived(ReplicaId replicaId) {
+    getDiskLoad(replicaId).outstandingRequests.decrementAndGet();
+  }
+
+  @Override
+  public void onRequestLatency(ReplicaId replicaId, long latencyMs) {
+    getDiskLoad(replicaId).updateLatency(latencyMs, time.milliseconds());
+  }
+
+  @Override
+  public void onPutFailed(PartitionId partitionId) {
+    partitionToPutFailureTimeMs.put(partitionId, time.milliseconds());
+  }
+
+  /**
+   * @param partitionId the {@link PartitionId} to check.
+   * @param currentTimeMs the current time.
+   * @return {@code true} if a put to the partition failed within the avoidance time.
+   */
+  private boolean isAvoided(PartitionId partitionId, long currentTimeMs) {
+    Long putFailureTimeMs = partitionToPutFailureTimeMs.get(partitionId);
+    if (putFailureTimeMs == null) {
+      return false;
+    }
+    if (currentTimeMs - putFailureTimeMs >= failedPartitionAvoidanceMs) {
+      partitionToPutFailureTimeMs.remove(partitionId, putFailureTimeMs);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param partitionId the {@link PartitionId} whose load is required.
+   * @return the load of the most loaded disk among the replicas of the partition in the local datacenter.
+   */
+  double getLoad(PartitionId partitionId) {
+    long currentTimeMs = time.milliseconds();
+    double load = 0;
+    for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+      if (replicaId.getDataNodeId().getDatacenterName().equals(datacenterName)) {
+        load = Math.max(load, getDiskLoad(replicaId).getLoad(currentTimeMs));
+      }
+    }
+    return load;
+  }
+
+  /**
+   * @param replicaId the {@link ReplicaId} whose disk is required.
+   * @return the {@link DiskLoad} of the disk of the replica.
+   */
+  private DiskLoad getDiskLoad(ReplicaId replicaId) {
+    ConcurrentMap<String, DiskLoad> nodeDiskLoads = diskLoads.get(replicaId.getDataNodeId());
+    if (nodeDiskLoads == null) {
+      diskLoads.putIfAbsent(replicaId.getDataNodeId(), new ConcurrentHashMap<String, DiskLoad>());
+      nodeDiskLoads = diskLoads.get(replicaId.getDataNodeId());
+    }
+    DiskLoad diskLoad = nodeDiskLoads.get(replicaId.getMountPath());
+    if (diskLoad == null) {
+      nodeDiskLoads.putIfAbsent(replicaId.getMountPath(), new DiskLoad());
+      diskLoad = nodeDiskLoads.get(replicaId.getMountPath());
+    }
+    return diskLoad;
+  }
+
+  /**
+   * The load of the put requests of the router on a disk.
+   */
+  private static class DiskLoad {
+    final AtomicInteger outstandingRequests = new AtomicInteger(0);
+    private double averageLatencyMs = 0;
+    private long lastLatencyTimeMs = 0;
+
+    /**
+     * Adds a latency to the moving average after decaying the average for the time since the last latency.
+     * @param latencyMs the latency of a put request on the disk.
+     * @param currentTimeMs the current time.
+     */
+    synchronized void updateLatency(long latencyMs, long currentTimeMs) {
+      double decayedAverageLatencyMs = getAverageLatencyMs(currentTimeMs);
+      averageLatencyMs = decayedAverageLatencyMs + LATENCY_SMOOTHING_FACTOR * (latencyMs - decayedAverageLatencyMs);
+      lastLatencyTimeMs = currentTimeMs;
+    }
+
+    /**
+     * @param currentTimeMs the current time.
+     * @return the estimated time until a new request on the disk completes. Disks without a recent latency are
+     * assumed to respond immediately, so that they are tried.
+     */
+    double getLoad(long currentTimeMs) {
+      double decayedAverageLatencyMs;
+      synchronized (this) {
+        decayedAverageLatencyMs = getAverageLatencyMs(currentTimeMs);
+      }
+      return (decayedAverageLatencyMs + 1) * (Math.max(outstandingRequests.get(), 0) + 1);
+    }
+
+    /**
+     * @param currentTimeMs the current time.
+     * @return the moving average of the latencies, halved for every {@link #LATENCY_HALF_LIFE_MS} since the last one.
+     */
+    private double getAverageLatencyMs(long currentTimeMs) {
+      long elapsedMs = currentTimeMs - lastLatencyTimeMs;
+      if (elapsedMs <= 0 || averageLatencyMs == 0) {
+        return averageLatencyMs;
+      }
+      return averageLatencyMs * Math.pow(0.5, (double) elapsedMs / LATENCY_HALF_LIFE_MS);
+    }
+  }
+}
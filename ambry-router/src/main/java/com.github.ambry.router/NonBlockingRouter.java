@@ -25,6 +25,8 @@ import com.github.ambry.network.ResponseInfo;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.protocol.RequestOrResponseType;
+import com.github.ambry.utils.ByteBufferPool;
+import com.github.ambry.utils.SizeClassedByteBufferPool;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
@@ -53,6 +55,11 @@ class NonBlockingRouter implements Router {
   private final ClusterMap clusterMap;
   private final NonBlockingRouterMetrics routerMetrics;
   private final ResponseHandler responseHandler;
+  // the pool that the chunks of put and get operations are allocated from, null if pooling is disabled.
+  private final ByteBufferPool bufferPool;
+  private final PartitionSelector partitionSelector;
+  // the budget for the data chunks that get operations fetch ahead of the writes to their callers.
+  private final GetPrefetchBudget getPrefetchBudget;
   private final Time time;
 
   private static final Logger logger = LoggerFactory.getLogger(NonBlockingRouter.class);
@@ -62,6 +69,11 @@ class NonBlockingRouter implements Router {
 
   static final int MAX_IN_MEM_CHUNKS = 4;
   static final int SHUTDOWN_WAIT_MS = 10 * Time.MsPerSec;
+  // the maximum poll timeout of the network client when get requests are hedged, so that slow requests are hedged soon
+  // after they pass their latency threshold even when no responses arrive
+  static final int HEDGED_REQUESTS_POLL_TIMEOUT_MS = 10;
+  // the size of the smallest size class of the buffer pool. Smaller chunks share its buffers.
+  static final int MIN_POOLED_BUFFER_SIZE = 4 * 1024;
   static final AtomicInteger correlationIdGenerator = new AtomicInteger(0);
 
   /**
@@ -84,7 +96,25 @@ class NonBlockingRouter implements Router {
     this.notificationSystem = notificationSystem;
     this.clusterMap = clusterMap;
     responseHandler = new ResponseHandler(clusterMap);
+    if (routerConfig.routerBufferPoolCapacityBytes > 0) {
+      SizeClassedByteBufferPool sizeClassedByteBufferPool =
+          new SizeClassedByteBufferPool(routerConfig.routerBufferPoolCapacityBytes,
+              Math.min(MIN_POOLED_BUFFER_SIZE, routerConfig.routerMaxPutChunkSizeBytes),
+              routerConfig.routerMaxPutChunkSizeBytes, routerConfig.routerBufferPoolUseDirectBuffers);
+      routerMetrics.initializeBufferPoolMetrics(sizeClassedByteBufferPool);
+      bufferPool = sizeClassedByteBufferPool;
+    } else {
+      bufferPool = null;
+    }
     this.time = time;
+    if (routerConfig.routerPutPartitionSelectorType == RouterConfig.PartitionSelectorType.LoadAwarePartitionSelector) {
+      partitionSelector = new LoadAwarePartitionSelector(clusterMap, routerConfig.routerDatacenterName,
+          routerConfig.routerPutFailedPartitionAvoidanceMs, time);
+    } else {
+      partitionSelector = new RandomPartitionSelector(clusterMap);
+    }
+    getPrefetchBudget = new GetPrefetchBudget(routerConfig.routerGetPrefetchTotalMaxBytes);
+    routerMetrics.initializeGetPrefetchMetrics(getPrefetchBudget);
     ocList = new ArrayList<OperationController>(routerConfig.routerScalingUnitCount);
     for (int i = 0; i < routerConfig.routerScalingUnitCount; i++) {
       ocList.add(new OperationController(i));
@@ -320,9 +350,9 @@ class NonBlockingRouter implements Router {
       networkClient = networkClientFactory.getNetworkClient();
       readyForPollCallback = new ReadyForPollCallback(networkClient);
       putManager = new PutManager(clusterMap, responseHandler, notificationSystem, routerConfig, routerMetrics,
-          operationCompleteCallback, readyForPollCallback, idsToDeleteList, index, time);
+          operationCompleteCallback, readyForPollCallback, idsToDeleteList, bufferPool, partitionSelector, index, time);
       getManager = new GetManager(clusterMap, responseHandler, routerConfig, routerMetrics, operationCompleteCallback,
-          readyForPollCallback, time);
+          readyForPollCallback, bufferPool, getPrefetchBudget, time);
       deleteManager = new DeleteManager(clusterMap, responseHandler, notificationSystem, routerConfig, routerMetrics,
           operationCompleteCallback, time);
       requestResponseHandlerThread = Utils.newThread("RequestResponseHandlerThread-" + index, this, true);
@@ -464,7 +494,11 @@ class NonBlockingRouter implements Router {
       // as the poll timeout should not cause the request to not time out for a lot longer than the configured request
       // timeout. In the worst case, the request will time out in (request_timeout_ms + poll_timeout_ms), so the poll
       // timeout should be at least an order of magnitude smaller.
-      final int NETWORK_CLIENT_POLL_TIMEOUT = routerConfig.routerRequestTimeoutMs / 10;
+      // When get requests are hedged, the timeout also bounds how late a request is hedged.
+      final int NETWORK_CLIENT_POLL_TIMEOUT =
+          routerConfig.routerGetOperationTrackerType == RouterConfig.OperationTrackerType.AdaptiveOperationTracker
+              ? Math.min(routerConfig.routerRequestTimeoutMs / 10, HEDGED_REQUESTS_POLL_TIMEOUT_MS)
+              : routerConfig.routerRequestTimeoutMs / 10;
       try {
         while (isOpen.get()) {
           List<RequestInfo> requestInfoList = pollForRequests();
@@ -20,6 +20,7 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.utils.SizeClassedByteBufferPool;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -97,6 +98,12 @@ public class NonBlockingRouterMetrics {
   public final Histogram waitTimeForFreeChunkAvailabilityMs;
   // time spent by a chunk waiting for data to become available in the channel.
   public final Histogram waitTimeForChannelDataAvailabilityMs;
+  // percentage of the time that a chunk filler thread spent filling chunks.
+  public final Histogram chunkFillerUtilizationPercent;
+  // bytes copied from the channels of put operations into the buffers of chunks.
+  public final Counter chunkFillerBytesCopied;
+  // bytes of the channels of put operations used by chunks without copying them.
+  public final Counter chunkFillerBytesAdopted;
 
   // Misc metrics.
   public final Meter operationErrorRate;
@@ -105,15 +112,25 @@ public class NonBlockingRouterMetrics {
   public final Counter ignoredResponseCount;
   public final Counter crossColoRequestCount;
   public final Counter crossColoSuccessCount;
+  public final Counter bufferPoolExhaustedCount;
+  public final Counter getHedgedRequestCount;
+  public final Counter getHedgedRequestWinCount;
+  public final Counter getBlobPrefetchWindowShrinkCount;
   public Gauge<Long> chunkFillerThreadRunning;
   public Gauge<Long> requestResponseHandlerThreadRunning;
   public Gauge<Integer> activeOperations;
+  public Gauge<Long> bufferPoolOutstandingBytes;
+  public Gauge<Long> bufferPoolIdleBytes;
+  public Gauge<Long> bufferPoolHitCount;
+  public Gauge<Long> bufferPoolMissCount;
+  public Gauge<Long> getBlobPrefetchedBytes;
 
   // metrics for tracking blob sizes and chunking.
   public final Histogram putBlobSizeBytes;
   public final Histogram putBlobChunkCount;
   public final Histogram getBlobSizeBytes;
   public final Histogram getBlobChunkCount;
+  public final Histogram getBlobPrefetchWindowBytes;
   public final Histogram getBlobWithRangeSizeBytes;
   public final Histogram getBlobWithRangeTotalBlobSizeBytes;
   public final Counter simpleBlobPutCount;
@@ -230,6 +247,10 @@ public class NonBlockingRouterMetrics {
         metricRegistry.histogram(MetricRegistry.name(PutManager.class, "WaitTimeForFreeChunkAvailabilityMs"));
     waitTimeForChannelDataAvailabilityMs =
         metricRegistry.histogram(MetricRegistry.name(PutManager.class, "WaitTimeForChannelDataAvailabilityMs"));
+    chunkFillerUtilizationPercent =
+        metricRegistry.histogram(MetricRegistry.name(PutManager.class, "ChunkFillerUtilizationPercent"));
+    chunkFillerBytesCopied = metricRegistry.counter(MetricRegistry.name(PutManager.class, "ChunkFillerBytesCopied"));
+    chunkFillerBytesAdopted = metricRegistry.counter(MetricRegistry.name(PutManager.class, "ChunkFillerBytesAdopted"));
 
     // Misc metrics.
     operationErrorRate = metricRegistry.meter(MetricRegistry.name(NonBlockingRouter.class, "OperationErrorRate"));
@@ -240,12 +261,21 @@ public class NonBlockingRouterMetrics {
         metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "CrossColoRequestCount"));
     crossColoSuccessCount =
         metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "CrossColoSuccessCount"));
+    bufferPoolExhaustedCount =
+        metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "BufferPoolExhaustedCount"));
+    getHedgedRequestCount = metricRegistry.counter(MetricRegistry.name(GetManager.class, "GetHedgedRequestCount"));
+    getHedgedRequestWinCount =
+        metricRegistry.counter(MetricRegistry.name(GetManager.class, "GetHedgedRequestWinCount"));
+    getBlobPrefetchWindowShrinkCount =
+        metricRegistry.counter(MetricRegistry.name(GetBlobOperation.class, "GetBlobPrefetchWindowShrinkCount"));
 
     // metrics to track blob sizes and chunking.
     putBlobSizeBytes = metricRegistry.histogram(MetricRegistry.name(PutManager.class, "PutBlobSizeBytes"));
     putBlobChunkCount = metricRegistry.histogram(MetricRegistry.name(PutManager.class, "PutBlobChunkCount"));
     getBlobSizeBytes = metricRegistry.histogram(MetricRegistry.name(GetManager.class, "GetBlobSizeBytes"));
     getBlobChunkCount = metricRegistry.histogram(MetricRegistry.name(GetManager.class, "GetBlobChunkCount"));
+    getBlobPrefetchWindowBytes =
+        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobPrefetchWindowBytes"));
     getBlobWithRangeSizeBytes =
         metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobWithRangeSizeBytes"));
     getBlobWithRangeTotalBlobSizeBytes =
@@ -314,6 +344,57 @@ public class NonBlockingRouterMetrics {
     metricRegistry.register(MetricRegistry.name(NonBlockingRouter.class, "NumActiveOperations"), activeOperations);
   }
 
+  /**
+   * Initializes {@link Gauge} metrics for the buffer pool that the chunks of put and get operations are allocated
+   * from.
+   * @param bufferPool the {@link SizeClassedByteBufferPool} of the router.
+   */
+  public void initializeBufferPoolMetrics(final SizeClassedByteBufferPool bufferPool) {
+    bufferPoolOutstandingBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return bufferPool.outstandingBytes.get();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(NonBlockingRouter.class, "BufferPoolOutstandingBytes"),
+        bufferPoolOutstandingBytes);
+    bufferPoolIdleBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return bufferPool.getIdleBytes();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(NonBlockingRouter.class, "BufferPoolIdleBytes"), bufferPoolIdleBytes);
+    bufferPoolHitCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return bufferPool.hitCount.get();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(NonBlockingRouter.class, "BufferPoolHitCount"), bufferPoolHitCount);
+    bufferPoolMissCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return bufferPool.missCount.get();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(NonBlockingRouter.class, "BufferPoolMissCount"), bufferPoolMissCount);
+  }
+
+  /**
+   * Initializes a {@link Gauge} metric for the bytes of the data chunks that the get operations of the router hold.
+   * @param getPrefetchBudget the {@link GetPrefetchBudget} of the router.
+   */
+  void initializeGetPrefetchMetrics(final GetPrefetchBudget getPrefetchBudget) {
+    getBlobPrefetchedBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return getPrefetchBudget.getPrefetchedBytes();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(GetManager.class, "GetBlobPrefetchedBytes"), getBlobPrefetchedBytes);
+  }
+
   /**
    * Increment error metrics based on error type.
    * @param exception The exception associated with this error.
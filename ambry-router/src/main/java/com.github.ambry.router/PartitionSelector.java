@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import java.util.List;
+
+
+/**
+ * Selects the partition that a chunk of a put operation is put in. A {@code PartitionSelector} is shared by all the
+ * put operations of a router, and is informed of the put requests that are sent out and their outcomes so that it can
+ * take the load of the replicas into account. Implementations have to be thread safe.
+ */
+interface PartitionSelector {
+  /**
+   * Selects a writable partition to put a chunk in.
+   * @param partitionIdsToExclude the {@link PartitionId}s that must not be selected.
+   * @return the selected {@link PartitionId}.
+   * @throws RouterException if there is no writable partition that can be selected.
+   */
+  PartitionId selectPartition(List<PartitionId> partitionIdsToExclude) throws RouterException;
+
+  /**
+   * Called when a put request is sent to a replica.
+   * @param replicaId the {@link ReplicaId} the request is sent to.
+   */
+  void onRequestSent(ReplicaId replicaId);
+
+  /**
+   * Called when a response, or a network error, is received for a put request that was sent to a replica.
+   * @param replicaId the {@link ReplicaId} the request was sent to.
+   */
+  void onResponseReceived(ReplicaId replicaId);
+
+  /**
+   * Called with the latency of a put request to a replica. A request that timed out is reported with the request
+   * timeout as its latency.
+   * @param replicaId the {@link ReplicaId} the request was sent to.
+   * @param latencyMs the latency of the request.
+   */
+  void onRequestLatency(ReplicaId replicaId, long latencyMs);
+
+  /**
+   * Called when the put of a chunk to a partition failed and the chunk has to be put in another partition.
+   * @param partitionId the {@link PartitionId} the put failed for.
+   */
+  void onPutFailed(PartitionId partitionId);
+}
@@ -27,16 +27,21 @@ import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.PutResponse;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,14 +52,14 @@ import org.slf4j.LoggerFactory;
  */
 class PutManager {
   private static final Logger logger = LoggerFactory.getLogger(PutManager.class);
+  // the period over which the utilization of a chunk filler thread is reported.
+  private static final long CHUNK_FILLER_UTILIZATION_PERIOD_NS = TimeUnit.SECONDS.toNanos(1);
 
   private final Set<PutOperation> putOperations;
   private final NotificationSystem notificationSystem;
   private final Time time;
-  private final Thread chunkFillerThread;
-  private final Object chunkFillerSynchronizer = new Object();
-  private volatile boolean isChunkFillerThreadAsleep = false;
-  private volatile boolean chunkFillerThreadMaySleep = false;
+  private final ChunkFiller[] chunkFillers;
+  private final AtomicInteger chunkFillerIndex = new AtomicInteger(0);
   // This helps the PutManager quickly find the appropriate PutOperation to hand over the response to.
   // Requests are added before they are sent out and get cleaned up as and when responses come in.
   // Because there is a guaranteed response from the NetworkClient for every request sent out, entries
@@ -64,7 +69,12 @@ class PutManager {
   private final OperationCompleteCallback operationCompleteCallback;
   private final ReadyForPollCallback readyForPollCallback;
   private final List<String> idsToDeleteList;
-  private final ByteBufferAsyncWritableChannel.ChannelEventListener chunkArrivalListener;
+  private final ByteBufferPool bufferPool;
+  private final PartitionSelector partitionSelector;
+  // pooled and adopted buffers of completed operations that may still be read by requests that are not completely sent
+  // out.
+  // Only accessed by the RequestResponseHandler thread.
+  private final List<PutOperation.DefunctBufferInfo> buffersAwaitingRelease = new ArrayList<>();
 
   // shared by all PutOperations
   private final ClusterMap clusterMap;
@@ -79,6 +89,7 @@ class PutManager {
     public void registerRequestToSend(PutOperation putOperation, RequestInfo requestInfo) {
       requestListToFill.add(requestInfo);
       correlationIdToPutOperation.put(((RequestOrResponse) requestInfo.getRequest()).getCorrelationId(), putOperation);
+      partitionSelector.onRequestSent(((RouterRequestInfo) requestInfo).getReplicaId());
     }
   }
 
@@ -99,13 +110,17 @@ class PutManager {
    *                             operations.
    * @param idsToDeleteList The list to fill with ids of successfully put data chunks of an unsuccessful
    *                        overall put operation.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the buffers of data chunks from. Can be {@code null}, in
+   *                   which case the buffers are allocated from the heap.
+   * @param partitionSelector the {@link PartitionSelector} to select the partitions of the chunks with.
    * @param index the index of the {@link NonBlockingRouter.OperationController} in the {@link NonBlockingRouter}
    * @param time The {@link Time} instance to use.
    */
   PutManager(ClusterMap clusterMap, ResponseHandler responseHandler, NotificationSystem notificationSystem,
       RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics,
       OperationCompleteCallback operationCompleteCallback, ReadyForPollCallback readyForPollCallback,
-      List<String> idsToDeleteList, int index, Time time) {
+      List<String> idsToDeleteList, ByteBufferPool bufferPool, PartitionSelector partitionSelector, int index,
+      Time time) {
     this.clusterMap = clusterMap;
     this.responseHandler = responseHandler;
     this.notificationSystem = notificationSystem;
@@ -114,25 +129,18 @@ class PutManager {
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
     this.idsToDeleteList = idsToDeleteList;
-    this.chunkArrivalListener = new ByteBufferAsyncWritableChannel.ChannelEventListener() {
-      @Override
-      public void onEvent(ByteBufferAsyncWritableChannel.EventType e) {
-        synchronized (chunkFillerSynchronizer) {
-          // At this point, the chunk for which this notification came in (if any) could already have been consumed by
-          // the chunk filler, and this might unnecessarily wake it up from its sleep, which should be okay.
-          chunkFillerThreadMaySleep = false;
-          if (isChunkFillerThreadAsleep) {
-            chunkFillerSynchronizer.notify();
-          }
-        }
-      }
-    };
+    this.bufferPool = bufferPool;
+    this.partitionSelector = partitionSelector;
     this.time = time;
     putOperations = Collections.newSetFromMap(new ConcurrentHashMap<PutOperation, Boolean>());
     correlationIdToPutOperation = new HashMap<Integer, PutOperation>();
-    chunkFillerThread = Utils.newThread("ChunkFillerThread-" + index, new ChunkFiller(), true);
-    chunkFillerThread.start();
-    routerMetrics.initializePutManagerMetrics(chunkFillerThread);
+    chunkFillers = new ChunkFiller[routerConfig.routerPutChunkFillerThreadCount];
+    for (int i = 0; i < chunkFillers.length; i++) {
+      // the first thread keeps the name of the single chunk filler thread, so that its metrics keep their name.
+      chunkFillers[i] = new ChunkFiller("ChunkFillerThread-" + index + (i == 0 ? "" : "-" + i));
+      chunkFillers[i].thread.start();
+      routerMetrics.initializePutManagerMetrics(chunkFillers[i].thread);
+    }
   }
 
   /**
@@ -146,10 +154,14 @@ class PutManager {
   void submitPutBlobOperation(BlobProperties blobProperties, byte[] userMetaData, ReadableStreamChannel channel,
       FutureResult<String> futureResult, Callback<String> callback) {
     try {
+      ChunkFiller chunkFiller =
+          chunkFillers[(chunkFillerIndex.getAndIncrement() & Integer.MAX_VALUE) % chunkFillers.length];
       PutOperation putOperation =
           new PutOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobProperties, userMetaData,
-              channel, futureResult, callback, readyForPollCallback, chunkArrivalListener, time);
+              channel, futureResult, callback, readyForPollCallback, chunkFiller.chunkArrivalListener, bufferPool,
+              partitionSelector, time);
       putOperations.add(putOperation);
+      chunkFiller.operationsToFill.add(putOperation);
       putOperation.startReadingFromChannel();
     } catch (RouterException e) {
       routerMetrics.operationDequeuingRate.mark();
@@ -182,6 +194,7 @@ class PutManager {
         onComplete(op);
       }
     }
+    maybeReleaseBuffers();
     routerMetrics.putManagerPollTimeMs.update(time.milliseconds() - startTime);
   }
 
@@ -193,6 +206,8 @@ class PutManager {
     long startTime = time.milliseconds();
     PutResponse putResponse = extractPutResponseAndNotifyResponseHandler(responseInfo);
     RouterRequestInfo routerRequestInfo = (RouterRequestInfo) responseInfo.getRequestInfo();
+    // the NetworkClient returns a response for every request sent out, so every request sent is accounted for here
+    partitionSelector.onResponseReceived(routerRequestInfo.getReplicaId());
     int correlationId = ((PutRequest) routerRequestInfo.getRequest()).getCorrelationId();
     // Get the PutOperation that generated the request.
     PutOperation putOperation = correlationIdToPutOperation.remove(correlationId);
@@ -262,6 +277,31 @@ class PutManager {
     routerMetrics.operationDequeuingRate.mark();
     routerMetrics.putBlobOperationLatencyMs.update(time.milliseconds() - op.getSubmissionTimeMs());
     operationCompleteCallback.completeOperation(op.getFuture(), op.getCallback(), blobId, e);
+    if (bufferPool != null || routerConfig.routerPutChunkFillAdoptChannelBuffers) {
+      op.releaseChunkBuffers(buffersAwaitingRelease);
+    }
+  }
+
+  /**
+   * Release the pooled and adopted buffers of completed operations that are no longer read by any request. The
+   * NetworkClient no longer reads from the buffer of a request once the request is completely sent out or a response
+   * was received for it, which is when its entry is removed from correlationIdToPutOperation.
+   */
+  private void maybeReleaseBuffers() {
+    for (Iterator<PutOperation.DefunctBufferInfo> iter = buffersAwaitingRelease.iterator(); iter.hasNext(); ) {
+      PutOperation.DefunctBufferInfo defunctBufferInfo = iter.next();
+      boolean canBeReleased = true;
+      for (PutRequest putRequest : defunctBufferInfo.putRequests) {
+        if (!putRequest.isSendComplete() && correlationIdToPutOperation.containsKey(putRequest.getCorrelationId())) {
+          canBeReleased = false;
+          break;
+        }
+      }
+      if (canBeReleased) {
+        defunctBufferInfo.release(bufferPool);
+        iter.remove();
+      }
+    }
   }
 
   /**
@@ -287,18 +327,18 @@ class PutManager {
 
   /**
    * Close the PutManager.
-   * First notify the chunkFillerThread about closing and wait for it to exit. Then, complete all existing operations.
+   * First notify the chunk filler threads about closing and wait for them to exit. Then, complete all existing
+   * operations.
    */
   void close() {
     if (isOpen.compareAndSet(true, false)) {
-      synchronized (chunkFillerSynchronizer) {
-        if (isChunkFillerThreadAsleep) {
-          chunkFillerThreadMaySleep = false;
-          chunkFillerSynchronizer.notify();
-        }
+      for (ChunkFiller chunkFiller : chunkFillers) {
+        chunkFiller.wakeUp();
       }
       try {
-        chunkFillerThread.join(NonBlockingRouter.SHUTDOWN_WAIT_MS);
+        for (ChunkFiller chunkFiller : chunkFillers) {
+          chunkFiller.thread.join(NonBlockingRouter.SHUTDOWN_WAIT_MS);
+        }
       } catch (InterruptedException e) {
         logger.error("Caught interrupted exception while waiting for chunkFillerThread to finish");
         Thread.currentThread().interrupt();
@@ -329,30 +369,86 @@ class PutManager {
   }
 
   /**
-   * the ChunkFiller thread continuously iterates over all the putOperations submitted, reads from the {@link
-   * AsyncWritableChannel} associated with the operation, and fills in chunks. The channel will be populated
-   * by the {@link ReadableStreamChannel} associated with the operation.
+   * A ChunkFiller thread continuously iterates over the putOperations assigned to it, reads from the {@link
+   * AsyncWritableChannel} associated with each operation, and fills in chunks. The channel will be populated
+   * by the {@link ReadableStreamChannel} associated with the operation. When none of its operations can make progress,
+   * the thread waits until data arrives in a channel, a chunk is freed up or an operation completes. Operations are
+   * assigned to the chunk fillers of the PutManager in a round robin manner, so that the chunks of an operation are
+   * always filled by the same thread.
    */
   private class ChunkFiller implements Runnable {
+    // the operations assigned to this chunk filler. Operations are removed once their chunk filling is complete.
+    private final Set<PutOperation> operationsToFill =
+        Collections.newSetFromMap(new ConcurrentHashMap<PutOperation, Boolean>());
+    private final Object synchronizer = new Object();
+    private volatile boolean isAsleep = false;
+    private volatile boolean maySleep = false;
+    private final ByteBufferAsyncWritableChannel.ChannelEventListener chunkArrivalListener =
+        new ByteBufferAsyncWritableChannel.ChannelEventListener() {
+          @Override
+          public void onEvent(ByteBufferAsyncWritableChannel.EventType e) {
+            // At this point, the chunk for which this notification came in (if any) could already have been consumed
+            // by the chunk filler, and this might unnecessarily wake it up from its sleep, which should be okay.
+            wakeUp();
+          }
+        };
+    private final Thread thread;
+
+    /**
+     * Create a ChunkFiller along with its thread. The thread has to be started by the caller.
+     * @param threadName the name of the thread of this chunk filler.
+     */
+    ChunkFiller(String threadName) {
+      thread = Utils.newThread(threadName, this, true);
+    }
+
+    /**
+     * Wake up the thread of this chunk filler if it is asleep, and prevent it from going to sleep without another
+     * pass over its operations.
+     */
+    void wakeUp() {
+      synchronized (synchronizer) {
+        maySleep = false;
+        if (isAsleep) {
+          synchronizer.notify();
+        }
+      }
+    }
+
     public void run() {
       try {
+        long utilizationPeriodStartNs = time.nanoseconds();
+        long busyTimeNs = 0;
         while (isOpen.get()) {
-          chunkFillerThreadMaySleep = true;
-          for (PutOperation op : putOperations) {
-            if (!op.isChunkFillComplete()) {
-              op.fillChunks();
-              chunkFillerThreadMaySleep = false;
+          maySleep = true;
+          for (PutOperation op : operationsToFill) {
+            if (op.isChunkFillComplete()) {
+              operationsToFill.remove(op);
+            } else {
+              // only the passes that move data are counted as busy. An operation that can make no progress is waiting
+              // for data to arrive in its channel or for a chunk to be freed, both of which wake this thread up.
+              long fillStartNs = time.nanoseconds();
+              if (op.fillChunks()) {
+                busyTimeNs += time.nanoseconds() - fillStartNs;
+                maySleep = false;
+              }
             }
           }
-          if (chunkFillerThreadMaySleep) {
-            synchronized (chunkFillerSynchronizer) {
-              while (chunkFillerThreadMaySleep) {
-                isChunkFillerThreadAsleep = true;
-                chunkFillerSynchronizer.wait();
+          if (maySleep) {
+            synchronized (synchronizer) {
+              while (maySleep) {
+                isAsleep = true;
+                synchronizer.wait();
               }
-              isChunkFillerThreadAsleep = false;
+              isAsleep = false;
             }
           }
+          long utilizationPeriodNs = time.nanoseconds() - utilizationPeriodStartNs;
+          if (utilizationPeriodNs >= CHUNK_FILLER_UTILIZATION_PERIOD_NS) {
+            routerMetrics.chunkFillerUtilizationPercent.update(busyTimeNs * 100 / utilizationPeriodNs);
+            utilizationPeriodStartNs += utilizationPeriodNs;
+            busyTimeNs = 0;
+          }
         }
       } catch (Throwable e) {
         logger.error("Aborting, chunkFillerThread received an unexpected error:", e);
@@ -31,8 +31,10 @@ import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.PutResponse;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -40,7 +42,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,9 +78,12 @@ class PutOperation {
   private final byte[] userMetadata;
   private final ReadableStreamChannel channel;
   private final ByteBufferAsyncWritableChannel chunkFillerChannel;
+  private final ByteBufferAsyncWritableChannel.ChannelEventListener chunkFillerEventListener;
   private final FutureResult<String> futureResult;
   private final Callback<String> callback;
   private final ReadyForPollCallback readyForPollCallback;
+  private final ByteBufferPool bufferPool;
+  private final PartitionSelector partitionSelector;
   private final Time time;
 
   // Parameters associated with the state.
@@ -99,6 +104,10 @@ class PutOperation {
   private int chunkCounter;
   // the current ByteBuffer/position in the chunkFillerChannel.
   private ByteBuffer channelReadBuffer;
+  // the hold of the chunk filler on channelReadBuffer.
+  private ChannelBufferHold channelReadBufferHold;
+  // the holds on the buffers read from the chunkFillerChannel that are not yet resolved, in the order of reading.
+  private final ArrayDeque<ChannelBufferHold> channelBufferHolds = new ArrayDeque<>();
   // denotes whether chunk filling is complete.
   private boolean chunkFillingCompleted = false;
   // the metadata chunk for this operation. If this operation results in only one chunk,
@@ -143,6 +152,12 @@ class PutOperation {
    * @param callback the callback that is to be called when the operation completes.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within this
    *                             operation.
+   * @param writableChannelEventListener the listener to notify of data arriving for the chunk filler. It is also
+   *                                     notified when a chunk is freed up or the operation completes, so that a
+   *                                     waiting chunk filler resumes. Can be {@code null}.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the buffers of data chunks from. Can be {@code null}, in
+   *                   which case the buffers are allocated from the heap.
+   * @param partitionSelector the {@link PartitionSelector} to select the partitions of the chunks with.
    * @param time the Time instance to use.
    * @throws RouterException if there is an error in constructing the PutOperation with the given parameters.
    */
@@ -150,8 +165,8 @@ class PutOperation {
       ResponseHandler responseHandler, BlobProperties blobProperties, byte[] userMetadata,
       ReadableStreamChannel channel, FutureResult<String> futureResult, Callback<String> callback,
       ReadyForPollCallback readyForPollCallback,
-      ByteBufferAsyncWritableChannel.ChannelEventListener writableChannelEventListener, Time time)
-      throws RouterException {
+      ByteBufferAsyncWritableChannel.ChannelEventListener writableChannelEventListener, ByteBufferPool bufferPool,
+      PartitionSelector partitionSelector, Time time) throws RouterException {
     submissionTimeMs = time.milliseconds();
     blobSize = blobProperties.getBlobSize();
     if (channel.getSize() != blobSize) {
@@ -176,6 +191,8 @@ class PutOperation {
     this.futureResult = futureResult;
     this.callback = callback;
     this.readyForPollCallback = readyForPollCallback;
+    this.bufferPool = bufferPool;
+    this.partitionSelector = partitionSelector;
     this.time = time;
     bytesFilledSoFar = 0;
     chunkCounter = -1;
@@ -186,6 +203,7 @@ class PutOperation {
       putChunks[i] = new PutChunk();
     }
     metadataPutChunk = numDataChunks > 1 ? new MetadataPutChunk() : null;
+    chunkFillerEventListener = writableChannelEventListener;
     chunkFillerChannel = new ByteBufferAsyncWritableChannel(writableChannelEventListener);
   }
 
@@ -294,6 +312,11 @@ class PutOperation {
     }
     routerMetrics.putChunkOperationLatencyMs.update(time.milliseconds() - chunk.chunkReadyAtMs);
     chunk.clear();
+    if (chunkFillerEventListener != null) {
+      // the chunk filler may be waiting for a free chunk to fill the data it has already read from the channel, or
+      // may have to stop filling this operation if it is complete.
+      chunkFillerEventListener.onEvent(ByteBufferAsyncWritableChannel.EventType.Write);
+    }
   }
 
   /**
@@ -308,9 +331,11 @@ class PutOperation {
    * This method runs in the context of the ChunkFiller thread. As long as there are chunks available to
    * be written to, it gets the chunk that is to be filled and keeps filling it with the data from the
    * chunkFillerChannel, if there is any.
-   * @throws InterruptedException if the call to get a chunk from the chunkFillerChannel is interrupted.
+   * @return {@code true} if any data was moved into chunks or chunk filling is complete; {@code false} if no progress
+   *         could be made because the channel has no data or no chunk is free to be filled.
    */
-  void fillChunks() {
+  synchronized boolean fillChunks() {
+    long bytesFilledAtStart = bytesFilledSoFar;
     try {
       PutChunk chunkToFill;
       if (!chunkFillingCompleted && !operationCompleted) {
@@ -318,6 +343,9 @@ class PutOperation {
           // Attempt to fill a chunk
           if (channelReadBuffer == null) {
             channelReadBuffer = chunkFillerChannel.getNextChunk(0);
+            if (channelReadBuffer != null) {
+              channelReadBufferHold = new ChannelBufferHold();
+            }
           }
           if (channelReadBuffer != null) {
             maybeStopTrackingWaitForChannelDataTime();
@@ -329,14 +357,15 @@ class PutOperation {
             } else {
               // channel has data, and there is a chunk that can be filled.
               maybeStopTrackingWaitForChunkTime();
-              bytesFilledSoFar += chunkToFill.fillFrom(channelReadBuffer);
+              bytesFilledSoFar += chunkToFill.fillFrom(channelReadBuffer, channelReadBufferHold);
               if (chunkToFill.isReady()) {
                 readyForPollCallback.onPollReady();
                 updateChunkFillerWaitTimeMetrics();
               }
               if (!channelReadBuffer.hasRemaining()) {
-                chunkFillerChannel.resolveOldestChunk(null);
+                channelReadBufferHold.release();
                 channelReadBuffer = null;
+                channelReadBufferHold = null;
               }
             }
           } else {
@@ -358,6 +387,7 @@ class PutOperation {
       setOperationExceptionAndComplete(new RouterException("PutOperation fillChunks encountered unexpected error", e,
           RouterErrorCode.UnexpectedInternalError));
     }
+    return bytesFilledSoFar != bytesFilledAtStart || isChunkFillComplete();
   }
 
   /**
@@ -540,6 +570,23 @@ class PutOperation {
   void setOperationExceptionAndComplete(Exception exception) {
     operationException.set(exception);
     operationCompleted = true;
+    if (chunkFillerEventListener != null) {
+      // let the chunk filler stop filling this operation.
+      chunkFillerEventListener.onEvent(ByteBufferAsyncWritableChannel.EventType.Write);
+    }
+  }
+
+  /**
+   * Release the pooled and adopted buffers of all the chunks of this operation. This must be called only once, after
+   * the operation is complete. It is synchronized with {@link #fillChunks()} so that no chunk is being filled while its
+   * buffer is released. Buffers that may still be read by requests that are not completely sent out are not released,
+   * but are added to {@code buffersAwaitingRelease} for the caller to release once those requests are done.
+   * @param buffersAwaitingRelease the list to add the buffers that cannot be released yet to.
+   */
+  synchronized void releaseChunkBuffers(List<DefunctBufferInfo> buffersAwaitingRelease) {
+    for (PutChunk chunk : putChunks) {
+      chunk.releaseBuffers(buffersAwaitingRelease);
+    }
   }
 
   /**
@@ -575,6 +622,15 @@ class PutOperation {
     // map of correlation id to the request metadata for every request issued for the current chunk.
     private final Map<Integer, ChunkPutRequestInfo> correlationIdToChunkPutRequestInfo =
         new TreeMap<Integer, ChunkPutRequestInfo>();
+    // whether buf was allocated from the buffer pool.
+    private boolean bufFromPool;
+    // the hold on the buffer read from the chunkFillerChannel that buf is a part of, if buf was adopted from the
+    // channel instead of being filled by copying. null otherwise.
+    private ChannelBufferHold adoptedBufHold;
+    // the size of the current chunk.
+    private int chunkSize;
+    // the requests that were created to send the data in buf, which may still be reading from it.
+    private final List<PutRequest> requestsReadingBuf = new ArrayList<>();
     // list of buffers that were once associated with this chunk and are not yet freed.
     private final List<DefunctBufferInfo> defunctBufferInfos = new ArrayList<>();
     private final Logger logger = LoggerFactory.getLogger(PutChunk.class);
@@ -605,29 +661,30 @@ class PutOperation {
     }
 
     /**
-     * Go through the list of requests for which responses were not received, and if there are any that are not yet
-     * sent out completely, add the associated buffer to the defunct list for freeing in the future.
+     * Go through the list of requests that were created for the current buffer, and if there are any that are not yet
+     * sent out completely and for which no response was received, add the associated buffer to the defunct list for
+     * freeing in the future.
      */
     private void maybeUpdateDefunctBufferInfos() {
-      ArrayList<PutRequest> requestsAwaitingSendCompletion = null;
-      for (Map.Entry<Integer, ChunkPutRequestInfo> entry : correlationIdToChunkPutRequestInfo.entrySet()) {
-        if (!entry.getValue().putRequest.isSendComplete()) {
-          if (requestsAwaitingSendCompletion == null) {
-            requestsAwaitingSendCompletion = new ArrayList<>();
-          }
-          requestsAwaitingSendCompletion.add(entry.getValue().putRequest);
-        }
-      }
-
-      if (requestsAwaitingSendCompletion != null) {
+      List<PutRequest> requestsAwaitingSendCompletion = getRequestsAwaitingSendCompletion(requestsReadingBuf);
+      requestsReadingBuf.clear();
+      if (!requestsAwaitingSendCompletion.isEmpty()) {
         // This means that the buffer associated with this PutChunk could get read by the NetworkClient in the
         // future and assigning this PutChunk to a subsequent chunk of the overall blob could lead to this buffer
         // getting read and written concurrently, or other undefined behavior. There are multiple ways to handle this,
         // and the simplest way is to set the buf to null so that it gets allocated afresh if/when this PutChunk gets
         // assigned for a subsequent chunk of the overall blob. Every time this chunk gets polled, an attempt to clear
         // out the list will be made.
-        defunctBufferInfos.add(new DefunctBufferInfo(buf, requestsAwaitingSendCompletion));
+        defunctBufferInfos.add(
+            new DefunctBufferInfo(buf, bufFromPool, adoptedBufHold, requestsAwaitingSendCompletion));
         buf = null;
+        bufFromPool = false;
+        adoptedBufHold = null;
+      } else if (adoptedBufHold != null) {
+        // an adopted buffer belongs to the channel, so it cannot be reused for a subsequent chunk.
+        adoptedBufHold.release();
+        buf = null;
+        adoptedBufHold = null;
       }
     }
 
@@ -636,19 +693,50 @@ class PutOperation {
      */
     private void maybeFreeDefunctBuffers() {
       for (Iterator<DefunctBufferInfo> iter = defunctBufferInfos.iterator(); iter.hasNext(); ) {
-        boolean canBeFreed = true;
-        for (PutRequest putRequest : iter.next().putRequests) {
-          if (!putRequest.isSendComplete()) {
-            canBeFreed = false;
-          }
-        }
-        if (canBeFreed) {
-          // this is where the buffer will be freed if the buffer pool is used. For now, simply remove the reference.
+        DefunctBufferInfo defunctBufferInfo = iter.next();
+        if (getRequestsAwaitingSendCompletion(defunctBufferInfo.putRequests).isEmpty()) {
+          defunctBufferInfo.release(bufferPool);
           iter.remove();
         }
       }
     }
 
+    /**
+     * @param putRequests the requests to check.
+     * @return the requests among {@code putRequests} that are not yet sent out completely and for which no response
+     * was received. The NetworkClient may still read from the buffers of these requests.
+     */
+    private List<PutRequest> getRequestsAwaitingSendCompletion(List<PutRequest> putRequests) {
+      List<PutRequest> requestsAwaitingSendCompletion = new ArrayList<>();
+      for (PutRequest putRequest : putRequests) {
+        if (!putRequest.isSendComplete() && correlationIdToPutChunk.containsKey(putRequest.getCorrelationId())) {
+          requestsAwaitingSendCompletion.add(putRequest);
+        }
+      }
+      return requestsAwaitingSendCompletion;
+    }
+
+    /**
+     * Release the pooled and adopted buffers of this chunk as the operation is complete. Buffers that cannot be
+     * released yet are added to {@code buffersAwaitingRelease}.
+     * @param buffersAwaitingRelease the list to add the buffers that cannot be released yet to.
+     */
+    void releaseBuffers(List<DefunctBufferInfo> buffersAwaitingRelease) {
+      maybeUpdateDefunctBufferInfos();
+      maybeFreeDefunctBuffers();
+      for (DefunctBufferInfo defunctBufferInfo : defunctBufferInfos) {
+        if (defunctBufferInfo.isFromPool || defunctBufferInfo.channelBufferHold != null) {
+          buffersAwaitingRelease.add(defunctBufferInfo);
+        }
+      }
+      defunctBufferInfos.clear();
+      if (bufFromPool) {
+        bufferPool.deallocate(buf);
+      }
+      buf = null;
+      bufFromPool = false;
+    }
+
     /**
      * @return the position of the current chunk in the overall blob.
      */
@@ -712,15 +800,37 @@ class PutOperation {
      */
     private void prepareForBuilding(int chunkIndex, int size) {
       this.chunkIndex = chunkIndex;
-      if (buf == null) {
-        buf = ByteBuffer.allocate(size);
-      } else {
+      chunkSize = size;
+      // the buffer is allocated when the chunk is first filled, as the chunk may adopt its data from the channel.
+      if (buf != null) {
         buf.clear();
         buf.limit(size);
       }
       state = ChunkState.Building;
     }
 
+    /**
+     * Allocate the buffer of this chunk from the buffer pool if there is one. The pool is never waited on, so that the
+     * ChunkFiller thread does not block on it: the buffer is allocated from the heap if the pool fails to provide one.
+     * @param size the size of the buffer to allocate.
+     */
+    private void allocateBuf(int size) {
+      buf = null;
+      if (bufferPool != null) {
+        try {
+          buf = bufferPool.allocate(size, 0);
+        } catch (TimeoutException | IllegalArgumentException e) {
+          routerMetrics.bufferPoolExhaustedCount.inc();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      bufFromPool = buf != null;
+      if (buf == null) {
+        buf = ByteBuffer.allocate(size);
+      }
+    }
+
     /**
      * Prepare this chunk (that is completely built), for puts.
      */
@@ -730,7 +840,7 @@ class PutOperation {
         if (partitionId != null) {
           attemptedPartitionIds.add(partitionId);
         }
-        partitionId = getPartitionForPut(attemptedPartitionIds);
+        partitionId = partitionSelector.selectPartition(attemptedPartitionIds);
         chunkBlobId = new BlobId(partitionId);
         operationTracker = new SimpleOperationTracker(routerConfig.routerDatacenterName, partitionId, false,
             routerConfig.routerPutSuccessTarget, routerConfig.routerPutRequestParallelism);
@@ -754,11 +864,22 @@ class PutOperation {
     }
 
     /**
-     * Fill the buffer of the current chunk with the data from the given {@link ByteBuffer}.
+     * Fill the buffer of the current chunk with the data from the given {@link ByteBuffer}. If adopting channel
+     * buffers is enabled and nothing was filled into the chunk yet, a {@code channelReadBuffer} that has the data for
+     * the whole chunk is adopted instead of being copied.
      * @param channelReadBuffer the {@link ByteBuffer} from which to read data.
+     * @param channelReadBufferHold the hold on the {@code channelReadBuffer}, that has to be retained if the
+     *                              {@code channelReadBuffer} is adopted.
      * @return the number of bytes transferred in this operation.
      */
-    int fillFrom(ByteBuffer channelReadBuffer) {
+    int fillFrom(ByteBuffer channelReadBuffer, ChannelBufferHold channelReadBufferHold) {
+      if (routerConfig.routerPutChunkFillAdoptChannelBuffers && (buf == null || buf.position() == 0)
+          && channelReadBuffer.remaining() >= chunkSize) {
+        return adoptFrom(channelReadBuffer, channelReadBufferHold);
+      }
+      if (buf == null) {
+        allocateBuf(chunkSize);
+      }
       int toWrite = Math.min(channelReadBuffer.remaining(), buf.remaining());
       if (channelReadBuffer.remaining() > buf.remaining()) {
         // Manipulate limit of the source buffer in order to read only enough to fill the chunk
@@ -769,6 +890,7 @@ class PutOperation {
       } else {
         buf.put(channelReadBuffer);
       }
+      routerMetrics.chunkFillerBytesCopied.inc(toWrite);
       if (!buf.hasRemaining()) {
         onFillComplete();
         routerMetrics.chunkFillTimeMs.update(chunkReadyAtMs - chunkFreeAtMs);
@@ -776,6 +898,31 @@ class PutOperation {
       return toWrite;
     }
 
+    /**
+     * Use the data for the whole current chunk in the given {@link ByteBuffer} as the buffer of the chunk, without
+     * copying it. The buffer of the channel is not resolved until the chunk releases the hold on it.
+     * @param channelReadBuffer the {@link ByteBuffer} that has the data for the whole chunk.
+     * @param channelReadBufferHold the hold on the {@code channelReadBuffer}.
+     * @return the number of bytes transferred in this operation.
+     */
+    private int adoptFrom(ByteBuffer channelReadBuffer, ChannelBufferHold channelReadBufferHold) {
+      // no request reads from the current buffer of the chunk, as it was moved to the defunct buffers otherwise.
+      if (bufFromPool) {
+        bufferPool.deallocate(buf);
+      }
+      bufFromPool = false;
+      buf = channelReadBuffer.slice();
+      buf.limit(chunkSize);
+      buf.position(chunkSize);
+      channelReadBuffer.position(channelReadBuffer.position() + chunkSize);
+      channelReadBufferHold.retain();
+      adoptedBufHold = channelReadBufferHold;
+      routerMetrics.chunkFillerBytesAdopted.inc(chunkSize);
+      onFillComplete();
+      routerMetrics.chunkFillTimeMs.update(chunkReadyAtMs - chunkFreeAtMs);
+      return chunkSize;
+    }
+
     /**
      * Check if the operation on the chunk is eligible for completion, if so complete it.
      */
@@ -785,6 +932,7 @@ class PutOperation {
       if (operationTracker.isDone()) {
         if (!operationTracker.hasSucceeded()) {
           failedAttempts++;
+          partitionSelector.onPutFailed(partitionId);
           if (failedAttempts <= routerConfig.routerMaxSlippedPutAttempts) {
             logger.trace("Attempt to put chunk with id: " + chunkBlobId + " failed, attempting slipped put");
             routerMetrics.slippedPutAttemptCount.inc();
@@ -833,6 +981,7 @@ class PutOperation {
       while (inFlightRequestsIterator.hasNext()) {
         Map.Entry<Integer, ChunkPutRequestInfo> entry = inFlightRequestsIterator.next();
         if (time.milliseconds() - entry.getValue().startTimeMs > routerConfig.routerRequestTimeoutMs) {
+          partitionSelector.onRequestLatency(entry.getValue().replicaId, routerConfig.routerRequestTimeoutMs);
           onErrorResponse(entry.getValue().replicaId);
           // Do not notify this as a failure to the response handler, as this timeout could simply be due to
           // connection unavailability. If there is indeed a network error, the NetworkClient will provide an error
@@ -861,6 +1010,7 @@ class PutOperation {
         correlationIdToChunkPutRequestInfo.put(correlationId,
             new ChunkPutRequestInfo(replicaId, putRequest, time.milliseconds()));
         correlationIdToPutChunk.put(correlationId, this);
+        requestsReadingBuf.add(putRequest);
         requestRegistrationCallback.registerRequestToSend(PutOperation.this, request);
         replicaIterator.remove();
         if (RouterUtils.isRemoteReplica(routerConfig, replicaId)) {
@@ -882,22 +1032,6 @@ class PutOperation {
           BlobType.DataBlob);
     }
 
-    /**
-     * Choose a random {@link PartitionId} for putting the current chunk and return it.
-     * @param partitionIdsToExclude the list of {@link PartitionId}s that should be excluded from consideration.
-     * @return the chosen {@link PartitionId}
-     * @throws RouterException
-     */
-    protected PartitionId getPartitionForPut(List<PartitionId> partitionIdsToExclude) throws RouterException {
-      // getWritablePartitions creates and returns a new list, so it is safe to manipulate it.
-      List<PartitionId> partitions = clusterMap.getWritablePartitionIds();
-      partitions.removeAll(partitionIdsToExclude);
-      if (partitions.isEmpty()) {
-        throw new RouterException("No writable partitions available.", RouterErrorCode.AmbryUnavailable);
-      }
-      return partitions.get(ThreadLocalRandom.current().nextInt(partitions.size()));
-    }
-
     /**
      * This method is the entry point for handling responses received for requests sent out on behalf of this chunk.
      * For puts, processing involves determining whether the request was successful, notifying the operation
@@ -922,6 +1056,7 @@ class PutOperation {
       routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
       routerMetrics.getDataNodeBasedMetrics(chunkPutRequestInfo.replicaId.getDataNodeId()).putRequestLatencyMs.update(
           requestLatencyMs);
+      partitionSelector.onRequestLatency(chunkPutRequestInfo.replicaId, requestLatencyMs);
       boolean isSuccessful;
       if (responseInfo.getError() != null) {
         setChunkException(new RouterException("Operation timed out", RouterErrorCode.OperationTimedOut));
@@ -1000,9 +1135,19 @@ class PutOperation {
       // BlobId_Already_Exists are outliers (should not really happen) that those should really
       // result in Ambry_Unavailable or UnexpectedInternalError.
       // However, for metrics, we will need to distinguish them here.
+      // Disk_Busy is transient: the replica is counted as failed, so the put goes on with the other replicas and
+      // slips to another partition if too many of them are busy.
       logger.trace("Server returned an error: ", error);
-      setChunkException(new RouterException("Could not complete operation, server returned: " + error,
-          RouterErrorCode.AmbryUnavailable));
+      switch (error) {
+        case Disk_Busy:
+          setChunkException(new RouterException("Could not complete operation, disk busy on server",
+              RouterErrorCode.AmbryUnavailable));
+          break;
+        default:
+          setChunkException(new RouterException("Could not complete operation, server returned: " + error,
+              RouterErrorCode.AmbryUnavailable));
+          break;
+      }
     }
 
     /**
@@ -1024,28 +1169,6 @@ class PutOperation {
         this.startTimeMs = startTimeMs;
       }
     }
-
-    /**
-     * Class that holds the buffer of a chunk that will no longer be used and is kept around only because the
-     * associated requests are not yet completely sent out.
-     */
-    private class DefunctBufferInfo {
-      // the buffer that is now defunct, but not yet freed.
-      final ByteBuffer buf;
-      // Requests that are reading from this buffer.
-      final List<PutRequest> putRequests;
-
-      /**
-       * Construct a DefunctBufferInfo
-       * @param buf the buffer that is now defunct and waiting to be freed.
-       * @param putRequests the requests associated with this buffer whose send completion blocks the freeing of this
-       *                    buffer.
-       */
-      DefunctBufferInfo(ByteBuffer buf, List<PutRequest> putRequests) {
-        this.buf = buf;
-        this.putRequests = putRequests;
-      }
-    }
   }
 
   /**
@@ -1113,6 +1236,94 @@ class PutOperation {
     }
   }
 
+  /**
+   * Class that holds the buffer of a chunk that will no longer be used and is kept around only because the
+   * associated requests are not yet completely sent out.
+   */
+  static class DefunctBufferInfo {
+    // the buffer that is now defunct, but not yet freed.
+    final ByteBuffer buf;
+    // whether the buffer was allocated from the buffer pool.
+    final boolean isFromPool;
+    // the hold on the channel buffer that the buffer was adopted from, if any.
+    final ChannelBufferHold channelBufferHold;
+    // Requests that are reading from this buffer.
+    final List<PutRequest> putRequests;
+
+    /**
+     * Construct a DefunctBufferInfo
+     * @param buf the buffer that is now defunct and waiting to be freed.
+     * @param isFromPool whether the buffer was allocated from the buffer pool.
+     * @param channelBufferHold the hold on the channel buffer that the buffer was adopted from. {@code null} if the
+     *                          buffer was not adopted.
+     * @param putRequests the requests associated with this buffer whose send completion blocks the freeing of this
+     *                    buffer.
+     */
+    DefunctBufferInfo(ByteBuffer buf, boolean isFromPool, ChannelBufferHold channelBufferHold,
+        List<PutRequest> putRequests) {
+      this.buf = buf;
+      this.isFromPool = isFromPool;
+      this.channelBufferHold = channelBufferHold;
+      this.putRequests = putRequests;
+    }
+
+    /**
+     * Free the buffer: return it to the buffer pool if it was allocated from the pool, or release the hold on the
+     * channel buffer it was adopted from.
+     * @param bufferPool the {@link ByteBufferPool} the buffer was allocated from, if it was.
+     */
+    void release(ByteBufferPool bufferPool) {
+      if (isFromPool) {
+        bufferPool.deallocate(buf);
+      } else if (channelBufferHold != null) {
+        channelBufferHold.release();
+      }
+    }
+  }
+
+  /**
+   * The users of a buffer read from the chunkFillerChannel: the chunk filler until it has consumed the buffer, and the
+   * chunks that adopted a part of the buffer until they are done with it. The channel requires its buffers to be
+   * resolved in the order they were read, so a buffer is resolved once neither it nor any buffer read before it has
+   * users. Holding back the resolution holds back the {@link ReadableStreamChannel} of the operation, which is how
+   * chunks that are slow to be sent out apply back pressure on the reader of the operation.
+   */
+  class ChannelBufferHold {
+    // guarded by channelBufferHolds
+    private int userCount = 1;
+
+    /**
+     * Create the hold of the chunk filler on the buffer that was most recently read from the chunkFillerChannel.
+     */
+    ChannelBufferHold() {
+      synchronized (channelBufferHolds) {
+        channelBufferHolds.add(this);
+      }
+    }
+
+    /**
+     * Add a user of the buffer.
+     */
+    void retain() {
+      synchronized (channelBufferHolds) {
+        userCount++;
+      }
+    }
+
+    /**
+     * Remove a user of the buffer and resolve the buffers that no longer have users, in the order they were read.
+     */
+    void release() {
+      synchronized (channelBufferHolds) {
+        userCount--;
+        while (!channelBufferHolds.isEmpty() && channelBufferHolds.peek().userCount == 0) {
+          channelBufferHolds.poll();
+          chunkFillerChannel.resolveOldestChunk(null);
+        }
+      }
+    }
+  }
+
   /**
    * Different states of a PutChunk.
    */
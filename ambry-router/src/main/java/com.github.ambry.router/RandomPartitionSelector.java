@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * A {@link PartitionSelector} that selects one of the writable partitions uniformly at random.
+ */
+class RandomPartitionSelector implements PartitionSelector {
+  private final ClusterMap clusterMap;
+
+  /**
+   * Creates a RandomPartitionSelector.
+   * @param clusterMap the {@link ClusterMap} to get the writable partitions from.
+   */
+  RandomPartitionSelector(ClusterMap clusterMap) {
+    this.clusterMap = clusterMap;
+  }
+
+  @Override
+  public PartitionId selectPartition(List<PartitionId> partitionIdsToExclude) throws RouterException {
+    // getWritablePartitions creates and returns a new list, so it is safe to manipulate it.
+    List<PartitionId> partitions = clusterMap.getWritablePartitionIds();
+    partitions.removeAll(partitionIdsToExclude);
+    if (partitions.isEmpty()) {
+      throw new RouterException("No writable partitions available.", RouterErrorCode.AmbryUnavailable);
+    }
+    return partitions.get(ThreadLocalRandom.current().nextInt(partitions.size()));
+  }
+
+  @Override
+  public void onRequestSent(ReplicaId replicaId) {
+  }
+
+  @Override
+  public void onResponseReceived(ReplicaId replicaId) {
+  }
+
+  @Override
+  public void onRequestLatency(ReplicaId replicaId, long latencyMs) {
+  }
+
+  @Override
+  public void onPutFailed(PartitionId partitionId) {
+  }
+}
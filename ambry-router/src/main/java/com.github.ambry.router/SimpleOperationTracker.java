@@ -57,15 +57,15 @@ import java.util.NoSuchElementException;
  */
 class SimpleOperationTracker implements OperationTracker {
   private final int successTarget;
-  private final int parallelism;
+  protected final int parallelism;
   private final LinkedList<ReplicaId> replicaPool = new LinkedList<ReplicaId>();
   private final OpTrackerIterator otIterator;
 
   private int totalReplicaCount = 0;
-  private int inflightCount = 0;
+  protected int inflightCount = 0;
   private int succeededCount = 0;
   private int failedCount = 0;
-  private Iterator<ReplicaId> replicaIterator;
+  protected Iterator<ReplicaId> replicaIterator;
 
   /**
    * Constructor for an {@code SimpleOperationTracker}.
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.MockTime;
+import java.util.Iterator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Unit test for {@link AdaptiveOperationTracker}.
+ */
+public class AdaptiveOperationTrackerTest {
+  private static final double QUANTILE = 0.9;
+  private static final long LATENCY_MS = 10;
+
+  private final MockClusterMap mockClusterMap;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final PartitionId partitionId;
+  private final String localDcName;
+  private final MockTime time = new MockTime();
+
+  public AdaptiveOperationTrackerTest() throws Exception {
+    mockClusterMap = new MockClusterMap();
+    routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    partitionId = mockClusterMap.getWritablePartitionIds().get(0);
+    localDcName = partitionId.getReplicaIds().get(0).getDataNodeId().getDatacenterName();
+  }
+
+  /**
+   * Tests that requests are not hedged before enough latencies of the data nodes have been recorded.
+   * @throws InterruptedException
+   */
+  @Test
+  public void noHedgeWithoutLatenciesTest() throws InterruptedException {
+    OperationTracker ot = createTracker();
+    sendRequest(ot);
+    time.sleep(LATENCY_MS * 100);
+    assertFalse("Request should not be hedged without latencies", ot.getReplicaIterator().hasNext());
+    assertEquals("No request should have been hedged", 0, routerMetrics.getHedgedRequestCount.getCount());
+  }
+
+  /**
+   * Tests that a request is hedged once it takes longer than the latency quantile of its data node, that every request
+   * is hedged at most once and that a hedged request that succeeds first is counted as a win.
+   * @throws InterruptedException
+   */
+  @Test
+  public void hedgeTest() throws InterruptedException {
+    recordLatencies();
+    OperationTracker ot = createTracker();
+    ReplicaId slowReplica = sendRequest(ot);
+    time.sleep(LATENCY_MS - 1);
+    assertFalse("Request should not be hedged before its latency threshold", ot.getReplicaIterator().hasNext());
+    time.sleep(2);
+    ReplicaId hedgeReplica = sendRequest(ot);
+    assertNotSame("Hedged request should go to another replica", slowReplica, hedgeReplica);
+    assertEquals("Request should have been hedged", 1, routerMetrics.getHedgedRequestCount.getCount());
+    assertFalse("Request should not be hedged twice", ot.getReplicaIterator().hasNext());
+    ot.onResponse(hedgeReplica, true);
+    assertTrue("Operation should have succeeded", ot.hasSucceeded());
+    assertEquals("Hedged request should have won", 1, routerMetrics.getHedgedRequestWinCount.getCount());
+    ot.onResponse(slowReplica, true);
+    assertEquals("Hedged request should have won only once", 1, routerMetrics.getHedgedRequestWinCount.getCount());
+  }
+
+  /**
+   * Tests that a hedged request does not count as a win if the request it hedged responds first, and that a failed
+   * request is followed by a request to another replica like in {@link SimpleOperationTracker}.
+   * @throws InterruptedException
+   */
+  @Test
+  public void hedgeLossAndFailureTest() throws InterruptedException {
+    recordLatencies();
+    OperationTracker ot = createTracker();
+    ReplicaId slowReplica = sendRequest(ot);
+    time.sleep(LATENCY_MS + 1);
+    ReplicaId hedgeReplica = sendRequest(ot);
+    ot.onResponse(slowReplica, false);
+    assertFalse("Operation should not be done", ot.isDone());
+    // both requests are in flight within their thresholds, so the failure does not free up a slot
+    assertFalse("No request should be sent while the hedged request is in flight", ot.getReplicaIterator().hasNext());
+    ot.onResponse(hedgeReplica, false);
+    assertEquals("Hedged request should not have won", 0, routerMetrics.getHedgedRequestWinCount.getCount());
+    ReplicaId nextReplica = sendRequest(ot);
+    ot.onResponse(nextReplica, true);
+    assertTrue("Operation should have succeeded", ot.hasSucceeded());
+    assertEquals("Only one request should have been hedged", 1, routerMetrics.getHedgedRequestCount.getCount());
+  }
+
+  /**
+   * @return an {@link AdaptiveOperationTracker} with a success target and parallelism of 1.
+   */
+  private OperationTracker createTracker() {
+    return new AdaptiveOperationTracker(localDcName, partitionId, true, 1, 1, routerMetrics, false, QUANTILE, time);
+  }
+
+  /**
+   * Records {@link AdaptiveOperationTracker#MIN_DATA_POINTS_REQUIRED} latencies of {@link #LATENCY_MS} for the data
+   * nodes of all the replicas of the partition.
+   */
+  private void recordLatencies() {
+    for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+      for (int i = 0; i < AdaptiveOperationTracker.MIN_DATA_POINTS_REQUIRED; i++) {
+        routerMetrics.getDataNodeBasedMetrics(replicaId.getDataNodeId()).getRequestLatencyMs.update(LATENCY_MS);
+      }
+    }
+  }
+
+  /**
+   * Sends a request to the next replica of the tracker.
+   * @param ot the {@link OperationTracker} to use.
+   * @return the {@link ReplicaId} to which the request was sent.
+   */
+  private ReplicaId sendRequest(OperationTracker ot) {
+    Iterator<ReplicaId> iterator = ot.getReplicaIterator();
+    assertTrue("A request should be allowed", iterator.hasNext());
+    ReplicaId replicaId = iterator.next();
+    iterator.remove();
+    return replicaId;
+  }
+}
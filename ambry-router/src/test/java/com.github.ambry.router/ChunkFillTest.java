@@ -21,10 +21,12 @@ import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.Utils;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 import junit.framework.Assert;
 import org.junit.Before;
@@ -86,6 +88,17 @@ public class ChunkFillTest {
     fillChunksAndAssertSuccess();
   }
 
+  /**
+   * Test chunk filling when the chunks adopt the data read from the channel instead of copying it. The data of the
+   * blob is read from the channel in one go, so every chunk adopts its data, and the data must not be released to the
+   * channel until all the chunks are done with it.
+   */
+  @Test
+  public void testChunkFillingWithAdoptedChannelBuffers() throws Exception {
+    blobSize = chunkSize * (random.nextInt(10) + 1) + random.nextInt(chunkSize - 1) + 1;
+    fillChunksAndAssertSuccess(true);
+  }
+
   /**
    * Test the calculation of number of chunks and the size of each chunk, using a very large blob size. No content
    * comparison is done. This test does not consume memory more than chunkSize.
@@ -111,7 +124,8 @@ public class ChunkFillTest {
     MockNetworkClientFactory networkClientFactory = new MockNetworkClientFactory(vProps, null, 0, 0, 0, null, time);
     PutOperation op = new PutOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, putBlobProperties,
         putUserMetadata, putChannel, futureResult, null,
-        new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, new MockTime());
+        new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, null,
+        new RandomPartitionSelector(mockClusterMap), new MockTime());
     op.startReadingFromChannel();
     numChunks = op.getNumDataChunks();
     // largeBlobSize is not a multiple of chunkSize
@@ -164,7 +178,17 @@ public class ChunkFillTest {
    * @return {@link Properties} with default values.
    */
   private VerifiableProperties getNonBlockingRouterProperties() {
+    return getNonBlockingRouterProperties(false);
+  }
+
+  /**
+   * Get {@link Properties} with the given chunk filling configuration.
+   * @param adoptChannelBuffers whether chunks adopt the buffers read from the channel.
+   * @return {@link Properties} with default values except for the given configuration.
+   */
+  private VerifiableProperties getNonBlockingRouterProperties(boolean adoptChannelBuffers) {
     Properties properties = new Properties();
+    properties.setProperty("router.put.chunk.fill.adopt.channel.buffers", Boolean.toString(adoptChannelBuffers));
     properties.setProperty("router.hostname", "localhost");
     properties.setProperty("router.datacenter.name", "DC1");
     properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(chunkSize));
@@ -178,7 +202,16 @@ public class ChunkFillTest {
    * as we do not even instantiate the {@link PutManager})
    */
   private void fillChunksAndAssertSuccess() throws Exception {
-    VerifiableProperties vProps = getNonBlockingRouterProperties();
+    fillChunksAndAssertSuccess(false);
+  }
+
+  /**
+   * Create a {@link PutOperation} and pass in a channel with the blobSize set by the caller; and test the chunk
+   * filling flow for puts with the given chunk filling configuration.
+   * @param adoptChannelBuffers whether chunks adopt the buffers read from the channel.
+   */
+  private void fillChunksAndAssertSuccess(boolean adoptChannelBuffers) throws Exception {
+    VerifiableProperties vProps = getNonBlockingRouterProperties(adoptChannelBuffers);
     MockClusterMap mockClusterMap = new MockClusterMap();
     RouterConfig routerConfig = new RouterConfig(vProps);
     NonBlockingRouterMetrics routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
@@ -190,13 +223,37 @@ public class ChunkFillTest {
     random.nextBytes(putUserMetadata);
     putContent = new byte[blobSize];
     random.nextBytes(putContent);
-    final ReadableStreamChannel putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
+    final ReadableStreamChannel contentChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
+    final AtomicReference<Future<Long>> readFuture = new AtomicReference<>();
+    ReadableStreamChannel putChannel = new ReadableStreamChannel() {
+      @Override
+      public long getSize() {
+        return contentChannel.getSize();
+      }
+
+      @Override
+      public Future<Long> readInto(AsyncWritableChannel asyncWritableChannel, Callback<Long> callback) {
+        readFuture.set(contentChannel.readInto(asyncWritableChannel, callback));
+        return readFuture.get();
+      }
+
+      @Override
+      public boolean isOpen() {
+        return contentChannel.isOpen();
+      }
+
+      @Override
+      public void close() throws IOException {
+        contentChannel.close();
+      }
+    };
     FutureResult<String> futureResult = new FutureResult<String>();
     MockTime time = new MockTime();
     MockNetworkClientFactory networkClientFactory = new MockNetworkClientFactory(vProps, null, 0, 0, 0, null, time);
     PutOperation op = new PutOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, putBlobProperties,
         putUserMetadata, putChannel, futureResult, null,
-        new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, time);
+        new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, null,
+        new RandomPartitionSelector(mockClusterMap), time);
     op.startReadingFromChannel();
     numChunks = op.getNumDataChunks();
     compositeBuffers = new ByteBuffer[numChunks];
@@ -211,6 +268,10 @@ public class ChunkFillTest {
           continue;
         }
         Assert.assertEquals("Chunk should be ready.", PutOperation.ChunkState.Ready, putChunk.getState());
+        if (adoptChannelBuffers) {
+          Assert.assertFalse("Data read from the channel should not be released while a chunk uses it",
+              readFuture.get().isDone());
+        }
         ByteBuffer buf = putChunk.buf;
         totalSizeWritten += buf.remaining();
         compositeBuffers[putChunk.getChunkIndex()] = ByteBuffer.allocate(buf.remaining()).put(buf);
@@ -219,6 +280,12 @@ public class ChunkFillTest {
     } while (!op.isChunkFillComplete());
 
     Assert.assertEquals("total size written out should match the blob size", blobSize, totalSizeWritten);
+    Assert.assertEquals("Bytes adopted not as expected", adoptChannelBuffers ? blobSize : 0,
+        routerMetrics.chunkFillerBytesAdopted.getCount());
+    Assert.assertEquals("Bytes copied not as expected", adoptChannelBuffers ? 0 : blobSize,
+        routerMetrics.chunkFillerBytesCopied.getCount());
+    Assert.assertEquals("All the data read from the channel should have been released", blobSize,
+        readFuture.get().get().longValue());
 
     Exception exception = operationException.get();
     if (exception != null) {
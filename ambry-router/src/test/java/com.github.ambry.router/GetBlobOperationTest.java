@@ -36,6 +36,7 @@ import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.router.RouterTestHelpers.*;
 import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SizeClassedByteBufferPool;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -105,6 +106,10 @@ public class GetBlobOperationTest {
 
   // Options which are passed into GetBlobOperations
   private GetBlobOptions options = new GetBlobOptions();
+  // The pool that GetBlobOperations allocate the buffers of data chunks from, if any.
+  private SizeClassedByteBufferPool bufferPool = null;
+  // The budget that GetBlobOperations account their data chunks against.
+  private GetPrefetchBudget getPrefetchBudget = new GetPrefetchBudget(Long.MAX_VALUE);
 
   private final GetTestRequestRegistrationCallbackImpl requestRegistrationCallback =
       new GetTestRequestRegistrationCallbackImpl();
@@ -141,6 +146,8 @@ public class GetBlobOperationTest {
   public void after() {
     router.close();
     Assert.assertEquals("All operations should have completed", 0, operationsCount.get());
+    Assert.assertEquals("All the prefetched bytes should have been released", 0,
+        getPrefetchBudget.getPrefetchedBytes());
   }
 
   /**
@@ -202,7 +209,8 @@ public class GetBlobOperationTest {
     // test a bad case
     try {
       new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, "invalid_id", null,
-          operationFuture, operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+          operationFuture, operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, null,
+          new GetPrefetchBudget(routerConfig.routerGetPrefetchTotalMaxBytes), time);
       Assert.fail("Instantiation of GetBlobOperation with an invalid blob id must fail");
     } catch (RouterException e) {
       Assert.assertEquals("Unexpected exception received on creating GetBlobOperation", RouterErrorCode.InvalidBlobId,
@@ -214,7 +222,7 @@ public class GetBlobOperationTest {
     // operationCount is not incremented here as this operation is not taken to completion.
     GetBlobOperation op = new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
         new GetBlobOptions(), operationFuture, operationCallback, operationCompleteCallback, readyForPollCallback,
-        blobIdFactory, time);
+        blobIdFactory, null, new GetPrefetchBudget(routerConfig.routerGetPrefetchTotalMaxBytes), time);
 
     Assert.assertEquals("Callbacks must match", operationCallback, op.getCallback());
     Assert.assertEquals("Futures must match", operationFuture, op.getFuture());
@@ -264,6 +272,58 @@ public class GetBlobOperationTest {
     }
   }
 
+  /**
+   * Put a blob that results in multiple chunks; perform gets with the data chunks allocated from a buffer pool that
+   * cannot hold all of them, and ensure success and that all the pooled buffers are released.
+   */
+  @Test
+  public void testCompositeBlobGetWithBufferPoolSuccess() throws Exception {
+    bufferPool = new SizeClassedByteBufferPool(3L * maxChunkSize, Math.min(1024, maxChunkSize), maxChunkSize, false);
+    for (int i = 2; i < 6; i++) {
+      blobSize = maxChunkSize * i + random.nextInt(maxChunkSize - 1) + 1;
+      doPut();
+      getAndAssertSuccess();
+      Assert.assertEquals("All the pooled buffers should have been released", 0, bufferPool.outstandingBytes.get());
+    }
+    Assert.assertTrue("Buffers should have been allocated from the pool",
+        bufferPool.hitCount.get() + bufferPool.missCount.get() > 0);
+  }
+
+  /**
+   * Put blobs that result in multiple chunks; perform gets with the prefetch window enabled and ensure success, that
+   * the window stays within its bounds and that all the bytes accounted against the budget are released.
+   */
+  @Test
+  public void testCompositeBlobGetWithPrefetchWindowSuccess() throws Exception {
+    Properties props = getDefaultNonBlockingRouterProperties();
+    props.setProperty("router.get.prefetch.window.max.bytes", Long.toString(3L * maxChunkSize));
+    routerConfig = new RouterConfig(new VerifiableProperties(props));
+    // a budget that is exceeded by any chunk keeps the window at a single chunk.
+    getPrefetchBudget = new GetPrefetchBudget(0);
+    for (int i = 2; i < 6; i++) {
+      blobSize = maxChunkSize * i + random.nextInt(maxChunkSize - 1) + 1;
+      doPut();
+      getAndAssertSuccess();
+      Assert.assertEquals("All the prefetched bytes should have been released", 0,
+          getPrefetchBudget.getPrefetchedBytes());
+    }
+    Assert.assertEquals("Unexpected number of windows recorded", 4,
+        routerMetrics.getBlobPrefetchWindowBytes.getCount());
+    Assert.assertEquals("Window should not have grown over budget", maxChunkSize,
+        routerMetrics.getBlobPrefetchWindowBytes.getSnapshot().getMax());
+
+    getPrefetchBudget = new GetPrefetchBudget(Long.MAX_VALUE);
+    for (int i = 2; i < 6; i++) {
+      blobSize = maxChunkSize * i + random.nextInt(maxChunkSize - 1) + 1;
+      doPut();
+      getAndAssertSuccess(false, true);
+      Assert.assertEquals("All the prefetched bytes should have been released", 0,
+          getPrefetchBudget.getPrefetchedBytes());
+    }
+    Assert.assertTrue("Window should not have grown over the maximum",
+        routerMetrics.getBlobPrefetchWindowBytes.getSnapshot().getMax() <= 3L * maxChunkSize);
+  }
+
   /**
    * Put blobs that result in multiple chunks with the last chunk less than max chunk size; perform gets and ensure
    * success.
@@ -352,6 +412,28 @@ public class GetBlobOperationTest {
         });
   }
 
+  /**
+   * Test that a get fails with {@link RouterErrorCode#AmbryUnavailable} when the disks of all the replicas are busy,
+   * and that it is retried on other replicas and succeeds when only one replica is on a disk that is not busy.
+   * @throws Exception
+   */
+  @Test
+  public void testDiskBusy() throws Exception {
+    doPut();
+    testWithErrorCodes(Collections.singletonMap(ServerErrorCode.Disk_Busy, replicasCount), mockServerLayout,
+        RouterErrorCode.AmbryUnavailable, getErrorCodeChecker);
+    boolean goodServerMarked = false;
+    for (MockServer mockServer : mockServerLayout.getMockServers()) {
+      if (!goodServerMarked && mockServer.getDataCenter().equals(routerConfig.routerDatacenterName)) {
+        mockServer.setServerErrorForAllRequests(ServerErrorCode.No_Error);
+        goodServerMarked = true;
+      } else {
+        mockServer.setServerErrorForAllRequests(ServerErrorCode.Disk_Busy);
+      }
+    }
+    getAndAssertSuccess();
+  }
+
   /**
    * Test the case with Blob_Not_Found errors from most servers, and Blob_Deleted at just one server. The latter
    * should be the exception received for the operation.
@@ -456,7 +538,8 @@ public class GetBlobOperationTest {
   public void testDataChunkFailure() throws Exception {
     for (ServerErrorCode serverErrorCode : ServerErrorCode.values()) {
       if (serverErrorCode != ServerErrorCode.No_Error) {
-        testDataChunkError(serverErrorCode, RouterErrorCode.UnexpectedInternalError);
+        testDataChunkError(serverErrorCode, serverErrorCode == ServerErrorCode.Disk_Busy
+            ? RouterErrorCode.AmbryUnavailable : RouterErrorCode.UnexpectedInternalError);
       }
     }
   }
@@ -576,6 +659,20 @@ public class GetBlobOperationTest {
     }
   }
 
+  /**
+   * Test that the pooled buffers of the chunks that were retrieved but not written out are released when the
+   * {@link ReadableStreamChannel} is closed before all chunks are read.
+   * @throws Exception
+   */
+  @Test
+  public void testEarlyReadableStreamChannelCloseWithBufferPool() throws Exception {
+    bufferPool = new SizeClassedByteBufferPool(4L * maxChunkSize, Math.min(1024, maxChunkSize), maxChunkSize, false);
+    for (int numChunksToRead = 0; numChunksToRead < 4; numChunksToRead++) {
+      testEarlyReadableStreamChannelClose(4, numChunksToRead);
+      Assert.assertEquals("All the pooled buffers should have been released", 0, bufferPool.outstandingBytes.get());
+    }
+  }
+
   /**
    * Test that the operation is completed and an exception with the error code {@link RouterErrorCode#ChannelClosed} is
    * set when the {@link ReadableStreamChannel} is closed before all chunks are read for a specific blob size and
@@ -588,6 +685,7 @@ public class GetBlobOperationTest {
   private void testEarlyReadableStreamChannelClose(int numChunksInBlob, final int numChunksToRead) throws Exception {
     final AtomicReference<Exception> callbackException = new AtomicReference<>();
     final AtomicReference<Future<Long>> readIntoFuture = new AtomicReference<>();
+    final AtomicReference<ByteBufferAsyncWritableChannel> writableChannelRef = new AtomicReference<>();
     final CountDownLatch readCompleteLatch = new CountDownLatch(1);
     Callback<GetBlobResult> callback = new Callback<GetBlobResult>() {
       @Override
@@ -597,6 +695,7 @@ public class GetBlobOperationTest {
           readCompleteLatch.countDown();
         } else {
           final ByteBufferAsyncWritableChannel writableChannel = new ByteBufferAsyncWritableChannel();
+          writableChannelRef.set(writableChannel);
           readIntoFuture.set(result.getBlobDataChannel().readInto(writableChannel, null));
           Utils.newThread(new Runnable() {
             @Override
@@ -641,6 +740,8 @@ public class GetBlobOperationTest {
         operationException instanceof RouterException);
     Assert.assertEquals("Unexpected RouterErrorCode", RouterErrorCode.ChannelClosed,
         ((RouterException) operationException).getErrorCode());
+    // resolve the chunks that were handed to the channel but not read, so that their buffers are released.
+    writableChannelRef.get().close();
   }
 
   /**
@@ -868,7 +969,8 @@ public class GetBlobOperationTest {
     operationsCount.incrementAndGet();
     GetBlobOperation op =
         new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, options,
-            operationFuture, callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+            operationFuture, callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, bufferPool,
+            getPrefetchBudget, time);
     requestRegistrationCallback.requestListToFill = new ArrayList<>();
     return op;
   }
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.MockTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link LoadAwarePartitionSelector}.
+ */
+public class LoadAwarePartitionSelectorTest {
+  private static final String LOCAL_DC = "DC1";
+  private static final long AVOIDANCE_MS = 1000;
+  private static final int SELECTION_COUNT = 1000;
+
+  private final MockClusterMap mockClusterMap;
+  private final MockTime time = new MockTime();
+  private final LoadAwarePartitionSelector selector;
+
+  public LoadAwarePartitionSelectorTest() throws Exception {
+    mockClusterMap = new MockClusterMap();
+    selector = new LoadAwarePartitionSelector(mockClusterMap, LOCAL_DC, AVOIDANCE_MS, time);
+  }
+
+  /**
+   * Tests that the load of a partition grows with the latencies and outstanding requests of its local replicas, and
+   * that partitions on loaded disks are mostly avoided.
+   * @throws RouterException
+   */
+  @Test
+  public void loadTest() throws RouterException {
+    List<PartitionId> partitions = mockClusterMap.getWritablePartitionIds();
+    ReplicaId slowReplica = getLocalReplica(partitions.get(0));
+    PartitionId otherPartition = null;
+    for (PartitionId partitionId : partitions) {
+      if (!getLocalReplica(partitionId).getMountPath().equals(slowReplica.getMountPath())) {
+        otherPartition = partitionId;
+        break;
+      }
+    }
+    assertNotNull("There should be a partition on another disk", otherPartition);
+    assertEquals("Partitions without requests should have the same load", selector.getLoad(partitions.get(0)),
+        selector.getLoad(otherPartition), 0);
+
+    selector.onRequestSent(slowReplica);
+    double loadWithOutstandingRequest = selector.getLoad(partitions.get(0));
+    assertTrue("Outstanding request should add to the load",
+        loadWithOutstandingRequest > selector.getLoad(otherPartition));
+    selector.onResponseReceived(slowReplica);
+    selector.onRequestLatency(slowReplica, 100);
+    assertTrue("Latency should add to the load",
+        selector.getLoad(partitions.get(0)) > selector.getLoad(otherPartition));
+    // a remote replica does not add to the load
+    ReplicaId remoteReplica = null;
+    for (ReplicaId replicaId : otherPartition.getReplicaIds()) {
+      if (!replicaId.getDataNodeId().getDatacenterName().equals(LOCAL_DC)) {
+        remoteReplica = replicaId;
+      }
+    }
+    double otherLoad = selector.getLoad(otherPartition);
+    selector.onRequestLatency(remoteReplica, 1000);
+    assertEquals("Remote replica should not add to the load", otherLoad, selector.getLoad(otherPartition), 0);
+
+    // make the latency of the slow disk stick and check that its partitions are rarely selected
+    for (int i = 0; i < 100; i++) {
+      selector.onRequestLatency(slowReplica, 100);
+    }
+    int slowSelections = 0;
+    for (int i = 0; i < SELECTION_COUNT; i++) {
+      PartitionId selected = selector.selectPartition(Collections.<PartitionId>emptyList());
+      if (getLocalReplica(selected).getMountPath().equals(slowReplica.getMountPath())) {
+        slowSelections++;
+      }
+    }
+    // a random selection would pick a partition on the slow disk a third of the time.
+    assertTrue("Partitions on the slow disk were selected too often: " + slowSelections,
+        slowSelections < SELECTION_COUNT / 5);
+  }
+
+  /**
+   * Tests that the latency average of a disk decays while no new latencies are recorded for it, so that a disk is not
+   * avoided forever after a slow request.
+   * @throws InterruptedException
+   */
+  @Test
+  public void latencyDecayTest() throws InterruptedException {
+    PartitionId partition = mockClusterMap.getWritablePartitionIds().get(0);
+    ReplicaId slowReplica = getLocalReplica(partition);
+    double idleLoad = selector.getLoad(partition);
+    selector.onRequestLatency(slowReplica, 10000);
+    double expectedLatencyMs = LoadAwarePartitionSelector.LATENCY_SMOOTHING_FACTOR * 10000;
+    assertEquals("Unexpected load", expectedLatencyMs + 1, selector.getLoad(partition), 0.01);
+
+    time.sleep(LoadAwarePartitionSelector.LATENCY_HALF_LIFE_MS);
+    assertEquals("Latency should have been halved", expectedLatencyMs / 2 + 1, selector.getLoad(partition), 0.01);
+
+    // a new latency is added to the decayed average
+    selector.onRequestLatency(slowReplica, 0);
+    expectedLatencyMs = expectedLatencyMs / 2 * (1 - LoadAwarePartitionSelector.LATENCY_SMOOTHING_FACTOR);
+    assertEquals("Unexpected load", expectedLatencyMs + 1, selector.getLoad(partition), 0.01);
+
+    time.sleep(20 * LoadAwarePartitionSelector.LATENCY_HALF_LIFE_MS);
+    assertEquals("Latency should have decayed away", idleLoad, selector.getLoad(partition), 0.01);
+  }
+
+  /**
+   * Tests that partitions that a put failed on are avoided for the avoidance time, unless there is no other partition,
+   * and that excluded partitions are never selected.
+   * @throws Exception
+   */
+  @Test
+  public void failedPartitionAndExclusionTest() throws Exception {
+    List<PartitionId> partitions = mockClusterMap.getWritablePartitionIds();
+    PartitionId remainingPartition = partitions.get(partitions.size() - 1);
+    for (PartitionId partitionId : partitions) {
+      if (partitionId != remainingPartition) {
+        selector.onPutFailed(partitionId);
+      }
+    }
+    for (int i = 0; i < SELECTION_COUNT; i++) {
+      assertEquals("Only the partition without a failure should be selected", remainingPartition,
+          selector.selectPartition(Collections.<PartitionId>emptyList()));
+    }
+    List<PartitionId> toExclude = new ArrayList<>();
+    toExclude.add(remainingPartition);
+    assertNotSame("Failed partitions should be selected if there is no other", remainingPartition,
+        selector.selectPartition(toExclude));
+
+    time.sleep(AVOIDANCE_MS);
+    Set<PartitionId> selected = new HashSet<>();
+    for (int i = 0; i < SELECTION_COUNT; i++) {
+      selected.add(selector.selectPartition(toExclude));
+    }
+    assertFalse("Excluded partition should not be selected", selected.contains(remainingPartition));
+    assertEquals("All other partitions should be selected after the avoidance time", partitions.size() - 1,
+        selected.size());
+
+    try {
+      selector.selectPartition(partitions);
+      fail("Selection should fail when all the partitions are excluded");
+    } catch (RouterException e) {
+      assertEquals("Unexpected error code", RouterErrorCode.AmbryUnavailable, e.getErrorCode());
+    }
+  }
+
+  /**
+   * @param partitionId the {@link PartitionId} whose replica is required.
+   * @return a replica of the partition in the local datacenter.
+   */
+  private ReplicaId getLocalReplica(PartitionId partitionId) {
+    for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+      if (replicaId.getDataNodeId().getDatacenterName().equals(LOCAL_DC)) {
+        return replicaId;
+      }
+    }
+    throw new IllegalStateException("No local replica for " + partitionId);
+  }
+}
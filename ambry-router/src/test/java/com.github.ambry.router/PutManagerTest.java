@@ -68,6 +68,10 @@ public class PutManagerTest {
   private int requestParallelism;
   private int successTarget;
   private boolean instantiateNewRouterForPuts;
+  private long bufferPoolCapacity = 0;
+  private int chunkFillerThreadCount = 1;
+  private boolean adoptChannelBuffers = false;
+  private NonBlockingRouterMetrics routerMetrics;
   private final Random random = new Random();
 
   private static final int MAX_PORTS_PLAIN_TEXT = 3;
@@ -255,6 +259,55 @@ public class PutManagerTest {
     submitPutsAndAssertSuccess(true);
   }
 
+  /**
+   * Tests concurrent puts of composite blobs with the chunk buffers allocated from a buffer pool that cannot hold all
+   * the chunks in memory, and that all the pooled buffers are returned to the pool once the puts are complete.
+   */
+  @Test
+  public void testCompositeBlobPutsWithBufferPoolSuccess() throws Exception {
+    // room for a few idle chunks only, so that the rest of the chunk buffers are left to the garbage collector.
+    bufferPoolCapacity = 6L * chunkSize;
+    requestAndResultsList.clear();
+    for (int i = 0; i < 5; i++) {
+      requestAndResultsList.add(new RequestAndResult(chunkSize * (i + 2) + random.nextInt(chunkSize)));
+    }
+    submitPut().await();
+    assertSuccess();
+    long startTimeMs = System.currentTimeMillis();
+    while (routerMetrics.bufferPoolOutstandingBytes.getValue() != 0
+        && System.currentTimeMillis() - startTimeMs < MAX_WAIT_MS) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals("All the pooled buffers should have been released", 0,
+        (long) routerMetrics.bufferPoolOutstandingBytes.getValue());
+    Assert.assertTrue("Buffers should have been allocated from the pool",
+        routerMetrics.bufferPoolMissCount.getValue() > 0);
+    assertCloseCleanup();
+  }
+
+  /**
+   * Tests concurrent puts of composite blobs with several chunk filler threads and with the chunks adopting the data
+   * read from the channels of the puts instead of copying it.
+   */
+  @Test
+  public void testCompositeBlobPutsWithChunkFillerThreadsAndAdoptedBuffersSuccess() throws Exception {
+    chunkFillerThreadCount = 3;
+    adoptChannelBuffers = true;
+    requestAndResultsList.clear();
+    long totalBlobSize = 0;
+    for (int i = 0; i < 5; i++) {
+      RequestAndResult requestAndResult = new RequestAndResult(chunkSize * (i + 2) + random.nextInt(chunkSize));
+      requestAndResultsList.add(requestAndResult);
+      totalBlobSize += requestAndResult.putContent.length;
+    }
+    submitPutsAndAssertSuccess(false);
+    // the content of every put is read from its channel in one go, so that every chunk adopts its data.
+    Assert.assertEquals("All the bytes should have been adopted", totalBlobSize,
+        routerMetrics.chunkFillerBytesAdopted.getCount());
+    Assert.assertEquals("No bytes should have been copied", 0, routerMetrics.chunkFillerBytesCopied.getCount());
+    assertCloseCleanup();
+  }
+
   /**
    * Test ensures failure when all server nodes encounter an error.
    */
@@ -347,6 +400,24 @@ public class PutManagerTest {
     submitPutsAndAssertSuccess(true);
   }
 
+  /**
+   * Tests that a chunk whose first attempt fails because the disks of the replicas are busy is slipped put to another
+   * partition and succeeds.
+   */
+  @Test
+  public void testSlippedPutsOnDiskBusySuccess() throws Exception {
+    requestAndResultsList.clear();
+    requestAndResultsList.add(new RequestAndResult(chunkSize));
+    List<ServerErrorCode> serverErrorList = new ArrayList<ServerErrorCode>();
+    serverErrorList.add(ServerErrorCode.Disk_Busy);
+    serverErrorList.add(ServerErrorCode.No_Error);
+    for (DataNodeId dataNodeId : mockClusterMap.getDataNodeIds()) {
+      MockServer server = mockServerLayout.getMockServer(dataNodeId.getHostname(), dataNodeId.getPort());
+      server.setServerErrors(serverErrorList);
+    }
+    submitPutsAndAssertSuccess(true);
+  }
+
   /**
    * Tests a case where some chunks succeed and a later chunk fails and ensures that the operation fails in
    * such a scenario.
@@ -556,8 +627,12 @@ public class PutManagerTest {
     properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(chunkSize));
     properties.setProperty("router.put.request.parallelism", Integer.toString(requestParallelism));
     properties.setProperty("router.put.success.target", Integer.toString(successTarget));
+    properties.setProperty("router.buffer.pool.capacity.bytes", Long.toString(bufferPoolCapacity));
+    properties.setProperty("router.put.chunk.filler.thread.count", Integer.toString(chunkFillerThreadCount));
+    properties.setProperty("router.put.chunk.fill.adopt.channel.buffers", Boolean.toString(adoptChannelBuffers));
     VerifiableProperties vProps = new VerifiableProperties(properties);
-    router = new NonBlockingRouter(new RouterConfig(vProps), new NonBlockingRouterMetrics(mockClusterMap),
+    routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    router = new NonBlockingRouter(new RouterConfig(vProps), routerMetrics,
         new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
             CHECKOUT_TIMEOUT_MS, mockServerLayout, mockTime), new LoggingNotificationSystem(), mockClusterMap,
         mockTime);
@@ -765,8 +840,8 @@ public class PutManagerTest {
    * router is closed.
    */
   private void assertCloseCleanup() {
-    Assert.assertEquals("Exactly one chunkFiller thread should be running before the router is closed", 1,
-        TestUtils.numThreadsByThisName("ChunkFillerThread"));
+    Assert.assertEquals("Exactly the configured chunkFiller threads should be running before the router is closed",
+        chunkFillerThreadCount, TestUtils.numThreadsByThisName("ChunkFillerThread"));
     Assert.assertEquals("Exactly one RequestResponseHandler thread should be running before the router is closed", 1,
         TestUtils.numThreadsByThisName("RequestResponseHandlerThread"));
     router.close();
@@ -69,6 +69,7 @@ import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import org.slf4j.Logger;
@@ -94,11 +95,25 @@ public class AmbryRequests implements RequestAPI {
   private final NotificationSystem notification;
   private final ReplicationManager replicationManager;
   private final StoreKeyFactory storeKeyFactory;
+  private final DiskRequestScheduler diskRequestScheduler;
 
   public AmbryRequests(StorageManager storageManager, RequestResponseChannel requestResponseChannel,
       ClusterMap clusterMap, DataNodeId nodeId, MetricRegistry registry, FindTokenFactory findTokenFactory,
       NotificationSystem operationNotification, ReplicationManager replicationManager,
       StoreKeyFactory storeKeyFactory) {
+    this(storageManager, requestResponseChannel, clusterMap, nodeId, registry, findTokenFactory, operationNotification,
+        replicationManager, storeKeyFactory, null);
+  }
+
+  /**
+   * Creates the request handling logic of a server.
+   * @param diskRequestScheduler the {@link DiskRequestScheduler} that requests are handled on. Requests are handled on
+   *                             the calling thread if this is {@code null}.
+   */
+  AmbryRequests(StorageManager storageManager, RequestResponseChannel requestResponseChannel, ClusterMap clusterMap,
+      DataNodeId nodeId, MetricRegistry registry, FindTokenFactory findTokenFactory,
+      NotificationSystem operationNotification, ReplicationManager replicationManager, StoreKeyFactory storeKeyFactory,
+      DiskRequestScheduler diskRequestScheduler) {
     this.storageManager = storageManager;
     this.requestResponseChannel = requestResponseChannel;
     this.clusterMap = clusterMap;
@@ -109,6 +124,7 @@ public class AmbryRequests implements RequestAPI {
     this.notification = operationNotification;
     this.replicationManager = replicationManager;
     this.storeKeyFactory = storeKeyFactory;
+    this.diskRequestScheduler = diskRequestScheduler;
   }
 
   public void handleRequests(Request request) throws InterruptedException {
@@ -137,9 +153,25 @@ public class AmbryRequests implements RequestAPI {
     }
   }
 
-  public void handlePutRequest(Request request) throws IOException, InterruptedException {
-    PutRequest.ReceivedPutRequest receivedRequest =
+  public void handlePutRequest(final Request request) throws IOException, InterruptedException {
+    final PutRequest.ReceivedPutRequest receivedRequest =
         PutRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+    boolean handled = handleOnDisk(Collections.singletonList(receivedRequest.getBlobId().getPartition()),
+        new DiskRequest(request) {
+          @Override
+          void process() throws IOException, InterruptedException {
+            processPutRequest(request, receivedRequest);
+          }
+        });
+    if (!handled) {
+      sendDiskBusyResponse(
+          new PutResponse(receivedRequest.getCorrelationId(), receivedRequest.getClientId(), ServerErrorCode.Disk_Busy),
+          request);
+    }
+  }
+
+  private void processPutRequest(Request request, PutRequest.ReceivedPutRequest receivedRequest)
+      throws InterruptedException {
     long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
     long totalTimeSpent = requestQueueTime;
     metrics.putBlobRequestQueueTimeInMs.update(requestQueueTime);
@@ -200,8 +232,26 @@ public class AmbryRequests implements RequestAPI {
         metrics);
   }
 
-  public void handleGetRequest(Request request) throws IOException, InterruptedException {
-    GetRequest getRequest = GetRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+  public void handleGetRequest(final Request request) throws IOException, InterruptedException {
+    final GetRequest getRequest = GetRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+    List<PartitionId> partitions = new ArrayList<PartitionId>(getRequest.getPartitionInfoList().size());
+    for (PartitionRequestInfo partitionRequestInfo : getRequest.getPartitionInfoList()) {
+      partitions.add(partitionRequestInfo.getPartition());
+    }
+    boolean handled = handleOnDisk(partitions, new DiskRequest(request) {
+      @Override
+      void process() throws IOException, InterruptedException {
+        processGetRequest(request, getRequest);
+      }
+    });
+    if (!handled) {
+      sendDiskBusyResponse(
+          new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(), ServerErrorCode.Disk_Busy),
+          request);
+    }
+  }
+
+  private void processGetRequest(Request request, GetRequest getRequest) throws InterruptedException {
     Histogram responseQueueTime = null;
     Histogram responseSendTime = null;
     Histogram responseTotalTime = null;
@@ -338,8 +388,24 @@ public class AmbryRequests implements RequestAPI {
         totalTimeSpent, response.sizeInBytes(), getRequest.getMessageFormatFlag(), metrics);
   }
 
-  public void handleDeleteRequest(Request request) throws IOException, InterruptedException {
-    DeleteRequest deleteRequest = DeleteRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+  public void handleDeleteRequest(final Request request) throws IOException, InterruptedException {
+    final DeleteRequest deleteRequest =
+        DeleteRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+    boolean handled = handleOnDisk(Collections.singletonList(deleteRequest.getBlobId().getPartition()),
+        new DiskRequest(request) {
+          @Override
+          void process() throws IOException, InterruptedException {
+            processDeleteRequest(request, deleteRequest);
+          }
+        });
+    if (!handled) {
+      sendDiskBusyResponse(
+          new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), ServerErrorCode.Disk_Busy),
+          request);
+    }
+  }
+
+  private void processDeleteRequest(Request request, DeleteRequest deleteRequest) throws InterruptedException {
     long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
     long totalTimeSpent = requestQueueTime;
     metrics.deleteBlobRequestQueueTimeInMs.update(requestQueueTime);
@@ -402,9 +468,30 @@ public class AmbryRequests implements RequestAPI {
             metrics.deleteBlobTotalTimeInMs, null, null, totalTimeSpent));
   }
 
-  public void handleReplicaMetadataRequest(Request request) throws IOException, InterruptedException {
-    ReplicaMetadataRequest replicaMetadataRequest =
+  public void handleReplicaMetadataRequest(final Request request) throws IOException, InterruptedException {
+    final ReplicaMetadataRequest replicaMetadataRequest =
         ReplicaMetadataRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap, findTokenFactory);
+    List<PartitionId> partitions =
+        new ArrayList<PartitionId>(replicaMetadataRequest.getReplicaMetadataRequestInfoList().size());
+    for (ReplicaMetadataRequestInfo replicaMetadataRequestInfo : replicaMetadataRequest
+        .getReplicaMetadataRequestInfoList()) {
+      partitions.add(replicaMetadataRequestInfo.getPartitionId());
+    }
+    boolean handled = handleOnDisk(partitions, new DiskRequest(request) {
+      @Override
+      void process() throws IOException, InterruptedException {
+        processReplicaMetadataRequest(request, replicaMetadataRequest);
+      }
+    });
+    if (!handled) {
+      sendDiskBusyResponse(
+          new ReplicaMetadataResponse(replicaMetadataRequest.getCorrelationId(), replicaMetadataRequest.getClientId(),
+              ServerErrorCode.Disk_Busy), request);
+    }
+  }
+
+  private void processReplicaMetadataRequest(Request request, ReplicaMetadataRequest replicaMetadataRequest)
+      throws InterruptedException {
     long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
     long totalTimeSpent = requestQueueTime;
     metrics.replicaMetadataRequestQueueTimeInMs.update(requestQueueTime);
@@ -494,6 +581,66 @@ public class AmbryRequests implements RequestAPI {
             metrics.replicaMetadataSendTimeInMs, metrics.replicaMetadataTotalTimeInMs, null, null, totalTimeSpent));
   }
 
+  /**
+   * Handles a request on the threads of the disk of its partitions if requests are scheduled per disk and all the
+   * partitions of the request are on the same local disk. Handles it on the calling thread otherwise.
+   * @param partitions the partitions that the request refers to.
+   * @param diskRequest the {@link DiskRequest} that handles the request.
+   * @return {@code false} if the request was rejected because the queue of its disk is full, {@code true} otherwise.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private boolean handleOnDisk(List<PartitionId> partitions, DiskRequest diskRequest)
+      throws IOException, InterruptedException {
+    String disk = diskRequestScheduler == null ? null : diskRequestScheduler.getDisk(partitions);
+    if (disk == null) {
+      diskRequest.process();
+      return true;
+    }
+    return diskRequestScheduler.schedule(disk, diskRequest);
+  }
+
+  private void sendDiskBusyResponse(Send response, Request request) throws InterruptedException {
+    metrics.diskBusyError.inc();
+    requestResponseChannel.sendResponse(response, request,
+        new ServerNetworkResponseMetrics(metrics.diskBusyResponseQueueTimeInMs, metrics.diskBusySendTimeInMs,
+            metrics.diskBusyTotalTimeInMs, null, null,
+            SystemTime.getInstance().milliseconds() - request.getStartTimeInMs()));
+  }
+
+  /**
+   * The handling of a request that is scheduled on the threads of a disk. The connection of the request is closed if
+   * the handling fails.
+   */
+  private abstract class DiskRequest implements Runnable {
+    private final Request request;
+
+    DiskRequest(Request request) {
+      this.request = request;
+    }
+
+    /**
+     * Handles the request and sends the response.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    abstract void process() throws IOException, InterruptedException;
+
+    @Override
+    public void run() {
+      try {
+        process();
+      } catch (Exception e) {
+        logger.error("Error while handling request " + request + " closing connection", e);
+        try {
+          requestResponseChannel.closeConnection(request);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
   private void sendPutResponse(RequestResponseChannel requestResponseChannel, PutResponse response, Request request,
       Histogram responseQueueTime, Histogram responseSendTime, Histogram requestTotalTime, long totalTimeSpent,
       long blobSize, ServerMetrics metrics) throws InterruptedException {
@@ -30,9 +30,12 @@ import com.github.ambry.messageformat.BlobStoreHardDelete;
 import com.github.ambry.messageformat.BlobStoreRecovery;
 import com.github.ambry.network.BlockingChannelConnectionPool;
 import com.github.ambry.network.ConnectionPool;
+import com.github.ambry.network.NetworkClientFactory;
+import com.github.ambry.network.NetworkMetrics;
 import com.github.ambry.network.NetworkServer;
 import com.github.ambry.network.Port;
 import com.github.ambry.network.PortType;
+import com.github.ambry.network.SSLFactory;
 import com.github.ambry.network.SocketServer;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.replication.ReplicationManager;
@@ -60,6 +63,7 @@ public class AmbryServer {
   private NetworkServer networkServer = null;
   private AmbryRequests requests = null;
   private RequestHandlerPool requestHandlerPool = null;
+  private DiskRequestScheduler diskRequestScheduler = null;
   private ScheduledExecutorService scheduler = null;
   private StorageManager storageManager = null;
   private ReplicationManager replicationManager = null;
@@ -124,9 +128,23 @@ public class AmbryServer {
       connectionPool = new BlockingChannelConnectionPool(connectionPoolConfig, sslConfig, clusterMapConfig, registry);
       connectionPool.start();
 
+      NetworkClientFactory networkClientFactory = null;
+      if (replicationConfig.replicationUseNetworkClient) {
+        // the network metrics of the server are already registered, so the ones of replication get their own prefix
+        MetricRegistry replicationNetworkRegistry = new MetricRegistry();
+        NetworkMetrics replicationNetworkMetrics = new NetworkMetrics(replicationNetworkRegistry);
+        registry.register(MetricRegistry.name(ReplicationManager.class), replicationNetworkRegistry);
+        SSLFactory sslFactory =
+            clusterMapConfig.clusterMapSslEnabledDatacenters.length() > 0 ? new SSLFactory(sslConfig) : null;
+        int maxConnectionsPerPort = Math.max(replicationConfig.replicationNetworkClientMaxConnectionsPerPort,
+            replicationConfig.replicationNetworkClientExchangesPerNode);
+        networkClientFactory = new NetworkClientFactory(replicationNetworkMetrics, networkConfig, sslFactory,
+            maxConnectionsPerPort, maxConnectionsPerPort,
+            replicationConfig.replicationConnectionPoolCheckoutTimeoutMs, time);
+      }
       replicationManager =
           new ReplicationManager(replicationConfig, clusterMapConfig, storeConfig, storageManager, storeKeyFactory,
-              clusterMap, scheduler, nodeId, connectionPool, registry, notificationSystem);
+              clusterMap, scheduler, nodeId, connectionPool, networkClientFactory, registry, notificationSystem);
       replicationManager.start();
 
       ArrayList<Port> ports = new ArrayList<Port>();
@@ -135,10 +153,14 @@ public class AmbryServer {
         ports.add(new Port(nodeId.getSSLPort(), PortType.SSL));
       }
 
+      if (serverConfig.serverDiskRequestQueueSize > 0) {
+        diskRequestScheduler = new DiskRequestScheduler(clusterMap.getReplicaIds(nodeId),
+            serverConfig.serverDiskRequestHandlerNumOfThreads, serverConfig.serverDiskRequestQueueSize, metrics);
+      }
       networkServer = new SocketServer(networkConfig, sslConfig, registry, ports);
       requests =
           new AmbryRequests(storageManager, networkServer.getRequestResponseChannel(), clusterMap, nodeId, registry,
-              findTokenFactory, notificationSystem, replicationManager, storeKeyFactory);
+              findTokenFactory, notificationSystem, replicationManager, storeKeyFactory, diskRequestScheduler);
       requestHandlerPool = new RequestHandlerPool(serverConfig.serverRequestHandlerNumOfThreads,
           networkServer.getRequestResponseChannel(), requests);
       networkServer.start();
@@ -171,6 +193,9 @@ public class AmbryServer {
       if (requestHandlerPool != null) {
         requestHandlerPool.shutdown();
       }
+      if (diskRequestScheduler != null) {
+        diskRequestScheduler.shutdown();
+      }
       if (replicationManager != null) {
         replicationManager.shutdown();
       }
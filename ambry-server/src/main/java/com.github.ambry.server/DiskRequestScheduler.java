@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Schedules the handling of requests on bounded pools of threads that are dedicated to the disks of the server, so
+ * that a slow or saturated disk only ties up the threads of its own pool. A request is rejected when the queue of its
+ * disk is full.
+ */
+class DiskRequestScheduler {
+  // disks are identified by their mount paths
+  private final Map<PartitionId, String> partitionToDisk = new HashMap<>();
+  private final Map<String, ThreadPoolExecutor> diskToExecutor = new HashMap<>();
+  private final ServerMetrics metrics;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * Creates a scheduler with a pool of threads for every disk that has a replica on this server.
+   * @param localReplicas the replicas on this server.
+   * @param numThreadsPerDisk the number of threads that handle the requests of each disk.
+   * @param queueSizePerDisk the maximum number of requests that can wait for a thread of a disk.
+   * @param metrics the {@link ServerMetrics} to record the per disk metrics in.
+   */
+  DiskRequestScheduler(List<? extends ReplicaId> localReplicas, int numThreadsPerDisk, int queueSizePerDisk,
+      ServerMetrics metrics) {
+    this.metrics = metrics;
+    for (ReplicaId replica : localReplicas) {
+      String disk = replica.getDiskId().getMountPath();
+      partitionToDisk.put(replica.getPartitionId(), disk);
+      if (!diskToExecutor.containsKey(disk)) {
+        final String diskName = ServerMetrics.getDiskMetricName(disk);
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(numThreadsPerDisk, numThreadsPerDisk, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSizePerDisk), new ThreadFactory() {
+              private final AtomicInteger threadCount = new AtomicInteger(0);
+
+              @Override
+              public Thread newThread(Runnable runnable) {
+                return Utils.daemonThread(
+                    "disk-request-handler-" + diskName + "-" + threadCount.getAndIncrement(), runnable);
+              }
+            });
+        diskToExecutor.put(disk, executor);
+        metrics.initializeDiskRequestMetrics(disk, executor.getQueue());
+      }
+    }
+  }
+
+  /**
+   * Finds the disk that the requests for the given partitions have to be scheduled on.
+   * @param partitions the partitions that a request refers to.
+   * @return the mount path of the disk of the partitions or {@code null} if there is no single local disk that holds
+   * all of them, in which case the request has to be handled by the caller.
+   */
+  String getDisk(List<PartitionId> partitions) {
+    String disk = null;
+    for (PartitionId partition : partitions) {
+      String partitionDisk = partitionToDisk.get(partition);
+      if (partitionDisk == null || (disk != null && !disk.equals(partitionDisk))) {
+        return null;
+      }
+      disk = partitionDisk;
+    }
+    return disk;
+  }
+
+  /**
+   * Schedules a task on the threads of a disk.
+   * @param disk the mount path of the disk to schedule the task on.
+   * @param task the task that handles a request.
+   * @return {@code true} if the task was scheduled, {@code false} if the queue of the disk is full.
+   */
+  boolean schedule(final String disk, final Runnable task) {
+    final long queueStartTimeInMs = SystemTime.getInstance().milliseconds();
+    try {
+      diskToExecutor.get(disk).execute(new Runnable() {
+        @Override
+        public void run() {
+          long startTimeInMs = SystemTime.getInstance().milliseconds();
+          metrics.diskRequestQueueTimeInMs.get(disk).update(startTimeInMs - queueStartTimeInMs);
+          try {
+            task.run();
+          } finally {
+            metrics.diskRequestProcessingTimeInMs.get(disk)
+                .update(SystemTime.getInstance().milliseconds() - startTimeInMs);
+          }
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      logger.trace("Request queue of disk {} is full", disk);
+      metrics.diskRequestRejectedCount.get(disk).inc();
+      return false;
+    }
+  }
+
+  /**
+   * Shuts down the threads of all the disks after the requests that were scheduled are handled.
+   * @throws InterruptedException if the wait for the threads to terminate is interrupted.
+   */
+  void shutdown() throws InterruptedException {
+    for (ThreadPoolExecutor executor : diskToExecutor.values()) {
+      executor.shutdown();
+    }
+    for (Map.Entry<String, ThreadPoolExecutor> entry : diskToExecutor.entrySet()) {
+      if (!entry.getValue().awaitTermination(1, TimeUnit.MINUTES)) {
+        logger.error("Request handlers of disk {} did not terminate", entry.getKey());
+      }
+    }
+  }
+}
@@ -14,9 +14,13 @@
 package com.github.ambry.server;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -147,7 +151,20 @@ public class ServerMetrics {
   public final Counter idDeletedError;
   public final Counter ttlExpiredError;
 
+  public final Histogram diskBusyResponseQueueTimeInMs;
+  public final Histogram diskBusySendTimeInMs;
+  public final Histogram diskBusyTotalTimeInMs;
+  public final Counter diskBusyError;
+
+  // per disk metrics keyed by the mount path of the disk
+  public final Map<String, Histogram> diskRequestQueueTimeInMs = new ConcurrentHashMap<>();
+  public final Map<String, Histogram> diskRequestProcessingTimeInMs = new ConcurrentHashMap<>();
+  public final Map<String, Counter> diskRequestRejectedCount = new ConcurrentHashMap<>();
+
+  private final MetricRegistry registry;
+
   public ServerMetrics(MetricRegistry registry) {
+    this.registry = registry;
     putBlobRequestQueueTimeInMs =
         registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobRequestQueueTime"));
     putBlobProcessingTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobProcessingTime"));
@@ -306,6 +323,45 @@ public class ServerMetrics {
     unExpectedStoreTTLError = registry.counter(MetricRegistry.name(AmbryRequests.class, "UnexpectedStoreTTLError"));
     unExpectedStoreFindEntriesError =
         registry.counter(MetricRegistry.name(AmbryRequests.class, "UnexpectedStoreFindEntriesError"));
+
+    diskBusyResponseQueueTimeInMs =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "DiskBusyResponseQueueTime"));
+    diskBusySendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DiskBusySendTime"));
+    diskBusyTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DiskBusyTotalTime"));
+    diskBusyError = registry.counter(MetricRegistry.name(AmbryRequests.class, "DiskBusyError"));
+  }
+
+  /**
+   * Registers the metrics of the queue of requests for the partitions of a disk. The metrics are prefixed with the
+   * name returned by {@link #getDiskMetricName(String)}, e.g. "mnt_u001-DiskRequestQueueSize" for "/mnt/u001".
+   * @param mountPath the mount path of the disk.
+   * @param requestQueue the queue of requests of the disk.
+   */
+  public void initializeDiskRequestMetrics(String mountPath, final Queue<?> requestQueue) {
+    String diskName = getDiskMetricName(mountPath);
+    Gauge<Integer> requestQueueSize = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return requestQueue.size();
+      }
+    };
+    registry.register(MetricRegistry.name(AmbryRequests.class, diskName + "-DiskRequestQueueSize"), requestQueueSize);
+    diskRequestQueueTimeInMs.put(mountPath,
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, diskName + "-DiskRequestQueueTime")));
+    diskRequestProcessingTimeInMs.put(mountPath,
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, diskName + "-DiskRequestProcessingTime")));
+    diskRequestRejectedCount.put(mountPath,
+        registry.counter(MetricRegistry.name(AmbryRequests.class, diskName + "-DiskRequestRejectedCount")));
+  }
+
+  /**
+   * @param mountPath the mount path of a disk.
+   * @return the name of the disk in metric names: the mount path with every run of characters other than letters and
+   * digits replaced by an underscore and without leading or trailing underscores.
+   */
+  static String getDiskMetricName(String mountPath) {
+    String diskName = mountPath.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "");
+    return diskName.isEmpty() ? "root" : diskName;
   }
 
   public void markPutBlobRequestRateBySize(long blobSize) {
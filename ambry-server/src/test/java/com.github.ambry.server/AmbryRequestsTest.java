@@ -0,0 +1,254 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.config.StoreConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.network.Request;
+import com.github.ambry.network.RequestResponseChannel;
+import com.github.ambry.network.Send;
+import com.github.ambry.network.ServerNetworkResponseMetrics;
+import com.github.ambry.protocol.DeleteRequest;
+import com.github.ambry.protocol.DeleteResponse;
+import com.github.ambry.store.StorageManager;
+import com.github.ambry.utils.ByteBufferChannel;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for the scheduling of requests on the threads of their disk in {@link AmbryRequests}.
+ */
+public class AmbryRequestsTest {
+  private MockClusterMap clusterMap;
+  private DataNodeId dataNode;
+  private List<ReplicaId> replicas;
+  private MetricRegistry registry;
+  private StorageManager storageManager;
+  private final MockRequestResponseChannel requestResponseChannel = new MockRequestResponseChannel();
+
+  /**
+   * Startup the {@link MockClusterMap} for a test. No store is started, so that requests for local partitions are
+   * answered with {@link ServerErrorCode#Disk_Unavailable} once they are handled.
+   * @throws Exception
+   */
+  @Before
+  public void initialize() throws Exception {
+    clusterMap = new MockClusterMap(false, 1, 2, 2);
+    dataNode = clusterMap.getDataNodes().get(0);
+    replicas = clusterMap.getReplicaIds(dataNode);
+    registry = new MetricRegistry();
+    storageManager =
+        new StorageManager(new StoreConfig(new VerifiableProperties(new Properties())), Utils.newScheduler(1, false),
+            registry, Collections.<ReplicaId>emptyList(), null, null, null, SystemTime.getInstance());
+  }
+
+  /**
+   * Cleanup the {@link MockClusterMap} after a test.
+   * @throws IOException
+   */
+  @After
+  public void cleanup() throws IOException {
+    clusterMap.cleanup();
+  }
+
+  /**
+   * Tests that requests are handled on the calling thread when there is no {@link DiskRequestScheduler}.
+   * @throws Exception
+   */
+  @Test
+  public void handleWithoutSchedulerTest() throws Exception {
+    AmbryRequests requests = createAmbryRequests(null);
+    requests.handleRequests(createDeleteRequest(replicas.get(0)));
+    verifyResponse(ServerErrorCode.Disk_Unavailable, Thread.currentThread().getName());
+  }
+
+  /**
+   * Tests that requests are handled on the threads of the disk of their partition, and that they are answered with
+   * {@link ServerErrorCode#Disk_Busy} when the queue of the disk is full while the other disks are not affected.
+   * @throws Exception
+   */
+  @Test
+  public void handleOnDiskTest() throws Exception {
+    DiskRequestScheduler scheduler = new DiskRequestScheduler(replicas, 1, 1, new ServerMetrics(registry));
+    AmbryRequests requests = createAmbryRequests(scheduler);
+    ReplicaId busyReplica = replicas.get(0);
+    ReplicaId otherReplica = null;
+    for (ReplicaId replica : replicas) {
+      if (!replica.getMountPath().equals(busyReplica.getMountPath())) {
+        otherReplica = replica;
+      }
+    }
+    String busyDisk = busyReplica.getMountPath();
+
+    requests.handleRequests(createDeleteRequest(busyReplica));
+    verifyResponse(ServerErrorCode.Disk_Unavailable,
+        "disk-request-handler-" + ServerMetrics.getDiskMetricName(busyDisk));
+
+    // occupy the only thread and the only queue slot of the disk.
+    final CountDownLatch blockLatch = new CountDownLatch(1);
+    final CountDownLatch runningLatch = new CountDownLatch(1);
+    Runnable blockingTask = new Runnable() {
+      @Override
+      public void run() {
+        runningLatch.countDown();
+        try {
+          blockLatch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    try {
+      assertTrue("Task should have been scheduled", scheduler.schedule(busyDisk, blockingTask));
+      assertTrue("Task did not start running", runningLatch.await(10, TimeUnit.SECONDS));
+      assertTrue("Task should have been queued", scheduler.schedule(busyDisk, blockingTask));
+
+      requests.handleRequests(createDeleteRequest(busyReplica));
+      verifyResponse(ServerErrorCode.Disk_Busy, Thread.currentThread().getName());
+
+      requests.handleRequests(createDeleteRequest(otherReplica));
+      verifyResponse(ServerErrorCode.Disk_Unavailable,
+          "disk-request-handler-" + ServerMetrics.getDiskMetricName(otherReplica.getMountPath()));
+    } finally {
+      blockLatch.countDown();
+      scheduler.shutdown();
+    }
+    assertEquals("Unexpected disk busy count", 1, registry.getCounters()
+        .get(MetricRegistry.name(AmbryRequests.class, "DiskBusyError"))
+        .getCount());
+    assertTrue("No connection should have been closed", requestResponseChannel.closedRequests.isEmpty());
+  }
+
+  /**
+   * @param scheduler the {@link DiskRequestScheduler} to handle requests on. Can be {@code null}.
+   * @return the {@link AmbryRequests} that sends its responses to {@link #requestResponseChannel}.
+   */
+  private AmbryRequests createAmbryRequests(DiskRequestScheduler scheduler) {
+    return new AmbryRequests(storageManager, requestResponseChannel, clusterMap, dataNode, registry, null, null, null,
+        null, scheduler);
+  }
+
+  /**
+   * Creates a {@link Request} as it is received from the network for a delete of a blob in the partition of
+   * {@code replica}.
+   * @param replica the replica whose partition the blob to delete belongs to.
+   * @return the {@link Request}.
+   * @throws IOException
+   */
+  private Request createDeleteRequest(ReplicaId replica) throws IOException {
+    DeleteRequest deleteRequest = new DeleteRequest(1, "clientId", new BlobId(replica.getPartitionId()));
+    ByteBufferChannel channel = new ByteBufferChannel(ByteBuffer.allocate((int) deleteRequest.sizeInBytes()));
+    deleteRequest.writeTo(channel);
+    ByteBuffer buffer = channel.getBuffer();
+    buffer.flip();
+    // the size of the request is consumed by the network layer.
+    buffer.getLong();
+    final InputStream stream = new ByteBufferInputStream(buffer);
+    final long startTimeInMs = SystemTime.getInstance().milliseconds();
+    return new Request() {
+      @Override
+      public InputStream getInputStream() {
+        return stream;
+      }
+
+      @Override
+      public long getStartTimeInMs() {
+        return startTimeInMs;
+      }
+    };
+  }
+
+  /**
+   * Waits for the next response and verifies it.
+   * @param expectedError the {@link ServerErrorCode} the response is expected to have.
+   * @param expectedThreadNamePrefix the prefix of the name of the thread that is expected to have sent the response.
+   * @throws InterruptedException
+   */
+  private void verifyResponse(ServerErrorCode expectedError, String expectedThreadNamePrefix)
+      throws InterruptedException {
+    SentResponse response = requestResponseChannel.responses.poll(10, TimeUnit.SECONDS);
+    assertNotNull("No response was sent", response);
+    assertTrue("Unexpected response: " + response.payload, response.payload instanceof DeleteResponse);
+    assertEquals("Unexpected error", expectedError, ((DeleteResponse) response.payload).getError());
+    assertTrue("Response was sent from unexpected thread " + response.threadName,
+        response.threadName.startsWith(expectedThreadNamePrefix));
+  }
+
+  /**
+   * A response and the name of the thread that sent it.
+   */
+  private static class SentResponse {
+    final Send payload;
+    final String threadName;
+
+    SentResponse(Send payload, String threadName) {
+      this.payload = payload;
+      this.threadName = threadName;
+    }
+  }
+
+  /**
+   * A {@link RequestResponseChannel} that records the responses that are sent and the connections that are closed.
+   */
+  private static class MockRequestResponseChannel implements RequestResponseChannel {
+    final LinkedBlockingQueue<SentResponse> responses = new LinkedBlockingQueue<>();
+    final LinkedBlockingQueue<Request> closedRequests = new LinkedBlockingQueue<>();
+
+    @Override
+    public void sendResponse(Send payloadToSend, Request originalRequest, ServerNetworkResponseMetrics metrics) {
+      responses.add(new SentResponse(payloadToSend, Thread.currentThread().getName()));
+    }
+
+    @Override
+    public Request receiveRequest() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void sendRequest(Request request) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void closeConnection(Request request) {
+      closedRequests.add(request);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link DiskRequestScheduler}.
+ */
+public class DiskRequestSchedulerTest {
+  private MockClusterMap clusterMap;
+  private List<ReplicaId> replicas;
+  private MetricRegistry registry;
+  private ServerMetrics metrics;
+
+  /**
+   * Startup the {@link MockClusterMap} for a test.
+   * @throws IOException
+   */
+  @Before
+  public void initializeCluster() throws IOException {
+    clusterMap = new MockClusterMap(false, 1, 2, 3);
+    replicas = clusterMap.getReplicaIds(clusterMap.getDataNodes().get(0));
+    registry = new MetricRegistry();
+    metrics = new ServerMetrics(registry);
+  }
+
+  /**
+   * Cleanup the {@link MockClusterMap} after a test.
+   * @throws IOException
+   */
+  @After
+  public void cleanupCluster() throws IOException {
+    clusterMap.cleanup();
+  }
+
+  /**
+   * Tests that the disk of a request is found only if all its partitions are on the same local disk.
+   * @throws InterruptedException
+   */
+  @Test
+  public void getDiskTest() throws InterruptedException {
+    ReplicaId remoteReplica = replicas.get(0);
+    List<ReplicaId> localReplicas = new ArrayList<>(replicas);
+    localReplicas.remove(remoteReplica);
+    DiskRequestScheduler scheduler = new DiskRequestScheduler(localReplicas, 1, 1, metrics);
+    try {
+      ReplicaId localReplica = localReplicas.get(0);
+      ReplicaId sameDiskReplica = null;
+      ReplicaId otherDiskReplica = null;
+      for (ReplicaId replica : localReplicas) {
+        if (!replica.getMountPath().equals(localReplica.getMountPath())) {
+          otherDiskReplica = replica;
+        } else if (replica != localReplica) {
+          sameDiskReplica = replica;
+        }
+      }
+      PartitionId partition = localReplica.getPartitionId();
+      assertEquals("Unexpected disk", localReplica.getMountPath(),
+          scheduler.getDisk(Collections.singletonList(partition)));
+      assertEquals("Partitions on the same disk should be scheduled on it", localReplica.getMountPath(),
+          scheduler.getDisk(Arrays.asList(partition, sameDiskReplica.getPartitionId())));
+      assertNull("Partitions on different disks should not be scheduled on a disk",
+          scheduler.getDisk(Arrays.asList(partition, otherDiskReplica.getPartitionId())));
+      assertNull("Partitions that are not local should not be scheduled on a disk",
+          scheduler.getDisk(Arrays.asList(partition, remoteReplica.getPartitionId())));
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  /**
+   * Tests that tasks are run on the threads of their disk and that a task is rejected when the queue of its disk is
+   * full, without affecting the other disks.
+   * @throws InterruptedException
+   */
+  @Test
+  public void scheduleTest() throws InterruptedException {
+    DiskRequestScheduler scheduler = new DiskRequestScheduler(replicas, 1, 1, metrics);
+    String disk = replicas.get(0).getMountPath();
+    String otherDisk = null;
+    for (ReplicaId replica : replicas) {
+      if (!replica.getMountPath().equals(disk)) {
+        otherDisk = replica.getMountPath();
+      }
+    }
+    final CountDownLatch blockLatch = new CountDownLatch(1);
+    final CountDownLatch runningLatch = new CountDownLatch(1);
+    final CountDownLatch doneLatch = new CountDownLatch(2);
+    final AtomicReference<String> threadName = new AtomicReference<>();
+    Runnable blockingTask = new Runnable() {
+      @Override
+      public void run() {
+        threadName.compareAndSet(null, Thread.currentThread().getName());
+        runningLatch.countDown();
+        try {
+          blockLatch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        doneLatch.countDown();
+      }
+    };
+    try {
+      // one task runs on the only thread of the disk, the other waits in its queue.
+      assertTrue("Task should have been scheduled", scheduler.schedule(disk, blockingTask));
+      assertTrue("Task did not start running", runningLatch.await(10, TimeUnit.SECONDS));
+      assertTrue("Task should have been queued", scheduler.schedule(disk, blockingTask));
+      assertFalse("Task should have been rejected as the queue of the disk is full",
+          scheduler.schedule(disk, blockingTask));
+      assertEquals("Unexpected rejected count", 1, metrics.diskRequestRejectedCount.get(disk).getCount());
+
+      final CountDownLatch otherDiskLatch = new CountDownLatch(1);
+      assertTrue("Task should have been scheduled on the other disk", scheduler.schedule(otherDisk, new Runnable() {
+        @Override
+        public void run() {
+          otherDiskLatch.countDown();
+        }
+      }));
+      assertTrue("Task on the other disk should not wait for the busy disk",
+          otherDiskLatch.await(10, TimeUnit.SECONDS));
+    } finally {
+      blockLatch.countDown();
+    }
+    assertTrue("Scheduled tasks did not complete", doneLatch.await(10, TimeUnit.SECONDS));
+    scheduler.shutdown();
+    assertTrue("Task should have run on a thread of its disk",
+        threadName.get().startsWith("disk-request-handler-" + ServerMetrics.getDiskMetricName(disk)));
+    assertEquals("Unexpected processed count", 2, metrics.diskRequestProcessingTimeInMs.get(disk).getCount());
+    assertEquals("Unexpected processed count on the other disk", 1,
+        metrics.diskRequestProcessingTimeInMs.get(otherDisk).getCount());
+  }
+
+  /**
+   * Tests that the per disk metrics are named without the separators of the mount path.
+   * @throws InterruptedException
+   */
+  @Test
+  public void diskMetricNameTest() throws InterruptedException {
+    assertEquals("Unexpected metric name", "mnt_u001", ServerMetrics.getDiskMetricName("/mnt/u001"));
+    assertEquals("Unexpected metric name", "mnt_ambry_data_1", ServerMetrics.getDiskMetricName("/mnt/ambry.data-1/"));
+    assertEquals("Unexpected metric name", "root", ServerMetrics.getDiskMetricName("/"));
+    DiskRequestScheduler scheduler = new DiskRequestScheduler(replicas, 1, 1, metrics);
+    try {
+      String disk = replicas.get(0).getMountPath();
+      String queueSizeName =
+          MetricRegistry.name(AmbryRequests.class, ServerMetrics.getDiskMetricName(disk) + "-DiskRequestQueueSize");
+      assertNotNull("Queue size gauge should be registered", registry.getGauges().get(queueSizeName));
+      for (String name : registry.getNames()) {
+        assertFalse("Metric name should not contain a mount path: " + name, name.contains("/"));
+      }
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+}
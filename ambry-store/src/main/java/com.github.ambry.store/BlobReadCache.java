@@ -0,0 +1,191 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * An application managed cache of the records of recently read small blobs of a store. Records are keyed by their
+ * offset in the log and evicted in least recently used order when the total size of the cached records exceeds the
+ * memory budget of the cache.
+ * <p/>
+ * Records in the log are immutable except for hard deletes and compaction which have to invalidate the records they
+ * change through {@link #invalidate(long, long)} and {@link #clear()}.
+ */
+class BlobReadCache {
+  private final long capacityInBytes;
+  private final long maxRecordSizeInBytes;
+  // access ordered, so that iteration starts at the least recently used record
+  private final LinkedHashMap<Long, byte[]> recordsByOffset = new LinkedHashMap<>(16, 0.75f, true);
+  // the same records ordered by offset, to find the record that contains an offset
+  private final TreeMap<Long, byte[]> sortedRecords = new TreeMap<>();
+  private long sizeInBytes = 0;
+  // incremented on every invalidation so that records read before an invalidation are not cached after it
+  private long generation = 0;
+
+  final AtomicLong hitCount = new AtomicLong(0);
+  final AtomicLong missCount = new AtomicLong(0);
+  final AtomicLong bytesServed = new AtomicLong(0);
+
+  /**
+   * Creates a cache.
+   * @param capacityInBytes the maximum total size of the records in the cache.
+   * @param maxRecordSizeInBytes the maximum size of a record that can be cached.
+   */
+  BlobReadCache(long capacityInBytes, long maxRecordSizeInBytes) {
+    this.capacityInBytes = capacityInBytes;
+    this.maxRecordSizeInBytes = Math.min(maxRecordSizeInBytes, capacityInBytes);
+  }
+
+  /**
+   * @param size the size of a record.
+   * @return {@code true} if a record of this size can be cached.
+   */
+  boolean isCacheable(long size) {
+    return size > 0 && size <= maxRecordSizeInBytes;
+  }
+
+  /**
+   * Gets the record at {@code offset} and records a hit or a miss.
+   * @param offset the offset of the record in the log.
+   * @param size the size of the record.
+   * @return the content of the record or {@code null} if it is not cached. The returned array must not be modified.
+   */
+  synchronized byte[] get(long offset, long size) {
+    byte[] record = recordsByOffset.get(offset);
+    if (record != null && record.length == size) {
+      hitCount.incrementAndGet();
+      return record;
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Checks if the record at {@code offset} is cached without recording a hit or a miss.
+   * @param offset the offset of the record in the log.
+   * @param size the size of the record.
+   * @return {@code true} if the record is cached.
+   */
+  synchronized boolean contains(long offset, long size) {
+    byte[] record = recordsByOffset.get(offset);
+    return record != null && record.length == size;
+  }
+
+  /**
+   * @return the current generation of the cache. Has to be obtained before a record is read from the log and passed
+   * to {@link #put(long, byte[], long)}.
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Adds a record to the cache, evicting the least recently used records if required. The record is not added if the
+   * cache was invalidated after the record was read.
+   * @param offset the offset of the record in the log.
+   * @param record the content of the record. Must not be modified after the call.
+   * @param generationAtRead the generation of the cache obtained through {@link #getGeneration()} before the record
+   *                         was read.
+   */
+  synchronized void put(long offset, byte[] record, long generationAtRead) {
+    if (!isCacheable(record.length) || generationAtRead != generation) {
+      return;
+    }
+    remove(offset);
+    recordsByOffset.put(offset, record);
+    sortedRecords.put(offset, record);
+    sizeInBytes += record.length;
+    Iterator<Map.Entry<Long, byte[]>> iterator = recordsByOffset.entrySet().iterator();
+    while (sizeInBytes > capacityInBytes && iterator.hasNext()) {
+      Map.Entry<Long, byte[]> eldest = iterator.next();
+      iterator.remove();
+      sortedRecords.remove(eldest.getKey());
+      sizeInBytes -= eldest.getValue().length;
+    }
+  }
+
+  /**
+   * Removes the cached records that overlap the given range of the log.
+   * @param offset the start offset of the range.
+   * @param size the size of the range.
+   */
+  synchronized void invalidate(long offset, long size) {
+    generation++;
+    Long start = sortedRecords.floorKey(offset);
+    if (start == null) {
+      start = offset;
+    }
+    Iterator<Map.Entry<Long, byte[]>> iterator = sortedRecords.subMap(start, true, offset + size, false)
+        .entrySet()
+        .iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, byte[]> entry = iterator.next();
+      // the entry cannot be used after it is removed from the tree map
+      long recordOffset = entry.getKey();
+      int recordSize = entry.getValue().length;
+      if (recordOffset + recordSize > offset) {
+        iterator.remove();
+        recordsByOffset.remove(recordOffset);
+        sizeInBytes -= recordSize;
+      }
+    }
+  }
+
+  /**
+   * Removes all the records from the cache.
+   */
+  synchronized void clear() {
+    generation++;
+    recordsByOffset.clear();
+    sortedRecords.clear();
+    sizeInBytes = 0;
+  }
+
+  /**
+   * @return the total size of the records in the cache.
+   */
+  synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * @return the number of records in the cache.
+   */
+  synchronized int getRecordCount() {
+    return recordsByOffset.size();
+  }
+
+  /**
+   * @return the ratio of hits to lookups since the cache was created. 0 if there were no lookups.
+   */
+  double getHitRatio() {
+    long hits = hitCount.get();
+    long lookups = hits + missCount.get();
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  private void remove(long offset) {
+    byte[] record = recordsByOffset.remove(offset);
+    if (record != null) {
+      sortedRecords.remove(offset);
+      sizeInBytes -= record.length;
+    }
+  }
+}
@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +43,13 @@ class BlobStore implements Store {
   private final String dataDir;
   private final ScheduledExecutorService taskScheduler;
   private final DiskIOScheduler diskIOScheduler;
+  private final ExecutorService indexSegmentLoader;
+  private final DiskSyncer diskSyncer;
   private Logger logger = LoggerFactory.getLogger(getClass());
   /* A lock that prevents concurrent writes to the log */
   private final Object lock = new Object();
+  /* Writes that are waiting to be committed by the next group commit */
+  private final ConcurrentLinkedQueue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
   private boolean started;
   private StoreConfig config;
   private long capacityInBytes;
@@ -59,10 +65,28 @@ class BlobStore implements Store {
       DiskIOScheduler diskIOScheduler, StorageManagerMetrics storageManagerMetrics, String dataDir,
       long capacityInBytes, StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete,
       Time time) {
+    this(storeId, config, taskScheduler, diskIOScheduler, null, null, storageManagerMetrics, dataDir, capacityInBytes,
+        factory, recovery, hardDelete, time);
+  }
+
+  /**
+   * Creates a store whose index segments are loaded in parallel on startup and whose writes are synced by a shared
+   * {@link DiskSyncer}.
+   * @param indexSegmentLoader the executor used to load the index segments on startup. If null, the segments are
+   *                           loaded sequentially.
+   * @param diskSyncer the {@link DiskSyncer} of the disk that syncs the writes to the log. If null, the log is only
+   *                   synced by the index persistor.
+   */
+  BlobStore(String storeId, StoreConfig config, ScheduledExecutorService taskScheduler,
+      DiskIOScheduler diskIOScheduler, ExecutorService indexSegmentLoader, DiskSyncer diskSyncer,
+      StorageManagerMetrics storageManagerMetrics, String dataDir, long capacityInBytes, StoreKeyFactory factory,
+      MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete, Time time) {
     this.metrics = storageManagerMetrics.createStoreMetrics(storeId);
     this.dataDir = dataDir;
     this.taskScheduler = taskScheduler;
     this.diskIOScheduler = diskIOScheduler;
+    this.indexSegmentLoader = indexSegmentLoader;
+    this.diskSyncer = diskSyncer;
     this.config = config;
     this.capacityInBytes = capacityInBytes;
     this.factory = factory;
@@ -101,8 +125,23 @@ class BlobStore implements Store {
               "Failed to acquire lock on file " + dataDir + ". Another process or thread is using this directory.",
               StoreErrorCodes.Initialization_Error);
         }
-        log = new Log(dataDir, capacityInBytes, config.storeSegmentSizeInBytes, metrics);
-        index = new PersistentIndex(dataDir, taskScheduler, log, config, factory, recovery, hardDelete, metrics, time);
+        final Timer.Context logLoadContext = metrics.logLoadTime.time();
+        BlobReadCache readCache = null;
+        if (config.storeReadCacheSizeBytes > 0) {
+          readCache = new BlobReadCache(config.storeReadCacheSizeBytes, config.storeReadCacheMaxBlobSizeBytes);
+          metrics.initializeReadCacheMetrics(readCache);
+        }
+        ReadCoalescer readCoalescer = null;
+        if (config.storeReadCoalescingMaxSizeBytes > 0) {
+          readCoalescer =
+              new ReadCoalescer(config.storeReadCoalescingMaxSizeBytes, config.storeReadCoalescingMaxGapBytes);
+          metrics.initializeReadCoalescerMetrics(readCoalescer);
+        }
+        log = new Log(dataDir, capacityInBytes, config.storeSegmentSizeInBytes, metrics, diskIOScheduler, readCache,
+            readCoalescer);
+        logLoadContext.stop();
+        index = new PersistentIndex(dataDir, taskScheduler, log, config, factory, recovery, hardDelete, metrics, time,
+            indexSegmentLoader);
         setSegmentStatesAndEndOffsets();
         metrics.initializeLogGauges(log, capacityInBytes);
         started = true;
@@ -122,12 +161,10 @@ class BlobStore implements Store {
     // allows concurrent gets
     final Timer.Context context = metrics.getResponse.time();
     try {
-      List<BlobReadOptions> readOptions = new ArrayList<BlobReadOptions>(ids.size());
+      List<BlobReadOptions> readOptions = index.getBlobReadInfo(ids, storeGetOptions);
       Map<StoreKey, MessageInfo> indexMessages = new HashMap<StoreKey, MessageInfo>(ids.size());
-      for (StoreKey key : ids) {
-        BlobReadOptions readInfo = index.getBlobReadInfo(key, storeGetOptions);
-        readOptions.add(readInfo);
-        indexMessages.put(key, readInfo.getMessageInfo());
+      for (BlobReadOptions readInfo : readOptions) {
+        indexMessages.put(readInfo.getStoreKey(), readInfo.getMessageInfo());
       }
 
       MessageReadSet readSet = log.getView(readOptions);
@@ -163,36 +200,7 @@ class BlobStore implements Store {
           throw new StoreException("Key already exists in store", StoreErrorCodes.Already_Exist);
         }
       }
-
-      synchronized (lock) {
-        // Validate that log end offset was not changed. If changed, check once again for existing
-        // keys in store
-        long currentIndexEndOffset = index.getCurrentEndOffset();
-        if (currentIndexEndOffset != indexEndOffsetBeforeCheck) {
-          FileSpan fileSpan = new FileSpan(indexEndOffsetBeforeCheck, currentIndexEndOffset);
-          for (MessageInfo info : messageSetToWrite.getMessageSetInfo()) {
-            if (index.findKey(info.getStoreKey(), fileSpan) != null) {
-              throw new StoreException("Key already exists on filespan check", StoreErrorCodes.Already_Exist);
-            }
-          }
-        }
-        // TODO (Index changes): Working under the assumption that there is only one log segment.
-        long currentLogEndOffset = log.getEndOffset().getOffset();
-        messageSetToWrite.writeTo(log);
-        logger.trace("Store : {} message set written to log", dataDir);
-        List<MessageInfo> messageInfo = messageSetToWrite.getMessageSetInfo();
-        ArrayList<IndexEntry> indexEntries = new ArrayList<IndexEntry>(messageInfo.size());
-        for (MessageInfo info : messageInfo) {
-          IndexValue value =
-              new IndexValue(info.getSize(), currentLogEndOffset, (byte) 0, info.getExpirationTimeInMs());
-          IndexEntry entry = new IndexEntry(info.getStoreKey(), value);
-          indexEntries.add(entry);
-          currentLogEndOffset += info.getSize();
-        }
-        FileSpan fileSpan = new FileSpan(indexEntries.get(0).getValue().getOffset(), currentLogEndOffset);
-        index.addToIndex(indexEntries, fileSpan);
-        logger.trace("Store : {} message set written to index ", dataDir);
-      }
+      commit(new PendingWrite(messageSetToWrite, false, indexEndOffsetBeforeCheck));
     } catch (StoreException e) {
       throw e;
     } catch (IOException e) {
@@ -223,30 +231,7 @@ class BlobStore implements Store {
               StoreErrorCodes.ID_Deleted);
         }
       }
-      synchronized (lock) {
-        long currentIndexEndOffset = index.getCurrentEndOffset();
-        if (indexEndOffsetBeforeCheck != currentIndexEndOffset) {
-          FileSpan fileSpan = new FileSpan(indexEndOffsetBeforeCheck, currentIndexEndOffset);
-          for (MessageInfo info : infoList) {
-            IndexValue value = index.findKey(info.getStoreKey(), fileSpan);
-            if (value != null && value.isFlagSet(IndexValue.Flags.Delete_Index)) {
-              throw new StoreException(
-                  "Cannot delete id " + info.getStoreKey() + " since it is already deleted in the index.",
-                  StoreErrorCodes.ID_Deleted);
-            }
-          }
-        }
-        // TODO (Index changes): Working under the assumption that there is only one log segment.
-        long currentLogEndOffset = log.getEndOffset().getOffset();
-        messageSetToDelete.writeTo(log);
-        logger.trace("Store : {} delete mark written to log", dataDir);
-        for (MessageInfo info : infoList) {
-          FileSpan fileSpan = new FileSpan(currentLogEndOffset, currentLogEndOffset + info.getSize());
-          index.markAsDeleted(info.getStoreKey(), fileSpan);
-          currentLogEndOffset += info.getSize();
-        }
-        logger.trace("Store : {} delete has been marked in the index ", dataDir);
-      }
+      commit(new PendingWrite(messageSetToDelete, true, indexEndOffsetBeforeCheck));
     } catch (StoreException e) {
       throw e;
     } catch (IOException e) {
@@ -260,6 +245,161 @@ class BlobStore implements Store {
     }
   }
 
+  /**
+   * Queues the given {@link PendingWrite} for the next group commit and waits for it to be committed. The first writer
+   * to acquire the write lock commits all the writes queued so far (up to
+   * {@link StoreConfig#storeMaxWritesPerGroupCommit}), so writers that were waiting for the lock usually find their
+   * write already committed. If there is a {@link DiskSyncer}, the write is then reported to it outside of the write
+   * lock, so that waiting for the sync does not hold up the writes of other callers.
+   * <p/>
+   * If the writes wait for the sync and the sync fails, the write fails with an {@link IOException} even though it is
+   * already in the log and the index, and so visible to readers. It cannot be taken back, as other writes may have
+   * followed it. A retry of a put that failed this way fails with {@link StoreErrorCodes#Already_Exist}, and a retry
+   * of such a delete with {@link StoreErrorCodes#ID_Deleted}.
+   * @param write the {@link PendingWrite} that needs to be committed.
+   * @throws StoreException if the write failed the duplicate or delete checks or could not be added to the index.
+   * @throws IOException if there was an I/O error while writing to the log, or while syncing the log after the write.
+   */
+  private void commit(PendingWrite write) throws StoreException, IOException {
+    pendingWrites.add(write);
+    synchronized (lock) {
+      while (!write.committed) {
+        groupCommit();
+      }
+    }
+    if (write.exception == null && diskSyncer != null) {
+      try {
+        diskSyncer.onWrite(log);
+      } catch (IOException e) {
+        throw new IOException("Write to store " + dataDir + " is visible but could not be synced to disk", e);
+      }
+    }
+    if (write.exception instanceof StoreException) {
+      throw (StoreException) write.exception;
+    } else if (write.exception instanceof IOException) {
+      throw (IOException) write.exception;
+    } else if (write.exception != null) {
+      throw (RuntimeException) write.exception;
+    }
+  }
+
+  /**
+   * Writes a batch of queued {@link PendingWrite}s to the log one after the other and then adds the index entries of
+   * all of them to the index in a single call. A write that fails does not fail the other writes in the batch. Has to
+   * be called with the write lock held.
+   */
+  private void groupCommit() {
+    final Timer.Context context = metrics.groupCommitTime.time();
+    List<PendingWrite> batch = new ArrayList<PendingWrite>();
+    List<PendingWrite> indexedWrites = new ArrayList<PendingWrite>();
+    // the index values of the entries in this batch that have not been added to the index yet
+    Map<StoreKey, IndexValue> batchValues = new HashMap<StoreKey, IndexValue>();
+    ArrayList<IndexEntry> indexEntries = new ArrayList<IndexEntry>();
+    long batchEndOffset = 0;
+    PendingWrite write;
+    while (batch.size() < config.storeMaxWritesPerGroupCommit && (write = pendingWrites.poll()) != null) {
+      batch.add(write);
+      try {
+        List<MessageInfo> infoList = write.messageWriteSet.getMessageSetInfo();
+        List<IndexValue> valuesToDelete = null;
+        if (write.isDelete) {
+          valuesToDelete = getValuesToDelete(infoList, batchValues);
+        } else {
+          checkPutsInBatch(infoList, write.indexEndOffsetBeforeCheck, batchValues);
+        }
+        // TODO (Index changes): Working under the assumption that there is only one log segment.
+        long currentLogEndOffset = log.getEndOffset().getOffset();
+        write.messageWriteSet.writeTo(log);
+        logger.trace("Store : {} message set written to log", dataDir);
+        for (int i = 0; i < infoList.size(); i++) {
+          MessageInfo info = infoList.get(i);
+          FileSpan fileSpan = new FileSpan(currentLogEndOffset, currentLogEndOffset + info.getSize());
+          IndexValue value;
+          if (write.isDelete) {
+            value = PersistentIndex.newDeleteValue(valuesToDelete.get(i), fileSpan);
+          } else {
+            value = new IndexValue(info.getSize(), currentLogEndOffset, (byte) 0, info.getExpirationTimeInMs());
+          }
+          indexEntries.add(new IndexEntry(info.getStoreKey(), value));
+          batchValues.put(info.getStoreKey(), value);
+          currentLogEndOffset = fileSpan.getEndOffset();
+        }
+        batchEndOffset = currentLogEndOffset;
+        indexedWrites.add(write);
+      } catch (Exception e) {
+        write.exception = e;
+      }
+    }
+    if (indexEntries.size() > 0) {
+      try {
+        FileSpan fileSpan = new FileSpan(indexEntries.get(0).getValue().getOffset(), batchEndOffset);
+        index.addToIndex(indexEntries, fileSpan);
+        logger.trace("Store : {} {} writes added to index", dataDir, indexedWrites.size());
+      } catch (Exception e) {
+        for (PendingWrite indexedWrite : indexedWrites) {
+          indexedWrite.exception = e;
+        }
+      }
+    }
+    for (PendingWrite committedWrite : batch) {
+      committedWrite.committed = true;
+    }
+    metrics.groupCommitBatchSize.update(batch.size());
+    context.stop();
+  }
+
+  /**
+   * Checks that none of the keys to be put exist in the part of the index that was added after the checks done by the
+   * caller or in the entries of the current batch that are yet to be added to the index.
+   * @param infoList the {@link MessageInfo}s of the keys to be put.
+   * @param indexEndOffsetBeforeCheck the end offset of the index when the caller checked for existing keys.
+   * @param batchValues the index values of the entries in the current batch that are yet to be added to the index.
+   * @throws StoreException if any of the keys already exists.
+   */
+  private void checkPutsInBatch(List<MessageInfo> infoList, long indexEndOffsetBeforeCheck,
+      Map<StoreKey, IndexValue> batchValues) throws StoreException {
+    // Validate that log end offset was not changed. If changed, check once again for existing
+    // keys in store
+    long currentIndexEndOffset = index.getCurrentEndOffset();
+    FileSpan fileSpan = currentIndexEndOffset != indexEndOffsetBeforeCheck ? new FileSpan(indexEndOffsetBeforeCheck,
+        currentIndexEndOffset) : null;
+    for (MessageInfo info : infoList) {
+      if (batchValues.containsKey(info.getStoreKey()) || (fileSpan != null
+          && index.findKey(info.getStoreKey(), fileSpan) != null)) {
+        throw new StoreException("Key already exists on filespan check", StoreErrorCodes.Already_Exist);
+      }
+    }
+  }
+
+  /**
+   * Gets the current values of the keys to be deleted, taking into account the entries of the current batch that are
+   * yet to be added to the index.
+   * @param infoList the {@link MessageInfo}s of the keys to be deleted.
+   * @param batchValues the index values of the entries in the current batch that are yet to be added to the index.
+   * @return the current values of the keys to be deleted, in the order of {@code infoList}.
+   * @throws StoreException if any of the keys does not exist or is already deleted.
+   */
+  private List<IndexValue> getValuesToDelete(List<MessageInfo> infoList, Map<StoreKey, IndexValue> batchValues)
+      throws StoreException {
+    List<IndexValue> values = new ArrayList<IndexValue>(infoList.size());
+    for (MessageInfo info : infoList) {
+      IndexValue value = batchValues.get(info.getStoreKey());
+      if (value == null) {
+        value = index.findKey(info.getStoreKey());
+      }
+      if (value == null) {
+        throw new StoreException("Id " + info.getStoreKey() + " not present in index " + dataDir,
+            StoreErrorCodes.ID_Not_Found);
+      } else if (value.isFlagSet(IndexValue.Flags.Delete_Index)) {
+        throw new StoreException(
+            "Cannot delete id " + info.getStoreKey() + " since it is already deleted in the index.",
+            StoreErrorCodes.ID_Deleted);
+      }
+      values.add(value);
+    }
+    return values;
+  }
+
   @Override
   public FindInfo findEntriesSince(FindToken token, long maxTotalSizeOfEntries) throws StoreException {
     checkStarted();
@@ -348,4 +488,22 @@ class BlobStore implements Store {
     firstSegment.setEndOffset(index.getCurrentEndOffset());
     log.setActiveSegment(firstSegment.getName());
   }
+
+  /**
+   * A put or a delete that is waiting to be committed to the log and the index by a group commit.
+   */
+  private static class PendingWrite {
+    final MessageWriteSet messageWriteSet;
+    final boolean isDelete;
+    final long indexEndOffsetBeforeCheck;
+    // guarded by the write lock of the store
+    boolean committed = false;
+    Exception exception = null;
+
+    PendingWrite(MessageWriteSet messageWriteSet, boolean isDelete, long indexEndOffsetBeforeCheck) {
+      this.messageWriteSet = messageWriteSet;
+      this.isDelete = isDelete;
+      this.indexEndOffsetBeforeCheck = indexEndOffsetBeforeCheck;
+    }
+  }
 }
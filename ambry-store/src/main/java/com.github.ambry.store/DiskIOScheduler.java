@@ -14,10 +14,20 @@
 
 package com.github.ambry.store;
 
+import com.github.ambry.config.StoreConfig;
+import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Throttler;
+import com.github.ambry.utils.Time;
 import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -26,18 +36,75 @@ import java.util.Map;
  * 1. Application reads/writes from/to the log.
  * 2. Hard delete
  * 3. Compaction
- * The initial implementation simply returns MAX_VALUE for the application and uses the throttler for the other 2.
- * In the future this will have functions to submit feedback so that more intelligent decisions can be made.
+ * Application I/O is never limited. Instead, it reports its latency and the number of concurrent operations through
+ * {@link #foregroundIOStarted()} and {@link #foregroundIOCompleted(long, long)}. Appends exclude the time spent
+ * reading from their source through {@link #timeReads(ReadableByteChannel)}. Transfers to the network are reported
+ * as a whole since they write to non-blocking sockets and do not wait for the other end. Every adjustment interval,
+ * the scheduler compares the 99th percentile foreground latency and the maximum queue depth against their limits and
+ * changes the fraction of their configured rate that background jobs are allowed to use (additive increase,
+ * multiplicative decrease). Background jobs are throttled at the scaled rate in {@link #getSlice(String, String, long)}.
  */
 class DiskIOScheduler implements Closeable {
+  static final double Foreground_Latency_Percentile = 0.99;
+  private static final double Budget_Increase_Step = 0.1;
+  private static final int Max_Latency_Samples_Per_Interval = 1024;
+
   private final Map<String, Throttler> throttlers;
+  private final Map<String, Double> maxRatesPerSec = new HashMap<>();
+  private final Time time;
+  private final long latencySloNs;
+  private final int maxQueueDepth;
+  private final long adjustmentIntervalMs;
+  private final double minBudgetFraction;
+
+  private final AtomicInteger foregroundQueueDepth = new AtomicInteger(0);
+  private final AtomicInteger maxForegroundQueueDepthInInterval = new AtomicInteger(0);
+  final AtomicLong budgetDecreaseCount = new AtomicLong(0);
+  final AtomicLong budgetIncreaseCount = new AtomicLong(0);
+
+  private final Object sampleLock = new Object();
+  private final long[] latencySamplesNs = new long[Max_Latency_Samples_Per_Interval];
+  private int numLatencySamples = 0;
+  private long numForegroundIOsInInterval = 0;
+  private volatile long intervalStartMs;
+
+  private volatile double budgetFraction = 1.0;
+  private volatile long lastForegroundLatencyPercentileNs = 0;
 
   /**
-   * Create a {@link DiskIOScheduler}.
+   * Create a {@link DiskIOScheduler} that does not budget background I/O based on feedback.
    * @param throttlers the {@link Throttler}s to use for each job type.
    */
   DiskIOScheduler(Map<String, Throttler> throttlers) {
+    this(throttlers, null, SystemTime.getInstance());
+  }
+
+  /**
+   * Create a {@link DiskIOScheduler}.
+   * @param throttlers the {@link Throttler}s to use for each job type. Their rates at the time of construction are
+   *                   treated as the maximum rates for the job types.
+   * @param config the {@link StoreConfig} that contains the foreground latency SLO and the budgeting parameters. If
+   *               {@code null} or if the SLO is 0, the budget of background jobs is not changed.
+   * @param time the {@link Time} instance to use.
+   */
+  DiskIOScheduler(Map<String, Throttler> throttlers, StoreConfig config, Time time) {
     this.throttlers = throttlers != null ? throttlers : new HashMap<String, Throttler>();
+    for (Map.Entry<String, Throttler> jobTypeAndThrottler : this.throttlers.entrySet()) {
+      maxRatesPerSec.put(jobTypeAndThrottler.getKey(), jobTypeAndThrottler.getValue().getDesiredRatePerSec());
+    }
+    this.time = time;
+    if (config != null && config.storeIoSchedulerForegroundLatencySloMs > 0) {
+      latencySloNs = config.storeIoSchedulerForegroundLatencySloMs * Time.NsPerMs;
+      maxQueueDepth = config.storeIoSchedulerMaxForegroundQueueDepth;
+      adjustmentIntervalMs = config.storeIoSchedulerAdjustmentIntervalMs;
+      minBudgetFraction = config.storeIoSchedulerMinBackgroundBudgetFraction;
+    } else {
+      latencySloNs = 0;
+      maxQueueDepth = Integer.MAX_VALUE;
+      adjustmentIntervalMs = Long.MAX_VALUE;
+      minBudgetFraction = 1.0;
+    }
+    intervalStartMs = time.milliseconds();
   }
 
   /**
@@ -48,6 +115,7 @@ class DiskIOScheduler implements Closeable {
    * @return the I/O slice available for use.
    */
   long getSlice(String jobType, String jobId, long usedSinceLastCall) {
+    maybeAdjustBudget();
     Throttler throttler = throttlers.get(jobType);
     if (throttler != null) {
       try {
@@ -59,6 +127,98 @@ class DiskIOScheduler implements Closeable {
     return Long.MAX_VALUE;
   }
 
+  /**
+   * Records the start of a foreground (application) I/O operation.
+   * @return the start time of the operation in nanoseconds. Has to be passed to {@link #foregroundIOCompleted(long)}.
+   */
+  long foregroundIOStarted() {
+    int queueDepth = foregroundQueueDepth.incrementAndGet();
+    int maxQueueDepthInInterval = maxForegroundQueueDepthInInterval.get();
+    while (queueDepth > maxQueueDepthInInterval && !maxForegroundQueueDepthInInterval.compareAndSet(
+        maxQueueDepthInInterval, queueDepth)) {
+      maxQueueDepthInInterval = maxForegroundQueueDepthInInterval.get();
+    }
+    return time.nanoseconds();
+  }
+
+  /**
+   * Records the completion of a foreground (application) I/O operation.
+   * @param startTimeNs the start time of the operation as returned by {@link #foregroundIOStarted()}.
+   */
+  void foregroundIOCompleted(long startTimeNs) {
+    foregroundIOCompleted(startTimeNs, 0);
+  }
+
+  /**
+   * Records the completion of a foreground (application) I/O operation that spent part of its time off the disk.
+   * @param startTimeNs the start time of the operation as returned by {@link #foregroundIOStarted()}.
+   * @param nonDiskTimeNs the time the operation spent off the disk, e.g. reading the data to append from its source.
+   *                      It is not counted in the latency of the operation.
+   */
+  void foregroundIOCompleted(long startTimeNs, long nonDiskTimeNs) {
+    foregroundQueueDepth.decrementAndGet();
+    if (latencySloNs == 0) {
+      // the budget is never adjusted, so there is no need to sample the latency.
+      return;
+    }
+    long latencyNs = Math.max(time.nanoseconds() - startTimeNs - nonDiskTimeNs, 0);
+    synchronized (sampleLock) {
+      // reservoir sampling keeps the samples of an interval representative without unbounded memory
+      numForegroundIOsInInterval++;
+      if (numLatencySamples < latencySamplesNs.length) {
+        latencySamplesNs[numLatencySamples++] = latencyNs;
+      } else {
+        long index = ThreadLocalRandom.current().nextLong(numForegroundIOsInInterval);
+        if (index < latencySamplesNs.length) {
+          latencySamplesNs[(int) index] = latencyNs;
+        }
+      }
+    }
+    maybeAdjustBudget();
+  }
+
+  /**
+   * Wraps the source of a foreground append so that the time spent reading from it can be passed to
+   * {@link #foregroundIOCompleted(long, long)}.
+   * @param channel the source of the append.
+   * @return a {@link TimedReadableByteChannel} that reads from {@code channel}.
+   */
+  TimedReadableByteChannel timeReads(ReadableByteChannel channel) {
+    return new TimedReadableByteChannel(channel, time);
+  }
+
+  /**
+   * @return the fraction of their maximum rate that background jobs are currently allowed to use.
+   */
+  double getBudgetFraction() {
+    return budgetFraction;
+  }
+
+  /**
+   * Re-evaluates the budget of background jobs if an adjustment interval has elapsed and returns it. For background
+   * jobs that throttle themselves instead of through {@link #getSlice(String, String, long)}.
+   * @return the fraction of their maximum rate that background jobs are currently allowed to use.
+   */
+  double getCurrentBudgetFraction() {
+    maybeAdjustBudget();
+    return budgetFraction;
+  }
+
+  /**
+   * @return the {@link #Foreground_Latency_Percentile} foreground I/O latency in the last completed adjustment interval
+   * in nanoseconds.
+   */
+  long getForegroundLatencyPercentileNs() {
+    return lastForegroundLatencyPercentileNs;
+  }
+
+  /**
+   * @return the number of foreground I/O operations currently in progress.
+   */
+  int getForegroundQueueDepth() {
+    return foregroundQueueDepth.get();
+  }
+
   /**
    * Release resources and close throttlers
    */
@@ -68,5 +228,86 @@ class DiskIOScheduler implements Closeable {
       throttler.close();
     }
   }
-}
 
+  /**
+   * Re-evaluates the budget of background jobs if an adjustment interval has elapsed since the last evaluation.
+   */
+  private void maybeAdjustBudget() {
+    if (latencySloNs == 0 || time.milliseconds() - intervalStartMs < adjustmentIntervalMs) {
+      return;
+    }
+    synchronized (sampleLock) {
+      long now = time.milliseconds();
+      if (now - intervalStartMs < adjustmentIntervalMs) {
+        return;
+      }
+      intervalStartMs = now;
+      long latencyPercentileNs = 0;
+      if (numLatencySamples > 0) {
+        Arrays.sort(latencySamplesNs, 0, numLatencySamples);
+        int index = (int) Math.ceil(Foreground_Latency_Percentile * numLatencySamples) - 1;
+        latencyPercentileNs = latencySamplesNs[Math.max(index, 0)];
+      }
+      numLatencySamples = 0;
+      numForegroundIOsInInterval = 0;
+      int maxQueueDepthInInterval = maxForegroundQueueDepthInInterval.getAndSet(foregroundQueueDepth.get());
+      lastForegroundLatencyPercentileNs = latencyPercentileNs;
+      double newBudgetFraction;
+      if (latencyPercentileNs > latencySloNs || maxQueueDepthInInterval > maxQueueDepth) {
+        newBudgetFraction = Math.max(budgetFraction / 2, minBudgetFraction);
+        budgetDecreaseCount.incrementAndGet();
+      } else {
+        newBudgetFraction = Math.min(budgetFraction + Budget_Increase_Step, 1.0);
+        budgetIncreaseCount.incrementAndGet();
+      }
+      if (newBudgetFraction != budgetFraction) {
+        budgetFraction = newBudgetFraction;
+        for (Map.Entry<String, Throttler> jobTypeAndThrottler : throttlers.entrySet()) {
+          double maxRatePerSec = maxRatesPerSec.get(jobTypeAndThrottler.getKey());
+          jobTypeAndThrottler.getValue().setDesiredRatePerSec(maxRatePerSec * newBudgetFraction);
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@link ReadableByteChannel} that keeps track of the time spent reading from the channel it wraps.
+   */
+  static class TimedReadableByteChannel implements ReadableByteChannel {
+    private final ReadableByteChannel channel;
+    private final Time time;
+    private long readTimeNs = 0;
+
+    private TimedReadableByteChannel(ReadableByteChannel channel, Time time) {
+      this.channel = channel;
+      this.time = time;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      long startTimeNs = time.nanoseconds();
+      try {
+        return channel.read(dst);
+      } finally {
+        readTimeNs += time.nanoseconds() - startTimeNs;
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    /**
+     * @return the total time spent reading from the wrapped channel in nanoseconds.
+     */
+    long getReadTimeNs() {
+      return readTimeNs;
+    }
+  }
+}
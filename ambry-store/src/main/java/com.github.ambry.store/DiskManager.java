@@ -26,6 +26,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -40,6 +43,11 @@ class DiskManager {
   private final DiskId disk;
   private final StorageManagerMetrics metrics;
   private final DiskIOScheduler diskIOScheduler;
+  // syncs the logs of the stores on this disk if the sync policy is not periodic
+  private final DiskSyncer diskSyncer;
+  private final StoreConfig config;
+  // loads the index segments of the stores on this disk in parallel during startup
+  private final ExecutorService indexSegmentLoader;
 
   private static final Logger logger = LoggerFactory.getLogger(DiskManager.class);
 
@@ -60,45 +68,62 @@ class DiskManager {
       MessageStoreHardDelete hardDelete, Time time) {
     this.disk = disk;
     this.metrics = metrics;
-    diskIOScheduler = new DiskIOScheduler(null);
+    this.config = config;
+    diskIOScheduler = new DiskIOScheduler(null, config, time);
+    metrics.initializeDiskIOSchedulerMetrics(diskIOScheduler, disk.getMountPath());
+    diskSyncer = config.storeDataSyncPolicy.equals("periodic") ? null
+        : new DiskSyncer(disk.getMountPath(), config.storeDataSyncIntervalMs,
+            config.storeDataSyncPolicy.equals("group"), metrics, time);
+    indexSegmentLoader =
+        Utils.newScheduler(config.storeIndexSegmentLoadThreadsPerDisk, "index-segment-loader-" + disk + "-", true);
     for (ReplicaId replica : replicas) {
       if (disk.equals(replica.getDiskId())) {
         String storeId = replica.getPartitionId().toString();
-        BlobStore store = new BlobStore(storeId, config, scheduler, diskIOScheduler, metrics, replica.getReplicaPath(),
-            replica.getCapacityInBytes(), keyFactory, recovery, hardDelete, time);
+        BlobStore store =
+            new BlobStore(storeId, config, scheduler, diskIOScheduler, indexSegmentLoader, diskSyncer, metrics,
+                replica.getReplicaPath(), replica.getCapacityInBytes(), keyFactory, recovery, hardDelete, time);
         stores.put(replica.getPartitionId(), store);
       }
     }
   }
 
   /**
-   * Starts all the stores on this disk.
+   * Starts all the stores on this disk. At most {@link StoreConfig#storeStartupThreadsPerDisk} stores are started
+   * concurrently.
    */
   void start() throws InterruptedException {
     Timer.Context context = metrics.diskStartTime.time();
     try {
       File mountPath = new File(disk.getMountPath());
       if (mountPath.exists()) {
-        List<Thread> startupThreads = new ArrayList<>();
+        ExecutorService startupExecutor =
+            Utils.newScheduler(Math.max(1, Math.min(stores.size(), config.storeStartupThreadsPerDisk)),
+                "store-startup-" + disk + "-", false);
         final AtomicInteger numFailures = new AtomicInteger(0);
-        for (final Map.Entry<PartitionId, BlobStore> partitionAndStore : stores.entrySet()) {
-          Thread thread = Utils.newThread("store-startup-" + partitionAndStore.getKey(), new Runnable() {
-            @Override
-            public void run() {
-              try {
-                partitionAndStore.getValue().start();
-              } catch (Exception e) {
-                numFailures.incrementAndGet();
-                metrics.totalStoreStartFailures.inc();
-                logger.error("Exception while starting store for the partition" + partitionAndStore.getKey(), e);
+        List<Future<?>> startupFutures = new ArrayList<>();
+        try {
+          for (final Map.Entry<PartitionId, BlobStore> partitionAndStore : stores.entrySet()) {
+            startupFutures.add(startupExecutor.submit(new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  partitionAndStore.getValue().start();
+                } catch (Exception e) {
+                  numFailures.incrementAndGet();
+                  metrics.totalStoreStartFailures.inc();
+                  logger.error("Exception while starting store for the partition" + partitionAndStore.getKey(), e);
+                }
               }
-            }
-          }, false);
-          thread.start();
-          startupThreads.add(thread);
-        }
-        for (Thread startupThread : startupThreads) {
-          startupThread.join();
+            }));
+          }
+          for (Future<?> startupFuture : startupFutures) {
+            startupFuture.get();
+          }
+        } catch (ExecutionException e) {
+          // failures are handled by the startup tasks themselves
+          logger.error("Unexpected exception while starting stores on the disk " + disk, e);
+        } finally {
+          startupExecutor.shutdown();
         }
         if (numFailures.get() > 0) {
           logger.error(
@@ -110,6 +135,8 @@ class DiskManager {
         logger.error("Mount path does not exist: " + mountPath + " ; cannot start stores on this disk");
       }
     } finally {
+      // the index segments are only loaded on startup
+      indexSegmentLoader.shutdown();
       context.stop();
     }
   }
@@ -126,6 +153,10 @@ class DiskManager {
             "Exception while shutting down store for partition " + partitionAndStore.getKey() + " on disk " + disk);
       }
     }
+    indexSegmentLoader.shutdown();
+    if (diskSyncer != null) {
+      diskSyncer.close();
+    }
     diskIOScheduler.close();
   }
 
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.codahale.metrics.Timer;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Syncs the logs of all the stores on a disk to the disk. Stores report every write to their log through
+ * {@link #onWrite(Log)}. A single thread per disk syncs all the logs that were written to since the last sync, at most
+ * once every sync interval, so that the writes to all the stores on the disk that happen during the interval share the
+ * same {@link java.nio.channels.FileChannel#force(boolean)} calls. If writes wait for the sync, they only complete once
+ * the sync that covers them is done.
+ */
+class DiskSyncer implements Closeable {
+  private final String diskName;
+  private final long syncIntervalMs;
+  private final boolean waitForSync;
+  private final StorageManagerMetrics metrics;
+  private final Time time;
+  private final Thread syncThread;
+  private final Object lock = new Object();
+  // the batch that the writes reported now will be synced by. Guarded by lock
+  private SyncBatch currentBatch = new SyncBatch();
+  private boolean closed = false;
+
+  private static final Logger logger = LoggerFactory.getLogger(DiskSyncer.class);
+
+  /**
+   * Creates a {@link DiskSyncer} and starts its sync thread.
+   * @param diskName the name of the disk.
+   * @param syncIntervalMs the minimum interval between two syncs.
+   * @param waitForSync {@code true} if {@link #onWrite(Log)} has to wait for the sync that covers the write.
+   * @param metrics the {@link StorageManagerMetrics} to record syncs in.
+   * @param time the {@link Time} instance to use.
+   */
+  DiskSyncer(String diskName, long syncIntervalMs, boolean waitForSync, StorageManagerMetrics metrics, Time time) {
+    this.diskName = diskName;
+    this.syncIntervalMs = syncIntervalMs;
+    this.waitForSync = waitForSync;
+    this.metrics = metrics;
+    this.time = time;
+    syncThread = Utils.newThread("disk-syncer-" + diskName, new SyncRunnable(), true);
+    syncThread.start();
+  }
+
+  /**
+   * Reports a write to {@code log} that has to be synced. If writes wait for the sync, waits until the write is synced
+   * to the disk.
+   * @param log the {@link Log} that was written to.
+   * @throws IOException if writes wait for the sync and the sync of the log failed or the wait was interrupted. The
+   * write itself is already visible in the log at that point.
+   */
+  void onWrite(Log log) throws IOException {
+    SyncBatch batch;
+    synchronized (lock) {
+      if (closed) {
+        throw new IOException("Syncer of disk " + diskName + " is closed");
+      }
+      batch = currentBatch;
+      Integer writeCount = batch.writeCounts.get(log);
+      batch.writeCounts.put(log, writeCount == null ? 1 : writeCount + 1);
+      lock.notifyAll();
+    }
+    if (waitForSync) {
+      Timer.Context context = metrics.diskSyncWaitTime.time();
+      try {
+        batch.await(log);
+      } finally {
+        context.stop();
+      }
+    }
+  }
+
+  /**
+   * Stops the sync thread after it synced the writes that were reported so far.
+   */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      closed = true;
+      lock.notifyAll();
+    }
+    try {
+      syncThread.join();
+    } catch (InterruptedException e) {
+      logger.error("Interrupted while waiting for the syncer of disk {} to stop", diskName, e);
+    }
+  }
+
+  /**
+   * The writes that are synced by the same sync, grouped by the log they were made to.
+   */
+  private static class SyncBatch {
+    // guarded by the lock of the syncer until the batch is synced
+    final Map<Log, Integer> writeCounts = new LinkedHashMap<>();
+    // the logs whose sync failed. Only written before the batch is synced
+    final Map<Log, IOException> failures = new HashMap<>();
+    final CountDownLatch synced = new CountDownLatch(1);
+
+    /**
+     * Waits until this batch is synced.
+     * @param log the {@link Log} that the caller wrote to.
+     * @throws IOException if the sync of the log failed or the wait was interrupted.
+     */
+    void await(Log log) throws IOException {
+      try {
+        synced.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while waiting for the sync of the log");
+      }
+      IOException exception = failures.get(log);
+      if (exception != null) {
+        throw new IOException("Sync of the log failed", exception);
+      }
+    }
+  }
+
+  /**
+   * Syncs the batches of writes one after the other.
+   */
+  private class SyncRunnable implements Runnable {
+
+    @Override
+    public void run() {
+      long lastSyncStartMs = 0;
+      try {
+        while (true) {
+          synchronized (lock) {
+            while (currentBatch.writeCounts.isEmpty() && !closed) {
+              lock.wait();
+            }
+            if (currentBatch.writeCounts.isEmpty()) {
+              return;
+            }
+          }
+          // writes that happen until the interval since the last sync elapses are synced together
+          long sleepTimeMs = lastSyncStartMs + syncIntervalMs - time.milliseconds();
+          if (sleepTimeMs > 0) {
+            time.sleep(sleepTimeMs);
+          }
+          SyncBatch batch;
+          synchronized (lock) {
+            batch = currentBatch;
+            currentBatch = new SyncBatch();
+          }
+          lastSyncStartMs = time.milliseconds();
+          sync(batch);
+        }
+      } catch (InterruptedException e) {
+        logger.error("Syncer of disk {} was interrupted", diskName, e);
+      } finally {
+        synchronized (lock) {
+          closed = true;
+          // fail the writes that were reported but will not be synced
+          for (Log log : currentBatch.writeCounts.keySet()) {
+            currentBatch.failures.put(log, new IOException("Syncer of disk " + diskName + " stopped before the sync"));
+          }
+          currentBatch.synced.countDown();
+        }
+      }
+    }
+
+    /**
+     * Syncs all the logs of a batch and wakes up the writes that wait for it.
+     * @param batch the {@link SyncBatch} to sync.
+     */
+    private void sync(SyncBatch batch) {
+      int writeCount = 0;
+      for (Map.Entry<Log, Integer> logAndWriteCount : batch.writeCounts.entrySet()) {
+        writeCount += logAndWriteCount.getValue();
+        Timer.Context context = metrics.diskSyncTime.time();
+        try {
+          logAndWriteCount.getKey().flush();
+        } catch (IOException e) {
+          metrics.diskSyncFailures.inc();
+          logger.error("Sync of a log on disk {} failed", diskName, e);
+          batch.failures.put(logAndWriteCount.getKey(), e);
+        } finally {
+          context.stop();
+        }
+      }
+      metrics.diskSyncBatchSize.update(writeCount);
+      metrics.diskSyncBatchLogCount.update(batch.writeCounts.size());
+      batch.synced.countDown();
+    }
+  }
+}
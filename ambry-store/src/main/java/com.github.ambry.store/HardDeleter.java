@@ -89,6 +89,8 @@ public class HardDeleter implements Runnable {
   private FindToken endToken;
   private StoreFindToken recoveryEndToken;
   private HardDeletePersistInfo hardDeleteRecoveryRange = new HardDeletePersistInfo();
+  private final int maxBytesPerSec;
+  private final DiskIOScheduler diskIOScheduler;
   private Throttler throttler;
   boolean isCaughtUp = false;
 
@@ -102,7 +104,9 @@ public class HardDeleter implements Runnable {
     this.hardDelete = hardDelete;
     this.factory = factory;
     this.time = time;
-    throttler = new Throttler(config.storeHardDeleteBytesPerSec, 10, true, time);
+    maxBytesPerSec = config.storeHardDeleteBytesPerSec;
+    diskIOScheduler = log.getDiskIOScheduler();
+    throttler = new Throttler(maxBytesPerSec, 10, true, time);
     scanSizeInBytes = config.storeHardDeleteBytesPerSec * 10;
     messageRetentionSeconds = config.storeDeletedMessageRetentionDays * Time.SecsPerDay;
   }
@@ -161,7 +165,7 @@ public class HardDeleter implements Runnable {
 
         /* Next, perform the log write. The token file does not have to be persisted again as only entries that are
            currently in it are being hard deleted as part of recovery. */
-      StoreMessageReadSet readSet = log.getView(readOptionsList);
+      StoreMessageReadSet readSet = log.getView(readOptionsList, false);
       Iterator<HardDeleteInfo> hardDeleteIterator =
           hardDelete.getHardDeleteMessages(readSet, factory, hardDeleteRecoveryRange.getMessageStoreRecoveryInfoList());
 
@@ -176,9 +180,10 @@ public class HardDeleter implements Runnable {
         if (hardDeleteInfo == null) {
           metrics.hardDeleteFailedCount.inc(1);
         } else {
-          logSegment.writeFrom(hardDeleteInfo.getHardDeleteChannel(),
-              readOptions.getOffset() + hardDeleteInfo.getStartOffsetInMessage(),
+          long writeOffset = readOptions.getOffset() + hardDeleteInfo.getStartOffsetInMessage();
+          logSegment.writeFrom(hardDeleteInfo.getHardDeleteChannel(), writeOffset,
               hardDeleteInfo.getHardDeletedMessageSize());
+          invalidateReadCache(writeOffset, hardDeleteInfo.getHardDeletedMessageSize());
           metrics.hardDeleteDoneCount.inc(1);
         }
       }
@@ -469,7 +474,7 @@ public class HardDeleter implements Runnable {
 
       List<LogWriteInfo> logWriteInfoList = new ArrayList<LogWriteInfo>();
 
-      StoreMessageReadSet readSet = log.getView(readOptionsList);
+      StoreMessageReadSet readSet = log.getView(readOptionsList, false);
       Iterator<HardDeleteInfo> hardDeleteIterator = hardDelete.getHardDeleteMessages(readSet, factory, null);
       Iterator<BlobReadOptions> readOptionsIterator = readOptionsList.iterator();
 
@@ -507,7 +512,13 @@ public class HardDeleter implements Runnable {
         }
 
         logSegment.writeFrom(logWriteInfo.channel, logWriteInfo.offset, logWriteInfo.size);
+        invalidateReadCache(logWriteInfo.offset, logWriteInfo.size);
         metrics.hardDeleteDoneCount.inc(1);
+        if (diskIOScheduler != null) {
+          // the rate of hard deletes is scaled down when foreground I/O on the disk is slow. Hard deletes keep their
+          // own throttler per store so that shutting down the store can interrupt a throttled wait.
+          throttler.setDesiredRatePerSec(maxBytesPerSec * diskIOScheduler.getCurrentBudgetFraction());
+        }
         throttler.maybeThrottle(logWriteInfo.size);
       }
     } catch (InterruptedException e) {
@@ -522,6 +533,19 @@ public class HardDeleter implements Runnable {
     }
   }
 
+  /**
+   * Removes the records that overlap a range of the log that was overwritten by hard deletes from the read cache of
+   * the log, so that hard deleted content is not served from the cache.
+   * @param offset the start offset of the overwritten range.
+   * @param size the size of the overwritten range.
+   */
+  private void invalidateReadCache(long offset, long size) {
+    BlobReadCache readCache = log.getReadCache();
+    if (readCache != null) {
+      readCache.invalidate(offset, size);
+    }
+  }
+
   /**
    * A class to hold the information required to write hard delete stream to the Log.
    */
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.util.Iterator;
+
+
+/**
+ * The entries of a writable {@link IndexSegment} that is held in memory. Implementations have to support a single
+ * writer and concurrent readers.
+ */
+interface InMemoryIndex {
+
+  /**
+   * Gets the value of a key.
+   * @param key The key whose value is required
+   * @return The value of {@code key} or null if the key is not present
+   */
+  IndexValue get(StoreKey key);
+
+  /**
+   * Adds an entry or replaces the value of an existing entry.
+   * @param key The key of the entry
+   * @param value The value of the entry
+   * @return true if the key was not present before. false if the value of an existing key was replaced.
+   */
+  boolean put(StoreKey key, IndexValue value);
+
+  /**
+   * Returns the entries in the increasing order of their keys, starting from {@code fromKey} (inclusive).
+   * @param fromKey The key to start from. If null, all the entries are returned.
+   * @return An iterator over the entries from {@code fromKey}
+   */
+  Iterator<IndexEntry> iterator(StoreKey fromKey);
+
+  /**
+   * Removes all the entries.
+   */
+  void clear();
+
+  /**
+   * @return The number of keys present
+   */
+  int size();
+
+  /**
+   * @return The approximate heap memory used by the entries in bytes
+   */
+  long getHeapUsageInBytes();
+
+  /**
+   * @return The off heap memory used by the entries in bytes
+   */
+  long getOffHeapUsageInBytes();
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.github.ambry.utils.MurmurHash;
+import java.nio.ByteBuffer;
+
+
+/**
+ * An off heap hash table that maps the hash of every key in a {@link PersistentIndex} to the start offset of the
+ * latest {@link IndexSegment} that contains an entry for a key with that hash.
+ * <p/>
+ * Since only hashes are stored, the locator can give false positives i.e. a key that is not in the index or that is in
+ * a different segment can be located to the segment of another key with the same hash. It does not give false
+ * negatives i.e. if a key is not located, it is not present in the index. Callers have to search the index segments
+ * if the key is not found in the located segment.
+ * <p/>
+ * The table uses open addressing with linear probing. Each slot holds the key hash and the segment start offset as
+ * two longs. A hash of 0 marks an empty slot.
+ * <p/>
+ * This class supports a single writer and concurrent readers. Slots are overwritten in place, so a lookup is only
+ * trustworthy if no update of the index overlapped it. The writer brackets every update of the index and the locator
+ * with {@link #beginUpdate()} and {@link #endUpdate()} and readers check {@link #hasChangedSince(long)} with the value
+ * of {@link #getUpdateSequence()} taken before the lookup. If the index has changed, readers have to search the index
+ * segments instead.
+ * <p/>
+ * If the table cannot grow any further, the locator stops recording keys and {@link #get(long)} returns
+ * {@link #Unknown} for every key.
+ */
+class IndexKeyLocator {
+  static final long Not_Found = -1;
+  static final long Unknown = -2;
+
+  private static final int Slot_Size_In_Bytes = 16;
+  private static final long Empty_Slot_Hash = 0;
+  private static final long Empty_Slot_Hash_Replacement = 1;
+  private static final double Max_Load_Factor = 0.7;
+  private static final long Hash_Seed = 0x5bd1e995L;
+  // the largest power of two number of slots that fits in a single direct buffer (1 GB)
+  static final int Max_Num_Slots = 1 << 26;
+
+  private final int maxNumSlots;
+  // the writes to the table are published to readers by writes to numKeys
+  private volatile ByteBuffer table;
+  private volatile int numKeys = 0;
+  private int numSlots;
+  // odd while the writer is updating the index. Only written by the single writer.
+  private volatile long updateSequence = 0;
+  private volatile boolean full = false;
+
+  /**
+   * Creates an empty locator.
+   * @param initialNumSlots the initial number of slots in the table. Rounded up to a power of two.
+   */
+  IndexKeyLocator(int initialNumSlots) {
+    this(initialNumSlots, Max_Num_Slots);
+  }
+
+  /**
+   * Creates an empty locator that grows up to {@code maxNumSlots} slots.
+   * @param initialNumSlots the initial number of slots in the table. Rounded up to a power of two.
+   * @param maxNumSlots the maximum number of slots in the table. Has to be a power of two and at most
+   *                    {@link #Max_Num_Slots}.
+   */
+  IndexKeyLocator(int initialNumSlots, int maxNumSlots) {
+    if (maxNumSlots > Max_Num_Slots || Integer.bitCount(maxNumSlots) != 1) {
+      throw new IllegalArgumentException("Max number of slots " + maxNumSlots + " is invalid");
+    } else if (initialNumSlots > maxNumSlots) {
+      throw new IllegalArgumentException("Number of slots " + initialNumSlots + " is more than " + maxNumSlots);
+    }
+    this.maxNumSlots = maxNumSlots;
+    numSlots = Integer.highestOneBit(Math.max(initialNumSlots, 2) - 1) << 1;
+    table = ByteBuffer.allocateDirect(numSlots * Slot_Size_In_Bytes);
+  }
+
+  /**
+   * Computes the hash used by the locator for a serialized key.
+   * @param buffer the buffer that contains the serialized key.
+   * @param offset the offset of the serialized key in {@code buffer}.
+   * @param length the length of the serialized key.
+   * @return the hash of the serialized key. Never {@code 0}.
+   */
+  static long hash(ByteBuffer buffer, int offset, int length) {
+    long hash = MurmurHash.hash2_64(buffer, offset, length, Hash_Seed);
+    return hash == Empty_Slot_Hash ? Empty_Slot_Hash_Replacement : hash;
+  }
+
+  /**
+   * Computes the hash used by the locator for a key.
+   * @param key the key whose hash is required.
+   * @return the hash of the serialized form of {@code key}. Never {@code 0}.
+   */
+  static long hash(StoreKey key) {
+    byte[] keyBytes = key.toBytes();
+    return hash(ByteBuffer.wrap(keyBytes), 0, keyBytes.length);
+  }
+
+  /**
+   * Records that the latest entry for the key with hash {@code keyHash} is in the segment that starts at
+   * {@code segmentStartOffset}. Has to be called in increasing order of segments for keys that exist in more than one
+   * segment.
+   * @param keyHash the hash of the key as returned by {@link #hash(ByteBuffer, int, int)}.
+   * @param segmentStartOffset the start offset of the segment that contains the key.
+   */
+  void put(long keyHash, long segmentStartOffset) {
+    if (full) {
+      return;
+    }
+    if (numKeys + 1 > numSlots * Max_Load_Factor) {
+      if (numSlots == maxNumSlots) {
+        // the locator can no longer tell whether a key is absent, so lookups have to fall back to the segments
+        full = true;
+        return;
+      }
+      resize();
+    }
+    boolean isNewHash = putInTable(table, numSlots, keyHash, segmentStartOffset);
+    // the volatile write publishes the update of the table to readers
+    numKeys = isNewHash ? numKeys + 1 : numKeys;
+  }
+
+  /**
+   * Gets the start offset of the latest segment that contains a key with hash {@code keyHash}.
+   * @param keyHash the hash of the key as returned by {@link #hash(ByteBuffer, int, int)}.
+   * @return the start offset of the segment, {@link #Not_Found} if no key with this hash is in the index or
+   * {@link #Unknown} if the locator is full and the segments have to be searched.
+   */
+  long get(long keyHash) {
+    if (full) {
+      return Unknown;
+    } else if (numKeys == 0) {
+      return Not_Found;
+    }
+    ByteBuffer currentTable = table;
+    int currentNumSlots = currentTable.capacity() / Slot_Size_In_Bytes;
+    int slot = getSlot(keyHash, currentNumSlots);
+    while (true) {
+      int slotStart = slot * Slot_Size_In_Bytes;
+      long slotHash = currentTable.getLong(slotStart);
+      if (slotHash == Empty_Slot_Hash) {
+        return Not_Found;
+      } else if (slotHash == keyHash) {
+        return currentTable.getLong(slotStart + 8);
+      }
+      slot = (slot + 1) & (currentNumSlots - 1);
+    }
+  }
+
+  /**
+   * Marks the start of an update of the index that will be followed by updates of the locator. Lookups that overlap
+   * the update are reported as stale by {@link #hasChangedSince(long)}.
+   */
+  void beginUpdate() {
+    updateSequence++;
+  }
+
+  /**
+   * Marks the end of an update that was started with {@link #beginUpdate()}.
+   */
+  void endUpdate() {
+    updateSequence++;
+  }
+
+  /**
+   * @return the current update sequence. Has to be read before a lookup and passed to
+   * {@link #hasChangedSince(long)} after it.
+   */
+  long getUpdateSequence() {
+    return updateSequence;
+  }
+
+  /**
+   * @param sequence the update sequence returned by {@link #getUpdateSequence()} before a lookup.
+   * @return {@code true} if an update of the index was in progress at {@code sequence} or has started since. The
+   * result of the lookup cannot be trusted in that case.
+   */
+  boolean hasChangedSince(long sequence) {
+    return (sequence & 1) != 0 || updateSequence != sequence;
+  }
+
+  /**
+   * @return {@code true} if the table could not grow any further and the locator no longer records keys.
+   */
+  boolean isFull() {
+    return full;
+  }
+
+  /**
+   * @return the number of distinct key hashes in the locator.
+   */
+  int size() {
+    return numKeys;
+  }
+
+  /**
+   * @return the off heap memory used by the locator in bytes.
+   */
+  long getMemoryUsageInBytes() {
+    return table.capacity();
+  }
+
+  /**
+   * Doubles the size of the table and rehashes all the entries into the new table.
+   */
+  private void resize() {
+    int newNumSlots = numSlots * 2;
+    ByteBuffer newTable = ByteBuffer.allocateDirect(newNumSlots * Slot_Size_In_Bytes);
+    for (int slot = 0; slot < numSlots; slot++) {
+      long slotHash = table.getLong(slot * Slot_Size_In_Bytes);
+      if (slotHash != Empty_Slot_Hash) {
+        putInTable(newTable, newNumSlots, slotHash, table.getLong(slot * Slot_Size_In_Bytes + 8));
+      }
+    }
+    numSlots = newNumSlots;
+    table = newTable;
+  }
+
+  /**
+   * Puts the given entry in the given table.
+   * @return {@code true} if the hash was not present in the table before. {@code false} otherwise.
+   */
+  private static boolean putInTable(ByteBuffer table, int numSlots, long keyHash, long segmentStartOffset) {
+    int slot = getSlot(keyHash, numSlots);
+    while (true) {
+      int slotStart = slot * Slot_Size_In_Bytes;
+      long slotHash = table.getLong(slotStart);
+      if (slotHash == Empty_Slot_Hash || slotHash == keyHash) {
+        // the offset is written before the hash so that a reader never sees the hash without its offset
+        table.putLong(slotStart + 8, segmentStartOffset);
+        table.putLong(slotStart, keyHash);
+        return slotHash == Empty_Slot_Hash;
+      }
+      slot = (slot + 1) & (numSlots - 1);
+    }
+  }
+
+  private static int getSlot(long keyHash, int numSlots) {
+    return (int) (keyHash ^ (keyHash >>> 32)) & (numSlots - 1);
+  }
+}
@@ -13,8 +13,10 @@
  */
 package com.github.ambry.store;
 
+import com.codahale.metrics.Timer;
 import com.github.ambry.config.StoreConfig;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.CrcInputStream;
 import com.github.ambry.utils.CrcOutputStream;
 import com.github.ambry.utils.FilterFactory;
@@ -31,10 +33,9 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -51,7 +52,12 @@ import org.slf4j.LoggerFactory;
  * The segment uses a bloom filter to optimize reads from disk. If the
  * index is read only, a key is searched by doing a binary search on
  * the memory mapped file. If the index is in memory, a normal map
- * lookup is performed to find key.
+ * lookup is performed to find key. The entries of an in memory segment
+ * are either held as heap objects or off heap, depending on the config.
+ * The file of an in memory segment is either rewritten in the sorted
+ * format on every flush or, if incremental persistence is enabled,
+ * appended to with the entries added since the last flush. It is
+ * rewritten in the sorted format when the segment is memory mapped.
  */
 class IndexSegment {
   private AtomicLong startOffset;
@@ -60,6 +66,8 @@ class IndexSegment {
   private ReadWriteLock rwLock;
   private MappedByteBuffer mmap = null;
   private AtomicBoolean mapped;
+  // true if the keys of the mapped segment are also sorted by their serialized bytes
+  private boolean serializedKeysSorted = false;
   private Logger logger = LoggerFactory.getLogger(getClass());
   private AtomicLong sizeWritten;
   private StoreKeyFactory factory;
@@ -67,6 +75,9 @@ class IndexSegment {
   private final static int Key_Size_Invalid_Value = -1;
   private final static int Value_Size_Invalid_Value = -1;
 
+  // the version of the file of an in memory segment that is persisted incrementally
+  final static short Incremental_Version = 1;
+
   private final static int Version_Field_Length = 2;
   private final static int Key_Size_Field_Length = 4;
   private final static int Value_Size_Field_Length = 4;
@@ -75,6 +86,11 @@ class IndexSegment {
   private final static int Index_Size_Excluding_Entries =
       Version_Field_Length + Key_Size_Field_Length + Value_Size_Field_Length + Log_End_Offset_Field_Length
           + Crc_Field_Length;
+  private final static int Entry_Count_Field_Length = 4;
+  private final static int Incremental_Header_Size =
+      Version_Field_Length + Key_Size_Field_Length + Value_Size_Field_Length;
+  private final static int Incremental_Record_Size_Excluding_Entries =
+      Log_End_Offset_Field_Length + Entry_Count_Field_Length + Crc_Field_Length;
 
   private int keySize;
   private int valueSize;
@@ -82,8 +98,13 @@ class IndexSegment {
   private long prevSegmentEndOffset = 0;
   private AtomicLong lastModifiedTimeSec; // an approximation of the last modified time.
   private AtomicInteger numberOfItems;
-  protected ConcurrentSkipListMap<StoreKey, IndexValue> index = null;
+  protected InMemoryIndex index = null;
   private final StoreMetrics metrics;
+  private final boolean incrementalPersistence;
+  // the entries added since the last flush in the order they were added, if the segment is persisted incrementally
+  private final ConcurrentLinkedQueue<IndexEntry> unpersistedEntries = new ConcurrentLinkedQueue<IndexEntry>();
+  // the size of the valid part of the incrementally persisted file or -1 if the file has to be rewritten in full
+  private long persistedFileSize = -1;
 
   /**
    * Creates a new segment
@@ -102,17 +123,17 @@ class IndexSegment {
     this.rwLock = new ReentrantReadWriteLock();
     this.startOffset = new AtomicLong(startOffset);
     this.endOffset = new AtomicLong(-1);
-    index = new ConcurrentSkipListMap<StoreKey, IndexValue>();
+    index = newInMemoryIndex(factory, config);
     mapped = new AtomicBoolean(false);
     sizeWritten = new AtomicLong(0);
     this.factory = factory;
     this.keySize = keySize;
     this.valueSize = valueSize;
-    bloomFilter = FilterFactory.getFilter(config.storeIndexMaxNumberOfInmemElements,
-        config.storeIndexBloomMaxFalsePositiveProbability);
+    bloomFilter = createBloomFilter(config);
     numberOfItems = new AtomicInteger(0);
     this.metrics = metrics;
     this.lastModifiedTimeSec = new AtomicLong(0);
+    incrementalPersistence = config.storeIndexIncrementalPersistenceEnabled;
   }
 
   /**
@@ -128,6 +149,7 @@ class IndexSegment {
    */
   public IndexSegment(File indexFile, boolean isMapped, StoreKeyFactory factory, StoreConfig config,
       StoreMetrics metrics, Journal journal) throws StoreException {
+    incrementalPersistence = config.storeIndexIncrementalPersistenceEnabled;
     try {
       int startIndex = indexFile.getName().indexOf("_", 0);
       String startOffsetValue = indexFile.getName().substring(0, startIndex);
@@ -147,9 +169,16 @@ class IndexSegment {
         bloomFile = new File(indexFile.getParent(), startOffset + "_" + PersistentIndex.Bloom_File_Name_Suffix);
         CrcInputStream crcBloom = new CrcInputStream(new FileInputStream(bloomFile));
         DataInputStream stream = new DataInputStream(crcBloom);
-        bloomFilter = FilterFactory.deserialize(stream);
+        try {
+          bloomFilter = FilterFactory.deserialize(stream);
+        } catch (IOException e) {
+          // a filter in an unknown format (e.g. persisted by a newer version) is bypassed like a corrupt filter
+          bloomFilter = null;
+          logger.error("IndexSegment : {} error reading bloom filter from {}", indexFile.getAbsolutePath(),
+              bloomFile.getAbsolutePath(), e);
+        }
         long crcValue = crcBloom.getValue();
-        if (crcValue != stream.readLong()) {
+        if (bloomFilter != null && crcValue != stream.readLong()) {
           // TODO metrics
           // we don't recover the filter. we just by pass the filter. Crc corrections will be done
           // by the scrubber
@@ -159,9 +188,8 @@ class IndexSegment {
         }
         stream.close();
       } else {
-        index = new ConcurrentSkipListMap<StoreKey, IndexValue>();
-        bloomFilter = FilterFactory.getFilter(config.storeIndexMaxNumberOfInmemElements,
-            config.storeIndexBloomMaxFalsePositiveProbability);
+        index = newInMemoryIndex(factory, config);
+        bloomFilter = createBloomFilter(config);
         bloomFile = new File(indexFile.getParent(), startOffset + "_" + PersistentIndex.Bloom_File_Name_Suffix);
         try {
           readFromFile(indexFile, journal);
@@ -185,6 +213,29 @@ class IndexSegment {
     this.metrics = metrics;
   }
 
+  /**
+   * Creates the in memory representation of the entries of a writable segment.
+   * @param factory The store key factory used to create new store keys
+   * @param config The store config that determines whether the entries are held off heap
+   * @return The {@link InMemoryIndex} to hold the entries of the segment
+   */
+  private static InMemoryIndex newInMemoryIndex(StoreKeyFactory factory, StoreConfig config) {
+    return config.storeIndexOffHeapInMemSegmentEnabled ? new OffHeapInMemoryIndex(factory)
+        : new SkipListInMemoryIndex();
+  }
+
+  /**
+   * Creates the bloom filter of a writable segment.
+   * @param config The store config that determines the kind and the false positive probability of the filter
+   * @return The empty bloom filter sized for the maximum number of elements in a segment
+   */
+  private static IFilter createBloomFilter(StoreConfig config) {
+    return config.storeIndexBlockedBloomFilterEnabled ? FilterFactory.getBlockedFilter(
+        config.storeIndexMaxNumberOfInmemElements, config.storeIndexBloomMaxFalsePositiveProbability)
+        : FilterFactory.getFilter(config.storeIndexMaxNumberOfInmemElements,
+            config.storeIndexBloomMaxFalsePositiveProbability);
+  }
+
   /**
    * The start offset that this segment represents
    * @return The start offset that this segment represents
@@ -254,38 +305,112 @@ class IndexSegment {
       if (!(mapped.get())) {
         return index.get(keyToFind);
       } else {
+        // the serialized key is shared by the bloom filter probe and the binary search
+        byte[] keyBytes = keyToFind.toBytes();
         // check bloom filter first
-        if (bloomFilter == null || bloomFilter.isPresent(ByteBuffer.wrap(keyToFind.toBytes()))) {
+        if (bloomFilter == null || bloomFilter.isPresent(ByteBuffer.wrap(keyBytes))) {
           metrics.bloomPositiveCount.inc(1);
           logger.trace(bloomFilter == null
                   ? "IndexSegment {} bloom filter empty. Searching file with start offset {} and for key {} "
                   : "IndexSegment {} found in bloom filter for index with start offset {} and for key {} ",
               indexFile.getAbsolutePath(), startOffset.get(), keyToFind);
           // binary search on the mapped file
-          ByteBuffer duplicate = mmap.duplicate();
-          int low = 0;
-          int high = numberOfEntries(duplicate) - 1;
-          logger.trace("binary search low : {} high : {}", low, high);
+          int index = findIndex(keyToFind, keyBytes, mmap);
+          if (index != -1) {
+            byte[] buf = new byte[valueSize];
+            int valueStart = getEntryStart(index) + keySize;
+            for (int i = 0; i < valueSize; i++) {
+              buf[i] = mmap.get(valueStart + i);
+            }
+            return new IndexValue(ByteBuffer.wrap(buf));
+          }
+          metrics.bloomFalsePositiveCount.inc(1);
+        }
+        return null;
+      }
+    } catch (IOException e) {
+      throw new StoreException("IndexSegment : " + indexFile.getAbsolutePath() + " IO error while searching", e,
+          StoreErrorCodes.IOError);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the entries of a batch of keys with a single acquisition of the read lock. For a mapped segment whose keys
+   * are sorted by their serialized form, the keys are searched in a single merged pass over the segment. Each key is
+   * searched for by galloping forward from the position of the previous key, so nearby keys take a few comparisons
+   * each.
+   * @param keysToFind the keys to find in increasing order of their serialized form (compared as unsigned bytes).
+   * @param serializedKeys the serialized form of each key in {@code keysToFind}.
+   * @param values the values found so far for each key in {@code keysToFind}. Keys that already have a value are not
+   *               searched for. The values of keys found in this segment are set in this array.
+   * @return the number of keys that were found in this segment.
+   * @throws StoreException
+   */
+  int find(StoreKey[] keysToFind, byte[][] serializedKeys, IndexValue[] values) throws StoreException {
+    int numFound = 0;
+    try {
+      rwLock.readLock().lock();
+      if (!(mapped.get())) {
+        for (int i = 0; i < keysToFind.length; i++) {
+          if (values[i] == null) {
+            values[i] = index.get(keysToFind[i]);
+            numFound += values[i] != null ? 1 : 0;
+          }
+        }
+        return numFound;
+      }
+      int numEntries = numberOfEntries(mmap);
+      // all entries before this position are smaller than the keys that are yet to be searched for
+      int low = 0;
+      for (int i = 0; i < keysToFind.length; i++) {
+        byte[] keyBytes = serializedKeys[i];
+        if (values[i] != null || (bloomFilter != null && !bloomFilter.isPresent(ByteBuffer.wrap(keyBytes)))) {
+          continue;
+        }
+        metrics.bloomPositiveCount.inc(1);
+        int index;
+        if (serializedKeysSorted && keyBytes.length == keySize) {
+          // gallop forward to find a range that contains the key and binary search the range
+          int step = 1;
+          int high = low;
+          while (high < numEntries && compareKeyAt(mmap, high, keyBytes) < 0) {
+            low = high + 1;
+            high = low + step;
+            step <<= 1;
+          }
+          high = Math.min(high, numEntries - 1);
+          index = -1;
           while (low <= high) {
-            int mid = (int) (Math.ceil(high / 2.0 + low / 2.0));
-            StoreKey found = getKeyAt(duplicate, mid);
-            logger.trace("Index Segment {} binary search - key found on iteration {}", indexFile.getAbsolutePath(),
-                found);
-            int result = found.compareTo(keyToFind);
+            int mid = (low + high) >>> 1;
+            int result = compareKeyAt(mmap, mid, keyBytes);
             if (result == 0) {
-              byte[] buf = new byte[valueSize];
-              duplicate.get(buf);
-              return new IndexValue(ByteBuffer.wrap(buf));
+              index = mid;
+              low = mid + 1;
+              break;
             } else if (result < 0) {
               low = mid + 1;
             } else {
               high = mid - 1;
             }
           }
+        } else {
+          index = findIndex(keysToFind[i], keyBytes, mmap);
+        }
+        if (index != -1) {
+          byte[] buf = new byte[valueSize];
+          int valueStart = getEntryStart(index) + keySize;
+          for (int j = 0; j < valueSize; j++) {
+            buf[j] = mmap.get(valueStart + j);
+          }
+          values[i] = new IndexValue(ByteBuffer.wrap(buf));
+          numFound++;
+        } else {
           metrics.bloomFalsePositiveCount.inc(1);
         }
-        return null;
       }
+      return numFound;
     } catch (IOException e) {
       throw new StoreException("IndexSegment : " + indexFile.getAbsolutePath() + " IO error while searching", e,
           StoreErrorCodes.IOError);
@@ -298,13 +423,82 @@ class IndexSegment {
     return (mmap.capacity() - Index_Size_Excluding_Entries) / (keySize + valueSize);
   }
 
+  private int getEntryStart(int index) {
+    return Version_Field_Length + Key_Size_Field_Length + Value_Size_Field_Length + Log_End_Offset_Field_Length + (index
+        * (keySize + valueSize));
+  }
+
   private StoreKey getKeyAt(ByteBuffer mmap, int index) throws IOException {
-    mmap.position(
-        Version_Field_Length + Key_Size_Field_Length + Value_Size_Field_Length + Log_End_Offset_Field_Length + (index
-            * (keySize + valueSize)));
+    mmap.position(getEntryStart(index));
     return factory.getStoreKey(new DataInputStream(new ByteBufferInputStream(mmap)));
   }
 
+  /**
+   * Compares the serialized key at the given entry in the mapped segment with the given serialized key. The bytes are
+   * compared lexicographically as unsigned values using absolute reads, so neither the position of {@code mmap} is
+   * changed nor any object is created.
+   * @param mmap The mapped segment to read the key from
+   * @param index The index of the entry whose key needs to be compared
+   * @param keyBytes The serialized key to compare against. Has to be {@link #keySize} bytes long.
+   * @return a negative value, zero or a positive value if the key at {@code index} is less than, equal to or greater
+   *         than {@code keyBytes}.
+   */
+  private int compareKeyAt(ByteBuffer mmap, int index, byte[] keyBytes) {
+    int entryStart = getEntryStart(index);
+    for (int i = 0; i < keySize; i++) {
+      int result = (mmap.get(entryStart + i) & 0xff) - (keyBytes[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Checks if the keys in the mapped segment, which are sorted by {@link StoreKey#compareTo(Object)}, are also in
+   * strictly increasing order of their serialized bytes. If they are, lookups can binary search the serialized keys
+   * directly instead of deserializing a {@link StoreKey} at every probe.
+   * @param mmap The mapped segment whose keys need to be checked
+   * @return {@code true} if the serialized keys are in strictly increasing order. {@code false} otherwise.
+   */
+  private boolean isSortedBySerializedKeys(ByteBuffer mmap) {
+    int totalEntries = numberOfEntries(mmap);
+    for (int index = 1; index < totalEntries; index++) {
+      int prevEntryStart = getEntryStart(index - 1);
+      int entryStart = getEntryStart(index);
+      int result = 0;
+      for (int i = 0; i < keySize && result == 0; i++) {
+        result = (mmap.get(prevEntryStart + i) & 0xff) - (mmap.get(entryStart + i) & 0xff);
+      }
+      if (result >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int findIndex(StoreKey keyToFind, byte[] keyBytes, ByteBuffer mmap) throws IOException {
+    if (!serializedKeysSorted || keyBytes.length != keySize) {
+      return findIndex(keyToFind, mmap.duplicate());
+    }
+    // binary search on the serialized keys of the mapped file
+    int low = 0;
+    int high = numberOfEntries(mmap) - 1;
+    logger.trace("IndexSegment {} binary search low : {} high : {}", indexFile.getAbsolutePath(), low, high);
+    while (low <= high) {
+      int mid = (low + high + 1) >>> 1;
+      int result = compareKeyAt(mmap, mid, keyBytes);
+      if (result == 0) {
+        return mid;
+      } else if (result < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return -1;
+  }
+
   private int findIndex(StoreKey keyToFind, ByteBuffer mmap) throws IOException {
     // binary search on the mapped file
     int low = 0;
@@ -326,6 +520,30 @@ class IndexSegment {
     return -1;
   }
 
+  /**
+   * Adds the keys of all the entries in this segment to the given {@link IndexKeyLocator}. The keys of a mapped segment
+   * are hashed in place without being deserialized.
+   * @param keyLocator The {@link IndexKeyLocator} to add the keys to
+   */
+  void addKeysTo(IndexKeyLocator keyLocator) {
+    try {
+      rwLock.readLock().lock();
+      if (mapped.get()) {
+        int totalEntries = numberOfEntries(mmap);
+        for (int i = 0; i < totalEntries; i++) {
+          keyLocator.put(IndexKeyLocator.hash(mmap, getEntryStart(i), keySize), startOffset.get());
+        }
+      } else {
+        Iterator<IndexEntry> iterator = index.iterator(null);
+        while (iterator.hasNext()) {
+          keyLocator.put(IndexKeyLocator.hash(iterator.next().getKey()), startOffset.get());
+        }
+      }
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
   /**
    * Adds an entry into the segment. The operation works only if the segment is read/write
    * @param entry The entry that needs to be added to the segment.
@@ -343,11 +561,14 @@ class IndexSegment {
               + "originalMessageOffset {} fileEndOffset {}", indexFile.getAbsolutePath(), entry.getKey(),
           entry.getValue().getOffset(), entry.getValue().getSize(), entry.getValue().getTimeToLiveInMs(),
           entry.getValue().getOriginalMessageOffset(), fileEndOffset);
-      if (index.put(entry.getKey(), entry.getValue()) == null) {
+      if (index.put(entry.getKey(), entry.getValue())) {
         numberOfItems.incrementAndGet();
         sizeWritten.addAndGet(entry.getKey().sizeInBytes() + IndexValue.Index_Value_Size_In_Bytes);
         bloomFilter.add(ByteBuffer.wrap(entry.getKey().toBytes()));
       }
+      if (incrementalPersistence) {
+        unpersistedEntries.add(entry);
+      }
       endOffset.set(fileEndOffset);
       lastModifiedTimeSec.set(SystemTime.getInstance().milliseconds() / 1000);
       if (keySize == Key_Size_Invalid_Value) {
@@ -388,11 +609,14 @@ class IndexSegment {
                 + "originalMessageOffset {} fileEndOffset {}", indexFile.getAbsolutePath(), entry.getKey(),
             entry.getValue().getOffset(), entry.getValue().getSize(), entry.getValue().getTimeToLiveInMs(),
             entry.getValue().getOriginalMessageOffset(), fileEndOffset);
-        if (index.put(entry.getKey(), entry.getValue()) == null) {
+        if (index.put(entry.getKey(), entry.getValue())) {
           numberOfItems.incrementAndGet();
           sizeWritten.addAndGet(entry.getKey().sizeInBytes() + IndexValue.Index_Value_Size_In_Bytes);
           bloomFilter.add(ByteBuffer.wrap(entry.getKey().toBytes()));
         }
+        if (incrementalPersistence) {
+          unpersistedEntries.add(entry);
+        }
       }
       endOffset.set(fileEndOffset);
       if (keySize == Key_Size_Invalid_Value) {
@@ -427,6 +651,32 @@ class IndexSegment {
     }
   }
 
+  /**
+   * The heap memory used by the entries of this segment if it is held in memory
+   * @return The approximate heap memory used by the entries in bytes. 0 if the segment is mapped.
+   */
+  long getInMemoryHeapUsageInBytes() {
+    try {
+      rwLock.readLock().lock();
+      return mapped.get() ? 0 : index.getHeapUsageInBytes();
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The off heap memory used by the entries of this segment if it is held in memory
+   * @return The off heap memory used by the entries in bytes. 0 if the segment is mapped.
+   */
+  long getInMemoryOffHeapUsageInBytes() {
+    try {
+      rwLock.readLock().lock();
+      return mapped.get() ? 0 : index.getOffHeapUsageInBytes();
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
   /**
    * The number of items contained in this segment
    * @return The number of items contained in this segment
@@ -443,6 +693,31 @@ class IndexSegment {
     }
   }
 
+  /**
+   * Persists the entries of the segment that are below {@code safeEndPoint} to the file of the segment. If the segment
+   * is persisted incrementally, only the entries added since the last flush are appended to the file as described in
+   * {@link #appendToFile(long)}. Otherwise, the whole segment is rewritten as described in
+   * {@link #writeSortedFile(long)}.
+   * @param safeEndPoint the log end offset that the persisted entries pertain to.
+   * @throws IOException
+   * @throws StoreException
+   */
+  public void writeIndexToFile(long safeEndPoint) throws IOException, StoreException {
+    if (prevSegmentEndOffset != safeEndPoint) {
+      if (safeEndPoint > getEndOffset()) {
+        throw new StoreException(
+            "SafeEndOffSet " + safeEndPoint + " is greater than current end offset for current " + "index segment "
+                + getEndOffset(), StoreErrorCodes.Illegal_Index_Operation);
+      }
+      if (incrementalPersistence) {
+        appendToFile(safeEndPoint);
+      } else {
+        writeSortedFile(safeEndPoint);
+      }
+      prevSegmentEndOffset = safeEndPoint;
+    }
+  }
+
   /**
    * Writes the index to a persistent file. Writes the data in the following format
    *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -460,84 +735,256 @@ class IndexSegment {
    * @throws IOException
    * @throws StoreException
    */
-  public void writeIndexToFile(long safeEndPoint) throws IOException, StoreException {
-    if (prevSegmentEndOffset != safeEndPoint) {
-      if (safeEndPoint > getEndOffset()) {
-        throw new StoreException(
-            "SafeEndOffSet " + safeEndPoint + " is greater than current end offset for current " + "index segment "
-                + getEndOffset(), StoreErrorCodes.Illegal_Index_Operation);
+  private void writeSortedFile(long safeEndPoint) throws IOException, StoreException {
+    File temp = new File(getFile().getAbsolutePath() + ".tmp");
+    FileOutputStream fileStream = new FileOutputStream(temp);
+    CrcOutputStream crc = new CrcOutputStream(fileStream);
+    DataOutputStream writer = new DataOutputStream(crc);
+    try {
+      rwLock.readLock().lock();
+
+      // write the current version
+      writer.writeShort(PersistentIndex.version);
+      // write key, value size and file end pointer for this index
+      writer.writeInt(this.keySize);
+      writer.writeInt(this.valueSize);
+      writer.writeLong(safeEndPoint);
+
+      // write the entries
+      Iterator<IndexEntry> iterator = index.iterator(null);
+      while (iterator.hasNext()) {
+        IndexEntry entry = iterator.next();
+        if (entry.getValue().getOffset() + entry.getValue().getSize() <= safeEndPoint) {
+          writer.write(entry.getKey().toBytes());
+          writer.write(entry.getValue().getBytes().array());
+          logger.trace("IndexSegment : {} writing key - {} value - offset {} size {} fileEndOffset {}",
+              getFile().getAbsolutePath(), entry.getKey(), entry.getValue().getOffset(), entry.getValue().getSize(),
+              safeEndPoint);
+        }
       }
-      File temp = new File(getFile().getAbsolutePath() + ".tmp");
-      FileOutputStream fileStream = new FileOutputStream(temp);
-      CrcOutputStream crc = new CrcOutputStream(fileStream);
-      DataOutputStream writer = new DataOutputStream(crc);
-      try {
-        rwLock.readLock().lock();
-
-        // write the current version
-        writer.writeShort(PersistentIndex.version);
-        // write key, value size and file end pointer for this index
-        writer.writeInt(this.keySize);
-        writer.writeInt(this.valueSize);
-        writer.writeLong(safeEndPoint);
-
-        // write the entries
-        for (Map.Entry<StoreKey, IndexValue> entry : index.entrySet()) {
-          if (entry.getValue().getOffset() + entry.getValue().getSize() <= safeEndPoint) {
-            writer.write(entry.getKey().toBytes());
-            writer.write(entry.getValue().getBytes().array());
-            logger.trace("IndexSegment : {} writing key - {} value - offset {} size {} fileEndOffset {}",
-                getFile().getAbsolutePath(), entry.getKey(), entry.getValue().getOffset(), entry.getValue().getSize(),
-                safeEndPoint);
-          }
+      long crcValue = crc.getValue();
+      writer.writeLong(crcValue);
+
+      // flush and overwrite old file
+      fileStream.getChannel().force(true);
+      // swap temp file with the original file
+      temp.renameTo(getFile());
+      metrics.indexFlushBytesWritten.update(writer.size());
+    } catch (IOException e) {
+      throw new StoreException(
+          "IndexSegment : " + indexFile.getAbsolutePath() + " IO error while persisting index to disk", e,
+          StoreErrorCodes.IOError);
+    } finally {
+      writer.close();
+      rwLock.readLock().unlock();
+    }
+    // a sorted file cannot be appended to
+    persistedFileSize = -1;
+    logger.trace("IndexSegment : {} completed writing index to file", indexFile.getAbsolutePath());
+  }
+
+  /**
+   * Appends the entries that were added since the last flush and that are below {@code safeEndPoint} to the file of
+   * the segment. The file is made up of a header and of one record per flush in the following format
+   *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+   * | version | keysize | valuesize | fileendpointer | entrycount |  key 1  | value 1 |  ...  | value n | crc     |
+   * |(2 bytes)|(4 bytes)| (4 bytes) |    (8 bytes)   |  (4 bytes) |(n bytes)|(n bytes)|       |(n bytes)|(8 bytes)|
+   *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+   *  version         - {@link #Incremental_Version}
+   *  keysize         - the size of the key in this index segment
+   *  valuesize       - the size of the value in this index segment
+   *  fileendpointer  - the log end pointer that pertains to the entries of the record
+   *  entrycount      - the number of entries in the record
+   *  key n / value n - the entries in the order they were added. Later entries replace earlier ones of the same key
+   *  crc             - the crc of the record
+   *
+   * A record that was not completely written is ignored when the file is read and is overwritten by the next record.
+   * If the file does not exist yet or was written in the sorted format, it is first rewritten with a single record
+   * that contains all the entries of the segment.
+   * @param safeEndPoint the log end offset that the appended entries pertain to.
+   * @throws IOException
+   * @throws StoreException
+   */
+  private void appendToFile(long safeEndPoint) throws IOException, StoreException {
+    if (persistedFileSize == -1) {
+      writeIncrementalFile(safeEndPoint);
+      return;
+    }
+    List<IndexEntry> entries = new ArrayList<IndexEntry>();
+    IndexEntry entry;
+    // entries are added in the order of their offsets, so the entries below the safe end point are at the head
+    while ((entry = unpersistedEntries.peek()) != null
+        && entry.getValue().getOffset() + entry.getValue().getSize() <= safeEndPoint) {
+      entries.add(unpersistedEntries.poll());
+    }
+    if (entries.size() == 0) {
+      return;
+    }
+    ByteBuffer record = serializeRecord(entries, safeEndPoint);
+    RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      // drop a record that was not completely written before a crash
+      if (channel.size() > persistedFileSize) {
+        channel.truncate(persistedFileSize);
+      }
+      long position = persistedFileSize;
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+      channel.force(true);
+      persistedFileSize = position;
+      metrics.indexFlushBytesWritten.update(record.limit());
+    } catch (IOException e) {
+      throw new StoreException(
+          "IndexSegment : " + indexFile.getAbsolutePath() + " IO error while appending index entries to disk", e,
+          StoreErrorCodes.IOError);
+    } finally {
+      raf.close();
+    }
+    logger.trace("IndexSegment : {} appended {} entries to file", indexFile.getAbsolutePath(), entries.size());
+  }
+
+  /**
+   * Rewrites the file of the segment in the format described in {@link #appendToFile(long)} with a single record that
+   * contains all the entries of the segment that are below {@code safeEndPoint}.
+   * @param safeEndPoint the log end offset that the persisted entries pertain to.
+   * @throws IOException
+   * @throws StoreException
+   */
+  private void writeIncrementalFile(long safeEndPoint) throws IOException, StoreException {
+    List<IndexEntry> entries = new ArrayList<IndexEntry>();
+    try {
+      rwLock.readLock().lock();
+      Iterator<IndexEntry> iterator = index.iterator(null);
+      while (iterator.hasNext()) {
+        IndexEntry entry = iterator.next();
+        if (entry.getValue().getOffset() + entry.getValue().getSize() <= safeEndPoint) {
+          entries.add(entry);
         }
-        prevSegmentEndOffset = safeEndPoint;
-        long crcValue = crc.getValue();
-        writer.writeLong(crcValue);
-
-        // flush and overwrite old file
-        fileStream.getChannel().force(true);
-        // swap temp file with the original file
-        temp.renameTo(getFile());
-      } catch (IOException e) {
-        throw new StoreException(
-            "IndexSegment : " + indexFile.getAbsolutePath() + " IO error while persisting index to disk", e,
-            StoreErrorCodes.IOError);
-      } finally {
-        writer.close();
-        rwLock.readLock().unlock();
       }
-      logger.trace("IndexSegment : {} completed writing index to file", indexFile.getAbsolutePath());
+    } finally {
+      rwLock.readLock().unlock();
     }
+    IndexEntry entry;
+    while ((entry = unpersistedEntries.peek()) != null
+        && entry.getValue().getOffset() + entry.getValue().getSize() <= safeEndPoint) {
+      unpersistedEntries.poll();
+    }
+    ByteBuffer header = ByteBuffer.allocate(Incremental_Header_Size);
+    header.putShort(Incremental_Version);
+    header.putInt(keySize);
+    header.putInt(valueSize);
+    header.flip();
+    ByteBuffer record = serializeRecord(entries, safeEndPoint);
+    File temp = new File(getFile().getAbsolutePath() + ".tmp");
+    FileOutputStream fileStream = new FileOutputStream(temp);
+    try {
+      FileChannel channel = fileStream.getChannel();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+      channel.force(true);
+      temp.renameTo(getFile());
+      persistedFileSize = Incremental_Header_Size + record.limit();
+      metrics.indexFlushBytesWritten.update(persistedFileSize);
+    } catch (IOException e) {
+      throw new StoreException(
+          "IndexSegment : " + indexFile.getAbsolutePath() + " IO error while persisting index to disk", e,
+          StoreErrorCodes.IOError);
+    } finally {
+      fileStream.close();
+    }
+    logger.trace("IndexSegment : {} completed rewriting index to file", indexFile.getAbsolutePath());
   }
 
   /**
-   * Memory maps the segment of index. Optionally, it also persist the bloom filter to disk
+   * Serializes a record of an incrementally persisted file.
+   * @param entries the entries of the record.
+   * @param safeEndPoint the log end offset that the entries pertain to.
+   * @return the serialized record, ready to be written.
+   */
+  private ByteBuffer serializeRecord(List<IndexEntry> entries, long safeEndPoint) {
+    ByteBuffer record =
+        ByteBuffer.allocate(Incremental_Record_Size_Excluding_Entries + entries.size() * (keySize + valueSize));
+    record.putLong(safeEndPoint);
+    record.putInt(entries.size());
+    for (IndexEntry entry : entries) {
+      record.put(entry.getKey().toBytes());
+      record.put(entry.getValue().getBytes().array());
+    }
+    Crc32 crc = new Crc32();
+    crc.update(record.array(), 0, record.position());
+    record.putLong(crc.getValue());
+    record.flip();
+    return record;
+  }
+
+  /**
+   * Persists the segment in the sorted format and memory maps it. The segment must not be added to anymore. Readers
+   * are only blocked while the mapped file replaces the in memory entries.
+   * @throws IOException
+   * @throws StoreException
+   */
+  void seal() throws IOException, StoreException {
+    final Timer.Context context = metrics.indexSegmentSealTime.time();
+    try {
+      if (incrementalPersistence || prevSegmentEndOffset != getEndOffset()) {
+        writeSortedFile(getEndOffset());
+        prevSegmentEndOffset = getEndOffset();
+      }
+      map(true);
+    } finally {
+      context.stop();
+    }
+  }
+
+  /**
+   * Memory maps the segment of index. Optionally, it also persist the bloom filter to disk. The file is mapped and
+   * validated before the write lock is taken, so readers are only blocked while the mapped file replaces the in
+   * memory entries.
    * @param persistBloom True, if the bloom filter needs to be persisted. False otherwise.
    * @throws IOException
    * @throws StoreException
    */
   public void map(boolean persistBloom) throws IOException, StoreException {
     RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
-    rwLock.writeLock().lock();
+    MappedByteBuffer newMmap;
+    boolean newSerializedKeysSorted;
     try {
-      mmap = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexFile.length());
-      mmap.position(0);
-      short version = mmap.getShort();
+      newMmap = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexFile.length());
+      newMmap.position(0);
+      short version = newMmap.getShort();
       switch (version) {
         case 0:
-          this.keySize = mmap.getInt();
-          this.valueSize = mmap.getInt();
-          this.endOffset.set(mmap.getLong());
+          // the sizes and the end offset of a segment that is being mapped do not change, so they can be set here
+          this.keySize = newMmap.getInt();
+          this.valueSize = newMmap.getInt();
+          this.endOffset.set(newMmap.getLong());
           break;
         default:
           throw new StoreException("IndexSegment : " + indexFile.getAbsolutePath() + " unknown version in index file",
               StoreErrorCodes.Index_Version_Error);
       }
+      newSerializedKeysSorted = isSortedBySerializedKeys(newMmap);
+      if (!newSerializedKeysSorted) {
+        logger.info("IndexSegment : {} keys are not sorted by their serialized form. Lookups will deserialize keys",
+            indexFile.getAbsolutePath());
+      }
+    } finally {
+      raf.close();
+    }
+    rwLock.writeLock().lock();
+    try {
+      mmap = newMmap;
+      serializedKeysSorted = newSerializedKeysSorted;
       mapped.set(true);
       index = null;
+      unpersistedEntries.clear();
     } finally {
-      raf.close();
       rwLock.writeLock().unlock();
     }
     // we should be fine reading bloom filter here without synchronization as the index is read only
@@ -583,17 +1030,7 @@ class IndexSegment {
               index.put(key, blobValue);
               logger.trace("IndexSegment : {} putting key {} in index offset {} size {}", indexFile.getAbsolutePath(),
                   key, blobValue.getOffset(), blobValue.getSize());
-              // regenerate the bloom filter for in memory indexes
-              bloomFilter.add(ByteBuffer.wrap(key.toBytes()));
-              // add to the journal
-              if (blobValue.getOffset() != blobValue.getOriginalMessageOffset()
-                  && blobValue.getOriginalMessageOffset() >= startOffset.get()) {
-                // we add an entry for the original message offset if it is within the same index segment
-                journal.addEntry(blobValue.getOriginalMessageOffset(), key);
-              }
-              journal.addEntry(blobValue.getOffset(), key);
-              sizeWritten.addAndGet(key.sizeInBytes() + IndexValue.Index_Value_Size_In_Bytes);
-              numberOfItems.incrementAndGet();
+              onEntryLoaded(key, blobValue, journal);
               if (blobValue.getOffset() + blobValue.getSize() > maxEndOffset) {
                 maxEndOffset = blobValue.getOffset() + blobValue.getSize();
               }
@@ -619,6 +1056,11 @@ class IndexSegment {
                 StoreErrorCodes.Index_Creation_Failure);
           }
           break;
+        case Incremental_Version:
+          this.keySize = stream.readInt();
+          this.valueSize = stream.readInt();
+          readRecords(stream, journal);
+          break;
         default:
           throw new StoreException("IndexSegment : " + indexFile.getAbsolutePath() + " invalid version in index file",
               StoreErrorCodes.Index_Version_Error);
@@ -631,6 +1073,82 @@ class IndexSegment {
     }
   }
 
+  /**
+   * Reads the records of an incrementally persisted file that follow its header. Reading stops at the first record
+   * that was not completely written or whose crc does not match. The next flush overwrites such a record.
+   * @param stream the stream of the file, positioned after the header.
+   * @param journal The journal to use.
+   * @throws IOException
+   */
+  private void readRecords(DataInputStream stream, Journal journal) throws IOException {
+    long validSize = Incremental_Header_Size;
+    int entrySize = keySize + valueSize;
+    byte[] recordHeader = new byte[Log_End_Offset_Field_Length + Entry_Count_Field_Length];
+    while (stream.available() >= Incremental_Record_Size_Excluding_Entries) {
+      stream.readFully(recordHeader);
+      ByteBuffer recordHeaderBuf = ByteBuffer.wrap(recordHeader);
+      long logEndOffset = recordHeaderBuf.getLong();
+      int entryCount = recordHeaderBuf.getInt();
+      long entriesSize = (long) entryCount * entrySize;
+      if (entryCount < 0 || stream.available() < entriesSize + Crc_Field_Length) {
+        logger.info("IndexSegment : {} ignoring incomplete record at {}", indexFile.getAbsolutePath(), validSize);
+        break;
+      }
+      byte[] entries = new byte[(int) entriesSize];
+      stream.readFully(entries);
+      Crc32 crc = new Crc32();
+      crc.update(recordHeader, 0, recordHeader.length);
+      crc.update(entries, 0, entries.length);
+      if (crc.getValue() != stream.readLong()) {
+        logger.error("IndexSegment : {} crc check of the record at {} does not match", indexFile.getAbsolutePath(),
+            validSize);
+        break;
+      }
+      DataInputStream entryStream = new DataInputStream(new ByteBufferInputStream(ByteBuffer.wrap(entries)));
+      for (int i = 0; i < entryCount; i++) {
+        StoreKey key = factory.getStoreKey(entryStream);
+        byte[] value = new byte[IndexValue.Index_Value_Size_In_Bytes];
+        entryStream.readFully(value);
+        IndexValue blobValue = new IndexValue(ByteBuffer.wrap(value));
+        if (blobValue.getOffset() + blobValue.getSize() <= logEndOffset) {
+          // later entries of a key replace earlier ones
+          index.put(key, blobValue);
+        }
+      }
+      validSize += Incremental_Record_Size_Excluding_Entries + entriesSize;
+    }
+    persistedFileSize = validSize;
+    long maxEndOffset = Long.MIN_VALUE;
+    Iterator<IndexEntry> iterator = index.iterator(null);
+    while (iterator.hasNext()) {
+      IndexEntry entry = iterator.next();
+      onEntryLoaded(entry.getKey(), entry.getValue(), journal);
+      maxEndOffset = Math.max(maxEndOffset, entry.getValue().getOffset() + entry.getValue().getSize());
+    }
+    this.endOffset.set(maxEndOffset);
+    logger.trace("IndexSegment : {} setting end offset for index {}", indexFile.getAbsolutePath(), maxEndOffset);
+  }
+
+  /**
+   * Updates the bloom filter, the journal and the counts of the segment for an entry that was read from its file.
+   * @param key the key of the entry.
+   * @param value the value of the entry.
+   * @param journal The journal to use.
+   */
+  private void onEntryLoaded(StoreKey key, IndexValue value, Journal journal) {
+    // regenerate the bloom filter for in memory indexes
+    bloomFilter.add(ByteBuffer.wrap(key.toBytes()));
+    // add to the journal
+    if (value.getOffset() != value.getOriginalMessageOffset()
+        && value.getOriginalMessageOffset() >= startOffset.get()) {
+      // we add an entry for the original message offset if it is within the same index segment
+      journal.addEntry(value.getOriginalMessageOffset(), key);
+    }
+    journal.addEntry(value.getOffset(), key);
+    sizeWritten.addAndGet(key.sizeInBytes() + IndexValue.Index_Value_Size_In_Bytes);
+    numberOfItems.incrementAndGet();
+  }
+
   /**
    * Gets all the entries upto maxEntries from the start of a given key (exclusive) or all entries if key is null,
    * till maxTotalSizeOfEntriesInBytes
@@ -648,7 +1166,7 @@ class IndexSegment {
     if (mapped.get()) {
       int index = 0;
       if (key != null) {
-        index = findIndex(key, mmap.duplicate());
+        index = findIndex(key, key.toBytes(), mmap);
       }
       if (index != -1) {
         ByteBuffer readBuf = mmap.duplicate();
@@ -673,11 +1191,9 @@ class IndexSegment {
         logger.error("IndexSegment : " + indexFile.getAbsolutePath() + " index not found for key " + key);
       }
     } else {
-      ConcurrentNavigableMap<StoreKey, IndexValue> tempMap = index;
-      if (key != null) {
-        tempMap = index.tailMap(key, true);
-      }
-      for (Map.Entry<StoreKey, IndexValue> entry : tempMap.entrySet()) {
+      Iterator<IndexEntry> iterator = index.iterator(key);
+      while (iterator.hasNext()) {
+        IndexEntry entry = iterator.next();
         if (key == null || entry.getKey().compareTo(key) != 0) {
           MessageInfo info = new MessageInfo(entry.getKey(), entry.getValue().getSize(),
               entry.getValue().isFlagSet(IndexValue.Flags.Delete_Index), entry.getValue().getTimeToLiveInMs());
@@ -38,6 +38,9 @@ class Log implements Write {
   private final String dataDir;
   private final long capacityInBytes;
   private final StoreMetrics metrics;
+  private final DiskIOScheduler diskIOScheduler;
+  private final BlobReadCache readCache;
+  private final ReadCoalescer readCoalescer;
   private final ConcurrentSkipListMap<String, LogSegment> segmentsByName =
       new ConcurrentSkipListMap<>(LogSegmentNameHelper.COMPARATOR);
   private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -57,9 +60,33 @@ class Log implements Write {
    * multiple of {@code segmentCapacityInBytes}.
    */
   Log(String dataDir, long totalCapacityInBytes, long segmentCapacityInBytes, StoreMetrics metrics) throws IOException {
+    this(dataDir, totalCapacityInBytes, segmentCapacityInBytes, metrics, null, null, null);
+  }
+
+  /**
+   * Create a Log instance whose writes and reads are reported to a {@link DiskIOScheduler} as foreground I/O, whose
+   * small foreground reads are cached in a {@link BlobReadCache} and whose foreground reads of messages that are close
+   * to each other are merged by a {@link ReadCoalescer}.
+   * @param dataDir the directory where the segments of the log need to be loaded from.
+   * @param totalCapacityInBytes the total capacity of this log.
+   * @param segmentCapacityInBytes the capacity of a single segment in the log.
+   * @param metrics the {@link StoreMetrics} instance to use.
+   * @param diskIOScheduler the {@link DiskIOScheduler} of the disk that contains the log. Can be {@code null}.
+   * @param readCache the {@link BlobReadCache} to serve small foreground reads from. Can be {@code null}.
+   * @param readCoalescer the {@link ReadCoalescer} that merges foreground reads. Can be {@code null}.
+   * @throws IOException if there is any I/O error loading the segment files.
+   * @throws IllegalArgumentException if {@code totalCapacityInBytes} or {@code segmentCapacityInBytes} <= 0 or if
+   * {@code totalCapacityInBytes} > {@code segmentCapacityInBytes} and {@code totalCapacityInBytes} is not a perfect
+   * multiple of {@code segmentCapacityInBytes}.
+   */
+  Log(String dataDir, long totalCapacityInBytes, long segmentCapacityInBytes, StoreMetrics metrics,
+      DiskIOScheduler diskIOScheduler, BlobReadCache readCache, ReadCoalescer readCoalescer) throws IOException {
     this.dataDir = dataDir;
     this.capacityInBytes = totalCapacityInBytes;
     this.metrics = metrics;
+    this.diskIOScheduler = diskIOScheduler;
+    this.readCache = readCache;
+    this.readCoalescer = readCoalescer;
 
     File dir = new File(dataDir);
     File[] segmentFiles = dir.listFiles(LogSegmentNameHelper.LOG_FILE_FILTER);
@@ -89,7 +116,15 @@ class Log implements Write {
   @Override
   public int appendFrom(ByteBuffer buffer) throws IOException {
     rollOverIfRequired(buffer.remaining());
-    return activeSegment.appendFrom(buffer);
+    if (diskIOScheduler == null) {
+      return activeSegment.appendFrom(buffer);
+    }
+    long ioStartTimeNs = diskIOScheduler.foregroundIOStarted();
+    try {
+      return activeSegment.appendFrom(buffer);
+    } finally {
+      diskIOScheduler.foregroundIOCompleted(ioStartTimeNs);
+    }
   }
 
   /**
@@ -106,7 +141,33 @@ class Log implements Write {
   @Override
   public void appendFrom(ReadableByteChannel channel, long size) throws IOException {
     rollOverIfRequired(size);
-    activeSegment.appendFrom(channel, size);
+    if (diskIOScheduler == null) {
+      activeSegment.appendFrom(channel, size);
+      return;
+    }
+    // the time spent reading from the channel is not a part of the latency of the disk.
+    DiskIOScheduler.TimedReadableByteChannel timedChannel = diskIOScheduler.timeReads(channel);
+    long ioStartTimeNs = diskIOScheduler.foregroundIOStarted();
+    try {
+      activeSegment.appendFrom(timedChannel, size);
+    } finally {
+      diskIOScheduler.foregroundIOCompleted(ioStartTimeNs, timedChannel.getReadTimeNs());
+    }
+  }
+
+  /**
+   * @return the {@link DiskIOScheduler} of the disk that contains this log. Can be {@code null}.
+   */
+  DiskIOScheduler getDiskIOScheduler() {
+    return diskIOScheduler;
+  }
+
+  /**
+   * @return the {@link BlobReadCache} that caches small foreground reads from this log. Can be {@code null}. Writers
+   * that overwrite data in the log have to invalidate the overwritten range in the cache.
+   */
+  BlobReadCache getReadCache() {
+    return readCache;
   }
 
   /**
@@ -387,7 +448,9 @@ class Log implements Write {
   }
 
   /**
-   * Gets a {@link StoreMessageReadSet} with the file and file channel of the first segment of the log.
+   * Gets a {@link StoreMessageReadSet} with the file and file channel of the first segment of the log. Reads from the
+   * returned read set are reported to the {@link DiskIOScheduler} of the log (if any) as foreground I/O and are served
+   * through the {@link BlobReadCache} of the log (if any).
    * @param readOptions the {@link BlobReadOptions} to include in the {@link StoreMessageReadSet}.
    * @return a {@link StoreMessageReadSet} with the file and file channel of the first segment and the given {@code }
    * @deprecated this function is deprecated and is available for use until {@link PersistentIndex} and
@@ -395,8 +458,24 @@ class Log implements Write {
    */
   @Deprecated
   StoreMessageReadSet getView(List<BlobReadOptions> readOptions) {
+    return getView(readOptions, true);
+  }
+
+  /**
+   * Gets a {@link StoreMessageReadSet} with the file and file channel of the first segment of the log.
+   * @param readOptions the {@link BlobReadOptions} to include in the {@link StoreMessageReadSet}.
+   * @param isForeground {@code true} if reads from the returned read set have to be reported to the
+   * {@link DiskIOScheduler} of the log as foreground I/O and served through the {@link BlobReadCache} of the log.
+   * Background jobs account for their I/O themselves and do not populate the cache.
+   * @return a {@link StoreMessageReadSet} with the file and file channel of the first segment and the given {@code }
+   * @deprecated this function is deprecated and is available for use until {@link PersistentIndex} and
+   * {@link HardDeleter} are rewritten to understand segmented logs.
+   */
+  @Deprecated
+  StoreMessageReadSet getView(List<BlobReadOptions> readOptions, boolean isForeground) {
     LogSegment firstLogSegment = segmentsByName.firstEntry().getValue();
     Pair<File, FileChannel> view = firstLogSegment.getView();
-    return new StoreMessageReadSet(view.getFirst(), view.getSecond(), readOptions, firstLogSegment.getEndOffset());
+    return new StoreMessageReadSet(view.getFirst(), view.getSecond(), readOptions, firstLogSegment.getEndOffset(),
+        isForeground ? diskIOScheduler : null, isForeground ? readCache : null, isForeground ? readCoalescer : null);
   }
 }
@@ -0,0 +1,331 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.github.ambry.utils.MurmurHash;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * An {@link InMemoryIndex} that keeps the serialized entries off heap so that the entries of the active segments do
+ * not add to the heap and to the garbage collection pauses.
+ * <p/>
+ * Every entry is stored as a fixed size record of the serialized key followed by the serialized value in a direct
+ * buffer arena. Records are only appended and never modified, so replacing the value of a key appends a new record.
+ * The heap only holds primitive arrays of record numbers:
+ * <ul>
+ *   <li>a hash table on the serialized keys that is used for lookups without deserializing any key</li>
+ *   <li>the keys in the order of {@link StoreKey#compareTo(Object)} that is used to iterate over the entries</li>
+ * </ul>
+ * Since the records are immutable, iterators work on a snapshot of the records taken when they are created.
+ */
+class OffHeapInMemoryIndex implements InMemoryIndex {
+  private static final int Initial_Num_Records = 1024;
+  private static final int Empty_Slot = -1;
+  private static final int Key_Size_Invalid_Value = -1;
+  private static final long Hash_Seed = 0x9747b28cL;
+
+  private final StoreKeyFactory factory;
+  private final int valueSize;
+  private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+  // all the keys have the same size. It is set by the first put
+  private int keySize = Key_Size_Invalid_Value;
+  private int recordSize;
+  // records are appended at the position of the arena
+  private ByteBuffer arena = null;
+  private int numKeys = 0;
+  // the latest record of every key, indexed by the order in which the keys were added
+  private int[] keyRecords = new int[Initial_Num_Records];
+  // the keys (as the order in which they were added) sorted by StoreKey#compareTo
+  private int[] sortedKeys = new int[Initial_Num_Records];
+  // open addressing hash table of keys (as the order in which they were added). At most half the slots are used.
+  private int[] slots = newSlots(2 * Initial_Num_Records);
+
+  /**
+   * Creates an empty index.
+   * @param factory The store key factory used to deserialize the keys
+   */
+  OffHeapInMemoryIndex(StoreKeyFactory factory) {
+    this.factory = factory;
+    this.valueSize = IndexValue.Index_Value_Size_In_Bytes;
+  }
+
+  @Override
+  public IndexValue get(StoreKey key) {
+    byte[] keyBytes = key.toBytes();
+    rwLock.readLock().lock();
+    try {
+      if (keyBytes.length != keySize) {
+        return null;
+      }
+      int keyNum = findKeyNum(keyBytes);
+      return keyNum == Empty_Slot ? null : readValue(arena, keyRecords[keyNum]);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException if the size of the key is different from the size of the keys already added
+   */
+  @Override
+  public boolean put(StoreKey key, IndexValue value) {
+    byte[] keyBytes = key.toBytes();
+    rwLock.writeLock().lock();
+    try {
+      if (keySize == Key_Size_Invalid_Value) {
+        keySize = keyBytes.length;
+        recordSize = keySize + valueSize;
+        arena = ByteBuffer.allocateDirect(Initial_Num_Records * recordSize);
+      } else if (keyBytes.length != keySize) {
+        throw new IllegalArgumentException(
+            "Key " + key + " of size " + keyBytes.length + " does not match the key size " + keySize + " of the index");
+      }
+      int keyNum = findKeyNum(keyBytes);
+      int record = appendRecord(keyBytes, value.getBytes().array());
+      if (keyNum != Empty_Slot) {
+        keyRecords[keyNum] = record;
+        return false;
+      }
+      addKey(key, keyBytes, record);
+      return true;
+    } finally {
+      rwLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterator<IndexEntry> iterator(StoreKey fromKey) {
+    final ByteBuffer snapshotArena;
+    final int[] records;
+    rwLock.readLock().lock();
+    try {
+      int start = fromKey == null ? 0 : getInsertionPoint(fromKey);
+      records = new int[numKeys - start];
+      for (int i = start; i < numKeys; i++) {
+        records[i - start] = keyRecords[sortedKeys[i]];
+      }
+      snapshotArena = arena;
+    } finally {
+      rwLock.readLock().unlock();
+    }
+    return new Iterator<IndexEntry>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < records.length;
+      }
+
+      @Override
+      public IndexEntry next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int record = records[next++];
+        return new IndexEntry(readKey(snapshotArena, record), readValue(snapshotArena, record));
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Entries cannot be removed from the index");
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    rwLock.writeLock().lock();
+    try {
+      numKeys = 0;
+      Arrays.fill(slots, Empty_Slot);
+      if (arena != null) {
+        // existing iterators may still read the old records, so the records are not overwritten
+        arena = ByteBuffer.allocateDirect(arena.capacity());
+      }
+    } finally {
+      rwLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    rwLock.readLock().lock();
+    try {
+      return numKeys;
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getHeapUsageInBytes() {
+    rwLock.readLock().lock();
+    try {
+      return 4L * (keyRecords.length + sortedKeys.length + slots.length);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getOffHeapUsageInBytes() {
+    rwLock.readLock().lock();
+    try {
+      return arena == null ? 0 : arena.capacity();
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds a key in the hash table by comparing the serialized keys.
+   * @param keyBytes The serialized key to find. Has to be {@link #keySize} bytes long.
+   * @return The number of the key or {@link #Empty_Slot} if the key is not present
+   */
+  private int findKeyNum(byte[] keyBytes) {
+    int slot = getSlot(MurmurHash.hash2_64(ByteBuffer.wrap(keyBytes), 0, keySize, Hash_Seed), slots.length);
+    while (true) {
+      int keyNum = slots[slot];
+      if (keyNum == Empty_Slot || keyEquals(keyRecords[keyNum], keyBytes)) {
+        return keyNum;
+      }
+      slot = (slot + 1) & (slots.length - 1);
+    }
+  }
+
+  private boolean keyEquals(int record, byte[] keyBytes) {
+    int recordStart = record * recordSize;
+    for (int i = 0; i < keySize; i++) {
+      if (arena.get(recordStart + i) != keyBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Appends a record to the arena, growing the arena if required.
+   * @return The number of the record
+   */
+  private int appendRecord(byte[] keyBytes, byte[] valueBytes) {
+    if (arena.remaining() < recordSize) {
+      long newCapacity = 2L * arena.capacity();
+      if (newCapacity > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Index cannot grow beyond " + arena.capacity() + " bytes");
+      }
+      ByteBuffer newArena = ByteBuffer.allocateDirect((int) newCapacity);
+      ByteBuffer records = arena.duplicate();
+      records.flip();
+      newArena.put(records);
+      arena = newArena;
+    }
+    int record = arena.position() / recordSize;
+    arena.put(keyBytes);
+    arena.put(valueBytes, 0, valueSize);
+    return record;
+  }
+
+  /**
+   * Adds a new key to the hash table and to the sorted keys.
+   */
+  private void addKey(StoreKey key, byte[] keyBytes, int record) {
+    if (numKeys == keyRecords.length) {
+      keyRecords = Arrays.copyOf(keyRecords, 2 * keyRecords.length);
+      sortedKeys = Arrays.copyOf(sortedKeys, 2 * sortedKeys.length);
+    }
+    int keyNum = numKeys;
+    keyRecords[keyNum] = record;
+    if (2 * (numKeys + 1) > slots.length) {
+      int[] newSlots = newSlots(2 * slots.length);
+      for (int i = 0; i < numKeys; i++) {
+        putInSlots(newSlots, i, MurmurHash.hash2_64(arena, keyRecords[i] * recordSize, keySize, Hash_Seed));
+      }
+      slots = newSlots;
+    }
+    putInSlots(slots, keyNum, MurmurHash.hash2_64(ByteBuffer.wrap(keyBytes), 0, keySize, Hash_Seed));
+    int insertionPoint = getInsertionPoint(key);
+    System.arraycopy(sortedKeys, insertionPoint, sortedKeys, insertionPoint + 1, numKeys - insertionPoint);
+    sortedKeys[insertionPoint] = keyNum;
+    numKeys++;
+  }
+
+  /**
+   * Binary searches the sorted keys. Only the keys that are probed are deserialized.
+   * @param key The key to search for
+   * @return The position of the first key in the sorted keys that is greater than or equal to {@code key}
+   */
+  private int getInsertionPoint(StoreKey key) {
+    int low = 0;
+    int high = numKeys;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (readKey(arena, keyRecords[sortedKeys[mid]]).compareTo(key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private StoreKey readKey(ByteBuffer arena, int record) {
+    byte[] keyBytes = new byte[keySize];
+    int recordStart = record * recordSize;
+    for (int i = 0; i < keySize; i++) {
+      keyBytes[i] = arena.get(recordStart + i);
+    }
+    try {
+      return factory.getStoreKey(new DataInputStream(new ByteArrayInputStream(keyBytes)));
+    } catch (IOException e) {
+      throw new IllegalStateException("Key of record " + record + " could not be deserialized", e);
+    }
+  }
+
+  private IndexValue readValue(ByteBuffer arena, int record) {
+    byte[] valueBytes = new byte[valueSize];
+    int valueStart = record * recordSize + keySize;
+    for (int i = 0; i < valueSize; i++) {
+      valueBytes[i] = arena.get(valueStart + i);
+    }
+    return new IndexValue(ByteBuffer.wrap(valueBytes));
+  }
+
+  private static void putInSlots(int[] slots, int keyNum, long keyHash) {
+    int slot = getSlot(keyHash, slots.length);
+    while (slots[slot] != Empty_Slot) {
+      slot = (slot + 1) & (slots.length - 1);
+    }
+    slots[slot] = keyNum;
+  }
+
+  private static int getSlot(long keyHash, int numSlots) {
+    return (int) (keyHash ^ (keyHash >>> 32)) & (numSlots - 1);
+  }
+
+  private static int[] newSlots(int numSlots) {
+    int[] slots = new int[numSlots];
+    Arrays.fill(slots, Empty_Slot);
+    return slots;
+  }
+}
@@ -15,6 +15,7 @@ package com.github.ambry.store;
 
 import com.codahale.metrics.Timer;
 import com.github.ambry.config.StoreConfig;
+import com.github.ambry.utils.Pair;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
@@ -24,8 +25,10 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
@@ -33,8 +36,13 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -53,6 +61,23 @@ class PersistentIndex {
   public static final String Bloom_File_Name_Suffix = "bloom";
   private static final String Clean_Shutdown_Filename = "cleanshutdown";
   public static final short version = 0;
+  // orders serialized keys lexicographically as unsigned bytes, which is the order of the keys in a mapped segment
+  private static final Comparator<Pair<byte[], StoreKey>> SERIALIZED_KEY_COMPARATOR =
+      new Comparator<Pair<byte[], StoreKey>>() {
+        @Override
+        public int compare(Pair<byte[], StoreKey> o1, Pair<byte[], StoreKey> o2) {
+          byte[] key1 = o1.getFirst();
+          byte[] key2 = o2.getFirst();
+          int length = Math.min(key1.length, key2.length);
+          for (int i = 0; i < length; i++) {
+            int result = (key1[i] & 0xff) - (key2[i] & 0xff);
+            if (result != 0) {
+              return result;
+            }
+          }
+          return key1.length - key2.length;
+        }
+      };
 
   protected ScheduledExecutorService scheduler;
   protected ConcurrentSkipListMap<Long, IndexSegment> indexes = new ConcurrentSkipListMap<Long, IndexSegment>();
@@ -73,6 +98,8 @@ class PersistentIndex {
   private long logEndOffsetOnStartup;
   private final StoreMetrics metrics;
   private Time time;
+  // locates the segment of a key without searching every segment. Null if disabled.
+  private final IndexKeyLocator keyLocator;
 
   // TODO (Index Changes): This will stay until the index is rewritten to handle multiple segments.
   private final LogSegment logSegment;
@@ -100,6 +127,27 @@ class PersistentIndex {
   public PersistentIndex(String datadir, ScheduledExecutorService scheduler, Log log, StoreConfig config,
       StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete, StoreMetrics metrics,
       Time time) throws StoreException {
+    this(datadir, scheduler, log, config, factory, recovery, hardDelete, metrics, time, null);
+  }
+
+  /**
+   * Creates a new persistent index
+   * @param datadir The directory to use to store the index files
+   * @param scheduler The scheduler that runs regular background tasks
+   * @param log The log that is represented by this index
+   * @param config The store configs for this index
+   * @param factory The factory used to create store keys
+   * @param recovery The recovery handle to perform recovery on startup
+   * @param hardDelete  The hard delete handle used to perform hard deletes
+   * @param metrics the metrics object
+   * @param time the time instance to use
+   * @param segmentLoader the executor used to load the mapped index segments in parallel. If null, the segments are
+   *                      loaded sequentially.
+   * @throws StoreException
+   */
+  public PersistentIndex(String datadir, ScheduledExecutorService scheduler, Log log, StoreConfig config,
+      StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete, StoreMetrics metrics,
+      Time time, ExecutorService segmentLoader) throws StoreException {
     /*
     If a put and a delete of a key happens within the same segment, the segment will have only one entry for it,
     whereas the journal keeps both. In order to account for this, and to ensure that the journal always has all the
@@ -108,7 +156,7 @@ class PersistentIndex {
     */
     this(datadir, scheduler, log, config, factory, recovery, hardDelete, metrics,
         new Journal(datadir, 2 * config.storeIndexMaxNumberOfInmemElements,
-            config.storeMaxNumberOfEntriesToReturnFromJournal), time);
+            config.storeMaxNumberOfEntriesToReturnFromJournal), time, segmentLoader);
   }
 
   /**
@@ -128,6 +176,28 @@ class PersistentIndex {
   protected PersistentIndex(String datadir, ScheduledExecutorService scheduler, Log log, StoreConfig config,
       StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete, StoreMetrics metrics,
       Journal journal, Time time) throws StoreException {
+    this(datadir, scheduler, log, config, factory, recovery, hardDelete, metrics, journal, time, null);
+  }
+
+  /**
+   * Creates a new persistent index
+   * @param datadir The directory to use to store the index files
+   * @param scheduler The scheduler that runs regular background tasks
+   * @param log The log that is represented by this index
+   * @param config The store configs for this index
+   * @param factory The factory used to create store keys
+   * @param recovery The recovery handle to perform recovery on startup
+   * @param hardDelete  The hard delete handle used to perform hard deletes
+   * @param metrics the metrics object
+   * @param journal the journal to use
+   * @param time the time instance to use
+   * @param segmentLoader the executor used to load the mapped index segments in parallel. If null, the segments are
+   *                      loaded sequentially.
+   * @throws StoreException
+   */
+  protected PersistentIndex(String datadir, ScheduledExecutorService scheduler, Log log, StoreConfig config,
+      StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete, StoreMetrics metrics,
+      Journal journal, Time time, ExecutorService segmentLoader) throws StoreException {
     try {
       this.time = time;
       this.scheduler = scheduler;
@@ -141,6 +211,7 @@ class PersistentIndex {
       hardDeleter = new HardDeleter(config, metrics, datadir, log, this, hardDelete, factory, time);
       this.hardDelete = hardDelete;
       this.journal = journal;
+      this.dataDir = datadir;
       Arrays.sort(indexFiles, new Comparator<File>() {
         @Override
         public int compare(File o1, File o2) {
@@ -163,20 +234,29 @@ class PersistentIndex {
         }
       });
 
-      for (int i = 0; i < indexFiles.length; i++) {
-        boolean map = false;
-        // We map all the indexes except the most recent index segment.
-        // The recent index segment would go through recovery after they have been
-        // read into memory
-        if (i < indexFiles.length - 1) {
-          map = true;
-        }
-        IndexSegment info = new IndexSegment(indexFiles[i], map, factory, config, metrics, journal);
+      final Timer.Context segmentsLoadContext = metrics.indexSegmentsLoadTime.time();
+      List<IndexSegment> segments = loadIndexSegments(indexFiles, segmentLoader);
+      segmentsLoadContext.stop();
+      for (int i = 0; i < segments.size(); i++) {
+        IndexSegment info = segments.get(i);
         logger.info("Index : {} loaded index segment {} with start offset {} and end offset {} ", datadir,
             indexFiles[i], info.getStartOffset(), info.getEndOffset());
         indexes.put(info.getStartOffset(), info);
       }
-      this.dataDir = datadir;
+      if (config.storeIndexKeyLocatorEnabled) {
+        keyLocator = new IndexKeyLocator(config.storeIndexKeyLocatorInitialNumSlots);
+        final Timer.Context keyLocatorContext = metrics.keyLocatorBuildTime.time();
+        // segments are added in increasing order of their offsets so that every key is located to its latest segment
+        for (IndexSegment segment : indexes.values()) {
+          segment.addKeysTo(keyLocator);
+        }
+        keyLocatorContext.stop();
+        logger.info("Index : {} built key locator with {} keys using {} bytes", datadir, keyLocator.size(),
+            keyLocator.getMemoryUsageInBytes());
+        metrics.initializeKeyLocatorMetrics(keyLocator);
+      } else {
+        keyLocator = null;
+      }
       logger.info("Index : " + datadir + " log end offset of index  before recovery " + logSegment.getEndOffset());
       // perform recovery if required
       final Timer.Context context = metrics.recoveryTime.time();
@@ -198,7 +278,9 @@ class PersistentIndex {
       // never work on the part of the log that is not yet flushed (by ensuring that the message retention
       // period is longer than the log flush time).
       logger.info("Index : " + datadir + " Starting hard delete recovery");
+      final Timer.Context hardDeleteRecoveryContext = metrics.hardDeleteRecoveryTime.time();
       hardDeleter.performRecovery();
+      hardDeleteRecoveryContext.stop();
       logger.info("Index : " + datadir + " Finished performing hard delete recovery");
 
       this.maxInMemoryIndexSizeInBytes = config.storeIndexMaxMemorySizeBytes;
@@ -225,6 +307,7 @@ class PersistentIndex {
         hardDeleter.close();
       }
       metrics.initializeHardDeleteMetric(hardDeleter, log);
+      metrics.initializeInMemoryIndexMetrics(this);
     } catch (StoreException e) {
       throw e;
     } catch (Exception e) {
@@ -233,6 +316,57 @@ class PersistentIndex {
     }
   }
 
+  /**
+   * Loads the index segments from the given index files. We map all the segments except the most recent one and load
+   * their bloom filters. Since the mapped segments are independent of each other, they are loaded in parallel on
+   * {@code segmentLoader} if one is provided. The most recent segment is read into memory on the calling thread as it
+   * also populates the journal, and would go through recovery after it has been read into memory.
+   * @param indexFiles The index files sorted in the increasing order of their start offsets
+   * @param segmentLoader The executor to load the mapped segments on. If null, the segments are loaded sequentially.
+   * @return The loaded segments in the same order as {@code indexFiles}
+   * @throws StoreException if any of the segments could not be loaded
+   * @throws InterruptedException if the thread is interrupted while waiting for the segments to be loaded
+   */
+  private List<IndexSegment> loadIndexSegments(File[] indexFiles, ExecutorService segmentLoader)
+      throws StoreException, InterruptedException {
+    List<Future<IndexSegment>> segmentFutures = new ArrayList<Future<IndexSegment>>(indexFiles.length);
+    for (int i = 0; i < indexFiles.length - 1; i++) {
+      final File indexFile = indexFiles[i];
+      Callable<IndexSegment> segmentLoadTask = new Callable<IndexSegment>() {
+        @Override
+        public IndexSegment call() throws StoreException {
+          return new IndexSegment(indexFile, true, factory, config, metrics, journal);
+        }
+      };
+      if (segmentLoader != null && !segmentLoader.isShutdown()) {
+        segmentFutures.add(segmentLoader.submit(segmentLoadTask));
+      } else {
+        FutureTask<IndexSegment> future = new FutureTask<IndexSegment>(segmentLoadTask);
+        future.run();
+        segmentFutures.add(future);
+      }
+    }
+    List<IndexSegment> segments = new ArrayList<IndexSegment>(indexFiles.length);
+    try {
+      for (Future<IndexSegment> segmentFuture : segmentFutures) {
+        segments.add(segmentFuture.get());
+      }
+    } catch (ExecutionException e) {
+      for (Future<IndexSegment> segmentFuture : segmentFutures) {
+        segmentFuture.cancel(false);
+      }
+      if (e.getCause() instanceof StoreException) {
+        throw (StoreException) e.getCause();
+      }
+      throw new StoreException("Unknown error while loading index segments of " + dataDir, e.getCause(),
+          StoreErrorCodes.Index_Creation_Failure);
+    }
+    if (indexFiles.length > 0) {
+      segments.add(new IndexSegment(indexFiles[indexFiles.length - 1], false, factory, config, metrics, journal));
+    }
+    return segments;
+  }
+
   /**
    * Recovers a segment given the end offset in the log and a recovery handler
    * @param segmentToRecover The segment to recover. If this is null, it creates a new segment
@@ -243,11 +377,13 @@ class PersistentIndex {
    */
   private void recover(IndexSegment segmentToRecover, long endOffset, MessageStoreRecovery recovery)
       throws StoreException, IOException {
-    // fix the start offset in the log for recovery.
+    // fix the start offset in the log for recovery. The end offset of the last segment, which is persisted only after
+    // the log has been flushed, acts as the recovery checkpoint: only the part of the log after it is rescanned. If
+    // the segment could not be read from its file (its end offset is then reset to a value before its start offset),
+    // only the log from the start of the segment is rescanned.
     long startOffsetForRecovery = 0;
     if (segmentToRecover != null) {
-      startOffsetForRecovery =
-          segmentToRecover.getEndOffset() == -1 ? segmentToRecover.getStartOffset() : segmentToRecover.getEndOffset();
+      startOffsetForRecovery = Math.max(segmentToRecover.getStartOffset(), segmentToRecover.getEndOffset());
     }
     logger.info("Index : {} performing recovery on index with start offset {} and end offset {}", dataDir,
         startOffsetForRecovery, endOffset);
@@ -287,6 +423,7 @@ class PersistentIndex {
         }
         validateFileSpan(new FileSpan(runningOffset, runningOffset + info.getSize()));
         segmentToRecover.addEntry(new IndexEntry(info.getStoreKey(), value), runningOffset + info.getSize());
+        addToKeyLocator(info.getStoreKey(), segmentToRecover);
         journal.addEntry(runningOffset, info.getStoreKey());
         if (value.getOriginalMessageOffset() != runningOffset
             && value.getOriginalMessageOffset() >= segmentToRecover.getStartOffset()) {
@@ -299,6 +436,7 @@ class PersistentIndex {
         IndexValue newValue = new IndexValue(info.getSize(), runningOffset, info.getExpirationTimeInMs());
         validateFileSpan(new FileSpan(runningOffset, runningOffset + info.getSize()));
         segmentToRecover.addEntry(new IndexEntry(info.getStoreKey(), newValue), runningOffset + info.getSize());
+        addToKeyLocator(info.getStoreKey(), segmentToRecover);
         journal.addEntry(runningOffset, info.getStoreKey());
         logger.info("Index : {} adding new message to index with key {} size {} ttl {} deleted {}", dataDir,
             info.getStoreKey(), info.getSize(), info.getExpirationTimeInMs(), info.isDeleted());
@@ -315,17 +453,63 @@ class PersistentIndex {
    */
   public void addToIndex(IndexEntry entry, FileSpan fileSpan) throws StoreException {
     validateFileSpan(fileSpan);
-    if (needToRollOverIndex(entry)) {
-      IndexSegment info = new IndexSegment(dataDir, entry.getValue().getOffset(), factory, entry.getKey().sizeInBytes(),
-          IndexValue.Index_Value_Size_In_Bytes, config, metrics);
-      info.addEntry(entry, fileSpan.getEndOffset());
-      indexes.put(info.getStartOffset(), info);
-    } else {
-      indexes.lastEntry().getValue().addEntry(entry, fileSpan.getEndOffset());
+    IndexSegment segment;
+    // lookups through the key locator that overlap the update of the segment and the locator are treated as stale
+    if (keyLocator != null) {
+      keyLocator.beginUpdate();
+    }
+    try {
+      if (needToRollOverIndex(entry)) {
+        segment = new IndexSegment(dataDir, entry.getValue().getOffset(), factory, entry.getKey().sizeInBytes(),
+            IndexValue.Index_Value_Size_In_Bytes, config, metrics);
+        segment.addEntry(entry, fileSpan.getEndOffset());
+        indexes.put(segment.getStartOffset(), segment);
+      } else {
+        segment = indexes.lastEntry().getValue();
+        segment.addEntry(entry, fileSpan.getEndOffset());
+      }
+      addToKeyLocator(entry.getKey(), segment);
+    } finally {
+      if (keyLocator != null) {
+        keyLocator.endUpdate();
+      }
     }
     journal.addEntry(entry.getValue().getOffset(), entry.getKey());
   }
 
+  /**
+   * Records in the key locator (if enabled) that the latest entry for {@code key} is in {@code segment}.
+   * @param key The key that was added to the segment
+   * @param segment The segment that the key was added to
+   */
+  private void addToKeyLocator(StoreKey key, IndexSegment segment) {
+    if (keyLocator != null) {
+      keyLocator.put(IndexKeyLocator.hash(key), segment.getStartOffset());
+    }
+  }
+
+  /**
+   * @return The approximate heap memory used by the entries of the index segments that are held in memory in bytes
+   */
+  long getInMemoryHeapUsageInBytes() {
+    long heapUsage = 0;
+    for (IndexSegment segment : indexes.values()) {
+      heapUsage += segment.getInMemoryHeapUsageInBytes();
+    }
+    return heapUsage;
+  }
+
+  /**
+   * @return The off heap memory used by the entries of the index segments that are held in memory in bytes
+   */
+  long getInMemoryOffHeapUsageInBytes() {
+    long offHeapUsage = 0;
+    for (IndexSegment segment : indexes.values()) {
+      offHeapUsage += segment.getInMemoryOffHeapUsageInBytes();
+    }
+    return offHeapUsage;
+  }
+
   /**
    * Adds a set of entries to the index
    * @param entries The entries to be added to the index
@@ -419,6 +603,28 @@ class PersistentIndex {
   public IndexValue findKey(StoreKey key, FileSpan fileSpan) throws StoreException {
     final Timer.Context context = metrics.findTime.time();
     try {
+      if (keyLocator != null) {
+        // the result of the locator is only used if the index was not updated during the lookup. Otherwise, all
+        // segments are searched
+        long sequence = keyLocator.getUpdateSequence();
+        long segmentStartOffset = keyLocator.get(IndexKeyLocator.hash(key));
+        if (segmentStartOffset == IndexKeyLocator.Not_Found && !keyLocator.hasChangedSince(sequence)) {
+          // no key with this hash has ever been added to the index
+          return null;
+        }
+        IndexSegment segment = segmentStartOffset >= 0 ? indexes.get(segmentStartOffset) : null;
+        if (fileSpan == null && segment != null) {
+          IndexValue value = segment.find(key);
+          if (keyLocator.hasChangedSince(sequence)) {
+            logger.trace("Index : {} updated during lookup of {} through the key locator", dataDir, key);
+          } else if (value != null) {
+            return value;
+          } else {
+            // the key hash collided with that of a key in the located segment. Fall back to searching all segments
+            metrics.keyLocatorCollisionCount.inc();
+          }
+        }
+      }
       ConcurrentNavigableMap<Long, IndexSegment> segmentsMapToSearch = null;
       if (fileSpan == null) {
         logger.trace("Searching for " + key + " in the entire index");
@@ -447,6 +653,77 @@ class PersistentIndex {
     return null;
   }
 
+  /**
+   * Finds a batch of keys in the index. Unlike calling {@link #findKey(StoreKey)} for each key, every index segment is
+   * searched at most once for all the keys that have not been found in a newer segment.
+   * @param keys the keys to find in the index. Can contain duplicates.
+   * @return a map from each key that was found to the latest {@link IndexValue} associated with it. Keys that are not
+   * found are not present in the map.
+   * @throws StoreException
+   */
+  public Map<StoreKey, IndexValue> findKeys(List<? extends StoreKey> keys) throws StoreException {
+    final Timer.Context context = metrics.batchFindTime.time();
+    try {
+      Map<StoreKey, IndexValue> foundValues = new HashMap<StoreKey, IndexValue>(keys.size());
+      List<StoreKey> keysToSearch = new ArrayList<StoreKey>(keys.size());
+      long sequence = keyLocator != null ? keyLocator.getUpdateSequence() : 0;
+      for (StoreKey key : new HashSet<StoreKey>(keys)) {
+        if (keyLocator == null) {
+          keysToSearch.add(key);
+          continue;
+        }
+        long segmentStartOffset = keyLocator.get(IndexKeyLocator.hash(key));
+        IndexSegment segment = segmentStartOffset >= 0 ? indexes.get(segmentStartOffset) : null;
+        IndexValue value = segment != null ? segment.find(key) : null;
+        if (keyLocator.hasChangedSince(sequence)) {
+          // the index was updated during the lookup and the locator may be stale
+          keysToSearch.add(key);
+          sequence = keyLocator.getUpdateSequence();
+        } else if (value != null) {
+          foundValues.put(key, value);
+        } else if (segmentStartOffset != IndexKeyLocator.Not_Found) {
+          if (segment != null) {
+            // the key hash collided with that of a key in the located segment
+            metrics.keyLocatorCollisionCount.inc();
+          }
+          keysToSearch.add(key);
+        }
+      }
+      if (keysToSearch.isEmpty()) {
+        return foundValues;
+      }
+      // the keys are searched for in the order of their serialized form so that a segment can be searched in one pass
+      List<Pair<byte[], StoreKey>> serializedAndKeys = new ArrayList<Pair<byte[], StoreKey>>(keysToSearch.size());
+      for (StoreKey key : keysToSearch) {
+        serializedAndKeys.add(new Pair<byte[], StoreKey>(key.toBytes(), key));
+      }
+      Collections.sort(serializedAndKeys, SERIALIZED_KEY_COMPARATOR);
+      int numKeys = serializedAndKeys.size();
+      StoreKey[] keysToFind = new StoreKey[numKeys];
+      byte[][] serializedKeys = new byte[numKeys][];
+      for (int i = 0; i < numKeys; i++) {
+        serializedKeys[i] = serializedAndKeys.get(i).getFirst();
+        keysToFind[i] = serializedAndKeys.get(i).getSecond();
+      }
+      IndexValue[] values = new IndexValue[numKeys];
+      int numRemaining = numKeys;
+      for (IndexSegment segment : indexes.descendingMap().values()) {
+        if (numRemaining == 0) {
+          break;
+        }
+        numRemaining -= segment.find(keysToFind, serializedKeys, values);
+      }
+      for (int i = 0; i < numKeys; i++) {
+        if (values[i] != null) {
+          foundValues.put(keysToFind[i], values[i]);
+        }
+      }
+      return foundValues;
+    } finally {
+      context.stop();
+    }
+  }
+
   /**
    * Marks the index entry represented by the key for delete
    * @param id The id of the entry that needs to be deleted
@@ -461,12 +738,22 @@ class PersistentIndex {
     } else if (value.isFlagSet(IndexValue.Flags.Delete_Index)) {
       throw new StoreException("Id " + id + " already deleted in index " + dataDir, StoreErrorCodes.ID_Deleted);
     }
+    addToIndex(new IndexEntry(id, newDeleteValue(value, fileSpan)), fileSpan);
+  }
+
+  /**
+   * Creates the value that marks the blob represented by {@code value} as deleted.
+   * @param value The current value of the blob that is being deleted
+   * @param fileSpan The file span represented by the delete entry in the log
+   * @return The value of the delete entry
+   */
+  static IndexValue newDeleteValue(IndexValue value, FileSpan fileSpan) {
     IndexValue newValue =
         new IndexValue(value.getSize(), value.getOffset(), value.getFlags(), value.getTimeToLiveInMs());
     newValue.setFlag(IndexValue.Flags.Delete_Index);
     newValue.setNewOffset(fileSpan.getStartOffset());
     newValue.setNewSize(fileSpan.getEndOffset() - fileSpan.getStartOffset());
-    addToIndex(new IndexEntry(id, newValue), fileSpan);
+    return newValue;
   }
 
   /**
@@ -477,7 +764,38 @@ class PersistentIndex {
    * @throws StoreException
    */
   public BlobReadOptions getBlobReadInfo(StoreKey id, EnumSet<StoreGetOptions> getOptions) throws StoreException {
-    IndexValue value = findKey(id);
+    return getBlobReadInfo(id, findKey(id), getOptions);
+  }
+
+  /**
+   * Returns the blob read info for a batch of keys. The keys are looked up with {@link #findKeys(List)}.
+   * @param ids The ids of the entries whose info is required
+   * @param getOptions the get options that indicate whether blob read info for deleted/expired blobs are to be
+   *                   returned.
+   * @return The blob read info for each of the given keys in the same order as {@code ids}.
+   * @throws StoreException if any of the keys is not found, deleted or expired (subject to {@code getOptions}).
+   */
+  public List<BlobReadOptions> getBlobReadInfo(List<? extends StoreKey> ids, EnumSet<StoreGetOptions> getOptions)
+      throws StoreException {
+    Map<StoreKey, IndexValue> values = findKeys(ids);
+    List<BlobReadOptions> readOptions = new ArrayList<BlobReadOptions>(ids.size());
+    for (StoreKey id : ids) {
+      readOptions.add(getBlobReadInfo(id, values.get(id), getOptions));
+    }
+    return readOptions;
+  }
+
+  /**
+   * Returns the blob read info for a key given its latest value in the index.
+   * @param id The id of the entry whose info is required
+   * @param value The latest {@link IndexValue} of {@code id}. {@code null} if the key is not in the index.
+   * @param getOptions the get options that indicate whether blob read info for deleted/expired blobs are to be
+   *                   returned.
+   * @return The blob read info that contains the information for the given key
+   * @throws StoreException
+   */
+  private BlobReadOptions getBlobReadInfo(StoreKey id, IndexValue value, EnumSet<StoreGetOptions> getOptions)
+      throws StoreException {
     if (value == null) {
       throw new StoreException("Id " + id + " not present in index " + dataDir, StoreErrorCodes.ID_Not_Found);
     } else if (value.isFlagSet(IndexValue.Flags.Delete_Index)) {
@@ -518,9 +836,10 @@ class PersistentIndex {
    * @throws StoreException
    */
   public Set<StoreKey> findMissingKeys(List<StoreKey> keys) throws StoreException {
+    Map<StoreKey, IndexValue> foundValues = findKeys(keys);
     Set<StoreKey> missingKeys = new HashSet<StoreKey>();
     for (StoreKey key : keys) {
-      if (findKey(key) == null) {
+      if (!foundValues.containsKey(key)) {
         missingKeys.add(key);
       }
     }
@@ -1036,8 +1355,7 @@ class PersistentIndex {
               throw new StoreException(message, StoreErrorCodes.IOError);
             }
             logger.trace("Index : " + dataDir + " writing prev index with end offset " + prevInfo.getEndOffset());
-            prevInfo.writeIndexToFile(prevInfo.getEndOffset());
-            prevInfo.map(true);
+            prevInfo.seal();
             Map.Entry<Long, IndexSegment> infoEntry = indexes.lowerEntry(prevInfo.getStartOffset());
             prevInfo = infoEntry != null ? infoEntry.getValue() : null;
           }
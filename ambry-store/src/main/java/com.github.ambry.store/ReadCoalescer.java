@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Decides which messages of a {@link StoreMessageReadSet} are read from the log together. Messages that are at most
+ * {@code maxGapInBytes} apart in the log are merged into a single sequential read, as long as the read does not
+ * exceed {@code maxReadSizeInBytes}. Messages that cannot be merged with another message are transferred from the log
+ * as before.
+ */
+class ReadCoalescer {
+  private final long maxReadSizeInBytes;
+  private final long maxGapInBytes;
+
+  // the number of reads that merge several messages
+  final AtomicLong coalescedReadCount = new AtomicLong(0);
+  // the number of reads that were saved by merging messages into the reads of other messages
+  final AtomicLong mergedReadCount = new AtomicLong(0);
+  // the number of bytes between merged messages that were read without being requested
+  final AtomicLong gapBytesRead = new AtomicLong(0);
+  // the number of bytes that were served from coalesced reads instead of separate reads from the log
+  final AtomicLong bytesServed = new AtomicLong(0);
+
+  /**
+   * Creates a read coalescer.
+   * @param maxReadSizeInBytes the maximum size of a read that merges several messages.
+   * @param maxGapInBytes the maximum number of bytes between two messages that are merged into the same read.
+   */
+  ReadCoalescer(long maxReadSizeInBytes, long maxGapInBytes) {
+    this.maxReadSizeInBytes = maxReadSizeInBytes;
+    this.maxGapInBytes = maxGapInBytes;
+  }
+
+  /**
+   * Groups the messages into reads.
+   * @param readOptions the {@link BlobReadOptions} of the messages, sorted by offset.
+   * @param readCache the {@link BlobReadCache} that serves some of the messages. Messages that are cached are not
+   *                  read from the log. Can be {@code null}.
+   * @return for every message, the index of the first message of the read that it is part of or -1 if the message is
+   * not merged with any other message. The messages of a read have consecutive indexes.
+   */
+  int[] getReads(List<BlobReadOptions> readOptions, BlobReadCache readCache) {
+    int[] reads = new int[readOptions.size()];
+    Arrays.fill(reads, -1);
+    int first = -1;
+    long readStart = 0;
+    long readEnd = 0;
+    for (int i = 0; i < readOptions.size(); i++) {
+      BlobReadOptions readOption = readOptions.get(i);
+      long start = readOption.getOffset();
+      long end = start + readOption.getSize();
+      if (readOption.getSize() > maxReadSizeInBytes || (readCache != null && readCache.isCacheable(
+          readOption.getSize()) && readCache.contains(start, readOption.getSize()))) {
+        first = -1;
+        continue;
+      }
+      if (first != -1 && start - readEnd <= maxGapInBytes && Math.max(end, readEnd) - readStart <= maxReadSizeInBytes) {
+        reads[first] = first;
+        reads[i] = first;
+        readEnd = Math.max(end, readEnd);
+      } else {
+        first = i;
+        readStart = start;
+        readEnd = end;
+      }
+    }
+    return reads;
+  }
+
+  /**
+   * Records a read that merges several messages.
+   * @param messageCount the number of messages that are merged into the read.
+   * @param readSizeInBytes the size of the read.
+   * @param messageSizeInBytes the total size of the merged messages.
+   */
+  void onCoalescedRead(int messageCount, long readSizeInBytes, long messageSizeInBytes) {
+    coalescedReadCount.incrementAndGet();
+    mergedReadCount.addAndGet(messageCount - 1);
+    gapBytesRead.addAndGet(Math.max(0, readSizeInBytes - messageSizeInBytes));
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * An {@link InMemoryIndex} that keeps the entries as heap objects in a {@link ConcurrentSkipListMap}.
+ */
+class SkipListInMemoryIndex implements InMemoryIndex {
+  // rough estimate of the heap used by every entry apart from the serialized key and value. This accounts for the
+  // skip list node, the key object and the index value with its byte buffer.
+  private static final int Heap_Overhead_Per_Entry_In_Bytes = 256;
+
+  private final ConcurrentSkipListMap<StoreKey, IndexValue> index = new ConcurrentSkipListMap<StoreKey, IndexValue>();
+  // the estimated heap usage of the entries, kept up to date on every new entry so that it is not computed by a scan
+  private final AtomicLong heapUsageInBytes = new AtomicLong(0);
+
+  @Override
+  public IndexValue get(StoreKey key) {
+    return index.get(key);
+  }
+
+  @Override
+  public boolean put(StoreKey key, IndexValue value) {
+    if (index.put(key, value) != null) {
+      // the value of an existing entry was replaced, which does not change the heap usage
+      return false;
+    }
+    heapUsageInBytes.addAndGet(
+        Heap_Overhead_Per_Entry_In_Bytes + key.sizeInBytes() + IndexValue.Index_Value_Size_In_Bytes);
+    return true;
+  }
+
+  @Override
+  public Iterator<IndexEntry> iterator(StoreKey fromKey) {
+    ConcurrentNavigableMap<StoreKey, IndexValue> tempMap = index;
+    if (fromKey != null) {
+      tempMap = index.tailMap(fromKey, true);
+    }
+    final Iterator<Map.Entry<StoreKey, IndexValue>> iterator = tempMap.entrySet().iterator();
+    return new Iterator<IndexEntry>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public IndexEntry next() {
+        Map.Entry<StoreKey, IndexValue> entry = iterator.next();
+        return new IndexEntry(entry.getKey(), entry.getValue());
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Entries cannot be removed from the index");
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+    heapUsageInBytes.set(0);
+  }
+
+  @Override
+  public int size() {
+    return index.size();
+  }
+
+  @Override
+  public long getHeapUsageInBytes() {
+    return heapUsageInBytes.get();
+  }
+
+  @Override
+  public long getOffHeapUsageInBytes() {
+    return 0;
+  }
+}
@@ -14,8 +14,11 @@
 package com.github.ambry.store;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.github.ambry.utils.Time;
 
 
 /**
@@ -28,6 +31,12 @@ public class StorageManagerMetrics {
   public final Counter totalStoreStartFailures;
   public final Counter diskMountPathFailures;
 
+  public final Timer diskSyncTime;
+  public final Timer diskSyncWaitTime;
+  public final Histogram diskSyncBatchSize;
+  public final Histogram diskSyncBatchLogCount;
+  public final Counter diskSyncFailures;
+
   /**
    * Create a {@link StorageManagerMetrics} object for handling metrics related to the stores on a node.
    * @param registry the {@link MetricRegistry} to use.
@@ -37,6 +46,11 @@ public class StorageManagerMetrics {
     diskStartTime = registry.timer(MetricRegistry.name(StorageManager.class, "DiskStartTime"));
     totalStoreStartFailures = registry.counter(MetricRegistry.name(StorageManager.class, "TotalStoreStartFailures"));
     diskMountPathFailures = registry.counter(MetricRegistry.name(StorageManager.class, "DiskMountPathFailures"));
+    diskSyncTime = registry.timer(MetricRegistry.name(DiskSyncer.class, "SyncTime"));
+    diskSyncWaitTime = registry.timer(MetricRegistry.name(DiskSyncer.class, "SyncWaitTime"));
+    diskSyncBatchSize = registry.histogram(MetricRegistry.name(DiskSyncer.class, "SyncBatchSize"));
+    diskSyncBatchLogCount = registry.histogram(MetricRegistry.name(DiskSyncer.class, "SyncBatchLogCount"));
+    diskSyncFailures = registry.counter(MetricRegistry.name(DiskSyncer.class, "SyncFailures"));
   }
 
   /**
@@ -47,4 +61,61 @@ public class StorageManagerMetrics {
   public StoreMetrics createStoreMetrics(String storeId) {
     return new StoreMetrics(storeId, registry);
   }
+
+  /**
+   * Register gauges for the budgeting decisions and foreground latency feedback of the {@link DiskIOScheduler} of a
+   * disk.
+   * @param diskIOScheduler the {@link DiskIOScheduler} of the disk.
+   * @param diskName the name of the disk to use in the metric names.
+   */
+  void initializeDiskIOSchedulerMetrics(final DiskIOScheduler diskIOScheduler, String diskName) {
+    String prefix = diskName + ".";
+    Gauge<Double> backgroundBudgetFraction = new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return diskIOScheduler.getBudgetFraction();
+      }
+    };
+    registerDiskGauge(prefix + "BackgroundBudgetFraction", backgroundBudgetFraction);
+    Gauge<Double> foregroundLatencyPercentileMs = new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return (double) diskIOScheduler.getForegroundLatencyPercentileNs() / Time.NsPerMs;
+      }
+    };
+    registerDiskGauge(prefix + "ForegroundLatencyPercentileMs", foregroundLatencyPercentileMs);
+    Gauge<Integer> foregroundQueueDepth = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return diskIOScheduler.getForegroundQueueDepth();
+      }
+    };
+    registerDiskGauge(prefix + "ForegroundQueueDepth", foregroundQueueDepth);
+    Gauge<Long> budgetDecreaseCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return diskIOScheduler.budgetDecreaseCount.get();
+      }
+    };
+    registerDiskGauge(prefix + "BudgetDecreaseCount", budgetDecreaseCount);
+    Gauge<Long> budgetIncreaseCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return diskIOScheduler.budgetIncreaseCount.get();
+      }
+    };
+    registerDiskGauge(prefix + "BudgetIncreaseCount", budgetIncreaseCount);
+  }
+
+  /**
+   * Registers a per disk gauge, replacing any gauge registered earlier under the same name by a disk with the same
+   * mount path.
+   * @param name the name of the gauge relative to {@link DiskIOScheduler}.
+   * @param gauge the {@link Gauge} to register.
+   */
+  private void registerDiskGauge(String name, Gauge<?> gauge) {
+    String metricName = MetricRegistry.name(DiskIOScheduler.class, name);
+    registry.remove(metricName);
+    registry.register(metricName, gauge);
+  }
 }
@@ -13,12 +13,14 @@
  */
 package com.github.ambry.store;
 
+import com.github.ambry.network.TransferableChannel;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.slf4j.Logger;
@@ -113,10 +115,50 @@ class StoreMessageReadSet implements MessageReadSet {
   private final List<BlobReadOptions> readOptions;
   private final FileChannel fileChannel;
   private final File file;
+  private final DiskIOScheduler diskIOScheduler;
+  private final BlobReadCache readCache;
+  private final ReadCoalescer readCoalescer;
+  // for every message, the index of the first message of the coalesced read that contains it or -1
+  private int[] coalescedReads = null;
+  // the content of the last coalesced read, which starts at the message at index loadedRead
+  private int loadedRead = -1;
+  private ByteBuffer loadedReadBuffer = null;
   private Logger logger = LoggerFactory.getLogger(getClass());
 
   public StoreMessageReadSet(File file, FileChannel fileChannel, List<BlobReadOptions> readOptions,
       long fileEndPosition) {
+    this(file, fileChannel, readOptions, fileEndPosition, null, null);
+  }
+
+  /**
+   * Creates a {@link StoreMessageReadSet} whose reads are reported to {@code diskIOScheduler} as foreground I/O and
+   * whose small messages are served from and added to {@code readCache}.
+   * @param file the file that contains the messages.
+   * @param fileChannel the {@link FileChannel} of {@code file}.
+   * @param readOptions the {@link BlobReadOptions} of the messages in this read set.
+   * @param fileEndPosition the end position of valid data in {@code file}.
+   * @param diskIOScheduler the {@link DiskIOScheduler} to report reads and transfers to. Can be {@code null}.
+   * @param readCache the {@link BlobReadCache} of the store. Can be {@code null}.
+   */
+  StoreMessageReadSet(File file, FileChannel fileChannel, List<BlobReadOptions> readOptions, long fileEndPosition,
+      DiskIOScheduler diskIOScheduler, BlobReadCache readCache) {
+    this(file, fileChannel, readOptions, fileEndPosition, diskIOScheduler, readCache, null);
+  }
+
+  /**
+   * Creates a {@link StoreMessageReadSet} whose reads are reported to {@code diskIOScheduler} as foreground I/O, whose
+   * small messages are served from and added to {@code readCache} and whose messages that are close to each other in
+   * the file are read together as decided by {@code readCoalescer}.
+   * @param file the file that contains the messages.
+   * @param fileChannel the {@link FileChannel} of {@code file}.
+   * @param readOptions the {@link BlobReadOptions} of the messages in this read set.
+   * @param fileEndPosition the end position of valid data in {@code file}.
+   * @param diskIOScheduler the {@link DiskIOScheduler} to report reads and transfers to. Can be {@code null}.
+   * @param readCache the {@link BlobReadCache} of the store. Can be {@code null}.
+   * @param readCoalescer the {@link ReadCoalescer} of the store. Can be {@code null}.
+   */
+  StoreMessageReadSet(File file, FileChannel fileChannel, List<BlobReadOptions> readOptions, long fileEndPosition,
+      DiskIOScheduler diskIOScheduler, BlobReadCache readCache, ReadCoalescer readCoalescer) {
 
     Collections.sort(readOptions);
     for (BlobReadOptions readOption : readOptions) {
@@ -128,6 +170,9 @@ class StoreMessageReadSet implements MessageReadSet {
     this.readOptions = readOptions;
     this.fileChannel = fileChannel;
     this.file = file;
+    this.diskIOScheduler = diskIOScheduler;
+    this.readCache = readCache;
+    this.readCoalescer = readCoalescer;
   }
 
   @Override
@@ -135,14 +180,152 @@ class StoreMessageReadSet implements MessageReadSet {
     if (index >= readOptions.size()) {
       throw new IndexOutOfBoundsException("index " + index + " out of the messageset size " + readOptions.size());
     }
-    long startOffset = readOptions.get(index).getOffset() + relativeOffset;
-    long sizeToRead = Math.min(maxSize, readOptions.get(index).getSize() - relativeOffset);
+    BlobReadOptions readOption = readOptions.get(index);
+    long startOffset = readOption.getOffset() + relativeOffset;
+    long sizeToRead = Math.min(maxSize, readOption.getSize() - relativeOffset);
     logger.trace("Blob Message Read Set position {} count {}", startOffset, sizeToRead);
-    long written = fileChannel.transferTo(startOffset, sizeToRead, channel);
+    if (readCoalescer != null) {
+      ByteBuffer message = getCoalescedMessage(index);
+      if (message != null) {
+        message.position((int) relativeOffset);
+        message.limit((int) (relativeOffset + sizeToRead));
+        long written = channel.write(message);
+        readCoalescer.bytesServed.addAndGet(written);
+        logger.trace("Written {} bytes to the write channel from the coalesced read of {}", written, readOption);
+        return written;
+      }
+    }
+    if (readCache != null && readCache.isCacheable(readOption.getSize())) {
+      byte[] record = readCache.get(readOption.getOffset(), readOption.getSize());
+      boolean isCacheHit = record != null;
+      if (!isCacheHit) {
+        long generation = readCache.getGeneration();
+        record = readRecord(readOption);
+        readCache.put(readOption.getOffset(), record, generation);
+      }
+      long written = channel.write(ByteBuffer.wrap(record, (int) relativeOffset, (int) sizeToRead));
+      if (isCacheHit) {
+        readCache.bytesServed.addAndGet(written);
+      }
+      logger.trace("Written {} bytes to the write channel from the record read at {} (cache hit : {})", written,
+          readOption.getOffset(), isCacheHit);
+      return written;
+    }
+    // the channel does not block on the network, so the time of the transfer is mostly that of the disk.
+    long ioStartTimeNs = diskIOScheduler != null ? diskIOScheduler.foregroundIOStarted() : 0;
+    long written;
+    try {
+      written = transferTo(startOffset, sizeToRead, channel);
+    } finally {
+      if (diskIOScheduler != null) {
+        diskIOScheduler.foregroundIOCompleted(ioStartTimeNs);
+      }
+    }
     logger.trace("Written {} bytes to the write channel from the file channel : {}", written, file.getAbsolutePath());
     return written;
   }
 
+  /**
+   * Transfers a range of the file to the channel. Channels that transform the content in user space transfer the
+   * file themselves since {@link FileChannel#transferTo(long, long, WritableByteChannel)} can only avoid copies
+   * for sockets and files.
+   * @param position the position in the file from which the transfer starts.
+   * @param count the maximum number of bytes to transfer.
+   * @param channel the channel to transfer the bytes to.
+   * @return the number of bytes transferred.
+   * @throws IOException if there is an I/O error while transferring.
+   */
+  private long transferTo(long position, long count, WritableByteChannel channel) throws IOException {
+    if (channel instanceof TransferableChannel) {
+      return ((TransferableChannel) channel).transferFrom(fileChannel, position, count);
+    }
+    return fileChannel.transferTo(position, count, channel);
+  }
+
+  /**
+   * Gets the content of a message that is part of a coalesced read. The coalesced read is done when the first of its
+   * messages is requested and only the last coalesced read is kept. Since messages are sent in offset order, every
+   * coalesced read is usually done once per pass over the messages.
+   * @param index the index of the message.
+   * @return a buffer that contains exactly the content of the message or {@code null} if the message is not part of
+   * a coalesced read.
+   * @throws IOException if there is an I/O error while reading.
+   */
+  private ByteBuffer getCoalescedMessage(int index) throws IOException {
+    if (coalescedReads == null) {
+      coalescedReads = readCoalescer.getReads(readOptions, readCache);
+    }
+    int read = coalescedReads[index];
+    if (read == -1) {
+      return null;
+    }
+    long readStart = readOptions.get(read).getOffset();
+    if (read != loadedRead) {
+      long readEnd = readStart;
+      long messageSizeInBytes = 0;
+      int last = read;
+      for (; last < coalescedReads.length && coalescedReads[last] == read; last++) {
+        BlobReadOptions readOption = readOptions.get(last);
+        readEnd = Math.max(readEnd, readOption.getOffset() + readOption.getSize());
+        messageSizeInBytes += readOption.getSize();
+      }
+      long generation = readCache != null ? readCache.getGeneration() : 0;
+      loadedReadBuffer = ByteBuffer.wrap(read(readStart, (int) (readEnd - readStart)));
+      loadedRead = read;
+      readCoalescer.onCoalescedRead(last - read, readEnd - readStart, messageSizeInBytes);
+      if (readCache != null) {
+        for (int i = read; i < last; i++) {
+          BlobReadOptions readOption = readOptions.get(i);
+          if (readCache.isCacheable(readOption.getSize())) {
+            int position = (int) (readOption.getOffset() - readStart);
+            readCache.put(readOption.getOffset(), Arrays.copyOfRange(loadedReadBuffer.array(), position,
+                position + (int) readOption.getSize()), generation);
+          }
+        }
+      }
+    }
+    BlobReadOptions readOption = readOptions.get(index);
+    ByteBuffer message = loadedReadBuffer.duplicate();
+    message.position((int) (readOption.getOffset() - readStart));
+    message.limit(message.position() + (int) readOption.getSize());
+    return message.slice();
+  }
+
+  /**
+   * Reads the whole of a message from the file.
+   * @param readOption the {@link BlobReadOptions} of the message.
+   * @return the content of the message.
+   * @throws IOException if there is an I/O error while reading.
+   */
+  private byte[] readRecord(BlobReadOptions readOption) throws IOException {
+    return read(readOption.getOffset(), (int) readOption.getSize());
+  }
+
+  /**
+   * Reads a range of the file.
+   * @param offset the offset in the file at which the range starts.
+   * @param size the size of the range.
+   * @return the content of the range.
+   * @throws IOException if there is an I/O error while reading.
+   */
+  private byte[] read(long offset, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    long ioStartTimeNs = diskIOScheduler != null ? diskIOScheduler.foregroundIOStarted() : 0;
+    try {
+      while (buffer.hasRemaining()) {
+        if (fileChannel.read(buffer, offset + buffer.position()) < 0) {
+          throw new IOException(
+              "Reached the end of " + file.getAbsolutePath() + " while reading " + size + " bytes at " + offset);
+        }
+      }
+    } finally {
+      if (diskIOScheduler != null) {
+        diskIOScheduler.foregroundIOCompleted(ioStartTimeNs);
+      }
+    }
+    return buffer.array();
+  }
+
   @Override
   public int count() {
     return readOptions.size();
@@ -32,12 +32,18 @@ public class StoreMetrics {
   public final Timer findMissingKeysResponse;
   public final Timer isKeyDeletedResponse;
   public final Timer storeStartTime;
+  public final Timer logLoadTime;
+  public final Timer indexSegmentsLoadTime;
+  public final Timer hardDeleteRecoveryTime;
   public final Counter storeStartFailure;
   public final Counter overflowWriteError;
   public final Counter overflowReadError;
   public final Timer recoveryTime;
   public final Timer findTime;
+  public final Timer batchFindTime;
   public final Timer indexFlushTime;
+  public final Histogram indexFlushBytesWritten;
+  public final Timer indexSegmentSealTime;
   public final Timer cleanupTokenFlushTime;
   public final Timer hardDeleteTime;
   public final Counter nonzeroMessageRecovery;
@@ -49,6 +55,10 @@ public class StoreMetrics {
   public final Counter hardDeleteIncompleteRecoveryCount;
   public final Counter hardDeleteExceptionsCount;
   public final Histogram segmentSizeForExists;
+  public final Timer groupCommitTime;
+  public final Histogram groupCommitBatchSize;
+  public final Timer keyLocatorBuildTime;
+  public final Counter keyLocatorCollisionCount;
 
   private final MetricRegistry registry;
   private final String name;
@@ -65,12 +75,20 @@ public class StoreMetrics {
         registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreFindMissingKeyResponse"));
     isKeyDeletedResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "IsKeyDeletedResponse"));
     storeStartTime = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreStartTime"));
+    logLoadTime = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreLogLoadTime"));
+    indexSegmentsLoadTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexSegmentsLoadTime"));
+    hardDeleteRecoveryTime =
+        registry.timer(MetricRegistry.name(PersistentIndex.class, name + "HardDeleteRecoveryTime"));
     storeStartFailure = registry.counter(MetricRegistry.name(BlobStore.class, name + "StoreStartFailure"));
     overflowWriteError = registry.counter(MetricRegistry.name(Log.class, name + "OverflowWriteError"));
     overflowReadError = registry.counter(MetricRegistry.name(Log.class, name + "OverflowReadError"));
     recoveryTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexRecoveryTime"));
     findTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexFindTime"));
+    batchFindTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexBatchFindTime"));
     indexFlushTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexFlushTime"));
+    indexFlushBytesWritten =
+        registry.histogram(MetricRegistry.name(IndexSegment.class, name + "IndexFlushBytesWritten"));
+    indexSegmentSealTime = registry.timer(MetricRegistry.name(IndexSegment.class, name + "IndexSegmentSealTime"));
     cleanupTokenFlushTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "CleanupTokenFlushTime"));
     hardDeleteTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "HardDeleteTime"));
     nonzeroMessageRecovery =
@@ -87,6 +105,11 @@ public class StoreMetrics {
     hardDeleteExceptionsCount =
         registry.counter(MetricRegistry.name(PersistentIndex.class, name + "HardDeleteExceptionsCount"));
     segmentSizeForExists = registry.histogram(MetricRegistry.name(IndexSegment.class, name + "SegmentSizeForExists"));
+    groupCommitTime = registry.timer(MetricRegistry.name(BlobStore.class, name + "GroupCommitTime"));
+    groupCommitBatchSize = registry.histogram(MetricRegistry.name(BlobStore.class, name + "GroupCommitBatchSize"));
+    keyLocatorBuildTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "KeyLocatorBuildTime"));
+    keyLocatorCollisionCount =
+        registry.counter(MetricRegistry.name(PersistentIndex.class, name + "KeyLocatorCollisionCount"));
   }
 
   void initializeLogGauges(final Log log, final long capacityInBytes) {
@@ -113,6 +136,112 @@ public class StoreMetrics {
     registry.register(MetricRegistry.name(Log.class, name + "CurrentSegmentCount"), currentSegmentCount);
   }
 
+  void initializeReadCacheMetrics(final BlobReadCache readCache) {
+    Gauge<Double> readCacheHitRatio = new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return readCache.getHitRatio();
+      }
+    };
+    registry.register(MetricRegistry.name(BlobReadCache.class, name + "ReadCacheHitRatio"), readCacheHitRatio);
+    Gauge<Long> readCacheHitCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCache.hitCount.get();
+      }
+    };
+    registry.register(MetricRegistry.name(BlobReadCache.class, name + "ReadCacheHitCount"), readCacheHitCount);
+    Gauge<Long> readCacheMissCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCache.missCount.get();
+      }
+    };
+    registry.register(MetricRegistry.name(BlobReadCache.class, name + "ReadCacheMissCount"), readCacheMissCount);
+    Gauge<Long> readCacheBytesServed = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCache.bytesServed.get();
+      }
+    };
+    registry.register(MetricRegistry.name(BlobReadCache.class, name + "ReadCacheBytesServed"), readCacheBytesServed);
+    Gauge<Long> readCacheSizeInBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCache.getSizeInBytes();
+      }
+    };
+    registry.register(MetricRegistry.name(BlobReadCache.class, name + "ReadCacheSizeInBytes"), readCacheSizeInBytes);
+  }
+
+  void initializeReadCoalescerMetrics(final ReadCoalescer readCoalescer) {
+    Gauge<Long> coalescedReadCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCoalescer.coalescedReadCount.get();
+      }
+    };
+    registry.register(MetricRegistry.name(ReadCoalescer.class, name + "CoalescedReadCount"), coalescedReadCount);
+    Gauge<Long> mergedReadCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCoalescer.mergedReadCount.get();
+      }
+    };
+    registry.register(MetricRegistry.name(ReadCoalescer.class, name + "MergedReadCount"), mergedReadCount);
+    Gauge<Long> gapBytesRead = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCoalescer.gapBytesRead.get();
+      }
+    };
+    registry.register(MetricRegistry.name(ReadCoalescer.class, name + "GapBytesRead"), gapBytesRead);
+    Gauge<Long> coalescedBytesServed = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return readCoalescer.bytesServed.get();
+      }
+    };
+    registry.register(MetricRegistry.name(ReadCoalescer.class, name + "CoalescedBytesServed"), coalescedBytesServed);
+  }
+
+  void initializeKeyLocatorMetrics(final IndexKeyLocator keyLocator) {
+    Gauge<Long> keyLocatorMemoryUsage = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return keyLocator.getMemoryUsageInBytes();
+      }
+    };
+    registry.register(MetricRegistry.name(PersistentIndex.class, name + "KeyLocatorMemoryUsageInBytes"),
+        keyLocatorMemoryUsage);
+    Gauge<Integer> keyLocatorSize = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return keyLocator.size();
+      }
+    };
+    registry.register(MetricRegistry.name(PersistentIndex.class, name + "KeyLocatorSize"), keyLocatorSize);
+  }
+
+  void initializeInMemoryIndexMetrics(final PersistentIndex index) {
+    Gauge<Long> inMemoryIndexHeapUsage = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return index.getInMemoryHeapUsageInBytes();
+      }
+    };
+    registry.register(MetricRegistry.name(IndexSegment.class, name + "InMemoryIndexHeapUsageInBytes"),
+        inMemoryIndexHeapUsage);
+    Gauge<Long> inMemoryIndexOffHeapUsage = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return index.getInMemoryOffHeapUsageInBytes();
+      }
+    };
+    registry.register(MetricRegistry.name(IndexSegment.class, name + "InMemoryIndexOffHeapUsageInBytes"),
+        inMemoryIndexOffHeapUsage);
+  }
+
   void initializeHardDeleteMetric(final HardDeleter hardDeleter, final Log log) {
     Gauge<Long> currentHardDeleteProgress = new Gauge<Long>() {
       @Override
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link BlobReadCache}.
+ */
+public class BlobReadCacheTest {
+
+  /**
+   * Tests that records are served from the cache and that hits, misses and sizes are accounted for.
+   */
+  @Test
+  public void getAndPutTest() {
+    BlobReadCache cache = new BlobReadCache(100, 40);
+    assertFalse("Empty record should not be cacheable", cache.isCacheable(0));
+    assertTrue("Record should be cacheable", cache.isCacheable(40));
+    assertFalse("Record larger than the max size should not be cacheable", cache.isCacheable(41));
+    assertNull("Cache should be empty", cache.get(0, 10));
+    byte[] record = new byte[10];
+    cache.put(0, record, cache.getGeneration());
+    assertSame("Cached record should be returned", record, cache.get(0, 10));
+    assertNull("Lookup with a different size should miss", cache.get(0, 20));
+    cache.put(50, new byte[41], cache.getGeneration());
+    assertNull("Record larger than the max size should not be cached", cache.get(50, 41));
+    assertEquals("Unexpected hit count", 1, cache.hitCount.get());
+    assertEquals("Unexpected miss count", 3, cache.missCount.get());
+    assertEquals("Unexpected hit ratio", 0.25, cache.getHitRatio(), 0.0001);
+    assertEquals("Unexpected size", 10, cache.getSizeInBytes());
+    assertEquals("Unexpected record count", 1, cache.getRecordCount());
+    cache.put(0, new byte[20], cache.getGeneration());
+    assertEquals("Replaced record should not be accounted for", 20, cache.getSizeInBytes());
+    cache.clear();
+    assertEquals("Cache should be empty", 0, cache.getSizeInBytes());
+    assertEquals("Cache should be empty", 0, cache.getRecordCount());
+  }
+
+  /**
+   * Tests that the least recently used records are evicted when the cache is full.
+   */
+  @Test
+  public void evictionTest() {
+    BlobReadCache cache = new BlobReadCache(100, 40);
+    cache.put(0, new byte[40], cache.getGeneration());
+    cache.put(40, new byte[40], cache.getGeneration());
+    // access the first record so that the second one is the least recently used
+    assertNotNull("Record should be cached", cache.get(0, 40));
+    cache.put(80, new byte[40], cache.getGeneration());
+    assertNotNull("Recently used record should not have been evicted", cache.get(0, 40));
+    assertNull("Least recently used record should have been evicted", cache.get(40, 40));
+    assertNotNull("New record should be cached", cache.get(80, 40));
+    assertEquals("Unexpected size", 80, cache.getSizeInBytes());
+  }
+
+  /**
+   * Tests that invalidation removes all the records that overlap the invalidated range and that records read before
+   * an invalidation are not cached.
+   */
+  @Test
+  public void invalidateTest() {
+    BlobReadCache cache = new BlobReadCache(1000, 100);
+    cache.put(0, new byte[10], cache.getGeneration());
+    cache.put(10, new byte[10], cache.getGeneration());
+    cache.put(20, new byte[10], cache.getGeneration());
+    cache.put(30, new byte[10], cache.getGeneration());
+    // overlaps the end of the record at 10 and the start of the record at 20
+    cache.invalidate(15, 10);
+    assertNotNull("Record before the range should not be invalidated", cache.get(0, 10));
+    assertNull("Overlapping record should be invalidated", cache.get(10, 10));
+    assertNull("Overlapping record should be invalidated", cache.get(20, 10));
+    assertNotNull("Record after the range should not be invalidated", cache.get(30, 10));
+    assertEquals("Unexpected size", 20, cache.getSizeInBytes());
+
+    long generation = cache.getGeneration();
+    cache.invalidate(50, 10);
+    cache.put(50, new byte[10], generation);
+    assertNull("Record read before invalidation should not be cached", cache.get(50, 10));
+    cache.put(50, new byte[10], cache.getGeneration());
+    assertNotNull("Record read after invalidation should be cached", cache.get(50, 10));
+  }
+}
@@ -29,12 +29,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -144,6 +147,101 @@ public class BlobStoreTest {
     }
   }
 
+  /**
+   * Tests that concurrent puts and deletes that are committed together are all applied and that conflicting writes
+   * in the same batch fail individually.
+   * @throws Exception
+   */
+  @Test
+  public void storeConcurrentWritesTest() throws Exception {
+    MockClusterMap map = null;
+    try {
+      ScheduledExecutorService scheduler = Utils.newScheduler(4, "thread", false);
+      StoreConfig config = new StoreConfig(new VerifiableProperties(new Properties()));
+      map = new MockClusterMap();
+      DataNodeId dataNodeId1 = map.getDataNodeIds().get(0);
+      StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+      List<ReplicaId> replicaIds = map.getReplicaIds(map.getDataNodeId("localhost", dataNodeId1.getPort()));
+      String storeId = replicaIds.get(0).getPartitionId().toString();
+      StorageManagerMetrics metrics = new StorageManagerMetrics(new MetricRegistry());
+      final Store store = new BlobStore(storeId, config, scheduler, new DiskIOScheduler(null), metrics,
+          replicaIds.get(0).getReplicaPath(), replicaIds.get(0).getCapacityInBytes(), factory,
+          new DummyMessageStoreRecovery(), new DummyMessageStoreHardDelete(), SystemTime.getInstance());
+      store.start();
+      final int numWriters = 10;
+      final int putsPerWriter = 20;
+      final CountDownLatch startLatch = new CountDownLatch(1);
+      final AtomicInteger duplicatePutFailures = new AtomicInteger(0);
+      // failures of the writer threads, asserted on the test thread since a failed assertion only ends its own thread
+      final List<Throwable> writerFailures = Collections.synchronizedList(new ArrayList<Throwable>());
+      Thread[] writers = new Thread[numWriters];
+      for (int i = 0; i < numWriters; i++) {
+        final int writerId = i;
+        writers[i] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              startLatch.await();
+              for (int j = 0; j < putsPerWriter; j++) {
+                MockId id = new MockId(String.format("id%02d%02d", writerId, j));
+                store.put(createWriteSet(id, 100));
+                if (j % 2 == 0) {
+                  store.delete(createWriteSet(id, 10));
+                }
+                // every writer also races to put the same key
+                try {
+                  store.put(createWriteSet(new MockId(String.format("dup%02d", j)), 100));
+                } catch (StoreException e) {
+                  if (e.getErrorCode() != StoreErrorCodes.Already_Exist) {
+                    throw e;
+                  }
+                  duplicatePutFailures.incrementAndGet();
+                }
+              }
+            } catch (Throwable e) {
+              writerFailures.add(e);
+            }
+          }
+        });
+        writers[i].start();
+      }
+      startLatch.countDown();
+      for (Thread writer : writers) {
+        writer.join();
+      }
+      Assert.assertTrue("Writers failed: " + writerFailures, writerFailures.isEmpty());
+      Assert.assertEquals((numWriters - 1) * putsPerWriter, duplicatePutFailures.get());
+      for (int i = 0; i < numWriters; i++) {
+        for (int j = 0; j < putsPerWriter; j++) {
+          MockId id = new MockId(String.format("id%02d%02d", i, j));
+          Assert.assertEquals("Unexpected delete state for " + id, j % 2 == 0, store.isKeyDeleted(id));
+        }
+      }
+      for (int j = 0; j < putsPerWriter; j++) {
+        Assert.assertFalse(store.isKeyDeleted(new MockId(String.format("dup%02d", j))));
+      }
+      store.shutdown();
+    } finally {
+      if (map != null) {
+        map.cleanup();
+      }
+    }
+  }
+
+  /**
+   * Creates a {@link MessageWriteSet} with a single message of random bytes for the given key.
+   * @param id the key of the message.
+   * @param size the size of the message.
+   * @return a {@link MessageWriteSet} with a single message for {@code id}.
+   */
+  private MessageWriteSet createWriteSet(MockId id, int size) {
+    byte[] bufToWrite = new byte[size];
+    new Random().nextBytes(bufToWrite);
+    List<MessageInfo> listInfo = new ArrayList<MessageInfo>(1);
+    listInfo.add(new MessageInfo(id, size));
+    return new MockMessageWriteSet(ByteBuffer.wrap(bufToWrite), listInfo);
+  }
+
   @Test
   public void storeGetTest() throws IOException {
     MockClusterMap map = null;
@@ -14,10 +14,16 @@
 
 package com.github.ambry.store;
 
+import com.github.ambry.config.StoreConfig;
+import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.Throttler;
+import com.github.ambry.utils.Time;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Test;
 
@@ -79,6 +85,150 @@ public class DiskIOSchedulerTest {
     scheduler.close();
   }
 
+  /**
+   * Test that the budget of background jobs is decreased when foreground latency or queue depth exceed their limits
+   * and that it recovers once foreground I/O is within limits again.
+   * @throws Exception
+   */
+  @Test
+  public void feedbackTest() throws Exception {
+    final int sloMs = 10;
+    final int intervalMs = 1000;
+    final double maxRate = 1000;
+    Properties properties = new Properties();
+    properties.setProperty("store.io.scheduler.foreground.latency.slo.ms", Integer.toString(sloMs));
+    properties.setProperty("store.io.scheduler.max.foreground.queue.depth", "2");
+    properties.setProperty("store.io.scheduler.adjustment.interval.ms", Integer.toString(intervalMs));
+    properties.setProperty("store.io.scheduler.min.background.budget.fraction", "0.2");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(properties));
+    MockTime time = new MockTime();
+    Map<String, Throttler> throttlers = new HashMap<>();
+    Throttler throttler = new Throttler(maxRate, 10, true, time);
+    throttlers.put("background", throttler);
+    DiskIOScheduler scheduler = new DiskIOScheduler(throttlers, config, time);
+    assertEquals("Budget should be full initially", 1.0, scheduler.getBudgetFraction(), 0.0);
+
+    // slow foreground I/O halves the budget every interval until the minimum is reached
+    double[] expectedFractions = {0.5, 0.25, 0.2, 0.2};
+    for (double expectedFraction : expectedFractions) {
+      doForegroundIO(scheduler, time, 10, sloMs + 5);
+      time.currentMilliseconds += intervalMs;
+      scheduler.getSlice("background", "job", 0);
+      assertEquals("Unexpected budget fraction", expectedFraction, scheduler.getBudgetFraction(), 0.0001);
+      assertEquals("Unexpected throttler rate", maxRate * expectedFraction, throttler.getDesiredRatePerSec(), 0.01);
+      assertEquals("Unexpected latency percentile", (sloMs + 5) * Time.NsPerMs,
+          scheduler.getForegroundLatencyPercentileNs());
+    }
+    assertEquals("Unexpected number of budget decreases", expectedFractions.length,
+        scheduler.budgetDecreaseCount.get());
+
+    // fast foreground I/O increases the budget additively back to the maximum
+    for (int i = 0; i < 8; i++) {
+      doForegroundIO(scheduler, time, 10, sloMs - 5);
+      time.currentMilliseconds += intervalMs;
+      scheduler.getSlice("background", "job", 0);
+      assertEquals("Unexpected budget fraction", Math.min(0.2 + 0.1 * (i + 1), 1.0), scheduler.getBudgetFraction(),
+          0.0001);
+    }
+    assertEquals("Throttler rate should be back to the max", maxRate, throttler.getDesiredRatePerSec(), 0.01);
+
+    // no change before an interval elapses
+    doForegroundIO(scheduler, time, 10, sloMs + 5);
+    scheduler.getSlice("background", "job", 0);
+    assertEquals("Budget should not change within an interval", 1.0, scheduler.getBudgetFraction(), 0.0001);
+
+    // the slow foreground I/O is accounted for once the interval elapses, also for jobs that throttle themselves
+    time.currentMilliseconds += intervalMs;
+    assertEquals("Unexpected budget fraction", 0.5, scheduler.getCurrentBudgetFraction(), 0.0001);
+    assertEquals("Unexpected throttler rate", maxRate * 0.5, throttler.getDesiredRatePerSec(), 0.01);
+
+    // a deep foreground queue decreases the budget even if latency is within the SLO
+    long[] startTimes = new long[3];
+    for (int i = 0; i < startTimes.length; i++) {
+      startTimes[i] = scheduler.foregroundIOStarted();
+    }
+    assertEquals("Unexpected queue depth", startTimes.length, scheduler.getForegroundQueueDepth());
+    for (long startTime : startTimes) {
+      scheduler.foregroundIOCompleted(startTime);
+    }
+    time.currentMilliseconds += intervalMs;
+    scheduler.getSlice("background", "job", 0);
+    assertEquals("Budget should have been decreased because of queue depth", 0.25, scheduler.getBudgetFraction(),
+        0.0001);
+    scheduler.close();
+
+    // feedback is disabled without a SLO
+    scheduler = new DiskIOScheduler(null, new StoreConfig(new VerifiableProperties(new Properties())), time);
+    doForegroundIO(scheduler, time, 10, 1000);
+    time.currentMilliseconds += intervalMs;
+    assertEquals("Unexpected i/o slice availability returned", Long.MAX_VALUE, scheduler.getSlice("jobType", "job", 0));
+    assertEquals("Budget should not change when feedback is disabled", 1.0, scheduler.getBudgetFraction(), 0.0);
+    assertEquals("Latency should not be sampled when feedback is disabled", 0,
+        scheduler.getForegroundLatencyPercentileNs());
+    assertEquals("Unexpected queue depth", 0, scheduler.getForegroundQueueDepth());
+    scheduler.close();
+  }
+
+  /**
+   * Test that the time an append spends reading from its source is not counted in its latency.
+   * @throws Exception
+   */
+  @Test
+  public void sourceReadTimeExcludedTest() throws Exception {
+    final int sloMs = 10;
+    final int intervalMs = 1000;
+    Properties properties = new Properties();
+    properties.setProperty("store.io.scheduler.foreground.latency.slo.ms", Integer.toString(sloMs));
+    properties.setProperty("store.io.scheduler.adjustment.interval.ms", Integer.toString(intervalMs));
+    final MockTime time = new MockTime();
+    DiskIOScheduler scheduler = new DiskIOScheduler(null, new StoreConfig(new VerifiableProperties(properties)), time);
+    // a source that takes far longer than the SLO to read from
+    ReadableByteChannel slowSource = new ReadableByteChannel() {
+      @Override
+      public int read(ByteBuffer dst) {
+        time.currentNanoSeconds += 10 * sloMs * Time.NsPerMs;
+        int read = dst.remaining();
+        dst.position(dst.limit());
+        return read;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return true;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    DiskIOScheduler.TimedReadableByteChannel timedSource = scheduler.timeReads(slowSource);
+    long startTimeNs = scheduler.foregroundIOStarted();
+    timedSource.read(ByteBuffer.allocate(10));
+    // the write to the disk
+    time.currentNanoSeconds += 2 * Time.NsPerMs;
+    scheduler.foregroundIOCompleted(startTimeNs, timedSource.getReadTimeNs());
+    assertEquals("Unexpected read time", 10 * sloMs * Time.NsPerMs, timedSource.getReadTimeNs());
+    time.currentMilliseconds += intervalMs;
+    assertEquals("Budget should not decrease because of a slow source", 1.0, scheduler.getCurrentBudgetFraction(), 0.0);
+    assertEquals("Unexpected latency percentile", 2 * Time.NsPerMs, scheduler.getForegroundLatencyPercentileNs());
+    scheduler.close();
+  }
+
+  /**
+   * Reports {@code count} sequential foreground I/O operations of {@code latencyMs} each to {@code scheduler}.
+   * @param scheduler the {@link DiskIOScheduler} to report to.
+   * @param time the {@link MockTime} used by {@code scheduler}.
+   * @param count the number of operations.
+   * @param latencyMs the latency of each operation.
+   */
+  private void doForegroundIO(DiskIOScheduler scheduler, MockTime time, int count, long latencyMs) {
+    for (int i = 0; i < count; i++) {
+      long startTimeNs = scheduler.foregroundIOStarted();
+      time.currentNanoSeconds += latencyMs * Time.NsPerMs;
+      scheduler.foregroundIOCompleted(startTimeNs);
+    }
+  }
+
   /**
    * A mock of {@link Throttler} for testing purposes.
    */
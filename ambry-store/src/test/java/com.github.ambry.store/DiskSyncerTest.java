@@ -0,0 +1,206 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.UtilsTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link DiskSyncer}.
+ */
+public class DiskSyncerTest {
+  private final File tempDir;
+  private final StorageManagerMetrics metrics = new StorageManagerMetrics(new MetricRegistry());
+  private final ExecutorService writers = Executors.newCachedThreadPool();
+  private final List<Log> logs = new ArrayList<>();
+
+  /**
+   * Creates a temporary directory for the logs.
+   * @throws IOException
+   */
+  public DiskSyncerTest() throws IOException {
+    tempDir = Files.createTempDirectory("diskSyncerDir-" + UtilsTest.getRandomString(10)).toFile();
+    tempDir.deleteOnExit();
+  }
+
+  /**
+   * Closes the logs and deletes the temporary directory.
+   * @throws IOException
+   */
+  @After
+  public void cleanup() throws IOException {
+    writers.shutdownNow();
+    for (Log log : logs) {
+      log.close();
+    }
+    File[] logDirs = tempDir.listFiles();
+    if (logDirs != null) {
+      for (File logDir : logDirs) {
+        File[] files = logDir.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            assertTrue("The file [" + file.getAbsolutePath() + "] could not be deleted", file.delete());
+          }
+        }
+        assertTrue("The directory [" + logDir.getAbsolutePath() + "] could not be deleted", logDir.delete());
+      }
+    }
+    assertTrue("The directory [" + tempDir.getAbsolutePath() + "] could not be deleted", tempDir.delete());
+  }
+
+  /**
+   * Tests that writes that are reported while a sync is in progress are synced together by the next sync and that
+   * writes only complete after the sync that covers them if writes wait for the sync.
+   * @throws Exception
+   */
+  @Test
+  public void groupSyncTest() throws Exception {
+    DiskSyncer syncer = new DiskSyncer("disk", 0, true, metrics, SystemTime.getInstance());
+    try {
+      BlockingLog firstLog = createLog("first");
+      BlockingLog secondLog = createLog("second");
+      Future<?> firstWrite = reportWrite(syncer, firstLog);
+      assertTrue("Sync did not start", firstLog.flushStarted.await(10, TimeUnit.SECONDS));
+      // these writes are reported while the first log is being synced
+      List<Future<?>> batchedWrites = new ArrayList<>();
+      batchedWrites.add(reportWrite(syncer, firstLog));
+      batchedWrites.add(reportWrite(syncer, secondLog));
+      batchedWrites.add(reportWrite(syncer, secondLog));
+      try {
+        firstWrite.get(100, TimeUnit.MILLISECONDS);
+        fail("Write should wait for the sync");
+      } catch (TimeoutException e) {
+        // expected
+      }
+      firstLog.allowFlush.countDown();
+      secondLog.allowFlush.countDown();
+      firstWrite.get(10, TimeUnit.SECONDS);
+      for (Future<?> write : batchedWrites) {
+        write.get(10, TimeUnit.SECONDS);
+      }
+      assertEquals("Unexpected number of syncs", 2, metrics.diskSyncBatchSize.getCount());
+      assertEquals("Unexpected number of synced writes", 4, metrics.diskSyncBatchSize.getSnapshot().getMax()
+          + metrics.diskSyncBatchSize.getSnapshot().getMin());
+      assertEquals("Unexpected number of logs in a sync", 2, metrics.diskSyncBatchLogCount.getSnapshot().getMax());
+      assertEquals("Unexpected number of log syncs", 3, metrics.diskSyncTime.getCount());
+    } finally {
+      syncer.close();
+    }
+  }
+
+  /**
+   * Tests that sync failures fail the writes that wait for the sync and do not fail writes that do not wait.
+   * @throws Exception
+   */
+  @Test
+  public void syncFailureTest() throws Exception {
+    BlockingLog log = createLog("failing");
+    log.allowFlush.countDown();
+    log.failFlush = true;
+    DiskSyncer syncer = new DiskSyncer("disk", 0, true, metrics, SystemTime.getInstance());
+    try {
+      syncer.onWrite(log);
+      fail("Write should fail if the sync fails");
+    } catch (IOException e) {
+      // expected
+    } finally {
+      syncer.close();
+    }
+    syncer = new DiskSyncer("disk", 0, false, metrics, SystemTime.getInstance());
+    syncer.onWrite(log);
+    syncer.close();
+    assertEquals("Unexpected number of sync failures", 2, metrics.diskSyncFailures.getCount());
+    try {
+      syncer.onWrite(log);
+      fail("Write should fail after the syncer is closed");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Creates a {@link BlockingLog} in a new directory.
+   * @param name the name of the directory of the log.
+   * @return the {@link BlockingLog}.
+   * @throws IOException
+   */
+  private BlockingLog createLog(String name) throws IOException {
+    File logDir = new File(tempDir, name);
+    assertTrue("Could not create " + logDir.getAbsolutePath(), logDir.mkdir());
+    BlockingLog log = new BlockingLog(logDir.getAbsolutePath());
+    logs.add(log);
+    return log;
+  }
+
+  /**
+   * Reports a write to {@code log} to {@code syncer} from another thread.
+   * @param syncer the {@link DiskSyncer} to report the write to.
+   * @param log the {@link Log} that was written to.
+   * @return the {@link Future} that completes when {@link DiskSyncer#onWrite(Log)} returns.
+   */
+  private Future<?> reportWrite(final DiskSyncer syncer, final Log log) {
+    return writers.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        syncer.onWrite(log);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * A {@link Log} whose syncs wait until they are allowed and can be made to fail.
+   */
+  private class BlockingLog extends Log {
+    final CountDownLatch flushStarted = new CountDownLatch(1);
+    final CountDownLatch allowFlush = new CountDownLatch(1);
+    volatile boolean failFlush = false;
+
+    BlockingLog(String dataDir) throws IOException {
+      super(dataDir, 1024, 1024, new StoreMetrics(dataDir, new MetricRegistry()));
+    }
+
+    @Override
+    void flush() throws IOException {
+      flushStarted.countDown();
+      try {
+        allowFlush.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (failFlush) {
+        throw new IOException("Simulated sync failure");
+      }
+      super.flush();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link IndexKeyLocator}.
+ */
+public class IndexKeyLocatorTest {
+
+  /**
+   * Tests that keys are located to the segment they were last put with, including after the locator grows.
+   */
+  @Test
+  public void putAndGetTest() {
+    IndexKeyLocator keyLocator = new IndexKeyLocator(4);
+    Assert.assertEquals(IndexKeyLocator.Not_Found, keyLocator.get(IndexKeyLocator.hash(new MockId("id1"))));
+    long initialMemoryUsage = keyLocator.getMemoryUsageInBytes();
+    Random random = new Random();
+    Map<Long, Long> expected = new HashMap<Long, Long>();
+    for (int i = 0; i < 1000; i++) {
+      long keyHash = IndexKeyLocator.hash(new MockId("id" + random.nextInt(500)));
+      long segmentStartOffset = i * 100;
+      keyLocator.put(keyHash, segmentStartOffset);
+      expected.put(keyHash, segmentStartOffset);
+    }
+    Assert.assertEquals(expected.size(), keyLocator.size());
+    Assert.assertTrue("Locator should have grown", keyLocator.getMemoryUsageInBytes() > initialMemoryUsage);
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      Assert.assertEquals(entry.getValue().longValue(), keyLocator.get(entry.getKey()));
+    }
+    Assert.assertEquals(IndexKeyLocator.Not_Found, keyLocator.get(IndexKeyLocator.hash(new MockId("id1000"))));
+  }
+
+  /**
+   * Tests that a locator that cannot grow any further stops recording keys and reports every key as
+   * {@link IndexKeyLocator#Unknown} instead of failing the put.
+   */
+  @Test
+  public void fullLocatorTest() {
+    IndexKeyLocator keyLocator = new IndexKeyLocator(4, 8);
+    for (int i = 0; i < 5; i++) {
+      keyLocator.put(IndexKeyLocator.hash(new MockId("id" + i)), i * 100);
+    }
+    Assert.assertFalse("Locator should not be full", keyLocator.isFull());
+    Assert.assertEquals(100, keyLocator.get(IndexKeyLocator.hash(new MockId("id1"))));
+    // the sixth key exceeds the load factor of the largest table
+    keyLocator.put(IndexKeyLocator.hash(new MockId("id5")), 500);
+    Assert.assertTrue("Locator should be full", keyLocator.isFull());
+    Assert.assertEquals(IndexKeyLocator.Unknown, keyLocator.get(IndexKeyLocator.hash(new MockId("id1"))));
+    Assert.assertEquals(IndexKeyLocator.Unknown, keyLocator.get(IndexKeyLocator.hash(new MockId("id5"))));
+    Assert.assertEquals(IndexKeyLocator.Unknown, keyLocator.get(IndexKeyLocator.hash(new MockId("id100"))));
+  }
+
+  /**
+   * Tests that lookups that overlap an update are reported as stale.
+   */
+  @Test
+  public void updateSequenceTest() {
+    IndexKeyLocator keyLocator = new IndexKeyLocator(4);
+    long sequence = keyLocator.getUpdateSequence();
+    Assert.assertFalse("Nothing has changed", keyLocator.hasChangedSince(sequence));
+    keyLocator.beginUpdate();
+    Assert.assertTrue("An update has started", keyLocator.hasChangedSince(sequence));
+    long inProgressSequence = keyLocator.getUpdateSequence();
+    Assert.assertTrue("A lookup during an update is stale", keyLocator.hasChangedSince(inProgressSequence));
+    keyLocator.endUpdate();
+    sequence = keyLocator.getUpdateSequence();
+    Assert.assertFalse("Nothing has changed since the update ended", keyLocator.hasChangedSince(sequence));
+  }
+
+  /**
+   * Tests that the hash of a key in a buffer is the same as the hash of the key.
+   */
+  @Test
+  public void hashTest() {
+    MockId id = new MockId("id1");
+    byte[] keyBytes = id.toBytes();
+    ByteBuffer buffer = ByteBuffer.allocate(keyBytes.length + 10);
+    buffer.position(5);
+    buffer.put(keyBytes);
+    Assert.assertEquals(IndexKeyLocator.hash(id), IndexKeyLocator.hash(buffer, 5, keyBytes.length));
+    Assert.assertFalse(IndexKeyLocator.hash(id) == IndexKeyLocator.hash(new MockId("id2")));
+  }
+}
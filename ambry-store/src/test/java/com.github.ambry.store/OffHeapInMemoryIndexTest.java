@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.github.ambry.utils.Utils;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link OffHeapInMemoryIndex}.
+ */
+public class OffHeapInMemoryIndexTest {
+
+  /**
+   * Tests that the off heap index returns the same values and the same order of entries as a
+   * {@link SkipListInMemoryIndex} for the same puts, including after the index grows.
+   * @throws Exception
+   */
+  @Test
+  public void putGetAndIterateTest() throws Exception {
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    OffHeapInMemoryIndex index = new OffHeapInMemoryIndex(factory);
+    SkipListInMemoryIndex expected = new SkipListInMemoryIndex();
+    Assert.assertNull(index.get(new MockId("id1000")));
+    Assert.assertFalse(index.iterator(null).hasNext());
+    Assert.assertEquals(0, index.getOffHeapUsageInBytes());
+
+    Random random = new Random();
+    List<MockId> ids = new ArrayList<MockId>();
+    for (int i = 0; i < 5000; i++) {
+      MockId id = new MockId("id" + (1000 + random.nextInt(3000)));
+      IndexValue value = new IndexValue(100, i * 100, (byte) (i % 2), random.nextLong());
+      Assert.assertEquals("Put of " + id + " differs", expected.put(id, value), index.put(id, value));
+      ids.add(id);
+    }
+    Assert.assertEquals(expected.size(), index.size());
+    Assert.assertTrue(index.getOffHeapUsageInBytes() > 0);
+    for (MockId id : ids) {
+      assertValuesEqual(expected.get(id), index.get(id));
+    }
+    Assert.assertNull(index.get(new MockId("id999")));
+    Assert.assertNull(index.get(new MockId("id10000")));
+
+    assertIteratorsEqual(expected.iterator(null), index.iterator(null));
+    for (int i = 0; i < 10; i++) {
+      MockId fromKey = new MockId("id" + (1000 + random.nextInt(3000)));
+      assertIteratorsEqual(expected.iterator(fromKey), index.iterator(fromKey));
+    }
+    assertIteratorsEqual(expected.iterator(new MockId("id999")), index.iterator(new MockId("id999")));
+
+    // an iterator is a snapshot and is not affected by later puts
+    Iterator<IndexEntry> iterator = index.iterator(null);
+    index.put(new MockId("id0000"), new IndexValue(100, 0));
+    Assert.assertFalse(new MockId("id0000").equals(iterator.next().getKey()));
+
+    index.clear();
+    Assert.assertEquals(0, index.size());
+    Assert.assertNull(index.get(ids.get(0)));
+    Assert.assertFalse(index.iterator(null).hasNext());
+  }
+
+  /**
+   * Tests that keys of a different size than the keys already in the index are rejected.
+   * @throws Exception
+   */
+  @Test
+  public void keySizeMismatchTest() throws Exception {
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    OffHeapInMemoryIndex index = new OffHeapInMemoryIndex(factory);
+    index.put(new MockId("id1"), new IndexValue(100, 0));
+    try {
+      index.put(new MockId("id10"), new IndexValue(100, 100));
+      Assert.fail("Put of a key of a different size should have failed");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Assert.assertNull(index.get(new MockId("id10")));
+    Assert.assertEquals(1, index.size());
+  }
+
+  private void assertIteratorsEqual(Iterator<IndexEntry> expected, Iterator<IndexEntry> actual) {
+    while (expected.hasNext()) {
+      Assert.assertTrue(actual.hasNext());
+      IndexEntry expectedEntry = expected.next();
+      IndexEntry actualEntry = actual.next();
+      Assert.assertEquals(expectedEntry.getKey(), actualEntry.getKey());
+      assertValuesEqual(expectedEntry.getValue(), actualEntry.getValue());
+    }
+    Assert.assertFalse(actual.hasNext());
+  }
+
+  private void assertValuesEqual(IndexValue expected, IndexValue actual) {
+    Assert.assertNotNull(actual);
+    Assert.assertEquals(expected.getBytes(), actual.getBytes());
+  }
+}
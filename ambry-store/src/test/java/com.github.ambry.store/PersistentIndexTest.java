@@ -20,16 +20,22 @@ import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
+import com.github.ambry.utils.UtilsTest;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -55,6 +61,21 @@ public class PersistentIndexTest {
 
   @Test
   public void testSegmentInfo() throws IOException {
+    doSegmentInfoTest(new Properties());
+  }
+
+  /**
+   * Tests the segment operations when the entries of the in memory segments are held off heap.
+   * @throws IOException
+   */
+  @Test
+  public void testOffHeapSegmentInfo() throws IOException {
+    Properties props = new Properties();
+    props.setProperty("store.index.off.heap.inmem.segment.enabled", "true");
+    doSegmentInfoTest(props);
+  }
+
+  private void doSegmentInfoTest(Properties props) throws IOException {
     MockClusterMap map = null;
     try {
       // create a new index
@@ -70,7 +91,7 @@ public class PersistentIndexTest {
 
       map = new MockClusterMap();
       StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
-      StoreConfig config = new StoreConfig(new VerifiableProperties(new Properties()));
+      StoreConfig config = new StoreConfig(new VerifiableProperties(props));
       IndexSegment info = new IndexSegment(tempFile().getParent(), 0, factory, blobId1.sizeInBytes(),
           IndexValue.Index_Value_Size_In_Bytes, config, new StoreMetrics(tempFile().getParent(), new MetricRegistry()));
       IndexValue value = new IndexValue(1000, 0, (byte) 0);
@@ -190,6 +211,150 @@ public class PersistentIndexTest {
     }
   }
 
+  /**
+   * Tests that an incrementally persisted segment only appends the entries added since the last flush, that it can be
+   * loaded from its file, that an incomplete record at the end of the file is ignored and overwritten and that the
+   * segment can be sealed.
+   * @throws Exception
+   */
+  @Test
+  public void testIncrementalSegmentPersistence() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("store.index.incremental.persistence.enabled", "true");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    String dataDir = tempFile().getParent();
+    StoreMetrics metrics = new StoreMetrics(dataDir, new MetricRegistry());
+    List<MockId> ids = new ArrayList<MockId>();
+    for (int i = 1; i <= 5; i++) {
+      ids.add(new MockId("id" + i));
+    }
+    int entrySize = ids.get(0).sizeInBytes() + IndexValue.Index_Value_Size_In_Bytes;
+    // version, key size and value size
+    int headerSize = 10;
+    // file end pointer, entry count and crc
+    int recordSizeExcludingEntries = 20;
+    IndexSegment segment =
+        new IndexSegment(dataDir, 0, factory, ids.get(0).sizeInBytes(), IndexValue.Index_Value_Size_In_Bytes, config,
+            metrics);
+    for (int i = 0; i < 3; i++) {
+      segment.addEntry(new IndexEntry(ids.get(i), new IndexValue(1000, i * 1000, (byte) 0)), (i + 1) * 1000);
+    }
+    segment.writeIndexToFile(3000);
+    File file = segment.getFile();
+    long sizeAfterFirstFlush = headerSize + recordSizeExcludingEntries + 3 * entrySize;
+    Assert.assertEquals("Unexpected file size", sizeAfterFirstFlush, file.length());
+
+    // only the delete of the first key and the put of the fourth key are below the safe end point
+    IndexValue deleteValue = PersistentIndex.newDeleteValue(segment.find(ids.get(0)), new FileSpan(3000, 3100));
+    segment.addEntry(new IndexEntry(ids.get(0), deleteValue), 3100);
+    segment.addEntry(new IndexEntry(ids.get(3), new IndexValue(1000, 3100, (byte) 0)), 4100);
+    segment.addEntry(new IndexEntry(ids.get(4), new IndexValue(1000, 4100, (byte) 0)), 5100);
+    segment.writeIndexToFile(4100);
+    long sizeAfterSecondFlush = sizeAfterFirstFlush + recordSizeExcludingEntries + 2 * entrySize;
+    Assert.assertEquals("Only the new entries should be appended", sizeAfterSecondFlush, file.length());
+    Assert.assertEquals("Unexpected number of flushes", 2, metrics.indexFlushBytesWritten.getCount());
+
+    // an incomplete record at the end of the file is ignored
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.APPEND);
+    channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7}));
+    channel.close();
+    IndexSegment loaded = new IndexSegment(file, false, factory, config, metrics, new Journal(dataDir, 100, 100));
+    Assert.assertTrue("Key should be deleted", loaded.find(ids.get(0)).isFlagSet(IndexValue.Flags.Delete_Index));
+    Assert.assertEquals("Unexpected offset", 1000, loaded.find(ids.get(1)).getOffset());
+    Assert.assertEquals("Unexpected offset", 3100, loaded.find(ids.get(3)).getOffset());
+    Assert.assertNull("Entry above the safe end point should not be persisted", loaded.find(ids.get(4)));
+    Assert.assertEquals("Unexpected end offset", 4100, loaded.getEndOffset());
+    Assert.assertEquals("Unexpected number of items", 4, loaded.getNumberOfItems());
+
+    // the next flush overwrites the incomplete record
+    loaded.addEntry(new IndexEntry(ids.get(4), new IndexValue(1000, 4100, (byte) 0)), 5100);
+    loaded.writeIndexToFile(5100);
+    Assert.assertEquals("Unexpected file size", sizeAfterSecondFlush + recordSizeExcludingEntries + entrySize,
+        file.length());
+    IndexSegment reloaded = new IndexSegment(file, false, factory, config, metrics, new Journal(dataDir, 100, 100));
+    Assert.assertEquals("Unexpected offset", 4100, reloaded.find(ids.get(4)).getOffset());
+
+    // sealing rewrites the segment in the sorted format and maps it
+    reloaded.seal();
+    Assert.assertTrue("Segment should be mapped", reloaded.isMapped());
+    Assert.assertTrue("Key should be deleted", reloaded.find(ids.get(0)).isFlagSet(IndexValue.Flags.Delete_Index));
+    for (int i = 1; i < ids.size(); i++) {
+      Assert.assertNotNull("Key should be found", reloaded.find(ids.get(i)));
+    }
+    Assert.assertEquals("Unexpected offset", 4100, reloaded.find(ids.get(4)).getOffset());
+    Assert.assertEquals("Unexpected number of seals", 1, metrics.indexSegmentSealTime.getCount());
+  }
+
+  /**
+   * Tests lookups on a mapped segment whose keys are not sorted by their serialized form. Such segments cannot be
+   * searched on the serialized keys and have to fall back to deserializing the keys.
+   * @throws Exception
+   */
+  @Test
+  public void testMappedSegmentFindWithUnorderedSerializedKeys() throws Exception {
+    StoreKeyFactory factory = new StoreKeyFactory() {
+      @Override
+      public StoreKey getStoreKey(DataInputStream stream) throws IOException {
+        return new ReverseOrderMockId(stream);
+      }
+    };
+    StoreConfig config = new StoreConfig(new VerifiableProperties(new Properties()));
+    String dataDir = tempFile().getParent();
+    StoreMetrics metrics = new StoreMetrics(dataDir, new MetricRegistry());
+    List<MockId> ids = new ArrayList<MockId>();
+    for (int i = 1; i <= 9; i++) {
+      ids.add(new ReverseOrderMockId("id" + i));
+    }
+    IndexSegment segment =
+        new IndexSegment(dataDir, 0, factory, ids.get(0).sizeInBytes(), IndexValue.Index_Value_Size_In_Bytes, config,
+            metrics);
+    for (int i = 0; i < ids.size(); i++) {
+      segment.addEntry(new IndexEntry(ids.get(i), new IndexValue(1000, i * 1000, (byte) 0)), (i + 1) * 1000);
+    }
+    segment.writeIndexToFile(ids.size() * 1000);
+    segment.map(false);
+    for (int i = 0; i < ids.size(); i++) {
+      Assert.assertEquals("Unexpected offset for " + ids.get(i), i * 1000, segment.find(ids.get(i)).getOffset());
+    }
+    Assert.assertNull(segment.find(new ReverseOrderMockId("id0")));
+    // batch lookups fall back to a search per key
+    StoreKey[] keysToFind = {ids.get(8), new ReverseOrderMockId("id0"), ids.get(2)};
+    byte[][] serializedKeys = new byte[keysToFind.length][];
+    for (int i = 0; i < keysToFind.length; i++) {
+      serializedKeys[i] = keysToFind[i].toBytes();
+    }
+    IndexValue[] values = new IndexValue[keysToFind.length];
+    Assert.assertEquals(2, segment.find(keysToFind, serializedKeys, values));
+    Assert.assertEquals(8000, values[0].getOffset());
+    Assert.assertNull(values[1]);
+    Assert.assertEquals(2000, values[2].getOffset());
+    List<MessageInfo> entries = new ArrayList<MessageInfo>();
+    segment.getEntriesSince(ids.get(5), new FindEntriesCondition(100000), entries, new AtomicLong(0));
+    Assert.assertEquals(5, entries.size());
+    Assert.assertEquals(ids.get(4), entries.get(0).getStoreKey());
+    segment.getFile().delete();
+  }
+
+  /**
+   * A {@link MockId} that sorts in the reverse order of its serialized form.
+   */
+  private static class ReverseOrderMockId extends MockId {
+
+    ReverseOrderMockId(String id) {
+      super(id);
+    }
+
+    ReverseOrderMockId(DataInputStream stream) throws IOException {
+      super(stream);
+    }
+
+    @Override
+    public int compareTo(StoreKey o) {
+      return -super.compareTo(o);
+    }
+  }
+
   @Test
   public void testIndexBasic() throws IOException {
     MockClusterMap map = null;
@@ -235,6 +400,205 @@ public class PersistentIndexTest {
     }
   }
 
+  /**
+   * Tests lookups with the key locator enabled, across multiple segments and after a restart.
+   * @throws Exception
+   */
+  @Test
+  public void testIndexWithKeyLocator() throws Exception {
+    String logFile = tempFile().getParent();
+    File indexFile = new File(logFile);
+    for (File c : indexFile.listFiles()) {
+      c.delete();
+    }
+    ScheduledExecutorService scheduler = Utils.newScheduler(1, false);
+    Log log = new Log(logFile, 10000, 10000, new StoreMetrics(logFile, new MetricRegistry()));
+    Properties props = new Properties();
+    props.put("store.index.key.locator.enabled", "true");
+    props.put("store.index.key.locator.initial.num.slots", "4");
+    props.put("store.index.max.number.of.inmem.elements", "2");
+    props.put("store.data.flush.delay.seconds", "999999");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    MockIndex index = new MockIndex(logFile, scheduler, log, config, factory);
+    List<MockId> ids = new ArrayList<MockId>();
+    for (int i = 0; i < 6; i++) {
+      MockId id = new MockId("id" + i);
+      ids.add(id);
+      index.addToIndex(new IndexEntry(id, new IndexValue(1000, i * 1000, Utils.Infinite_Time)),
+          new FileSpan(i * 1000, (i + 1) * 1000));
+    }
+    // delete the first key. The delete goes into the latest segment
+    index.markAsDeleted(ids.get(0), new FileSpan(6000, 6100));
+    log.appendFrom(ByteBuffer.allocate(6100));
+    verifyLookups(index, ids);
+    index.close();
+
+    // the locator is rebuilt from the segments on restart
+    index = new MockIndex(logFile, scheduler, log, config, factory);
+    verifyLookups(index, ids);
+    index.stopScheduler();
+    index.close();
+    log.close();
+  }
+
+  /**
+   * Tests that an index whose segments are loaded in parallel on startup is the same as the index before the restart,
+   * and that a failure to load a segment fails the startup.
+   * @throws Exception
+   */
+  @Test
+  public void testParallelIndexSegmentLoad() throws Exception {
+    String logFile = tempFile().getParent();
+    File indexFile = new File(logFile);
+    for (File c : indexFile.listFiles()) {
+      c.delete();
+    }
+    ScheduledExecutorService scheduler = Utils.newScheduler(1, false);
+    ScheduledExecutorService segmentLoader = Utils.newScheduler(2, true);
+    Log log = new Log(logFile, 10000, 10000, new StoreMetrics(logFile, new MetricRegistry()));
+    Properties props = new Properties();
+    props.put("store.index.max.number.of.inmem.elements", "2");
+    props.put("store.data.flush.delay.seconds", "999999");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    MockIndex index = new MockIndex(logFile, scheduler, log, config, factory, segmentLoader);
+    List<MockId> ids = new ArrayList<MockId>();
+    for (int i = 0; i < 6; i++) {
+      MockId id = new MockId("id" + i);
+      ids.add(id);
+      index.addToIndex(new IndexEntry(id, new IndexValue(1000, i * 1000, Utils.Infinite_Time)),
+          new FileSpan(i * 1000, (i + 1) * 1000));
+    }
+    index.markAsDeleted(ids.get(0), new FileSpan(6000, 6100));
+    log.appendFrom(ByteBuffer.allocate(6100));
+    index.close();
+
+    index = new MockIndex(logFile, scheduler, log, config, factory, segmentLoader);
+    Assert.assertEquals(4, index.indexes.size());
+    Assert.assertTrue(index.indexes.firstEntry().getValue().isMapped());
+    Assert.assertFalse(index.getLastSegment().isMapped());
+    verifyLookups(index, ids);
+    index.close();
+
+    // corrupt the version of the first segment
+    File firstSegmentFile = index.indexes.firstEntry().getValue().getFile();
+    FileChannel channel = FileChannel.open(firstSegmentFile.toPath(), StandardOpenOption.WRITE);
+    channel.write(ByteBuffer.wrap(new byte[]{0, 5}), 0);
+    channel.close();
+    try {
+      new MockIndex(logFile, scheduler, log, config, factory, segmentLoader);
+      Assert.fail("Index should not have been created with a corrupt segment");
+    } catch (StoreException e) {
+      Assert.assertEquals(StoreErrorCodes.Index_Creation_Failure, e.getErrorCode());
+    }
+    index.stopScheduler();
+    segmentLoader.shutdown();
+    log.close();
+  }
+
+  /**
+   * Verifies the lookups of the keys added by {@link #testIndexWithKeyLocator()} and
+   * {@link #testParallelIndexSegmentLoad()}.
+   * @param index the index to look the keys up in.
+   * @param ids the keys that were added to the index.
+   * @throws StoreException
+   */
+  private void verifyLookups(MockIndex index, List<MockId> ids) throws StoreException {
+    IndexValue value = index.getValue(ids.get(0));
+    Assert.assertTrue("Key should be deleted", value.isFlagSet(IndexValue.Flags.Delete_Index));
+    Assert.assertEquals(6000, value.getOffset());
+    for (int i = 1; i < ids.size(); i++) {
+      value = index.getValue(ids.get(i));
+      Assert.assertFalse("Key should not be deleted", value.isFlagSet(IndexValue.Flags.Delete_Index));
+      Assert.assertEquals(i * 1000, value.getOffset());
+    }
+    Assert.assertNull(index.getValue(new MockId("id9")));
+    Assert.assertNull(index.findKey(new MockId("id9"), new FileSpan(0, 6100)));
+    Assert.assertEquals(3000, index.findKey(ids.get(3), new FileSpan(2000, 4000)).getOffset());
+
+    // batch lookups with a missing key and a duplicate key
+    List<MockId> keysToFind = new ArrayList<MockId>(ids);
+    keysToFind.add(new MockId("id9"));
+    keysToFind.add(ids.get(1));
+    Map<StoreKey, IndexValue> values = index.findKeys(keysToFind);
+    Assert.assertEquals(ids.size(), values.size());
+    Assert.assertTrue(values.get(ids.get(0)).isFlagSet(IndexValue.Flags.Delete_Index));
+    for (int i = 1; i < ids.size(); i++) {
+      Assert.assertEquals(i * 1000, values.get(ids.get(i)).getOffset());
+    }
+  }
+
+  /**
+   * Tests that batch lookups with {@link PersistentIndex#findKeys(List)} return the same values as individual lookups
+   * for keys that are spread over many mapped segments and the in memory segment.
+   * @throws Exception
+   */
+  @Test
+  public void testFindKeys() throws Exception {
+    String logFile = tempFile().getParent();
+    File indexFile = new File(logFile);
+    for (File c : indexFile.listFiles()) {
+      c.delete();
+    }
+    ScheduledExecutorService scheduler = Utils.newScheduler(1, false);
+    Log log = new Log(logFile, 100000, 100000, new StoreMetrics(logFile, new MetricRegistry()));
+    Properties props = new Properties();
+    props.put("store.index.max.number.of.inmem.elements", "10");
+    props.put("store.data.flush.delay.seconds", "999999");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    MockIndex index = new MockIndex(logFile, scheduler, log, config, factory);
+    List<MockId> ids = new ArrayList<MockId>();
+    int numKeys = 150;
+    for (int i = 0; i < numKeys; i++) {
+      MockId id = new MockId(UtilsTest.getRandomString(10));
+      ids.add(id);
+      index.addToIndex(new IndexEntry(id, new IndexValue(100, i * 100, Utils.Infinite_Time)),
+          new FileSpan(i * 100, (i + 1) * 100));
+    }
+    // delete some of the keys so that they are present in more than one segment
+    long offset = numKeys * 100;
+    for (int i = 0; i < numKeys; i += 7) {
+      index.markAsDeleted(ids.get(i), new FileSpan(offset, offset + 100));
+      offset += 100;
+    }
+    log.appendFrom(ByteBuffer.allocate((int) offset));
+    index.close();
+    index = new MockIndex(logFile, scheduler, log, config, factory);
+    Assert.assertTrue("There should be many segments", index.indexes.size() > 10);
+
+    List<MockId> keysToFind = new ArrayList<MockId>();
+    for (int i = 0; i < numKeys; i += 3) {
+      keysToFind.add(ids.get(i));
+    }
+    for (int i = 0; i < 20; i++) {
+      keysToFind.add(new MockId(UtilsTest.getRandomString(10)));
+    }
+    Collections.shuffle(keysToFind);
+    Map<StoreKey, IndexValue> values = index.findKeys(keysToFind);
+    int numFound = 0;
+    for (MockId id : keysToFind) {
+      IndexValue expected = index.getValue(id);
+      IndexValue actual = values.get(id);
+      if (expected == null) {
+        Assert.assertNull("Key should not have been found " + id, actual);
+      } else {
+        numFound++;
+        Assert.assertNotNull("Key should have been found " + id, actual);
+        Assert.assertEquals(expected.getOffset(), actual.getOffset());
+        Assert.assertEquals(expected.getSize(), actual.getSize());
+        Assert.assertEquals(expected.getFlags(), actual.getFlags());
+      }
+    }
+    Assert.assertEquals(numFound, values.size());
+    Assert.assertTrue(index.findMissingKeys(new ArrayList<StoreKey>(ids)).isEmpty());
+    Assert.assertEquals(0, index.findKeys(new ArrayList<StoreKey>()).size());
+    index.stopScheduler();
+    index.close();
+    log.close();
+  }
+
   @Test
   public void testIndexRestore() throws IOException {
     MockClusterMap map = null;
@@ -1684,6 +2048,12 @@ class MockIndex extends PersistentIndex {
     this(datadir, scheduler, log, config, factory, new DummyMessageStoreHardDelete(), SystemTime.getInstance());
   }
 
+  public MockIndex(String datadir, ScheduledExecutorService scheduler, Log log, StoreConfig config,
+      StoreKeyFactory factory, ExecutorService segmentLoader) throws StoreException {
+    super(datadir, scheduler, log, config, factory, new DummyMessageStoreRecovery(), new DummyMessageStoreHardDelete(),
+        new StoreMetrics(datadir, new MetricRegistry()), SystemTime.getInstance(), segmentLoader);
+  }
+
   public MockIndex(String datadir, ScheduledExecutorService scheduler, Log log, StoreConfig config,
       StoreKeyFactory factory, Journal journal) throws StoreException {
     super(datadir, scheduler, log, config, factory, new DummyMessageStoreRecovery(), new DummyMessageStoreHardDelete(),
@@ -21,6 +21,7 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import org.junit.Assert;
@@ -124,4 +125,106 @@ public class StoreMessageReadSetTest {
       logFile.delete();
     }
   }
+
+  /**
+   * Tests that small messages are served from and added to a {@link BlobReadCache} and that larger messages bypass it.
+   */
+  @Test
+  public void testCachedMessageRead() throws IOException {
+    File tempFile = tempFile();
+    RandomAccessFile randomFile = new RandomAccessFile(tempFile, "rw");
+    try {
+      byte[] testbuf = new byte[1000];
+      new Random().nextBytes(testbuf);
+      randomFile.write(testbuf);
+      BlobReadCache cache = new BlobReadCache(1000, 50);
+      List<BlobReadOptions> options = new ArrayList<BlobReadOptions>(2);
+      options.add(new BlobReadOptions(100, 50, 1, null));
+      options.add(new BlobReadOptions(500, 200, 1, null));
+      MessageReadSet readSet =
+          new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, testbuf.length, null, cache);
+      ByteBuffer buf = ByteBuffer.allocate(1000);
+      ByteBufferOutputStream stream = new ByteBufferOutputStream(buf);
+      // the first read of a message is a miss that caches the message and the rest are hits
+      readSet.writeTo(0, Channels.newChannel(stream), 0, 20);
+      readSet.writeTo(0, Channels.newChannel(stream), 20, 1000);
+      readSet.writeTo(1, Channels.newChannel(stream), 0, 1000);
+      Assert.assertEquals("Unexpected number of bytes written", 250, buf.position());
+      buf.flip();
+      for (int i = 100; i < 150; i++) {
+        Assert.assertEquals(testbuf[i], buf.get());
+      }
+      for (int i = 500; i < 700; i++) {
+        Assert.assertEquals(testbuf[i], buf.get());
+      }
+      Assert.assertEquals("Unexpected hit count", 1, cache.hitCount.get());
+      Assert.assertEquals("Unexpected miss count", 1, cache.missCount.get());
+      Assert.assertEquals("Unexpected bytes served", 30, cache.bytesServed.get());
+      Assert.assertEquals("Only the small message should be cached", 1, cache.getRecordCount());
+
+      // a write to the log that invalidates the cache is visible in the next read
+      randomFile.getChannel().write(ByteBuffer.wrap(new byte[50]), 100);
+      cache.invalidate(100, 50);
+      buf.clear();
+      readSet.writeTo(0, Channels.newChannel(stream), 0, 1000);
+      buf.flip();
+      for (int i = 0; i < 50; i++) {
+        Assert.assertEquals(0, buf.get());
+      }
+    } finally {
+      randomFile.close();
+      tempFile.delete();
+    }
+  }
+
+  /**
+   * Tests that messages that are close to each other in the file are read together by a {@link ReadCoalescer} and
+   * that messages that are far apart or too large are read separately.
+   */
+  @Test
+  public void testCoalescedMessageRead() throws IOException {
+    File tempFile = tempFile();
+    RandomAccessFile randomFile = new RandomAccessFile(tempFile, "rw");
+    try {
+      byte[] testbuf = new byte[1000];
+      new Random().nextBytes(testbuf);
+      randomFile.write(testbuf);
+      ReadCoalescer coalescer = new ReadCoalescer(200, 20);
+      List<BlobReadOptions> options = new ArrayList<BlobReadOptions>(5);
+      // the first three messages are read together, the fourth is too far and the fifth is too large
+      options.add(new BlobReadOptions(100, 50, 1, null));
+      options.add(new BlobReadOptions(150, 30, 1, null));
+      options.add(new BlobReadOptions(190, 60, 1, null));
+      options.add(new BlobReadOptions(400, 50, 1, null));
+      options.add(new BlobReadOptions(460, 300, 1, null));
+      Assert.assertArrayEquals("Unexpected reads", new int[]{0, 0, 0, -1, -1}, coalescer.getReads(options, null));
+      MessageReadSet readSet =
+          new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, testbuf.length, null, null, coalescer);
+      ByteBuffer buf = ByteBuffer.allocate(1000);
+      ByteBufferOutputStream stream = new ByteBufferOutputStream(buf);
+      readSet.writeTo(0, Channels.newChannel(stream), 0, 20);
+      for (int i = 0; i < options.size(); i++) {
+        readSet.writeTo(i, Channels.newChannel(stream), i == 0 ? 20 : 0, 1000);
+      }
+      Assert.assertEquals("Unexpected number of bytes written", 490, buf.position());
+      buf.flip();
+      for (BlobReadOptions option : options) {
+        for (long i = option.getOffset(); i < option.getOffset() + option.getSize(); i++) {
+          Assert.assertEquals(testbuf[(int) i], buf.get());
+        }
+      }
+      Assert.assertEquals("Unexpected coalesced read count", 1, coalescer.coalescedReadCount.get());
+      Assert.assertEquals("Unexpected merged read count", 2, coalescer.mergedReadCount.get());
+      Assert.assertEquals("Unexpected gap bytes read", 10, coalescer.gapBytesRead.get());
+      Assert.assertEquals("Unexpected bytes served", 140, coalescer.bytesServed.get());
+
+      // cached messages are not read from the file
+      BlobReadCache cache = new BlobReadCache(1000, 50);
+      cache.put(150, Arrays.copyOfRange(testbuf, 150, 180), cache.getGeneration());
+      Assert.assertArrayEquals("Unexpected reads", new int[]{-1, -1, -1, -1, -1}, coalescer.getReads(options, cache));
+    } finally {
+      randomFile.close();
+      tempFile.delete();
+    }
+  }
 }
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.tools.perf;
+
+import com.github.ambry.utils.FilterFactory;
+import com.github.ambry.utils.IFilter;
+import com.github.ambry.utils.SystemTime;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+
+/**
+ * Compares the false positive rate and the probe latency of the standard bloom filter and the cache line blocked
+ * bloom filter for the same number of elements and target false positive probability.
+ */
+public class BloomFilterPerformance {
+
+  public static void main(String args[]) {
+    try {
+      OptionParser parser = new OptionParser();
+      ArgumentAcceptingOptionSpec<Integer> numElementsOpt =
+          parser.accepts("numElements", "The number of elements added to each filter")
+              .withRequiredArg()
+              .describedAs("num_elements")
+              .ofType(Integer.class)
+              .defaultsTo(10000);
+      ArgumentAcceptingOptionSpec<Double> falsePositiveProbabilityOpt =
+          parser.accepts("falsePositiveProbability", "The target false positive probability of the filters")
+              .withRequiredArg()
+              .describedAs("false_positive_probability")
+              .ofType(Double.class)
+              .defaultsTo(0.01);
+      ArgumentAcceptingOptionSpec<Integer> numProbesOpt =
+          parser.accepts("numProbes", "The number of probes for keys that are not in the filters")
+              .withRequiredArg()
+              .describedAs("num_probes")
+              .ofType(Integer.class)
+              .defaultsTo(1000000);
+      ArgumentAcceptingOptionSpec<Integer> keySizeOpt = parser.accepts("keySize", "The size of the keys in bytes")
+          .withRequiredArg()
+          .describedAs("key_size")
+          .ofType(Integer.class)
+          .defaultsTo(32);
+      ArgumentAcceptingOptionSpec<Integer> numIterationsOpt =
+          parser.accepts("numIterations", "The number of measured iterations per filter after a warm up iteration")
+              .withRequiredArg()
+              .describedAs("num_iterations")
+              .ofType(Integer.class)
+              .defaultsTo(5);
+      OptionSet options = parser.parse(args);
+
+      int numElements = options.valueOf(numElementsOpt);
+      double falsePositiveProbability = options.valueOf(falsePositiveProbabilityOpt);
+      int numProbes = options.valueOf(numProbesOpt);
+      int keySize = options.valueOf(keySizeOpt);
+      int numIterations = options.valueOf(numIterationsOpt);
+
+      Random random = new Random();
+      ByteBuffer[] presentKeys = createKeys(numElements, keySize, random);
+      ByteBuffer[] absentKeys = createKeys(numProbes, keySize, random);
+      IFilter standardFilter = FilterFactory.getFilter(numElements, falsePositiveProbability);
+      IFilter blockedFilter = FilterFactory.getBlockedFilter(numElements, falsePositiveProbability);
+      measure("Standard", standardFilter, presentKeys, absentKeys, numIterations);
+      measure("Blocked", blockedFilter, presentKeys, absentKeys, numIterations);
+    } catch (Exception e) {
+      System.out.println("Error while measuring bloom filter performance " + e);
+    }
+  }
+
+  /**
+   * Adds {@code presentKeys} to {@code filter} and prints the add latency, the false positive rate and the probe
+   * latency for {@code absentKeys}. The first iteration warms up the JIT and is not reported.
+   */
+  private static void measure(String name, IFilter filter, ByteBuffer[] presentKeys, ByteBuffer[] absentKeys,
+      int numIterations) {
+    for (int iteration = 0; iteration <= numIterations; iteration++) {
+      filter.clear();
+      long addStartTime = SystemTime.getInstance().nanoseconds();
+      for (ByteBuffer key : presentKeys) {
+        filter.add(key);
+      }
+      long addTimeNs = SystemTime.getInstance().nanoseconds() - addStartTime;
+      int falsePositives = 0;
+      long probeStartTime = SystemTime.getInstance().nanoseconds();
+      for (ByteBuffer key : absentKeys) {
+        if (filter.isPresent(key)) {
+          falsePositives++;
+        }
+      }
+      long probeTimeNs = SystemTime.getInstance().nanoseconds() - probeStartTime;
+      if (iteration > 0) {
+        System.out.println(
+            name + " filter iteration " + iteration + ": add latency " + (double) addTimeNs / presentKeys.length
+                + " ns, probe latency " + (double) probeTimeNs / absentKeys.length + " ns, false positive rate "
+                + (double) falsePositives / absentKeys.length);
+      }
+    }
+  }
+
+  private static ByteBuffer[] createKeys(int numKeys, int keySize, Random random) {
+    ByteBuffer[] keys = new ByteBuffer[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      byte[] key = new byte[keySize];
+      random.nextBytes(key);
+      keys[i] = ByteBuffer.wrap(key);
+    }
+    return keys;
+  }
+}
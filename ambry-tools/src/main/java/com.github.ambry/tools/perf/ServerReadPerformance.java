@@ -31,6 +31,7 @@ import com.github.ambry.network.BlockingChannelConnectionPool;
 import com.github.ambry.network.ConnectedChannel;
 import com.github.ambry.network.ConnectionPool;
 import com.github.ambry.network.Port;
+import com.github.ambry.network.PortType;
 import com.github.ambry.protocol.DeleteRequest;
 import com.github.ambry.protocol.DeleteResponse;
 import com.github.ambry.protocol.GetOption;
@@ -38,7 +39,6 @@ import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.tools.util.ToolUtils;
-import com.github.ambry.utils.ByteBufferOutputStream;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Throttler;
 import java.io.BufferedReader;
@@ -61,7 +61,9 @@ import joptsimple.OptionSpec;
 
 
 /**
- *
+ * Reads the blobs in a log from the servers and reports the latencies and the throughput of the reads. Replicas in
+ * the ssl enabled datacenters are read over SSL and the others over plain text, so the throughput of both is
+ * reported separately to compare them.
  */
 public class ServerReadPerformance {
   public static void main(String args[]) {
@@ -207,6 +209,10 @@ public class ServerReadPerformance {
 
       final AtomicLong totalTimeTaken = new AtomicLong(0);
       final AtomicLong totalReads = new AtomicLong(0);
+      final AtomicLong sslBytesRead = new AtomicLong(0);
+      final AtomicLong sslTimeTaken = new AtomicLong(0);
+      final AtomicLong plainTextBytesRead = new AtomicLong(0);
+      final AtomicLong plainTextTimeTaken = new AtomicLong(0);
       final AtomicBoolean shutdown = new AtomicBoolean(false);
       // attach shutdown handler to catch control-c
       Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -218,6 +224,10 @@ public class ServerReadPerformance {
                 + " Nano Seconds  Average time taken per read "
                 + ((double) totalTimeTaken.get()) / SystemTime.NsPerSec / totalReads.get() + " Seconds";
             System.out.println(message);
+            System.out.println(
+                "SSL throughput : " + getThroughputInMBPerSec(sslBytesRead.get(), sslTimeTaken.get()) + " MB/s"
+                    + "  Plain text throughput : " + getThroughputInMBPerSec(plainTextBytesRead.get(),
+                    plainTextTimeTaken.get()) + " MB/s");
           } catch (Exception e) {
             System.out.println("Error while shutting down " + e);
           }
@@ -238,6 +248,7 @@ public class ServerReadPerformance {
       ArrayList<Long> latenciesForGetBlobs = new ArrayList<Long>();
       long maxLatencyForGetBlobs = 0;
       long minLatencyForGetBlobs = Long.MAX_VALUE;
+      long totalBytesForGetBlobs = 0;
 
       while ((line = br.readLine()) != null) {
         String[] id = line.split("-");
@@ -261,14 +272,24 @@ public class ServerReadPerformance {
             InputStream receiveStream = channel.receive().getInputStream();
             GetResponse getResponse = GetResponse.readFrom(new DataInputStream(receiveStream), map);
             blobData = MessageFormatRecord.deserializeBlob(getResponse.getInputStream());
-            long sizeRead = 0;
+            int sizeRead = 0;
             byte[] outputBuffer = new byte[(int) blobData.getSize()];
-            ByteBufferOutputStream streamOut = new ByteBufferOutputStream(ByteBuffer.wrap(outputBuffer));
-            while (sizeRead < blobData.getSize()) {
-              streamOut.write(blobData.getStream().read());
-              sizeRead++;
+            while (sizeRead < outputBuffer.length) {
+              int read = blobData.getStream().read(outputBuffer, sizeRead, outputBuffer.length - sizeRead);
+              if (read < 0) {
+                throw new UnexpectedException("Blob " + blobId + " ended after " + sizeRead + " bytes");
+              }
+              sizeRead += read;
             }
             long latencyPerBlob = SystemTime.getInstance().nanoseconds() - startTimeGetBlob;
+            if (port.getPortType() == PortType.SSL) {
+              sslBytesRead.addAndGet(sizeRead);
+              sslTimeTaken.addAndGet(latencyPerBlob);
+            } else {
+              plainTextBytesRead.addAndGet(sizeRead);
+              plainTextTimeTaken.addAndGet(latencyPerBlob);
+            }
+            totalBytesForGetBlobs += sizeRead;
             totalTimeTaken.addAndGet(latencyPerBlob);
             latenciesForGetBlobs.add(latencyPerBlob);
             totalReads.incrementAndGet();
@@ -276,7 +297,8 @@ public class ServerReadPerformance {
             totalLatencyForGetBlobs += latencyPerBlob;
             if (enableVerboseLogging) {
               System.out.println(
-                  "Time taken to get blob id " + blobId + " in ms " + latencyPerBlob / SystemTime.NsPerMs);
+                  "Time taken to get blob id " + blobId + " over " + port.getPortType() + " in ms "
+                      + latencyPerBlob / SystemTime.NsPerMs);
             }
             if (latencyPerBlob > maxLatencyForGetBlobs) {
               maxLatencyForGetBlobs = latencyPerBlob;
@@ -291,12 +313,14 @@ public class ServerReadPerformance {
               String message =
                   totalNumberOfGetBlobs + "," + (double) latenciesForGetBlobs.get(index99) / SystemTime.NsPerSec + ","
                       + (double) latenciesForGetBlobs.get(index95) / SystemTime.NsPerSec + "," + (
-                      (double) totalLatencyForGetBlobs / SystemTime.NsPerSec / totalNumberOfGetBlobs);
+                      (double) totalLatencyForGetBlobs / SystemTime.NsPerSec / totalNumberOfGetBlobs) + ","
+                      + getThroughputInMBPerSec(totalBytesForGetBlobs, totalLatencyForGetBlobs);
               System.out.println(message);
               writer.write(message + "\n");
               totalLatencyForGetBlobs = 0;
               latenciesForGetBlobs.clear();
               totalNumberOfGetBlobs = 0;
+              totalBytesForGetBlobs = 0;
               maxLatencyForGetBlobs = 0;
               minLatencyForGetBlobs = Long.MAX_VALUE;
             }
@@ -363,4 +387,16 @@ public class ServerReadPerformance {
       }
     }
   }
+
+  /**
+   * @param bytesRead the number of bytes read
+   * @param timeTakenInNs the time taken to read the bytes in nanoseconds
+   * @return the throughput in megabytes per second
+   */
+  private static double getThroughputInMBPerSec(long bytesRead, long timeTakenInNs) {
+    if (timeTakenInNs == 0) {
+      return 0;
+    }
+    return ((double) bytesRead / (1024 * 1024)) / ((double) timeTakenInNs / SystemTime.NsPerSec);
+  }
 }
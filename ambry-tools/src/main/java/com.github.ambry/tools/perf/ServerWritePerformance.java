@@ -114,6 +114,14 @@ public class ServerWritePerformance {
               .ofType(Long.class)
               .defaultsTo(300L);
 
+      ArgumentAcceptingOptionSpec<Long> throughputReportIntervalOpt =
+          parser.accepts("throughputReportIntervalInSeconds",
+              "The interval in seconds at which the aggregate throughput of all the writers is reported")
+              .withOptionalArg()
+              .describedAs("The wall clock time between two throughput reports")
+              .ofType(Long.class)
+              .defaultsTo(10L);
+
       ArgumentAcceptingOptionSpec<Boolean> verboseLoggingOpt =
           parser.accepts("enableVerboseLogging", "Enables verbose logging")
               .withOptionalArg()
@@ -203,7 +211,7 @@ public class ServerWritePerformance {
         sslProperties = new Properties();
       }
 
-      int numberOfWriters = options.valueOf(numberOfWritersOpt);
+      final int numberOfWriters = options.valueOf(numberOfWritersOpt);
       int writesPerSecond = options.valueOf(writesPerSecondOpt);
       boolean enableVerboseLogging = options.has(verboseLoggingOpt) ? true : false;
       int minBlobSize = options.valueOf(minBlobSizeOpt);
@@ -213,6 +221,8 @@ public class ServerWritePerformance {
       }
       final AtomicLong totalTimeTaken = new AtomicLong(0);
       final AtomicLong totalWrites = new AtomicLong(0);
+      final AtomicLong totalBytesWritten = new AtomicLong(0);
+      final long throughputReportIntervalMs = options.valueOf(throughputReportIntervalOpt) * SystemTime.MsPerSec;
       String hardwareLayoutPath = options.valueOf(hardwareLayoutOpt);
       String partitionLayoutPath = options.valueOf(partitionLayoutOpt);
       ClusterMap map = new ClusterMapManager(hardwareLayoutPath, partitionLayoutPath,
@@ -225,6 +235,7 @@ public class ServerWritePerformance {
 
       final CountDownLatch latch = new CountDownLatch(numberOfWriters);
       final AtomicBoolean shutdown = new AtomicBoolean(false);
+      final long startTimeMs = SystemTime.getInstance().milliseconds();
       // attach shutdown handler to catch control-c
       Runtime.getRuntime().addShutdownHook(new Thread() {
         public void run() {
@@ -235,6 +246,10 @@ public class ServerWritePerformance {
             System.out.println("Total writes : " + totalWrites.get() + "  Total time taken : " + totalTimeTaken.get()
                 + " Nano Seconds  Average time taken per write "
                 + ((double) totalTimeTaken.get()) / SystemTime.NsPerSec / totalWrites.get() + " Seconds");
+            long elapsedTimeMs = SystemTime.getInstance().milliseconds() - startTimeMs;
+            System.out.println(
+                "Writers : " + numberOfWriters + "  Overall throughput : " + getThroughputMessage(totalWrites.get(),
+                    totalBytesWritten.get(), elapsedTimeMs));
           } catch (Exception e) {
             System.out.println("Error while shutting down " + e);
           }
@@ -254,10 +269,34 @@ public class ServerWritePerformance {
       for (int i = 0; i < numberOfWriters; i++) {
         threadIndexPerf[i] = new Thread(
             new ServerWritePerfRun(i, throttler, shutdown, latch, minBlobSize, maxBlobSize, blobIdsWriter,
-                performanceWriter, totalTimeTaken, totalWrites, measurementIntervalNs, enableVerboseLogging, map,
-                connectionPool));
+                performanceWriter, totalTimeTaken, totalWrites, totalBytesWritten, measurementIntervalNs,
+                enableVerboseLogging, map, connectionPool));
         threadIndexPerf[i].start();
       }
+      // the aggregate throughput shows how the put throughput of the servers scales with the number of concurrent
+      // writers (and with the number of request handler threads configured on the servers).
+      Thread throughputReporter = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          long prevWrites = 0;
+          long prevBytesWritten = 0;
+          while (!shutdown.get()) {
+            try {
+              Thread.sleep(throughputReportIntervalMs);
+            } catch (InterruptedException e) {
+              break;
+            }
+            long writes = totalWrites.get();
+            long bytesWritten = totalBytesWritten.get();
+            System.out.println("Writers : " + numberOfWriters + "  Throughput : " + getThroughputMessage(
+                writes - prevWrites, bytesWritten - prevBytesWritten, throughputReportIntervalMs));
+            prevWrites = writes;
+            prevBytesWritten = bytesWritten;
+          }
+        }
+      });
+      throughputReporter.setDaemon(true);
+      throughputReporter.start();
       for (int i = 0; i < numberOfWriters; i++) {
         threadIndexPerf[i].join();
       }
@@ -284,6 +323,18 @@ public class ServerWritePerformance {
     }
   }
 
+  /**
+   * Formats the throughput given the writes and the bytes written over a period of time.
+   * @param writes the number of writes in the period.
+   * @param bytesWritten the number of bytes written in the period.
+   * @param periodMs the length of the period in ms.
+   * @return the throughput as writes per second and MB per second.
+   */
+  private static String getThroughputMessage(long writes, long bytesWritten, long periodMs) {
+    double periodSecs = Math.max(periodMs, 1) / (double) SystemTime.MsPerSec;
+    return String.format("%.2f writes/sec %.2f MB/sec", writes / periodSecs, bytesWritten / periodSecs / 1024 / 1024);
+  }
+
   public static class ServerWritePerfRun implements Runnable {
 
     private Throttler throttler;
@@ -297,6 +348,7 @@ public class ServerWritePerformance {
     private FileWriter performanceWriter;
     private AtomicLong totalTimeTaken;
     private AtomicLong totalWrites;
+    private AtomicLong totalBytesWritten;
     private long measurementIntervalNs;
     private boolean enableVerboseLogging;
     private int threadIndex;
@@ -304,8 +356,8 @@ public class ServerWritePerformance {
 
     public ServerWritePerfRun(int threadIndex, Throttler throttler, AtomicBoolean isShutdown, CountDownLatch latch,
         int minBlobSize, int maxBlobSize, FileWriter blobIdWriter, FileWriter performanceWriter,
-        AtomicLong totalTimeTaken, AtomicLong totalWrites, long measurementIntervalNs, boolean enableVerboseLogging,
-        ClusterMap clusterMap, ConnectionPool connectionPool) {
+        AtomicLong totalTimeTaken, AtomicLong totalWrites, AtomicLong totalBytesWritten, long measurementIntervalNs,
+        boolean enableVerboseLogging, ClusterMap clusterMap, ConnectionPool connectionPool) {
       this.threadIndex = threadIndex;
       this.throttler = throttler;
       this.isShutdown = isShutdown;
@@ -317,6 +369,7 @@ public class ServerWritePerformance {
       this.performanceWriter = performanceWriter;
       this.totalTimeTaken = totalTimeTaken;
       this.totalWrites = totalWrites;
+      this.totalBytesWritten = totalBytesWritten;
       this.measurementIntervalNs = measurementIntervalNs;
       this.enableVerboseLogging = enableVerboseLogging;
       this.connectionPool = connectionPool;
@@ -361,6 +414,7 @@ public class ServerWritePerformance {
             latenciesForPutBlobs.add(latencyPerBlob);
             blobIdWriter.write("Blob-" + blobId + "\n");
             totalWrites.incrementAndGet();
+            totalBytesWritten.addAndGet(blob.length);
             if (enableVerboseLogging) {
               System.out.println("Time taken to put blob id " + blobId + " in ms " + latencyPerBlob / SystemTime.NsPerMs
                   + " for blob of size " + blob.length);
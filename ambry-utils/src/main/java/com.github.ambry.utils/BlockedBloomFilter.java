@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * A bloom filter that sets all the bits of a key in a single 64 byte block, so that a probe touches a single cache
+ * line instead of one cache line per hash function. A single 64 bit hash is computed per key. Its high bits select
+ * the block and the bit positions within the block are derived from it by multiplicative rehashing.
+ * <p/>
+ * Blocked filters need slightly more bits per element than standard filters for the same false positive probability
+ * because the number of keys per block varies. {@link FilterFactory#getBlockedFilter(long, double)} accounts for that.
+ */
+public class BlockedBloomFilter implements IFilter {
+  public static final BlockedBloomFilterSerializer serializer = new BlockedBloomFilterSerializer();
+
+  static final int Bits_Per_Block = 512;
+  static final int Longs_Per_Block = Bits_Per_Block / 64;
+  static final int Max_Hash_Count = 16;
+
+  private static final long Hash_Seed = 0x9747b28cL;
+  private static final long Rehash_Multiplier = 0x9e3779b97f4a7c15L;
+
+  private final long[] blocks;
+  private final int numBlocks;
+  final int hashCount;
+
+  /**
+   * Creates an empty filter.
+   * @param hashCount the number of bits set per key. Between 1 and {@link #Max_Hash_Count}.
+   * @param numBlocks the number of 64 byte blocks in the filter.
+   */
+  public BlockedBloomFilter(int hashCount, int numBlocks) {
+    this(hashCount, new long[checkNumBlocks(numBlocks) * Longs_Per_Block]);
+  }
+
+  private BlockedBloomFilter(int hashCount, long[] blocks) {
+    if (hashCount < 1 || hashCount > Max_Hash_Count) {
+      throw new IllegalArgumentException("Hash count " + hashCount + " is not between 1 and " + Max_Hash_Count);
+    }
+    this.hashCount = hashCount;
+    this.blocks = blocks;
+    numBlocks = blocks.length / Longs_Per_Block;
+  }
+
+  @Override
+  public void add(ByteBuffer key) {
+    long hash = MurmurHash.hash2_64(key, key.position(), key.remaining(), Hash_Seed);
+    int blockStart = getBlockIndex(hash) * Longs_Per_Block;
+    for (int i = 0; i < hashCount; i++) {
+      hash *= Rehash_Multiplier;
+      int bit = (int) (hash >>> 55);
+      blocks[blockStart + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  @Override
+  public boolean isPresent(ByteBuffer key) {
+    long hash = MurmurHash.hash2_64(key, key.position(), key.remaining(), Hash_Seed);
+    int blockStart = getBlockIndex(hash) * Longs_Per_Block;
+    for (int i = 0; i < hashCount; i++) {
+      hash *= Rehash_Multiplier;
+      int bit = (int) (hash >>> 55);
+      if ((blocks[blockStart + (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(blocks, 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+  }
+
+  /**
+   * @return the size of the filter in bytes.
+   */
+  public long sizeInBytes() {
+    return (long) blocks.length * 8;
+  }
+
+  /**
+   * Maps the high bits of {@code hash} to a block uniformly without a division.
+   */
+  private int getBlockIndex(long hash) {
+    return (int) (((hash >>> 32) * numBlocks) >>> 32);
+  }
+
+  private static int checkNumBlocks(int numBlocks) {
+    if (numBlocks < 1 || numBlocks > Integer.MAX_VALUE / Longs_Per_Block) {
+      throw new IllegalArgumentException("Invalid number of blocks: " + numBlocks);
+    }
+    return numBlocks;
+  }
+
+  /**
+   * Serializes a {@link BlockedBloomFilter} as its version, hash count, number of blocks and the blocks. The version
+   * is negative so that it can be told apart from the positive hash count at the start of the filters serialized by
+   * {@link BloomFilterSerializer}.
+   */
+  public static class BlockedBloomFilterSerializer {
+    static final int Version_V1 = -1;
+
+    public void serialize(BlockedBloomFilter bf, DataOutput out) throws IOException {
+      out.writeInt(Version_V1);
+      out.writeInt(bf.hashCount);
+      out.writeInt(bf.numBlocks);
+      for (long word : bf.blocks) {
+        out.writeLong(word);
+      }
+    }
+
+    /**
+     * Deserializes a filter whose version has already been read from {@code in}.
+     * @param in the {@link DataInput} to read the rest of the filter from.
+     * @return the deserialized {@link BlockedBloomFilter}.
+     * @throws IOException if there is an I/O error or the serialized filter is invalid.
+     */
+    BlockedBloomFilter deserializeAfterVersion(DataInput in) throws IOException {
+      int hashCount = in.readInt();
+      int numBlocks = in.readInt();
+      if (hashCount < 1 || hashCount > Max_Hash_Count || numBlocks < 1
+          || numBlocks > Integer.MAX_VALUE / Longs_Per_Block) {
+        throw new IOException("Invalid blocked bloom filter with hash count " + hashCount + " and " + numBlocks
+            + " blocks");
+      }
+      long[] blocks = new long[numBlocks * Longs_Per_Block];
+      for (int i = 0; i < blocks.length; i++) {
+        blocks[i] = in.readLong();
+      }
+      return new BlockedBloomFilter(hashCount, blocks);
+    }
+  }
+}
@@ -18,6 +18,11 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 
+/**
+ * Serializes bit set based {@link BloomFilter}s as their hash count followed by their bit set. The hash count is
+ * always positive, which tells these filters apart from other formats that start with a negative version (see
+ * {@link FilterFactory#deserialize(DataInput)}).
+ */
 abstract class BloomFilterSerializer {
   public void serialize(BloomFilter bf, DataOutput out) throws IOException {
     out.writeInt(bf.hashCount);
@@ -25,7 +30,17 @@ abstract class BloomFilterSerializer {
   }
 
   public BloomFilter deserialize(DataInput in) throws IOException {
-    int hashes = in.readInt();
+    return deserialize(in, in.readInt());
+  }
+
+  /**
+   * Deserializes a filter whose hash count has already been read from {@code in}.
+   * @param in the {@link DataInput} to read the bit set from.
+   * @param hashes the hash count of the filter.
+   * @return the deserialized {@link BloomFilter}.
+   * @throws IOException if there is an I/O error while reading.
+   */
+  BloomFilter deserialize(DataInput in, int hashes) throws IOException {
     IBitSet bs = OpenBitSet.deserialize(in);
     return createFilter(hashes, bs);
   }
@@ -18,6 +18,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeoutException;
 
 
 /**
@@ -25,6 +26,8 @@ import java.nio.channels.ReadableByteChannel;
  */
 public class ByteBufferInputStream extends InputStream {
   private ByteBuffer byteBuffer;
+  // the pool to return the buffer to on close, if the buffer was allocated from a pool.
+  private ByteBufferPool bufferPool;
   private int mark;
   private int readLimit;
 
@@ -42,15 +45,36 @@ public class ByteBufferInputStream extends InputStream {
    * @throws IOException
    */
   public ByteBufferInputStream(InputStream stream, int size) throws IOException {
-    this.byteBuffer = ByteBuffer.allocate(size);
-    int read = 0;
-    ReadableByteChannel readableByteChannel = Channels.newChannel(stream);
-    while (read < size) {
-      int sizeRead = readableByteChannel.read(byteBuffer);
-      if (sizeRead == 0 || sizeRead == -1) {
-        throw new IOException("Total size read " + read + " is less than the size to be read " + size);
+    this(stream, size, null);
+  }
+
+  /**
+   * Reads 'size' amount of bytes from the stream into a buffer allocated from {@code bufferPool}. The buffer is
+   * returned to the pool when this stream is closed, so neither this stream nor the buffers obtained through
+   * {@link #getByteBuffer()} can be used after {@link #close()}. The buffer is allocated from the heap if the pool
+   * cannot serve the size right away.
+   * @param stream The stream from which bytes need to be read. If the underlying stream is SocketInputStream, it needs
+   *               to be blocking.
+   * @param size The size that needs to be read from the stream
+   * @param bufferPool the {@link ByteBufferPool} to allocate the buffer from. Can be {@code null}, in which case the
+   *                   buffer is allocated from the heap.
+   * @throws IOException
+   */
+  public ByteBufferInputStream(InputStream stream, int size, ByteBufferPool bufferPool) throws IOException {
+    this.byteBuffer = allocate(size, bufferPool);
+    try {
+      int read = 0;
+      ReadableByteChannel readableByteChannel = Channels.newChannel(stream);
+      while (read < size) {
+        int sizeRead = readableByteChannel.read(byteBuffer);
+        if (sizeRead == 0 || sizeRead == -1) {
+          throw new IOException("Total size read " + read + " is less than the size to be read " + size);
+        }
+        read += sizeRead;
       }
-      read += sizeRead;
+    } catch (IOException e) {
+      close();
+      throw e;
     }
     byteBuffer.flip();
     this.mark = -1;
@@ -103,6 +127,17 @@ public class ByteBufferInputStream extends InputStream {
     return true;
   }
 
+  /**
+   * Returns the buffer to the pool it was allocated from, if any.
+   */
+  @Override
+  public void close() {
+    if (bufferPool != null) {
+      bufferPool.deallocate(byteBuffer);
+      bufferPool = null;
+    }
+  }
+
   public ByteBufferInputStream duplicate() {
     return new ByteBufferInputStream(byteBuffer.duplicate());
   }
@@ -117,5 +152,23 @@ public class ByteBufferInputStream extends InputStream {
   public ByteBuffer getByteBuffer() {
     return byteBuffer.asReadOnlyBuffer();
   }
-}
 
+  /**
+   * Allocates a buffer of {@code size} bytes from {@code pool} if the memory is available right away and from the
+   * heap otherwise.
+   */
+  private ByteBuffer allocate(int size, ByteBufferPool pool) {
+    if (pool != null) {
+      try {
+        ByteBuffer buffer = pool.allocate(size, 0);
+        bufferPool = pool;
+        return buffer;
+      } catch (TimeoutException | IllegalArgumentException e) {
+        // the pool cannot serve this size right away, fall back to the heap.
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return ByteBuffer.allocate(size);
+  }
+}
@@ -24,13 +24,33 @@ public class FilterFactory {
 
   private static final Logger logger = LoggerFactory.getLogger(FilterFactory.class);
   private static final long BITSET_EXCESS = 20;
+  // blocked filters need more bits per element than standard filters for the same false positive probability
+  private static final double BLOCKED_FILTER_BITS_OVERHEAD = 1.2;
 
   public static void serialize(IFilter bf, DataOutput output) throws IOException {
-    Murmur3BloomFilter.serializer.serialize((Murmur3BloomFilter) bf, output);
+    if (bf instanceof BlockedBloomFilter) {
+      BlockedBloomFilter.serializer.serialize((BlockedBloomFilter) bf, output);
+    } else {
+      Murmur3BloomFilter.serializer.serialize((Murmur3BloomFilter) bf, output);
+    }
   }
 
+  /**
+   * Deserializes a filter serialized by {@link #serialize(IFilter, DataOutput)}. The format of the filter is
+   * determined by its first int, which is the hash count of a {@link Murmur3BloomFilter} if it is positive and the
+   * version of another format otherwise.
+   * @param input the {@link DataInput} to read the filter from.
+   * @return the deserialized filter.
+   * @throws IOException if there is an I/O error or the format of the filter is not known.
+   */
   public static IFilter deserialize(DataInput input) throws IOException {
-    return Murmur3BloomFilter.serializer.deserialize(input);
+    int hashCountOrVersion = input.readInt();
+    if (hashCountOrVersion > 0) {
+      return Murmur3BloomFilter.serializer.deserialize(input, hashCountOrVersion);
+    } else if (hashCountOrVersion == BlockedBloomFilter.BlockedBloomFilterSerializer.Version_V1) {
+      return BlockedBloomFilter.serializer.deserializeAfterVersion(input);
+    }
+    throw new IOException("Unknown filter version " + hashCountOrVersion);
   }
 
   /**
@@ -62,6 +82,23 @@ public class FilterFactory {
     return createFilter(spec.K, numElements, spec.bucketsPerElement);
   }
 
+  /**
+   * @return A {@link BlockedBloomFilter} that provides about the given false positive probability for the given number
+   *         of elements.
+   */
+  public static IFilter getBlockedFilter(long numElements, double maxFalsePosProbability) {
+    if (maxFalsePosProbability <= 0 || maxFalsePosProbability >= 1) {
+      throw new IllegalArgumentException("Invalid false positive probability " + maxFalsePosProbability);
+    }
+    double optimalBitsPerElement = -Math.log(maxFalsePosProbability) / (Math.log(2) * Math.log(2));
+    double bitsPerElement = optimalBitsPerElement * BLOCKED_FILTER_BITS_OVERHEAD;
+    int hashCount = (int) Math.max(1, Math.min(BlockedBloomFilter.Max_Hash_Count,
+        Math.round(optimalBitsPerElement * Math.log(2))));
+    long numBlocks = (long) Math.ceil(Math.max(1, numElements) * bitsPerElement / BlockedBloomFilter.Bits_Per_Block);
+    return new BlockedBloomFilter(hashCount,
+        (int) Math.min(numBlocks, Integer.MAX_VALUE / BlockedBloomFilter.Longs_Per_Block));
+  }
+
   private static IFilter createFilter(int hash, long numElements, int bucketsPer) {
     long numBits = (numElements * bucketsPer) + BITSET_EXCESS;
     IBitSet bitset = new OpenBitSet(numBits);
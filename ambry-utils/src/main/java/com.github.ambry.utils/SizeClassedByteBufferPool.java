@@ -0,0 +1,160 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * <p>
+ * A {@link ByteBufferPool} that recycles deallocated buffers. Requested sizes are rounded up to a size class and a
+ * buffer of that class is reused if one is available. Size classes are spaced a quarter of a power of two apart, so
+ * that no more than a fifth of a buffer above the smallest size class is wasted. Requests larger than the largest
+ * size class are not pooled.
+ * <p>
+ * The pool is bounded by {@code capacity}, which is the total size of the idle buffers held by the pool. Buffers that
+ * are deallocated when the pool is full are left to the garbage collector. Allocations never block, so the
+ * {@code timeToBlockInMs} argument of {@link #allocate(int, long)} is ignored.
+ * <p>
+ * This class is thread safe.
+ */
+public class SizeClassedByteBufferPool implements ByteBufferPool {
+  private static final int SIZE_CLASSES_PER_POWER_OF_TWO = 4;
+
+  private final long capacity;
+  private final boolean useDirectBuffers;
+  private final int[] sizeClasses;
+  private final List<Queue<ByteBuffer>> idleBuffers;
+  private final AtomicLong idleBytes = new AtomicLong(0);
+
+  public final AtomicLong hitCount = new AtomicLong(0);
+  public final AtomicLong missCount = new AtomicLong(0);
+  public final AtomicLong outstandingBytes = new AtomicLong(0);
+
+  /**
+   * Create a new buffer pool
+   * @param capacity the maximum total size of the idle buffers held by the pool.
+   * @param minBufferSize the size of the smallest size class. Rounded up to a power of two.
+   * @param maxBufferSize the size of the largest request that is pooled.
+   * @param useDirectBuffers {@code true} if the pool allocates direct buffers, {@code false} for heap buffers.
+   */
+  public SizeClassedByteBufferPool(long capacity, int minBufferSize, int maxBufferSize, boolean useDirectBuffers) {
+    if (capacity < 0 || minBufferSize <= 0 || maxBufferSize < minBufferSize) {
+      throw new IllegalArgumentException(
+          "Invalid pool capacity " + capacity + " or buffer sizes " + minBufferSize + " and " + maxBufferSize);
+    }
+    this.capacity = capacity;
+    this.useDirectBuffers = useDirectBuffers;
+    List<Integer> sizes = new ArrayList<>();
+    long powerOfTwo = Math.max(SIZE_CLASSES_PER_POWER_OF_TWO, Long.highestOneBit(minBufferSize - 1) << 1);
+    long size = powerOfTwo;
+    while (size < maxBufferSize) {
+      sizes.add((int) size);
+      if (size == powerOfTwo * 2) {
+        powerOfTwo = size;
+      }
+      size += powerOfTwo / SIZE_CLASSES_PER_POWER_OF_TWO;
+    }
+    sizes.add((int) Math.min(size, Integer.MAX_VALUE));
+    sizeClasses = new int[sizes.size()];
+    idleBuffers = new ArrayList<>(sizes.size());
+    for (int i = 0; i < sizeClasses.length; i++) {
+      sizeClasses[i] = sizes.get(i);
+      idleBuffers.add(new ConcurrentLinkedQueue<ByteBuffer>());
+    }
+  }
+
+  /**
+   * Allocate a byte buffer at the requested size. The returned buffer can have a larger capacity but its limit is
+   * set to {@code size}.
+   * @param size the buffer size to allocate in bytes
+   * @param timeToBlockInMs ignored, as the pool never blocks.
+   * @return A {@link ByteBuffer} at the requested size
+   */
+  @Override
+  public ByteBuffer allocate(int size, long timeToBlockInMs) {
+    int sizeClass = getSizeClass(size);
+    ByteBuffer buffer;
+    if (sizeClass >= 0) {
+      buffer = idleBuffers.get(sizeClass).poll();
+      if (buffer != null) {
+        idleBytes.addAndGet(-buffer.capacity());
+        hitCount.incrementAndGet();
+        buffer.clear();
+      } else {
+        buffer = newBuffer(sizeClasses[sizeClass]);
+      }
+    } else {
+      buffer = newBuffer(size);
+    }
+    buffer.limit(size);
+    outstandingBytes.addAndGet(buffer.capacity());
+    return buffer;
+  }
+
+  /**
+   * Returns {@code buffer} to the pool if it is of a size class and the pool has room for it. The buffer must have
+   * been allocated from this pool and must not be used after this call.
+   * @param buffer the {@link ByteBuffer} to be deallocated back to the pool
+   */
+  @Override
+  public void deallocate(ByteBuffer buffer) {
+    outstandingBytes.addAndGet(-buffer.capacity());
+    int sizeClass = Arrays.binarySearch(sizeClasses, buffer.capacity());
+    if (sizeClass >= 0 && buffer.isDirect() == useDirectBuffers) {
+      if (idleBytes.addAndGet(buffer.capacity()) <= capacity) {
+        idleBuffers.get(sizeClass).offer(buffer);
+      } else {
+        idleBytes.addAndGet(-buffer.capacity());
+      }
+    }
+  }
+
+  /**
+   * @return the total size of the idle buffers held by the pool.
+   */
+  public long getIdleBytes() {
+    return idleBytes.get();
+  }
+
+  /**
+   * @return the capacity of the pool.
+   */
+  public long capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the index of the smallest size class that can hold {@code size} bytes or -1 if {@code size} is larger
+   * than the largest size class.
+   */
+  private int getSizeClass(int size) {
+    int index = Arrays.binarySearch(sizeClasses, size);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    return index < sizeClasses.length ? index : -1;
+  }
+
+  private ByteBuffer newBuffer(int size) {
+    missCount.incrementAndGet();
+    return useDirectBuffers ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+}
@@ -24,7 +24,7 @@ import org.slf4j.LoggerFactory;
  */
 public class Throttler {
 
-  private double desiredRatePerSec;
+  private volatile double desiredRatePerSec;
   private long checkIntervalMs;
   private boolean throttleDown;
   private Object lock = new Object();
@@ -87,6 +87,21 @@ public class Throttler {
     }
   }
 
+  /**
+   * @return the rate this throttler is trying to hit in units/sec.
+   */
+  public double getDesiredRatePerSec() {
+    return desiredRatePerSec;
+  }
+
+  /**
+   * Changes the rate this throttler is trying to hit. Takes effect from the next check interval.
+   * @param desiredRatePerSec the new rate in units/sec.
+   */
+  public void setDesiredRatePerSec(double desiredRatePerSec) {
+    this.desiredRatePerSec = desiredRatePerSec;
+  }
+
   /**
    * Disable the throttler for good.
    */
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class BlockedBloomFilterTest {
+
+  @Test
+  public void testOne() {
+    IFilter bf = FilterFactory.getBlockedFilter(FilterTestHelper.ELEMENTS, 0.01);
+    bf.add(ByteBuffer.wrap("a".getBytes()));
+    Assert.assertTrue(bf.isPresent(ByteBuffer.wrap("a".getBytes())));
+    Assert.assertFalse(bf.isPresent(ByteBuffer.wrap("b".getBytes())));
+    // only the remaining bytes of a buffer are a part of the key
+    ByteBuffer buffer = ByteBuffer.wrap("ba".getBytes());
+    buffer.position(1);
+    Assert.assertTrue(bf.isPresent(buffer));
+    Assert.assertEquals("Probe should not change the buffer", 1, buffer.position());
+    bf.clear();
+    Assert.assertFalse(bf.isPresent(ByteBuffer.wrap("a".getBytes())));
+  }
+
+  @Test
+  public void testFalsePositives() {
+    double[] falsePositiveProbabilities = {0.1, 0.01, 0.001};
+    for (double falsePositiveProbability : falsePositiveProbabilities) {
+      IFilter bf = FilterFactory.getBlockedFilter(FilterTestHelper.ELEMENTS, falsePositiveProbability);
+      ResetableIterator<ByteBuffer> keys = FilterTestHelper.randomKeys();
+      while (keys.hasNext()) {
+        bf.add(keys.next());
+      }
+      keys.reset();
+      while (keys.hasNext()) {
+        Assert.assertTrue("Added key should be present", bf.isPresent(keys.next()));
+      }
+      int falsePositives = 0;
+      ResetableIterator<ByteBuffer> otherKeys = FilterTestHelper.randomKeys2();
+      while (otherKeys.hasNext()) {
+        if (bf.isPresent(otherKeys.next())) {
+          falsePositives++;
+        }
+      }
+      double falsePositiveRate = (double) falsePositives / otherKeys.size();
+      Assert.assertTrue("False positive rate " + falsePositiveRate + " is too high for " + falsePositiveProbability,
+          falsePositiveRate < falsePositiveProbability * 1.5);
+    }
+  }
+
+  @Test
+  public void testSerialize() throws IOException {
+    IFilter blocked = BloomFilterTest.testSerialize(FilterFactory.getBlockedFilter(FilterTestHelper.ELEMENTS, 0.01));
+    Assert.assertTrue("Deserialized filter should be blocked", blocked instanceof BlockedBloomFilter);
+    // filters in the original format are still deserialized
+    IFilter standard = BloomFilterTest.testSerialize(FilterFactory.getFilter(FilterTestHelper.ELEMENTS, 0.01));
+    Assert.assertTrue("Deserialized filter should be a standard filter", standard instanceof Murmur3BloomFilter);
+  }
+
+  @Test
+  public void testUnknownVersion() throws IOException {
+    ByteBuffer output = ByteBuffer.allocate(100);
+    DataOutputStream out = new DataOutputStream(new ByteBufferOutputStream(output));
+    out.writeInt(-100);
+    out.writeInt(1);
+    out.writeInt(1);
+    output.flip();
+    try {
+      FilterFactory.deserialize(new DataInputStream(new ByteBufferInputStream(output)));
+      Assert.fail("Deserialization of a filter with an unknown version should have failed");
+    } catch (IOException e) {
+      // expected. Nothing to do.
+    }
+  }
+
+  @Test
+  public void testInvalidArgs() {
+    try {
+      new BlockedBloomFilter(0, 1);
+      Assert.fail("Filter with no hashes should have failed");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+    try {
+      new BlockedBloomFilter(1, 0);
+      Assert.fail("Filter with no blocks should have failed");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+    try {
+      FilterFactory.getBlockedFilter(10, 0);
+      Assert.fail("Filter with a false positive probability of 0 should have failed");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+  }
+}
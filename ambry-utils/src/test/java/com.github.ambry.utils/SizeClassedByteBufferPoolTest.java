@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * This class tests {@link SizeClassedByteBufferPool} that implements {@link ByteBufferPool}.
+ */
+public class SizeClassedByteBufferPoolTest {
+
+  /**
+   * Tests that deallocated buffers are reused by allocations of the same size class and that the hits, misses and
+   * outstanding bytes are accounted for.
+   */
+  @Test
+  public void testReuse() {
+    SizeClassedByteBufferPool pool = new SizeClassedByteBufferPool(1024 * 1024, 1024, 64 * 1024, false);
+    ByteBuffer buffer = pool.allocate(1000, 0);
+    assertEquals("Small request should get the smallest size class", 1024, buffer.capacity());
+    assertEquals("Limit should be the requested size", 1000, buffer.limit());
+    assertEquals("Unexpected outstanding bytes", 1024, pool.outstandingBytes.get());
+    pool.deallocate(buffer);
+    assertEquals("Unexpected outstanding bytes", 0, pool.outstandingBytes.get());
+    assertEquals("Unexpected idle bytes", 1024, pool.getIdleBytes());
+
+    buffer.position(10);
+    ByteBuffer reused = pool.allocate(1024, 0);
+    assertSame("Buffer should have been reused", buffer, reused);
+    assertEquals("Reused buffer should be cleared", 0, reused.position());
+    assertEquals("Limit should be the requested size", 1024, reused.limit());
+    assertEquals("Unexpected idle bytes", 0, pool.getIdleBytes());
+
+    // sizes between two powers of two are rounded up to the next quarter
+    ByteBuffer other = pool.allocate(5000, 0);
+    assertEquals("Unexpected size class", 5120, other.capacity());
+    assertEquals("Unexpected hit count", 1, pool.hitCount.get());
+    assertEquals("Unexpected miss count", 2, pool.missCount.get());
+    assertEquals("Unexpected outstanding bytes", 1024 + 5120, pool.outstandingBytes.get());
+    assertFalse("Buffer should be a heap buffer", other.isDirect());
+  }
+
+  /**
+   * Tests that requests larger than the largest size class and buffers deallocated to a full pool are not pooled.
+   */
+  @Test
+  public void testBounds() {
+    SizeClassedByteBufferPool pool = new SizeClassedByteBufferPool(4096, 1024, 8 * 1024, true);
+    ByteBuffer large = pool.allocate(8 * 1024 + 1, 0);
+    assertEquals("Large request should not be rounded up", 8 * 1024 + 1, large.capacity());
+    assertTrue("Buffer should be a direct buffer", large.isDirect());
+    pool.deallocate(large);
+    assertEquals("Large buffer should not be pooled", 0, pool.getIdleBytes());
+
+    ByteBuffer first = pool.allocate(4096, 0);
+    ByteBuffer second = pool.allocate(4096, 0);
+    pool.deallocate(first);
+    pool.deallocate(second);
+    assertEquals("Idle bytes should not exceed the capacity", 4096, pool.getIdleBytes());
+    assertEquals("Unexpected outstanding bytes", 0, pool.outstandingBytes.get());
+    assertSame("Pooled buffer should have been reused", first, pool.allocate(4000, 0));
+    assertNotSame("Dropped buffer should not have been reused", second, pool.allocate(4000, 0));
+  }
+
+  /**
+   * Tests that invalid arguments are rejected.
+   */
+  @Test
+  public void testInvalidArgs() {
+    try {
+      new SizeClassedByteBufferPool(-1, 1024, 2048, false);
+      fail("Should have thrown!");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+    try {
+      new SizeClassedByteBufferPool(1024, 2048, 1024, false);
+      fail("Should have thrown!");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+  }
+}